@@ -0,0 +1,83 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.analysis.learning.linear.GD;
+import statechum.analysis.learning.rpnicore.LearnerGraphCachedData;
+
+/** Measures computation of a difference between two machines. Sizes are smaller than for other benchmarks because
+ * the number of pairs of states GD has to consider grows quadratically with the number of states.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GDBenchmarks
+{
+	@Param({"20", "50", "100"})
+	public int states;
+
+	@Param({"STATETREE_LINKEDHASH", "STATETREE_SLOWTREE", "STATETREE_INTARRAY"})
+	public STATETREE matrixType;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	protected GraphFixtures fixtures;
+
+	/** Configuration for computing differences, generated machines share names of states. */
+	protected Configuration gdConfig;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		fixtures = new GraphFixtures(states, matrixType);
+		gdConfig = fixtures.config.copy();gdConfig.setGdFailOnDuplicateNames(false);
+	}
+
+	@Benchmark
+	public GD.ChangesRecorder computeGD()
+	{
+		GD<CmpVertex,CmpVertex,LearnerGraphCachedData,LearnerGraphCachedData> gd = new GD<>();
+		GD.ChangesRecorder recorder = new GD.ChangesRecorder(null);
+		gd.computeGD(fixtures.machine, fixtures.otherMachine, threads, recorder, gdConfig);
+		return recorder;
+	}
+}
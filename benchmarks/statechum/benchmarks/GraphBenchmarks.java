@@ -0,0 +1,90 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.benchmarks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import statechum.Configuration.STATETREE;
+import statechum.Label;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.RandomPathGenerator;
+import statechum.analysis.learning.rpnicore.WMethod;
+import statechum.model.testset.PTASequenceEngine;
+
+/** Measures algorithms operating on whole graphs: generation of sequences, construction of a PTA and computation of a W set.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmarks
+{
+	@Param({"50", "200", "1000"})
+	public int states;
+
+	@Param({"STATETREE_LINKEDHASH", "STATETREE_SLOWTREE", "STATETREE_INTARRAY", "STATETREE_MAPPED"})
+	public STATETREE matrixType;
+
+	protected GraphFixtures fixtures;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		fixtures = new GraphFixtures(states, matrixType);
+	}
+
+	@Benchmark
+	public PTASequenceEngine generateSequences()
+	{
+		RandomPathGenerator generator = new RandomPathGenerator(fixtures.machine,new Random(GraphFixtures.SEED),5,null);
+		generator.generateRandomPosNeg(states*4, 1);
+		return generator.getAllSequences(0);
+	}
+
+	@Benchmark
+	public LearnerGraph buildPTA()
+	{
+		return fixtures.buildPTA();
+	}
+
+	@Benchmark
+	public Collection<List<Label>> computeWSet()
+	{
+		return WMethod.computeWSet_reducedmemory(fixtures.machine);
+	}
+}
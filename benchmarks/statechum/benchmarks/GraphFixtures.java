@@ -0,0 +1,102 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.benchmarks;
+
+import java.util.Random;
+import java.util.Stack;
+
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.JUConstants;
+import statechum.analysis.learning.PairScore;
+import statechum.analysis.learning.experiments.ForestFireLabelledStateMachineGenerator;
+import statechum.analysis.learning.rpnicore.AbstractLearnerGraph;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.MergeStates;
+import statechum.analysis.learning.rpnicore.RandomPathGenerator;
+import statechum.model.testset.PTASequenceEngine;
+
+/** Graphs used by benchmarks, generated deterministically from the number of states and the kind of transition matrix,
+ * so that runs with different versions of Statechum measure the same work.
+ *
+ * @author agent
+ */
+public class GraphFixtures
+{
+	/** The number of labels in generated machines. */
+	public static final int ALPHABET_SIZE = 10;
+
+	/** Seed used for generating machines and paths. */
+	public static final int SEED = 1;
+
+	/** Configuration used to build graphs of interest. */
+	public final Configuration config;
+
+	/** The machine paths are generated from, minimised. */
+	public final LearnerGraph machine;
+
+	/** Another machine with the same number of states and the same alphabet, for computing differences. */
+	public final LearnerGraph otherMachine;
+
+	/** Positive and negative sequences from the machine. */
+	public final PTASequenceEngine sequences;
+
+	public GraphFixtures(int states, STATETREE matrixType)
+	{
+		config = Configuration.getDefaultConfiguration().copy();
+		config.setTransitionMatrixImplType(matrixType);config.setLearnerCloneGraph(false);
+		machine = generateMachine(states, SEED, config);
+		otherMachine = generateMachine(states, SEED+1, config);
+		RandomPathGenerator generator = new RandomPathGenerator(machine,new Random(SEED),5,null);
+		generator.generateRandomPosNeg(states*4, 1);
+		sequences = generator.getAllSequences(0);
+	}
+
+	/** Generates a minimal machine with roughly the supplied number of states. */
+	public static LearnerGraph generateMachine(int states, int seed, Configuration config)
+	{
+		LearnerGraph generated = null;
+		synchronized(AbstractLearnerGraph.syncObj)
+		{// Jung-based routines cannot be multithreaded.
+			generated = new ForestFireLabelledStateMachineGenerator(0.365,0.3,0.2,0.2,ALPHABET_SIZE,seed,config,null).buildMachine(states);
+		}
+		return new LearnerGraph(generated.paths.reduce(),config);
+	}
+
+	/** Builds a PTA from the sequences, with the initial state coloured red. */
+	public LearnerGraph buildPTA()
+	{
+		LearnerGraph pta = new LearnerGraph(config);pta.paths.augmentPTA(sequences);
+		pta.clearColours();pta.getInit().setColour(JUConstants.RED);
+		return pta;
+	}
+
+	/** Returns a graph that is part-way through learning from the PTA, with several red states. */
+	public LearnerGraph buildPartiallyLearntGraph(int merges)
+	{
+		LearnerGraph graph = buildPTA();
+		for(int i=0;i<merges;++i)
+		{
+			Stack<PairScore> pairs = graph.pairscores.chooseStatePairs(null);
+			if (pairs.isEmpty())
+				break;
+			graph = MergeStates.mergeAndDeterminize_general(graph, pairs.peek());
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,136 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.benchmarks;
+
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import statechum.Configuration.STATETREE;
+import statechum.Configuration.ScoreMode;
+import statechum.analysis.learning.PairScore;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.MergeStates;
+import statechum.analysis.learning.rpnicore.MergeStatesInPlace;
+
+/** Measures choosing pairs of states and merging them, on a graph part-way through learning.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LearnerBenchmarks
+{
+	@Param({"50", "200", "1000"})
+	public int states;
+
+	@Param({"STATETREE_LINKEDHASH", "STATETREE_SLOWTREE", "STATETREE_INTARRAY", "STATETREE_MAPPED"})
+	public STATETREE matrixType;
+
+	@Param({"CONVENTIONAL", "GENERAL"})
+	public ScoreMode scoreMode;
+
+	protected GraphFixtures fixtures;
+
+	/** The graph to choose pairs in. */
+	protected LearnerGraph graph;
+
+	/** The pair to merge. */
+	protected PairScore pair;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		fixtures = new GraphFixtures(states, matrixType);
+		fixtures.config.setLearnerScoreMode(scoreMode);
+		graph = fixtures.buildPartiallyLearntGraph(3);
+		Stack<PairScore> pairs = graph.pairscores.chooseStatePairs(null);
+		pair = pairs.isEmpty()?null:pairs.peek();
+	}
+
+	/** A copy of the graph to merge states in, with the merger constructed in advance. Rebuilt for every invocation of
+	 * {@link LearnerBenchmarks#mergeInPlace} since merging modifies the graph; other benchmarks do not use this state and hence
+	 * are not affected by the setup done for every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class GraphToMergeInPlace
+	{
+		protected LearnerGraph copy;
+
+		protected MergeStatesInPlace merger;
+
+		/** The pair to merge, in terms of states of the copy. */
+		protected PairScore pair;
+
+		@Setup(Level.Invocation)
+		public void copyGraph(LearnerBenchmarks benchmarks)
+		{
+			if (benchmarks.pair == null)
+				return;
+			copy = new LearnerGraph(benchmarks.graph,benchmarks.graph.config);
+			merger = new MergeStatesInPlace(copy);
+			pair = new PairScore(copy.findVertex(benchmarks.pair.getQ()),copy.findVertex(benchmarks.pair.getR()),benchmarks.pair.getScore(),benchmarks.pair.getAnotherScore());
+		}
+
+		/** Releases the copy, so that a mapped transition matrix of the next copy reuses its file. */
+		@TearDown(Level.Invocation)
+		public void releaseGraph()
+		{
+			if (copy != null)
+				copy.releaseTransitionMatrix();
+			copy = null;merger = null;pair = null;
+		}
+	}
+
+	@Benchmark
+	public Stack<PairScore> chooseStatePairs()
+	{
+		return graph.pairscores.chooseStatePairs(null);
+	}
+
+	@Benchmark
+	public LearnerGraph mergeAndDeterminize()
+	{
+		return pair == null?graph:MergeStates.mergeAndDeterminize_general(graph, pair);
+	}
+
+	@Benchmark
+	public void mergeInPlace(GraphToMergeInPlace toMerge, Blackhole blackhole)
+	{
+		if (pair != null)
+			blackhole.consume(toMerge.merger.merge(toMerge.pair));
+	}
+}
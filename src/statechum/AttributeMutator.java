@@ -236,6 +236,11 @@ public class AttributeMutator {
 				{
 					valueA = STATETREE.STATETREE_LINKEDHASH;valueB = STATETREE.STATETREE_SLOWTREE;
 				}
+				else
+				if (var.getType().equals(LINEARSOLVER.class))
+				{
+					valueA = LINEARSOLVER.LINEARSOLVER_EXTERNAL_OR_COLT;valueB = LINEARSOLVER.LINEARSOLVER_ITERATIVE;
+				}
 				else
 					throw new IllegalArgumentException("A field "+var+" of "+clazz+" has an unsupported type "+var.getType());
 				
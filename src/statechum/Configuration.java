@@ -490,6 +490,37 @@ public class Configuration implements Cloneable {
 		labelKind = newLabelKind;
 	}
 
+	/**
+	 * Whether labels built from text when no label converter is supplied should be interned in the global 
+	 * {@link LabelRegistry}. This gives each distinct label a dense integer identifier, making it possible to
+	 * use array-based transition matrices without a dedicated converter.
+	 */
+	protected boolean internLabelsGlobally = false;
+
+	public boolean getInternLabelsGlobally() {
+		return internLabelsGlobally;
+	}
+
+	public void setInternLabelsGlobally(boolean value) {
+		internLabelsGlobally = value;
+	}
+
+	/**
+	 * How many predictions of transitions from states a Markov classifier can keep, reusing them for states that are queried
+	 * repeatedly. Least-recently used predictions are discarded when the limit is reached; zero disables caching.
+	 */
+	protected int markovPredictionCacheSize = 4096;
+
+	public int getMarkovPredictionCacheSize() {
+		return markovPredictionCacheSize;
+	}
+
+	public void setMarkovPredictionCacheSize(int value) {
+		if (value < 0)
+			throw new IllegalArgumentException("should be non-negative");
+		markovPredictionCacheSize = value;
+	}
+
 	/**
 	 * The initial state in a PTA has to be given some name, this is the
 	 * default. Important: "" means "generate a numerical identifier" which is
@@ -535,8 +566,9 @@ public class Configuration implements Cloneable {
 		strings.setLearnerCloneGraph(false);
 		Configuration stringsCompat = strings.copy();stringsCompat.setTransitionMatrixImplType(STATETREE.STATETREE_SLOWTREE);
 		Configuration stringsArray = strings.copy();stringsCompat.setTransitionMatrixImplType(STATETREE.STATETREE_ARRAY);
+		Configuration sameIntArray = same.copy();sameIntArray.setTransitionMatrixImplType(STATETREE.STATETREE_INTARRAY);
 		return Arrays
-				.asList(new Object[][] { { same }, { clone }, { strings }, {sameCompat},{ cloneCompat },{stringsCompat},{stringsArray}});
+				.asList(new Object[][] { { same }, { clone }, { strings }, {sameCompat},{ cloneCompat },{stringsCompat},{stringsArray},{sameIntArray}});
 	}
 
 	/**
@@ -900,6 +932,60 @@ public class Configuration implements Cloneable {
 		gdScoreComputationAlgorithm = value;
 	}
 
+	/**
+	 * How systems of linear equations are solved by GD and by linear pair selection,
+	 * <ul>
+	 * <li><em>LINEARSOLVER_EXTERNAL_OR_COLT</em> use the external solver (UMFPACK) if it can be loaded and Colt otherwise.</li>
+	 * <li><em>LINEARSOLVER_EXTERNAL_OR_ITERATIVE</em> use the external solver if it can be loaded and the iterative one otherwise.</li>
+	 * <li><em>LINEARSOLVER_ITERATIVE</em> always use the iterative solver (BiCGSTAB), which is in Java and does not need native libraries.</li>
+	 * <li><em>LINEARSOLVER_COLT</em> always use Colt's LU decomposition, only practical for small systems.</li>
+	 * </ul>
+	 */
+	public enum LINEARSOLVER {
+		LINEARSOLVER_EXTERNAL_OR_COLT, LINEARSOLVER_EXTERNAL_OR_ITERATIVE, LINEARSOLVER_ITERATIVE, LINEARSOLVER_COLT
+	}
+
+	protected LINEARSOLVER gdLinearSolver = LINEARSOLVER.LINEARSOLVER_EXTERNAL_OR_COLT;
+
+	public LINEARSOLVER getGdLinearSolver() {
+		return gdLinearSolver;
+	}
+
+	public void setGdLinearSolver(LINEARSOLVER value) {
+		gdLinearSolver = value;
+	}
+
+	/**
+	 * The maximal number of iterations of the iterative solver, zero to choose it based on the size of a system of equations.
+	 */
+	protected int gdLinearSolverMaxIterations = 0;
+
+	public int getGdLinearSolverMaxIterations() {
+		return gdLinearSolverMaxIterations;
+	}
+
+	public void setGdLinearSolverMaxIterations(int value) {
+		if (value < 0)
+			throw new IllegalArgumentException("should be non-negative");
+		gdLinearSolverMaxIterations = value;
+	}
+
+	/**
+	 * Whether linear pair selection should only build equations for pairs of states with outgoing transitions with the same label,
+	 * rather than for all pairs of states. Scores of the remaining pairs are zero or they are incompatible, hence where the 
+	 * threshold is non-negative the outcome is the same but the memory taken is proportional to the number of such pairs
+	 * rather than to the square of the number of states.
+	 */
+	protected boolean gdSparsePairs = false;
+
+	public boolean getGdSparsePairs() {
+		return gdSparsePairs;
+	}
+
+	public void setGdSparsePairs(boolean value) {
+		gdSparsePairs = value;
+	}
+
 	/**
 	 * When scores are generated using SCORE_TESTSET (via W method), this number
 	 * indicates how many extra states are to use in test generation.
@@ -979,6 +1065,22 @@ public class Configuration implements Cloneable {
 		gdPropagateDet = newValue;
 	}
 
+	/**
+	 * The number of threads GD uses to expand waves of key pairs and to construct a patch; zero means to use as many as 
+	 * are used to build and solve systems of equations, passed to <em>computeGD</em>. The outcome does not depend on this number.
+	 */
+	protected int gdThreadNumber = 0;
+
+	public int getGdThreadNumber() {
+		return gdThreadNumber;
+	}
+
+	public void setGdThreadNumber(int value) {
+		if (value < 0)
+			throw new IllegalArgumentException("should be non-negative");
+		gdThreadNumber = value;
+	}
+
 	/**
 	 * Considering all pairs of states, we need to determine those of them which
 	 * are over a specific threshold, defined as top so many percent (expressed
@@ -1443,9 +1545,15 @@ public class Configuration implements Cloneable {
 	/** The collection holding a transition matrix can be either a tree map for compatibility with old learners or a {@link HashMapWithSearch} that is a flavour of {@link LinkedHashMap}.
 	 * that is more efficient, particularly for large graphs. The order of state exploration is dependent on hash code computation rather than on names or numbers of states. This would
 	 * typically lead to slightly different learning outcomes hence the possibility of compatibility mode. 
+	 * <p>
+	 * {@link STATETREE#STATETREE_INTARRAY} stores transitions of deterministic graphs in a single pool of integers via {@link statechum.collections.IntArrayTransitionMatrix}
+	 * rather than in a map per state, this is aimed at very large PTAs where the memory consumed by rows dominates.
+	 * States and labels do not have to be numeric; non-deterministic graphs and auxiliary maps are built in the same way as for {@link STATETREE#STATETREE_LINKEDHASH}.
+	 * {@link STATETREE#STATETREE_MAPPED} is the same as {@link STATETREE#STATETREE_INTARRAY} except that the pool of transitions is kept in a memory-mapped file
+	 * via {@link statechum.collections.MappedTransitionMatrix}, for PTAs that do not fit in the heap. The directory for such files is set by {@link #setMappedTransitionMatrixDirectory(String)}.
 	 */
 	public enum STATETREE {
-		STATETREE_SLOWTREE, STATETREE_LINKEDHASH, STATETREE_ARRAY
+		STATETREE_SLOWTREE, STATETREE_LINKEDHASH, STATETREE_ARRAY, STATETREE_INTARRAY, STATETREE_MAPPED
 	}
 
 	protected STATETREE transitionMatrixImplType = STATETREE.STATETREE_LINKEDHASH;
@@ -1459,6 +1567,19 @@ public class Configuration implements Cloneable {
 	{
 		transitionMatrixImplType = value;
 	}
+
+	/** Where to create files for transition matrices of type {@link STATETREE#STATETREE_MAPPED}, null for the default temporary directory. */
+	protected String mappedTransitionMatrixDirectory = null;
+
+	public String getMappedTransitionMatrixDirectory()
+	{
+		return mappedTransitionMatrixDirectory;
+	}
+
+	public void setMappedTransitionMatrixDirectory(String value)
+	{
+		mappedTransitionMatrixDirectory = value;
+	}
 	
 	/** Transition matrices below this size will has a hashmap. This is important: for a big transition matrix, we absolutely have to use an array, otherwise inefficiency of Java Hash collections bites hard. 
 	 *  After a large graph got some mergers completed, things still take time because array access uses state IDs so we need  to have an array with elements with that number. Test mergers from large PTA
@@ -1511,6 +1632,59 @@ public class Configuration implements Cloneable {
 		useOrderedEntrySet = newValue;
 	}
 
+	/** When set, scores of pairs of states computed by {@link statechum.analysis.learning.rpnicore.PairScoreComputation#chooseStatePairs} are
+	 * retained between merges and only those depending on states affected by a merge are recomputed. Only has an effect on
+	 * {@link ScoreMode#CONVENTIONAL} and {@link ScoreMode#COMPATIBILITY} scoring, other modes always compute scores from scratch.
+	 */
+	protected boolean incrementalPairScores = false;
+
+	public boolean getIncrementalPairScores()
+	{
+		return incrementalPairScores;
+	}
+
+	public void setIncrementalPairScores(boolean newValue)
+	{
+		incrementalPairScores = newValue;
+	}
+
+	/**
+	 * Whether to compute scores in {@link ScoreMode#GENERAL}, {@link ScoreMode#GENERAL_PLUS_NOFULLMERGE}, {@link ScoreMode#KTAILS}
+	 * and {@link ScoreMode#KTAILS_ANY} modes using arrays retained between pairs rather than by constructing equivalence classes
+	 * for every pair. Equivalence classes are then only built for the pair that is actually merged.
+	 */
+	protected boolean generalScoresWithScratchBuffers = false;
+
+	public boolean getGeneralScoresWithScratchBuffers()
+	{
+		return generalScoresWithScratchBuffers;
+	}
+
+	public void setGeneralScoresWithScratchBuffers(boolean newValue)
+	{
+		generalScoresWithScratchBuffers = newValue;
+	}
+
+	/**
+	 * The number of threads to use to score pairs of red and blue states in
+	 * {@link statechum.analysis.learning.rpnicore.PairScoreComputation#chooseStatePairs(statechum.analysis.learning.rpnicore.PairScoreComputation.RedNodeSelectionProcedure)}.
+	 * With more than one thread, all pairs are scored in parallel and the outcome is the same as that of scoring pairs one by one,
+	 * provided that score computation callbacks are thread-safe.
+	 */
+	protected int pairScoringThreadNumber = 1;
+
+	public int getPairScoringThreadNumber()
+	{
+		return pairScoringThreadNumber;
+	}
+
+	public void setPairScoringThreadNumber(int newValue)
+	{
+		if (newValue < 1)
+			throw new IllegalArgumentException("the number of threads should be positive");
+		pairScoringThreadNumber = newValue;
+	}
+
 	/**
 	 * A number of constraints might be in use which may be included in a PTA to
 	 * make learning faster. Upon a restart, such constraints are automatically
@@ -74,6 +74,7 @@ public class GlobalConfiguration {
 		,ESC_TERMINATE // whether ESC or the appropriate right-mouse menu selection should terminate Java runtime. Disabled when Statechum is used from within Erlang.
 		,CLOSE_TERMINATE // whether closing of the viewer window should terminate JVM, usually false but is set to true when launched via GraphMLVisualiser
 		,ERLANG_SHORTNODENAME // whether to use Erlang short node names
+		,METRICS // whether to collect counters and timings of learning, see LearnerMetrics.
 		;
 	}
 
@@ -114,6 +115,7 @@ public class GlobalConfiguration {
 		defaultValues.put(G_PROPERTIES.FORCEFORK,"false");
 		defaultValues.put(G_PROPERTIES.ESC_TERMINATE,"true");
 		defaultValues.put(G_PROPERTIES.CLOSE_TERMINATE, "false");
+		defaultValues.put(G_PROPERTIES.METRICS, "false");
 		assert assertionsEnabled = true;// from http://java.sun.com/j2se/1.5.0/docs/guide/language/assert.html
 	}
 
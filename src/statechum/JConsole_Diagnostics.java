@@ -60,6 +60,26 @@ public class JConsole_Diagnostics extends NotificationBroadcasterSupport impleme
 		sendNotification(n); 
 	}
 
+	@Override
+	public String getMetrics() {
+		return LearnerMetrics.toJSON(System.currentTimeMillis());
+	}
+
+	@Override
+	public boolean isMetricsEnabled() {
+		return LearnerMetrics.isEnabled();
+	}
+
+	@Override
+	public void setMetricsEnabled(boolean value) {
+		LearnerMetrics.setEnabled(value);
+	}
+
+	@Override
+	public void resetMetrics() {
+		LearnerMetrics.reset();
+	}
+
     @Override 
     public MBeanNotificationInfo[] getNotificationInfo() 
     {// from  http://download.oracle.com/javase/1.5.0/docs/guide/jmx/tutorial/essential.html#wp1053200 
@@ -20,4 +20,10 @@ package statechum;
 public interface JConsole_DiagnosticsMBean {
 	String getStatus();
 	void setStatus(String newStatus);
+	
+	/** Values collected by {@link LearnerMetrics}, as a JSON object. */
+	String getMetrics();
+	boolean isMetricsEnabled();
+	void setMetricsEnabled(boolean value);
+	void resetMetrics();
 }
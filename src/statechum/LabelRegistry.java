@@ -0,0 +1,147 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Interns labels, giving each distinct label a dense integer identifier, starting from zero.
+ * Lookups of labels that have already been interned do not take locks, hence the registry can be shared between
+ * threads learning or comparing different graphs. Identifiers are never reused, so the registry grows with the number of distinct labels.
+ * Labels of all classes share the registry, hence <em>equals</em> of each of them has to return false for labels of other classes.
+ *
+ * @author agent
+ */
+public class LabelRegistry
+{
+	/** Creates an interned label given the original one and the identifier assigned to it. */
+	public interface LabelFactory
+	{
+		Label createLabel(Label label, int id);
+	}
+
+	/** An interned label and its identifier. */
+	protected static class Entry
+	{
+		final Label label;
+		final int id;
+
+		Entry(Label l, int i)
+		{
+			label = l;id = i;
+		}
+	}
+
+	/** The number of bits used to index a label within a chunk of the reverse map. */
+	public static final int CHUNK_BITS = 12;
+
+	/** The maximal number of chunks, limiting the total number of labels to 2^24. */
+	public static final int MAX_CHUNKS = 1 << 12;
+
+	protected final ConcurrentHashMap<Label,Entry> labelToEntry = new ConcurrentHashMap<>();
+
+	/** Maps identifiers back to labels; chunks are allocated when needed so the array never has to be copied. */
+	protected final AtomicReferenceArray<AtomicReferenceArray<Label>> idToLabel = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+	protected final AtomicInteger nextID = new AtomicInteger(0);
+
+	protected final LabelFactory factory;
+
+	/** Constructs a registry which turns string labels into labels returning their identifiers from <em>toInt</em>
+	 * and stores all other labels as they are. String labels numbered elsewhere are renumbered, so that their numbers
+	 * do not collide with those given out by this registry.
+	 */
+	public LabelRegistry()
+	{
+		this((label, id) -> label instanceof StringLabel? new StringLabelInt(label.toErlangTerm(), id):label);
+	}
+
+	public LabelRegistry(LabelFactory labelFactory)
+	{
+		factory = labelFactory;
+	}
+
+	private static final LabelRegistry globalRegistry = new LabelRegistry();
+
+	/** Returns the registry shared by all graphs that do not have a dedicated label converter. */
+	public static LabelRegistry getGlobalRegistry()
+	{
+		return globalRegistry;
+	}
+
+	protected Entry lookup(Label label)
+	{
+		Entry entry = labelToEntry.get(label);
+		if (entry == null)
+			entry = labelToEntry.computeIfAbsent(label, l -> {
+				int id = nextID.getAndIncrement();
+				if ((id >>> CHUNK_BITS) >= MAX_CHUNKS)
+					throw new IllegalArgumentException("too many labels to intern");
+				Label interned = factory.createLabel(l, id);
+				AtomicReferenceArray<Label> chunk = idToLabel.get(id >>> CHUNK_BITS);
+				if (chunk == null)
+				{
+					idToLabel.compareAndSet(id >>> CHUNK_BITS, null, new AtomicReferenceArray<Label>(1 << CHUNK_BITS));
+					chunk = idToLabel.get(id >>> CHUNK_BITS);
+				}
+				chunk.set(id & ((1 << CHUNK_BITS)-1), interned);
+				return new Entry(interned, id);
+			});
+		return entry;
+	}
+
+	/** Returns an interned version of the supplied label, registering it if it has not been seen before. */
+	public Label intern(Label label)
+	{
+		return lookup(label).label;
+	}
+
+	/** Returns the identifier of the supplied label, registering it if it has not been seen before. */
+	public int getId(Label label)
+	{
+		return lookup(label).id;
+	}
+
+	/** Returns the identifier of the supplied label or -1 if it has not been registered. */
+	public int findId(Label label)
+	{
+		Entry entry = labelToEntry.get(label);
+		return entry == null? -1:entry.id;
+	}
+
+	/** Returns the interned label with the supplied identifier. */
+	public Label getLabel(int id)
+	{
+		if (id < 0 || id >= nextID.get())
+			throw new IllegalArgumentException("label with id "+id+" has not been registered");
+		Label result = null;
+		AtomicReferenceArray<Label> chunk = idToLabel.get(id >>> CHUNK_BITS);
+		if (chunk != null)
+			result = chunk.get(id & ((1 << CHUNK_BITS)-1));
+		if (result == null)
+			throw new IllegalArgumentException("label with id "+id+" is being registered");
+		return result;
+	}
+
+	/** The number of labels registered so far, which is also the identifier the next label will get. */
+	public int size()
+	{
+		return nextID.get();
+	}
+}
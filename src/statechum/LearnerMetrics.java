@@ -0,0 +1,335 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import statechum.GlobalConfiguration.G_PROPERTIES;
+
+/** Collects counters, distributions of values and durations of phases of learning. The collected data is available via {@link JConsole_Diagnostics}
+ * and can be periodically appended to a file in CSV or JSON format.
+ * <p>
+ * Collection is disabled by default, in which case each hook amounts to a check of a single field, so hooks can be placed on hot paths.
+ * It is enabled by the METRICS global property, from JConsole or by calling {@link #setEnabled(boolean)}.
+ *
+ * @author agent
+ */
+public class LearnerMetrics
+{
+	/** Events that are counted. */
+	public enum COUNTER
+	{
+		ITERATIONS, // iterations of the main loop of a learner, each considering a pair of states to merge
+		RESTARTS, // restarts of learning caused by answers to questions or by constraints
+		QUESTIONS_ASKED // questions posed to an oracle
+	}
+
+	/** Values the distributions of which are recorded. */
+	public enum HISTOGRAM
+	{
+		CANDIDATE_PAIRS, // pairs of states returned from a choice of pairs to merge
+		QUESTIONS_PER_MERGE // questions generated to check a merger
+	}
+
+	/** Phases of learning, durations of which are recorded in nanoseconds. */
+	public enum PHASE
+	{
+		LEARN, CHOOSE_PAIRS, MERGE, COMPUTE_QUESTIONS, ORACLE
+	}
+
+	/** Returned by {@link #startPhase()} if metrics are not collected. */
+	public static final long NOT_STARTED = Long.MIN_VALUE;
+
+	/** Records the number of values, their sum, maximum and the number of values in each power-of-two range. */
+	public static class Histogram
+	{
+		protected final LongAdder count = new LongAdder(), sum = new LongAdder();
+		protected final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+		/** Bucket <i>i</i> contains values with <i>i</i> significant bits, negative values are recorded in bucket zero. */
+		protected final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE+1);
+
+		public void record(long value)
+		{
+			count.increment();sum.add(value);
+			buckets.incrementAndGet(value <= 0? 0:Long.SIZE-Long.numberOfLeadingZeros(value));
+			long currentMax = max.get();
+			while(value > currentMax && !max.compareAndSet(currentMax, value))
+				currentMax = max.get();
+		}
+
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+		public long getSum()
+		{
+			return sum.sum();
+		}
+
+		/** The largest value recorded, zero if none were. */
+		public long getMax()
+		{
+			return getCount() == 0? 0:max.get();
+		}
+
+		/** Returns an upper bound on the supplied quantile of recorded values, accurate to a factor of two. */
+		public long getQuantile(double quantile)
+		{
+			if (quantile < 0 || quantile > 1)
+				throw new IllegalArgumentException("quantile should be within 0..1");
+			long total = 0;
+			for(int i=0;i<buckets.length();++i)
+				total+=buckets.get(i);
+			if (total == 0)
+				return 0;
+			long rank = (long)Math.ceil(quantile*total), seen = 0;
+			for(int i=0;i<buckets.length();++i)
+			{
+				seen+=buckets.get(i);
+				if (seen >= rank && seen > 0)
+					return Math.min(i == 0? 0:(i == Long.SIZE? Long.MAX_VALUE:(1L << i)-1), getMax());
+			}
+			return getMax();
+		}
+
+		protected void reset()
+		{
+			count.reset();sum.reset();max.set(Long.MIN_VALUE);
+			for(int i=0;i<buckets.length();++i)
+				buckets.set(i, 0);
+		}
+	}
+
+	private static volatile boolean enabled = false;
+
+	private static final LongAdder [] counters = new LongAdder[COUNTER.values().length];
+	private static final Histogram [] histograms = new Histogram[HISTOGRAM.values().length], phases = new Histogram[PHASE.values().length];
+
+	static
+	{
+		for(int i=0;i<counters.length;++i) counters[i] = new LongAdder();
+		for(int i=0;i<histograms.length;++i) histograms[i] = new Histogram();
+		for(int i=0;i<phases.length;++i) phases[i] = new Histogram();
+		if (Boolean.parseBoolean(GlobalConfiguration.getConfiguration().getProperty(G_PROPERTIES.METRICS)))
+			setEnabled(true);
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/** Enables or disables collection of metrics, values collected so far are retained. Enabling makes sure that {@link JConsole_Diagnostics} is registered. */
+	public static void setEnabled(boolean value)
+	{
+		enabled = value;
+		if (value)
+			JConsole_Diagnostics.getDiagnostics();
+	}
+
+	/** Discards all values collected so far. */
+	public static void reset()
+	{
+		for(LongAdder counter:counters) counter.reset();
+		for(Histogram histogram:histograms) histogram.reset();
+		for(Histogram phase:phases) phase.reset();
+	}
+
+	public static void increment(COUNTER counter)
+	{
+		if (enabled)
+			counters[counter.ordinal()].increment();
+	}
+
+	public static void record(HISTOGRAM histogram, long value)
+	{
+		if (enabled)
+			histograms[histogram.ordinal()].record(value);
+	}
+
+	/** Returns the time a phase started, to be passed to {@link #endPhase(PHASE, long)}, or {@link #NOT_STARTED} if metrics are not collected. */
+	public static long startPhase()
+	{
+		return enabled? System.nanoTime():NOT_STARTED;
+	}
+
+	/** Records the duration of a phase, given the value returned by {@link #startPhase()} when it started. */
+	public static void endPhase(PHASE phase, long started)
+	{
+		if (enabled && started != NOT_STARTED)
+			phases[phase.ordinal()].record(System.nanoTime()-started);
+	}
+
+	public static long getCounter(COUNTER counter)
+	{
+		return counters[counter.ordinal()].sum();
+	}
+
+	public static Histogram getHistogram(HISTOGRAM histogram)
+	{
+		return histograms[histogram.ordinal()];
+	}
+
+	/** Durations of a phase, in nanoseconds. */
+	public static Histogram getPhase(PHASE phase)
+	{
+		return phases[phase.ordinal()];
+	}
+
+	protected static void histogramToCSV(StringBuilder result, long timestamp, String kind, String name, Histogram histogram)
+	{
+		result.append(timestamp).append(',').append(kind).append(',').append(name).append(',').append(histogram.getCount()).append(',').append(histogram.getSum()).append(',')
+			.append(histogram.getMax()).append(',').append(histogram.getQuantile(0.5)).append(',').append(histogram.getQuantile(0.99)).append('\n');
+	}
+
+	/** The header of lines returned by {@link #toCSV(long)}. */
+	public static final String CSV_HEADER = "timestamp,kind,name,count,sum,max,p50,p99";
+
+	/** Returns the current values as lines of comma-separated values, one per metric, without a header.
+	 * For counters, both the count and the sum are the value of the counter.
+	 */
+	public static String toCSV(long timestamp)
+	{
+		StringBuilder result = new StringBuilder();
+		for(COUNTER counter:COUNTER.values())
+		{
+			long value = getCounter(counter);
+			result.append(timestamp).append(",counter,").append(counter.name()).append(',').append(value).append(',').append(value).append(",,,\n");
+		}
+		for(HISTOGRAM histogram:HISTOGRAM.values())
+			histogramToCSV(result, timestamp, "histogram", histogram.name(), getHistogram(histogram));
+		for(PHASE phase:PHASE.values())
+			histogramToCSV(result, timestamp, "phase", phase.name(), getPhase(phase));
+		return result.toString();
+	}
+
+	protected static void histogramToJSON(StringBuilder result, String name, Histogram histogram)
+	{
+		result.append('"').append(name).append("\":{\"count\":").append(histogram.getCount()).append(",\"sum\":").append(histogram.getSum())
+			.append(",\"max\":").append(histogram.getMax()).append(",\"p50\":").append(histogram.getQuantile(0.5)).append(",\"p99\":").append(histogram.getQuantile(0.99)).append('}');
+	}
+
+	/** Returns the current values as a single-line JSON object. */
+	public static String toJSON(long timestamp)
+	{
+		StringBuilder result = new StringBuilder();
+		result.append("{\"timestamp\":").append(timestamp).append(",\"counters\":{");
+		for(COUNTER counter:COUNTER.values())
+		{
+			if (counter.ordinal() > 0) result.append(',');
+			result.append('"').append(counter.name()).append("\":").append(getCounter(counter));
+		}
+		result.append("},\"histograms\":{");
+		for(HISTOGRAM histogram:HISTOGRAM.values())
+		{
+			if (histogram.ordinal() > 0) result.append(',');
+			histogramToJSON(result, histogram.name(), getHistogram(histogram));
+		}
+		result.append("},\"phases\":{");
+		for(PHASE phase:PHASE.values())
+		{
+			if (phase.ordinal() > 0) result.append(',');
+			histogramToJSON(result, phase.name(), getPhase(phase));
+		}
+		result.append("}}");
+		return result.toString();
+	}
+
+	private static ScheduledExecutorService dumpExecutor = null;
+	private static final Object dumpLock = new Object();
+
+	/** The failure that stopped the last periodic dump, null if it did not fail. */
+	private static volatile IOException dumpFailure = null;
+
+	/** Returns the failure that stopped the periodic dump started last, null if there was none. */
+	public static IOException getDumpFailure()
+	{
+		return dumpFailure;
+	}
+
+	/** Appends current values to the supplied file. A CSV header is written if the file is empty. */
+	public static void dump(File file, boolean json) throws IOException
+	{
+		long timestamp = System.currentTimeMillis();
+		boolean addHeader = !json && file.length() == 0;
+		try (Writer writer = new FileWriter(file, true))
+		{
+			if (addHeader)
+				writer.write(CSV_HEADER+"\n");
+			writer.write(json? toJSON(timestamp)+"\n":toCSV(timestamp));
+		}
+	}
+
+	/** Starts appending values to the supplied file every <i>periodMillis</i> milliseconds, replacing any dump started earlier.
+	 * If values cannot be written, the dump stops, the failure is reported as the status in {@link JConsole_Diagnostics}
+	 * and returned by {@link #getDumpFailure()}.
+	 *
+	 * @param file where to append values.
+	 * @param periodMillis how often to append values.
+	 * @param json whether to append JSON objects, one per line, or comma-separated values.
+	 */
+	public static void startPeriodicDump(final File file, long periodMillis, final boolean json)
+	{
+		if (periodMillis <= 0)
+			throw new IllegalArgumentException("period should be positive");
+		synchronized(dumpLock)
+		{
+			stopPeriodicDump();
+			dumpFailure = null;
+			dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "LearnerMetrics dump");thread.setDaemon(true);
+				return thread;
+			});
+			dumpExecutor.scheduleAtFixedRate(() -> {
+				try
+				{
+					dump(file, json);
+				}
+				catch (IOException e)
+				{
+					JConsole_Diagnostics.getDiagnostics().setStatus("metrics dump to "+file+" stopped: "+e);
+					dumpFailure = e;
+					Helper.throwUnchecked("failed to dump metrics to "+file, e);// an exception stops subsequent executions of the task
+				}
+			}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/** Stops periodic appending of values, if it was started. */
+	public static void stopPeriodicDump()
+	{
+		synchronized(dumpLock)
+		{
+			if (dumpExecutor != null)
+			{
+				dumpExecutor.shutdownNow();dumpExecutor = null;
+			}
+		}
+	}
+}
@@ -52,7 +52,7 @@ public class StringLabel implements Label {
 	 */
 	@Override
 	public boolean equals(Object obj) {
-		return label.equals(((StringLabel)obj).label);
+		return obj instanceof StringLabel && label.equals(((StringLabel)obj).label);
 	}
 
 	@Override
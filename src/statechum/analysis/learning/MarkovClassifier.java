@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,7 +40,7 @@ import statechum.Label;
 import statechum.Configuration.STATETREE;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.DeterministicDirectedSparseGraph.VertID;
-import statechum.analysis.learning.MarkovModel.MarkovMatrixEngine;
+import statechum.analysis.learning.MarkovModel.MarkovPrefix;
 import statechum.analysis.learning.MarkovModel.MarkovMatrixEngine.PredictionForSequence;
 import statechum.analysis.learning.MarkovModel.MarkovOutcome;
 import statechum.analysis.learning.MarkovModel.UpdatablePairInteger;
@@ -57,8 +58,6 @@ import statechum.analysis.learning.rpnicore.PairScoreComputation;
 import statechum.collections.ArrayMapWithSearch;
 import statechum.collections.ArrayMapWithSearchPos;
 import statechum.collections.MapWithSearch;
-import statechum.model.testset.PTAExploration;
-import statechum.model.testset.PTASequenceEngine;
 
 /** An instance of this class holds all the necessary parameters in order to make it possible to predict transitions and/or check inconsistencies using a Markov model. Depending on the kind of model passed to it, 
  * it will be making appropriate predictions.
@@ -188,6 +187,141 @@ public class MarkovClassifier
 		assert graph.transitionMatrix.keySet().equals(graphToUseForPrediction.transitionMatrix.keySet());
 		graphToCheckForConsistency=computeInverseGraph(graph,!model.directionForwardOrInverse);
 		assert graph.transitionMatrix.keySet().equals(graphToCheckForConsistency.transitionMatrix.keySet());
+		final int cacheSize = graph.config.getMarkovPredictionCacheSize();
+		predictionCache = cacheSize == 0?null:new LinkedHashMap<PredictionKey,CachedPrediction>(16,0.75f,true) {
+			private static final long serialVersionUID = -2950338744282117391L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PredictionKey,CachedPrediction> eldest)
+			{
+				return size() > cacheSize;
+			}
+		};
+	}
+	
+	/** Identifies a prediction of transitions from a vertex, made using paths of a specific length. */
+	protected static final class PredictionKey
+	{
+		final CmpVertex vertex;
+		final int chunkLength;
+		
+		PredictionKey(CmpVertex v, int length)
+		{
+			vertex = v;chunkLength = length;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return vertex.hashCode()*31+chunkLength;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof PredictionKey))
+				return false;
+			PredictionKey other = (PredictionKey) obj;
+			return chunkLength == other.chunkLength && vertex.equals(other.vertex);
+		}
+	}
+	
+	/** A cached prediction, together with the modification count of the Markov model at the time it was made. */
+	protected static final class CachedPrediction
+	{
+		final Map<Label,MarkovOutcome> prediction;
+		final long modificationCount;
+		
+		CachedPrediction(Map<Label,MarkovOutcome> p, long count)
+		{
+			prediction = p;modificationCount = count;
+		}
+	}
+	
+	/** Predictions made by {@link #predictTransitionsFromState(CmpVertex, List, int, Collection)}, least-recently used first; <i>null</i> if caching is disabled.
+	 * Accesses reorder entries and hence have to be synchronized on the map. 
+	 */
+	protected final Map<PredictionKey,CachedPrediction> predictionCache;
+	
+	protected final AtomicLong predictionCacheHits = new AtomicLong(), predictionCacheMisses = new AtomicLong();
+	
+	/** The number of predictions returned from the cache. */
+	public long getPredictionCacheHits()
+	{
+		return predictionCacheHits.get();
+	}
+	
+	/** The number of predictions that could have been cached but had to be computed. */
+	public long getPredictionCacheMisses()
+	{
+		return predictionCacheMisses.get();
+	}
+	
+	/** Returns vertices of the graph of this classifier that make predictions or checks of consistency using paths through any of the supplied vertices. 
+	 * Where predictions are made from paths leading to states, these are vertices reachable from the supplied ones in up to the prediction length of the model; 
+	 * where predictions are made from paths leaving states, vertices from which the supplied ones can be reached are included as well.
+	 */
+	public Set<CmpVertex> verticesAffectedByChangesTo(Collection<CmpVertex> changedVertices)
+	{
+		Set<CmpVertex> affected = new LinkedHashSet<>(changedVertices);
+		computeClosure(graph,affected,model.getPredictionLen());
+		if (!predictionGraphInverted && model.getPredictionLen() > 0)
+			affected.addAll(computeClosureOfPredecessors(getPredecessors(),changedVertices,model.getPredictionLen()));
+		return affected;
+	}
+	
+	/** Predecessors of vertices of the graph of this classifier, computed when first needed; the graph is not expected to change. */
+	private volatile Map<CmpVertex,List<CmpVertex>> predecessors = null;
+	
+	/** Returns predecessors of vertices of the graph of this classifier. Where multiple threads ask for them at the same time, each may compute them but all results are the same. */
+	protected Map<CmpVertex,List<CmpVertex>> getPredecessors()
+	{
+		Map<CmpVertex,List<CmpVertex>> result = predecessors;
+		if (result == null)
+		{
+			result = computePredecessors(graph);predecessors = result;
+		}
+		return result;
+	}
+	
+	/** Removes cached predictions for vertices that may be affected by changes to transitions of the supplied vertices. */
+	public void invalidatePredictions(Collection<CmpVertex> changedVertices)
+	{
+		if (predictionCache == null)
+			return;
+		Set<CmpVertex> affected = verticesAffectedByChangesTo(changedVertices);
+		synchronized(predictionCache)
+		{
+			predictionCache.keySet().removeIf(key -> affected.contains(key.vertex));
+		}
+	}
+	
+	/** Copies predictions cached by a classifier for a graph the graph of this classifier was obtained from, 
+	 * omitting those for vertices that may be affected by changes to transitions of the supplied vertices. 
+	 * For instance, where the graph of this classifier is obtained by merging states, <i>changedVertices</i> should contain the merged vertices. 
+	 */
+	public void inheritPredictions(MarkovClassifier previous, Collection<CmpVertex> changedVertices)
+	{
+		if (predictionCache == null || previous.predictionCache == null || previous.model != model)
+			return;
+		Set<CmpVertex> affected = verticesAffectedByChangesTo(changedVertices);
+		List<Entry<PredictionKey,CachedPrediction>> entries;
+		synchronized(previous.predictionCache)
+		{
+			entries = new ArrayList<>(previous.predictionCache.entrySet());
+		}
+		synchronized(predictionCache)
+		{
+			for(Entry<PredictionKey,CachedPrediction> entry:entries)
+				if (!affected.contains(entry.getKey().vertex))
+				{
+					CmpVertex vertex = graph.findVertex(entry.getKey().vertex);
+					if (vertex != null && entry.getValue().modificationCount == model.getModificationCount(entry.getKey().chunkLength))
+						predictionCache.put(new PredictionKey(vertex,entry.getKey().chunkLength), entry.getValue());
+				}
+		}
 	}
 	
 	interface ForEachCollectionOfPaths
@@ -360,6 +494,166 @@ public class MarkovClassifier
 		}
 	}
 	
+	/** Walks transitions backwards from the supplied vertices, returning those vertices and all states from which they can be reached in at most the specified number of transitions.
+	 * This is the counterpart of {@link #computeClosure(LearnerGraph, Set, int)} for predictions made from paths leaving states, where a state is affected by a merger if it can reach merged states.
+	 * 
+	 * @param coregraph graph to explore
+	 * @param vertices where to start
+	 * @param distance how far to explore
+	 */
+	public static Set<CmpVertex> computeClosureOfPredecessors(LearnerGraph coregraph, Collection<CmpVertex> vertices, int distance)
+	{
+		if (distance <= 0)
+			return new LinkedHashSet<>(vertices);
+		return computeClosureOfPredecessors(computePredecessors(coregraph), vertices, distance);
+	}
+	
+	/** Maps each vertex of the supplied graph to sources of transitions leading to it. */
+	public static Map<CmpVertex,List<CmpVertex>> computePredecessors(LearnerGraph coregraph)
+	{
+		Map<CmpVertex,List<CmpVertex>> predecessors = new HashMap<>();
+		for(CmpVertex source:coregraph.transitionMatrix.keySet())
+			for(CmpVertex target:coregraph.transitionMatrix.get(source).values())
+				predecessors.computeIfAbsent(target, v -> new ArrayList<>()).add(source);
+		return predecessors;
+	}
+	
+	/** Same as {@link #computeClosureOfPredecessors(LearnerGraph, Collection, int)} but uses predecessors of vertices computed by {@link #computePredecessors(LearnerGraph)}. */
+	public static Set<CmpVertex> computeClosureOfPredecessors(Map<CmpVertex,List<CmpVertex>> predecessors, Collection<CmpVertex> vertices, int distance)
+	{
+		Set<CmpVertex> result = new LinkedHashSet<>(vertices);
+		Collection<CmpVertex> currentExplorationBoundary = vertices;
+		for(int exploredDistance=0;exploredDistance < distance && !currentExplorationBoundary.isEmpty();++exploredDistance)
+		{
+			List<CmpVertex> nextBoundary = new ArrayList<>();
+			for(CmpVertex v:currentExplorationBoundary)
+			{
+				List<CmpVertex> sources = predecessors.get(v);
+				if (sources != null)
+					for(CmpVertex source:sources)
+						if (result.add(source))
+							nextBoundary.add(source);
+			}
+			currentExplorationBoundary = nextBoundary;
+		}
+		return result;
+	}
+	
+	/** Keeps inconsistencies of individual vertices of a graph, making it possible to compute the inconsistency of a merger by only looking at vertices within the prediction length of merged states.
+	 * Once a merger is chosen, {@link #mergePerformed(List, LearnerGraph)} updates the stored values, so that the next iteration of a learner does not have to recompute the inconsistency of the entire graph.
+	 * Computation of inconsistencies of mergers does not modify the tracker and hence can be performed on multiple threads.
+	 * <p>
+	 * Where predictions are made from paths leading to states, the affected vertices are those reachable from merged states; where predictions are made from paths leaving states, vertices from which merged states can be reached are affected as well.   
+	 */
+	public static class InconsistencyTracker
+	{
+		protected final MarkovModel model;
+		protected final ConsistencyChecker checker;
+		
+		/** Classifier for the current graph. */
+		protected MarkovClassifier classifier;
+		
+		/** Inconsistencies of accept-vertices of the current graph. */
+		protected Map<CmpVertex,Long> inconsistencies;
+		
+		/** The sum of all values in {@link #inconsistencies}. */
+		protected long inconsistency;
+		
+		public InconsistencyTracker(MarkovModel m, LearnerGraph graph, ConsistencyChecker c)
+		{
+			model = m;checker = c;
+			classifier = new MarkovClassifier(model, graph);
+			inconsistencies = new ArrayMapWithSearchPos<VertID,CmpVertex,Long>(graph.getStateNumber());
+			inconsistency = 0;
+			for(CmpVertex v:graph.transitionMatrix.keySet())
+				if (v.isAccept())
+				{
+					long value = classifier.checkFanoutInconsistency(v,checker,false);
+					inconsistencies.put(v,value);inconsistency+=value;
+				}
+		}
+		
+		/** The inconsistency of the current graph, same as what {@link MarkovClassifier#computeConsistency(ConsistencyChecker, boolean)} would return. */
+		public long getInconsistency()
+		{
+			return inconsistency;
+		}
+		
+		public LearnerGraph getGraph()
+		{
+			return classifier.graph;
+		}
+		
+		/** Classifier for the current graph. */
+		public MarkovClassifier getClassifier()
+		{
+			return classifier;
+		}
+		
+		/** Returns the stored inconsistency of a vertex of the current graph. */
+		public long getInconsistency(CmpVertex v)
+		{
+			if (!v.isAccept())
+				return 0;
+			Long value = inconsistencies.get(v);
+			if (value == null)
+				throw new IllegalArgumentException("vertex "+v+" is not in the graph");
+			return value;
+		}
+		
+		/** Splits equivalence classes with more than one state into states in the current graph and merged states. */
+		protected static void collectMergedStates(List<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> verticesToMerge, Collection<CmpVertex> origStates, Collection<CmpVertex> mergedStates)
+		{
+			for(EquivalenceClass<CmpVertex, LearnerGraphCachedData> eqClass:verticesToMerge)
+				if (eqClass.getStates().size() > 1)
+				{
+					origStates.addAll(eqClass.getStates());mergedStates.add(eqClass.getMergedVertex());
+				}
+		}
+		
+		/** Computes the difference between the inconsistency of the merged graph and that of the current graph.
+		 * 
+		 * @param verticesToMerge vertices to merge in the current graph, computed by the generalised scoring routine.
+		 * @param merged the outcome of merging vertices in the current graph. 
+		 */
+		public long computeInconsistencyOfAMerger(List<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> verticesToMerge, LearnerGraph merged)
+		{
+			List<CmpVertex> origStates = new ArrayList<>(), mergedStates = new ArrayList<>();
+			collectMergedStates(verticesToMerge, origStates, mergedStates);
+			long origInconsistencyRelativeToChanges = 0;
+			for(CmpVertex v:classifier.verticesAffectedByChangesTo(origStates))
+				origInconsistencyRelativeToChanges+=getInconsistency(v);
+			MarkovClassifier cl = new MarkovClassifier(model, merged);
+			return cl.computeConsistencyForSpecificVertices(checker,cl.verticesAffectedByChangesTo(mergedStates),false) - origInconsistencyRelativeToChanges;
+		}
+		
+		/** Makes the merged graph the current one, recomputing inconsistencies only of vertices affected by the merger. Predictions cached by the classifier for vertices not affected by the merger are retained.
+		 * 
+		 * @param verticesToMerge vertices merged in the current graph.
+		 * @param merged the outcome of merging vertices in the current graph. 
+		 */
+		public void mergePerformed(List<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> verticesToMerge, LearnerGraph merged)
+		{
+			List<CmpVertex> origStates = new ArrayList<>(), mergedStates = new ArrayList<>();
+			collectMergedStates(verticesToMerge, origStates, mergedStates);
+			MarkovClassifier cl = new MarkovClassifier(model, merged);
+			Set<CmpVertex> affected = cl.verticesAffectedByChangesTo(mergedStates);
+			cl.inheritPredictions(classifier, mergedStates);
+			Map<CmpVertex,Long> updatedInconsistencies = new ArrayMapWithSearchPos<VertID,CmpVertex,Long>(merged.getStateNumber());
+			long updatedInconsistency = 0;
+			for(CmpVertex v:merged.transitionMatrix.keySet())
+				if (v.isAccept())
+				{
+					Long value = affected.contains(v)? null:inconsistencies.get(v);
+					if (value == null)
+						value = cl.checkFanoutInconsistency(v,checker,false);
+					updatedInconsistencies.put(v,value);updatedInconsistency+=value;
+				}
+			classifier = cl;inconsistencies = updatedInconsistencies;inconsistency = updatedInconsistency;
+		}
+	}
+
+
 	/** Given a graph, it uses the supplied collection of labels in order to identify states to merge, constructs a merge and counts the number of inconsistencies between the Markov-predicted vertices and the actual ones.
 	 * The large number of arguments reflect the extent to which this process can be customised. 
 	 * <p>
@@ -665,9 +959,9 @@ public class MarkovClassifier
 							partOfTraceUsedInMarkovPredictions.addAll(pathToNewState);
 							if (predictionGraphInverted)
 								Collections.reverse(partOfTraceUsedInMarkovPredictions);
-							Map<Label, PTASequenceEngine.Node> lastElementToPrediction = model.markovMatrix.getMapFromLabelsToPredictions(partOfTraceUsedInMarkovPredictions);
+							MarkovPrefix lastElementToPrediction = model.markovMatrix.getPrefix(partOfTraceUsedInMarkovPredictions);
 							for (Label label : allElementsOfAlphabet) {
-								PredictionForSequence prediction = MarkovMatrixEngine.getPredictionIfExists(lastElementToPrediction, label);
+								PredictionForSequence prediction = lastElementToPrediction == null ? null : lastElementToPrediction.getPrediction(label);
 
 								UpdatablePairInteger occurrence_of_label_predicted_form_Markov = prediction == null ? null : prediction.occurrence;
 
@@ -810,9 +1104,47 @@ public class MarkovClassifier
 	 * @param pathsOfInterest paths considered for prediction. Ignored if <i>null</i>.
 	 * Each such path had an outgoing label added and possibly <i>pathBeyondCurrentState</i> appended to it before being passed into Markov and the summary of the outcomes of such predictions is returned by this method.
 	 * @return map from labels to predictions.
+	 * <p>
+	 * Predictions made without <i>pathBeyondCurrentState</i> and <i>pathsOfInterest</i> are cached, up to the limit set by {@link Configuration#getMarkovPredictionCacheSize()}. 
+	 * Cached predictions are discarded when Markov predictions of sequences of the relevant length are modified or when {@link #invalidatePredictions(Collection)} is called.
 	 */
-	@SuppressWarnings("unchecked")
 	public Map<Label, MarkovOutcome> predictTransitionsFromState(CmpVertex vert, final List<Label> pathBeyondCurrentState, int chunkLength,final Collection<List<Label>> pathsOfInterest)
+	{
+		if (predictionCache == null || pathsOfInterest != null || (pathBeyondCurrentState != null && !pathBeyondCurrentState.isEmpty()) || chunkLength < 1 || chunkLength > model.getChunkLen())
+			return computeTransitionsFromState(vert, pathBeyondCurrentState, chunkLength, pathsOfInterest);
+		
+		PredictionKey key = new PredictionKey(vert, chunkLength);
+		long modificationCount = model.getModificationCount(chunkLength);
+		CachedPrediction cached;
+		synchronized(predictionCache)
+		{
+			cached = predictionCache.get(key);
+		}
+		if (cached != null && cached.modificationCount == modificationCount)
+		{
+			predictionCacheHits.incrementAndGet();
+			return copyOfPrediction(cached.prediction);
+		}
+		predictionCacheMisses.incrementAndGet();
+		Map<Label, MarkovOutcome> outcome = computeTransitionsFromState(vert, null, chunkLength, null);
+		synchronized(predictionCache)
+		{
+			predictionCache.put(key, new CachedPrediction(copyOfPrediction(outcome), modificationCount));
+		}
+		return outcome;
+	}
+	
+	@SuppressWarnings("unchecked")
+	protected Map<Label, MarkovOutcome> copyOfPrediction(Map<Label, MarkovOutcome> prediction)
+	{
+		Map<Label,MarkovOutcome> outcome = graph.config.getTransitionMatrixImplType() == STATETREE.STATETREE_ARRAY? new ArrayMapWithSearchPos<>() : new HashMap<>();
+		outcome.putAll(prediction);
+		return outcome;
+	}
+	
+	/** Makes predictions of transitions from the supplied state, without using the cache, arguments are the same as those of {@link #predictTransitionsFromState(CmpVertex, List, int, Collection)}. */ 
+	@SuppressWarnings("unchecked")
+	protected Map<Label, MarkovOutcome> computeTransitionsFromState(CmpVertex vert, final List<Label> pathBeyondCurrentState, int chunkLength,final Collection<List<Label>> pathsOfInterest)
 	{
 		assert vert.isAccept();
 		int lengthOfPathBeyond = pathBeyondCurrentState == null?0:pathBeyondCurrentState.size();
@@ -837,13 +1169,13 @@ public class MarkovClassifier
 						partOfTraceUsedInMarkovPredictions.addAll(pathToNewState);
 						if (pathBeyondCurrentState != null) partOfTraceUsedInMarkovPredictions.addAll(pathBeyondCurrentState);
 					}
-					Map<Label, PTASequenceEngine.Node> lastElementToPrediction = model.markovMatrix.getMapFromLabelsToPredictions(partOfTraceUsedInMarkovPredictions);
+					MarkovPrefix lastElementToPrediction = model.markovMatrix.getPrefix(partOfTraceUsedInMarkovPredictions);
 
 					for (Label label : graph.getCache().getAlphabet()) {
 						if (!failureLabels.contains(label)) {// if the labels is not already recorded as being inconsistently predicted
 							MarkovOutcome predictedFromEalierTrace = outgoing_labels_probabilities.get(label);
 
-							PredictionForSequence prediction = MarkovMatrixEngine.getPredictionIfExists(lastElementToPrediction, label);
+							PredictionForSequence prediction = lastElementToPrediction == null ? null : lastElementToPrediction.getPrediction(label);
 							MarkovOutcome predicted_from_Markov = prediction != null ? prediction.prediction : null;
 							MarkovOutcome outcome = MarkovOutcome.reconcileOpinions_PosNeg_Overrides_Null(predictedFromEalierTrace, predicted_from_Markov);
 							if (outcome != predictedFromEalierTrace) {// we learnt something new, be it a new value (or a non-null value) or a failure, record it
@@ -896,9 +1228,6 @@ public class MarkovClassifier
 					
 					pathToUpdateInMarkov.add(lbl);
 					
-					MarkovOutcome newValue;
-					PredictionForSequence prediction = model.markovMatrix.getPredictionAndCreateNewOneIfNecessary(pathToUpdateInMarkov);
-					
 					boolean foundAccept = false, foundReject = false;
 					for(Object vObj:graphToCheckForConsistency.getTargets(targets))
 					{
@@ -911,19 +1240,12 @@ public class MarkovClassifier
 					if (foundAccept && foundReject)
 						throw new IllegalArgumentException("inconsistent inverse graph: path "+pathToUpdateInMarkov+" is both accepted and rejected");
 					
-					if (foundAccept)
-					{
-						newValue=MarkovOutcome.positive;prediction.occurrence.add(1, 0);
-					}
-					else
-					{
-						newValue=MarkovOutcome.negative;prediction.occurrence.add(0, 1);
-					}
-					
-					prediction.prediction=MarkovOutcome.reconcileOpinions_PosNeg_Overrides_Null(prediction.prediction,newValue);
+					model.markovMatrix.updatePrediction(pathToUpdateInMarkov, foundAccept);
 		    	}
 	    	}
 	    }
+	    // Recorded after updating, so that predictions cached by other threads while updates were in progress become out of date.
+	    model.sequencesModified(chunkLength);
 	}
 
 	/** Determines how consistent a graph is compared to the data in the Markov model.
@@ -1005,14 +1327,14 @@ public class MarkovClassifier
 						partOfTraceUsedInMarkovPredictions.addAll(pathToNewState);
 					}
 
-					Map<Label, PTASequenceEngine.Node> mapFromLastLabelToNodes = model.markovMatrix.getMapFromLabelsToPredictions(partOfTraceUsedInMarkovPredictions);
+					MarkovPrefix mapFromLastLabelToNodes = model.markovMatrix.getPrefix(partOfTraceUsedInMarkovPredictions);
 
 					//System.out.println(vert.toString()+" : "+encounteredPartOfTrace+" outgoing: "+outgoingLabels);
 					if (checker.considerPathsWithPrefixMissingInMarkov() || mapFromLastLabelToNodes != null) // we skip everything where a path was not seen in PTA unless we are asked to consider all such paths.
 						for (Label label : outgoingLabels) {
 							MarkovOutcome labels_occurrence = outgoing_labels_value.get(label);
 							if (labels_occurrence != MarkovOutcome.failure) {
-								PredictionForSequence prediction = MarkovMatrixEngine.getPredictionIfExists(mapFromLastLabelToNodes, label);
+								PredictionForSequence prediction = mapFromLastLabelToNodes == null ? null : mapFromLastLabelToNodes.getPrediction(label);
 								MarkovOutcome predicted_from_Markov = prediction == null ? null : prediction.prediction;
 								if (predicted_from_Markov != MarkovOutcome.failure) {// if training data does not lead to a consistent outcome for this label because chunk length is too small, not much we can do, but otherwise we are here and can make use of the data
 									if (!checker.consistent(labels_occurrence, predicted_from_Markov)) {
@@ -1238,72 +1560,28 @@ public class MarkovClassifier
 		List<List<Label>> whatToMerge = null;
 
 		final AtomicLong maxCount = new AtomicLong(0);
-		PTAExploration<Boolean> exploration = new PTAExploration<>(model.markovMatrix) {
-			@Override
-			public Boolean newUserObject() {
-				return null;
+		model.markovMatrix.forEachPrediction((path, prediction) -> {
+			if (path.size() == WLength && prediction.prediction == MarkovOutcome.positive) {
+				long countInPTA = prediction.occurrence.firstElem;
+				if (countInPTA > maxCount.longValue())
+					maxCount.set(countInPTA);
 			}
-
-			@Override
-			public void nodeEntered(PTAExplorationNode currentNode, LinkedList<PTAExplorationNode> pathToInit) {
-				PredictionForSequence prediction = (PredictionForSequence) currentNode.getState();
-				if (pathToInit.size() == WLength && prediction.prediction == MarkovOutcome.positive) {
-					long countInPTA = prediction.occurrence.firstElem;
-					if (countInPTA > maxCount.longValue())
-						maxCount.set(countInPTA);
-				}
-			}
-
-			@Override
-			public void leafEntered(PTAExplorationNode currentNode, LinkedList<PTAExplorationNode> pathToInit) {
-				nodeEntered(currentNode, pathToInit);
-			}
-
-			@Override
-			public void nodeLeft(@SuppressWarnings("unused") PTAExplorationNode currentNode, @SuppressWarnings("unused") LinkedList<PTAExplorationNode> pathToInit) {
-				// nothing to do here.
-			}
-
-		};
-		exploration.walkThroughAllPaths();
+		});
 
 		final Map<Long,List<List<Label>>> thresholdToInconsistency = new TreeMap<>();
-		exploration = new PTAExploration<>(model.markovMatrix) {
-			@Override
-			public Boolean newUserObject() {
-				return null;
-			}
-
-			@Override
-			public void nodeEntered(PTAExplorationNode currentNode, LinkedList<PTAExplorationNode> pathToInit) {
-				PredictionForSequence prediction = (PredictionForSequence) currentNode.getState();
-				if (pathToInit.size() == WLength && prediction.prediction == MarkovOutcome.positive) {
-					long countInPTA = prediction.occurrence.firstElem;
-					if (countInPTA < maxCount.longValue() / 2) // paths that are very common are likely to be present from a number of different states and as such not very good for discriminating between them.
-					{
-						LinkedList<Label> path = new LinkedList<>();
-						for (PTAExplorationNode elem : pathToInit) path.addFirst(elem.getInput());
-						long value = computeInconsistencyForMergingPath(path, checker);
-						if (value >= 0) {
-							List<List<Label>> pathsForThisInconsistency = thresholdToInconsistency.computeIfAbsent(value, k -> new LinkedList<>());
-							pathsForThisInconsistency.add(path);
-						}
+		model.markovMatrix.forEachPrediction((path, prediction) -> {
+			if (path.size() == WLength && prediction.prediction == MarkovOutcome.positive) {
+				long countInPTA = prediction.occurrence.firstElem;
+				if (countInPTA < maxCount.longValue() / 2) // paths that are very common are likely to be present from a number of different states and as such not very good for discriminating between them.
+				{
+					long value = computeInconsistencyForMergingPath(path, checker);
+					if (value >= 0) {
+						List<List<Label>> pathsForThisInconsistency = thresholdToInconsistency.computeIfAbsent(value, k -> new LinkedList<>());
+						pathsForThisInconsistency.add(path);
 					}
 				}
 			}
-
-			@Override
-			public void leafEntered(PTAExplorationNode currentNode, LinkedList<PTAExplorationNode> pathToInit) {
-				nodeEntered(currentNode, pathToInit);
-			}
-
-			@Override
-			public void nodeLeft(@SuppressWarnings("unused") PTAExplorationNode currentNode, @SuppressWarnings("unused") LinkedList<PTAExplorationNode> pathToInit) {
-				// nothing to do here.
-			}
-
-		};
-		exploration.walkThroughAllPaths();
+		});
 		
 		{// Now evaluate the most consistent element in the map and merge all paths associated with it. 
 		 // In reality, there would be many other elements that might be feasible, however we'd like 
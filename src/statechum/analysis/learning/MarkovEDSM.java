@@ -39,7 +39,6 @@ import statechum.analysis.learning.observers.ProgressDecorator.LearnerEvaluation
 import statechum.analysis.learning.rpnicore.*;
 import statechum.analysis.learning.rpnicore.RandomPathGenerator.RandomLengthGenerator;
 import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
-import statechum.collections.ArrayMapWithSearchPos;
 import statechum.model.testset.PTASequenceEngine.FilterPredicate;
 
 import java.io.File;
@@ -378,7 +377,15 @@ public class MarkovEDSM extends PairQualityLearner
 			useClassifyPairs = v;
 		}
 		
-		Map<CmpVertex,Long> inconsistenciesPerVertex = null;
+		/** Inconsistencies of individual vertices of the current graph, used to compute inconsistencies of mergers.
+		 * Updated by {@link #mergePerformed(LearnerGraph, List, LearnerGraph)} and rebuilt by {@link #initComputation(LearnerGraph)} only where the graph to learn from is not the outcome of the last merger. 
+		 */
+		MarkovClassifier.InconsistencyTracker inconsistencyTracker = null;
+		
+		public MarkovClassifier.InconsistencyTracker getInconsistencyTracker()
+		{
+			return inconsistencyTracker;
+		}
 		
 		/** Whether we should try learning with zero inconsistencies, to see how heuristics fare. */
 		protected boolean disableInconsistenciesInMergers = false;
@@ -393,11 +400,22 @@ public class MarkovEDSM extends PairQualityLearner
 		{
 			coregraph = graph;
 
-			inconsistencyFromAnEarlierIteration= MarkovClassifier.computeInconsistency(coregraph, Markov, checker,false);
-			cl = new MarkovClassifier(Markov, coregraph);
+			if (inconsistencyTracker == null || inconsistencyTracker.getGraph() != coregraph || inconsistencyTracker.model != Markov || inconsistencyTracker.checker != checker)
+				inconsistencyTracker = new MarkovClassifier.InconsistencyTracker(Markov, coregraph, checker);
+			inconsistencyFromAnEarlierIteration= inconsistencyTracker.getInconsistency();
+			cl = inconsistencyTracker.getClassifier();
 		    extendedGraph = cl.constructMarkovTentative();
 			inverseGraph = (LearnerGraphND)MarkovClassifier.computeInverseGraph(coregraph,true);
-			inconsistenciesPerVertex = new ArrayMapWithSearchPos<VertID,CmpVertex,Long>(coregraph.getStateNumber());
+		}
+		
+		/** Makes the outcome of a merger of states of the graph the tracker was built for the current graph of the tracker, 
+		 * so that the next iteration does not have to compute inconsistencies of all vertices. 
+		 */
+		@Override
+		protected void mergePerformed(LearnerGraph original, List<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices, LearnerGraph outcome)
+		{
+			if (inconsistencyTracker != null && inconsistencyTracker.getGraph() == original)
+				inconsistencyTracker.mergePerformed(mergedVertices, outcome);
 		}
 		
 		@Override // we only need this in order to supply a routine to find surrounding transitions and initComputation
@@ -419,7 +437,7 @@ public class MarkovEDSM extends PairQualityLearner
 			{			
 				LearnerGraph merged = MergeStates.mergeCollectionOfVertices(coregraph,null, verticesToMerge, false);
 				if (!disableInconsistenciesInMergers)
-					currentInconsistency = MarkovClassifier.computeInconsistencyOfAMerger(coregraph, verticesToMerge, inconsistenciesPerVertex, merged, Markov, cl, checker);
+					currentInconsistency = inconsistencyTracker.computeInconsistencyOfAMerger(verticesToMerge, merged);
 				
 				score=genScore-currentInconsistency;
 				if (useNewScoreNearRoot && genScore <= 1) // could do with 2 but it does not make a difference.
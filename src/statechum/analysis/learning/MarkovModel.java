@@ -25,10 +25,17 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
 
+import statechum.Helper;
 import statechum.Label;
 import statechum.Trace;
 import statechum.analysis.learning.MarkovModel.MarkovMatrixEngine.PredictionForSequence;
+import statechum.analysis.learning.linear.GDLearnerGraph;
 import statechum.model.testset.PTAExploration;
 import statechum.model.testset.PTASequenceEngine;
 import statechum.model.testset.PTASequenceSetAutomaton;
@@ -54,7 +61,53 @@ import statechum.model.testset.PTASequenceSetAutomaton;
  */
 public class MarkovModel
 {
-	public static class MarkovMatrixEngine extends statechum.model.testset.PTASequenceEngine
+	/** Used to look up predictions for sequences sharing a prefix, obtained from {@link MarkovTable#getPrefix(List)}. */
+	public interface MarkovPrefix
+	{
+		/** Returns the prediction for the prefix followed by the supplied label, null if this sequence has not been recorded. */
+		PredictionForSequence getPrediction(Label label);
+	}
+
+	/** Stores occurrences of sequences of labels and predictions derived from them. */
+	public interface MarkovTable
+	{
+		/** Given a sequence, obtains a prediction for it, null if this sequence has not been recorded. */
+		PredictionForSequence getPrediction(List<Label> sequence);
+
+		/** Used to look up predictions for all sequences made of the supplied prefix followed by a label.
+		 * Returns null if the prefix has not been recorded.
+		 */
+		MarkovPrefix getPrefix(List<Label> sequenceWithoutLastElement);
+
+		/** Records an occurrence of a part of the supplied sequence, without changing predictions. 
+		 * 
+		 * @param sequence sequence containing the part to record
+		 * @param start the position of the first label to record
+		 * @param length the number of labels to record
+		 * @param positive whether the sequence is positive or negative.
+		 */
+		void addOccurrence(List<Label> sequence, int start, int length, boolean positive);
+
+		/** Records an occurrence of the supplied sequence and reconciles its current prediction with the outcome of this occurrence.
+		 * 
+		 * @return the updated prediction.
+		 */
+		PredictionForSequence updatePrediction(List<Label> sequence, boolean positive);
+
+		/** Sets predictions for all sequences based on their occurrences, marking conflicting data as failures. */
+		void computePredictionsFromOccurrences();
+
+		/** Calls the supplied consumer for every sequence with a prediction. */
+		void forEachPrediction(BiConsumer<List<Label>,PredictionForSequence> consumer);
+
+		/** Calls the supplied consumer for every sequence recorded, including prefixes of recorded sequences with no occurrences. */
+		void forEachOccurrence(BiConsumer<List<Label>,UpdatablePairInteger> consumer);
+
+		/** Adds the supplied numbers of positive and negative occurrences to those of the supplied sequence, recording it if necessary. Predictions are not changed. */
+		void addOccurrences(List<Label> sequence, UpdatablePairInteger occurrences);
+	}
+
+	public static class MarkovMatrixEngine extends statechum.model.testset.PTASequenceEngine implements MarkovTable
 	{
 		public static class PredictionForSequence
 		{
@@ -127,10 +180,138 @@ public class MarkovModel
 					currentNode.setState(new PredictionForSequence());*/
 			return (PredictionForSequence)currentNode.getState();
 		}
-		
+
+		@Override
+		public MarkovPrefix getPrefix(List<Label> sequenceWithoutLastElement)
+		{
+			final Map<Label,PTASequenceEngine.Node> map = getMapFromLabelsToPredictions(sequenceWithoutLastElement);
+			if (map == null)
+				return null;
+			return label -> getPredictionIfExists(map, label);
+		}
+
+		@Override
+		public void addOccurrence(List<Label> sequence, int start, int length, boolean positive)
+		{
+			UpdatablePairInteger occurrence = getPredictionAndCreateNewOneIfNecessary(sequence.subList(start, start+length)).occurrence;
+			if (positive)
+				occurrence.add(1,0);
+			else
+				occurrence.add(0,1);
+		}
+
+		@Override
+		public void addOccurrences(List<Label> sequence, UpdatablePairInteger occurrences)
+		{
+			getPredictionAndCreateNewOneIfNecessary(sequence).occurrence.add(occurrences);
+		}
+
+		@Override
+		public PredictionForSequence updatePrediction(List<Label> sequence, boolean positive)
+		{
+			PredictionForSequence prediction = getPredictionAndCreateNewOneIfNecessary(sequence);
+			if (positive)
+				prediction.occurrence.add(1, 0);
+			else
+				prediction.occurrence.add(0, 1);
+			prediction.prediction=MarkovOutcome.reconcileOpinions_PosNeg_Overrides_Null(prediction.prediction,positive?MarkovOutcome.positive:MarkovOutcome.negative);
+			return prediction;
+		}
+
+		/** Computes a prediction from the number of positive and negative occurrences of a sequence, returning the current prediction if there were no occurrences. */
+		public static MarkovOutcome predictionFromOccurrences(int positive, int negative, MarkovOutcome current)
+		{
+			if (positive > 0 && negative > 0)
+				return MarkovOutcome.failure;
+			if (positive > 0) 
+				return MarkovOutcome.positive;
+			if (negative > 0) 
+				return MarkovOutcome.negative;
+			return current;
+		}
+
+		@Override
+		public void computePredictionsFromOccurrences()
+		{
+			PTAExploration<Boolean> exploration = new PTAExploration<Boolean>(this) {
+				@Override
+				public Boolean newUserObject() {
+					return null;
+				}
+
+				@Override
+				public void nodeEntered(PTAExplorationNode currentNode, @SuppressWarnings("unused")	LinkedList<PTAExplorationNode> pathToInit) 
+				{
+					PredictionForSequence prediction = (PredictionForSequence)currentNode.getState();
+					prediction.prediction = predictionFromOccurrences(prediction.occurrence.firstElem, prediction.occurrence.secondElem, prediction.prediction);
+				}
+
+				@Override
+				public void leafEntered(PTAExplorationNode currentNode,	LinkedList<PTAExplorationNode> pathToInit) 
+				{
+					nodeEntered(currentNode, pathToInit);
+				}
+
+				@Override
+				public void nodeLeft(@SuppressWarnings("unused") PTAExplorationNode currentNode,	@SuppressWarnings("unused")	LinkedList<PTAExplorationNode> pathToInit) 
+				{
+					// nothing to do here.
+				}
+
+			};
+			exploration.walkThroughAllPaths();
+		}
+
+		@Override
+		public void forEachPrediction(final BiConsumer<List<Label>,PredictionForSequence> consumer)
+		{
+			forEachNode((path, prediction) -> {
+				if (prediction.prediction != null)
+					consumer.accept(path, prediction);
+			});
+		}
+
+		@Override
+		public void forEachOccurrence(final BiConsumer<List<Label>,UpdatablePairInteger> consumer)
+		{
+			forEachNode((path, prediction) -> consumer.accept(path, prediction.occurrence));
+		}
+
+		/** Calls the supplied consumer for every node of this PTA, including the root. */
+		protected void forEachNode(final BiConsumer<List<Label>,PredictionForSequence> consumer)
+		{
+			PTAExploration<Boolean> exploration = new PTAExploration<Boolean>(this) {
+				@Override
+				public Boolean newUserObject() {
+					return null;
+				}
+
+				@Override
+				public void nodeEntered(PTAExplorationNode currentNode, LinkedList<PTAExplorationNode> pathToInit) 
+				{
+					LinkedList<Label> path = new LinkedList<Label>();for(PTAExplorationNode elem:pathToInit) path.addFirst(elem.getInput());
+					consumer.accept(path, (PredictionForSequence)currentNode.getState());
+				}
+
+				@Override
+				public void leafEntered(PTAExplorationNode currentNode,	LinkedList<PTAExplorationNode> pathToInit) 
+				{
+					nodeEntered(currentNode, pathToInit);
+				}
+
+				@Override
+				public void nodeLeft(@SuppressWarnings("unused") PTAExplorationNode currentNode,	@SuppressWarnings("unused")	LinkedList<PTAExplorationNode> pathToInit) 
+				{
+					// nothing to do here.
+				}
+
+			};
+			exploration.walkThroughAllPaths();
+		}
 	}
 	
-	public final MarkovMatrixEngine markovMatrix;
+	/** Markov table, either a {@link MarkovMatrixEngine} or a {@link MarkovNGramTable}. */
+	public final MarkovTable markovMatrix;
 	
 	/** Contains the number of times a specific path was encountered. Would usually be prefix-closed by construction. This property is used both to identify if a particular path was never seen*/
 	//public final Map<Trace, UpdatablePairInteger> occurrenceMatrix =  new HashMap<Trace,UpdatablePairInteger>();
@@ -153,12 +334,61 @@ public class MarkovModel
 
 	public final boolean predictForwardOrSideways,directionForwardOrInverse;
 	
+	/** Counts modifications of predictions of sequences of each length, making it possible for classifiers to tell whether predictions they cached are out of date. 
+	 * Code updating {@link #markovMatrix} directly is expected to call {@link #sequencesModified(int)} once updates are complete.
+	 */
+	protected final AtomicLongArray modificationsOfSequencesOfLength;
+	
+	/** Returns the number of times predictions of sequences of the supplied length have been modified. */
+	public long getModificationCount(int length)
+	{
+		if (length < 0 || length > chunk_Length)
+			throw new IllegalArgumentException("length "+length+" is not within 0.."+chunk_Length);
+		return modificationsOfSequencesOfLength.get(length);
+	}
+	
+	/** Records that predictions of sequences of the supplied length have been modified. */
+	public void sequencesModified(int length)
+	{
+		if (length < 0 || length > chunk_Length)
+			throw new IllegalArgumentException("length "+length+" is not within 0.."+chunk_Length);
+		modificationsOfSequencesOfLength.incrementAndGet(length);
+	}
+	
+	/** Records that predictions of sequences of all lengths have been modified. */
+	public void allSequencesModified()
+	{
+		for(int length=0;length<=chunk_Length;++length)
+			modificationsOfSequencesOfLength.incrementAndGet(length);
+	}
+	
     public MarkovModel(int chunkLen,boolean argPredictForwardOrSideways,boolean argDirectionForwardOrInverse, boolean PTAUseMatrix)
+    {
+    	this(chunkLen,argPredictForwardOrSideways,argDirectionForwardOrInverse,PTAUseMatrix,false);
+    }
+    
+    /** Constructs a Markov model.
+     * 
+     * @param PTAUseMatrix whether the PTA-based table should use a matrix for its transitions, ignored if <i>useNGramTable</i> is set.
+     * @param useNGramTable whether to store sequences in a hash table keyed by sequences packed into longs rather than in a PTA.
+     */
+    public MarkovModel(int chunkLen,boolean argPredictForwardOrSideways,boolean argDirectionForwardOrInverse, boolean PTAUseMatrix, boolean useNGramTable)
     {
     	if (chunkLen < 2)
     		throw new IllegalArgumentException("chunkLen should be at least 2");
     	chunk_Length = chunkLen;predictForwardOrSideways = argPredictForwardOrSideways;directionForwardOrInverse = argDirectionForwardOrInverse;
-    	markovMatrix = new MarkovMatrixEngine(PTAUseMatrix);
+    	ptaUseMatrix = PTAUseMatrix;ngramTable = useNGramTable;
+    	modificationsOfSequencesOfLength = new AtomicLongArray(chunkLen+1);
+    	markovMatrix = createTable();
+    }
+    
+    /** Determines the kind of table to use. */
+    protected final boolean ptaUseMatrix, ngramTable;
+    
+    /** Creates an empty table of the kind used by this model. */
+    protected MarkovTable createTable()
+    {
+    	return ngramTable? new MarkovNGramTable(chunk_Length):new MarkovMatrixEngine(ptaUseMatrix);
     }
     
     /** Used to record outcomes of Markov computations. Its primary use are the three values and static routines to make decisions between them. */
@@ -355,6 +585,21 @@ public class MarkovModel
 	 * @param onlyLongest if set, only add traces of <i>chunkLen</i> to Markov matrix. Where false, all prefixes are added as well.
 	 */
 	public void createMarkovLearner(Collection<List<Label>> pos,Collection<List<Label>> neg, boolean onlyLongest)
+	{
+		createMarkovLearner(pos, neg, onlyLongest, 1);
+	}
+
+	/** The minimal number of traces for each thread to process when constructing a Markov model on multiple threads. */
+	public static final int MIN_TRACES_PER_THREAD = 64;
+
+	/** Constructs the tables used by the learner, from positive and negative traces, using the supplied number of threads. 
+	 * Traces are split between threads, each of which records occurrences in a separate table, these tables are subsequently merged.
+	 * The outcome is the same as that of a single-threaded construction.
+	 * 
+	 * @param onlyLongest if set, only add traces of <i>chunkLen</i> to Markov matrix. Where false, all prefixes are added as well.
+	 * @param threadNumber the number of threads to use.
+	 */
+	public void createMarkovLearner(Collection<List<Label>> pos,Collection<List<Label>> neg, final boolean onlyLongest, int threadNumber)
 	{
 		int traceLength = 0;
 		Set<Label> alphabet = new HashSet<Label>();
@@ -372,157 +617,80 @@ public class MarkovModel
 		if (traceLength == 0)
 			throw new IllegalArgumentException("empty trace data");
 		
-		// going through all positive traces
-		//and partitioning each positive traces into a list of events ( a list of labels based on the chunk length)
-		for(List<Label> positive_trace:pos)
+		final List<List<Label>> traces = new ArrayList<List<Label>>(pos.size()+neg.size());traces.addAll(pos);traces.addAll(neg);
+		final int positiveNumber = pos.size();
+		int threads = Math.min(threadNumber, traces.size()/MIN_TRACES_PER_THREAD);
+		if (threads <= 1)
+			recordOccurrences(markovMatrix, traces, positiveNumber, 0, traces.size(), onlyLongest);
+		else
 		{
-			Trace current_positive_trace=new Trace(positive_trace, true);
-			for(int i=onlyLongest?chunk_Length-1:0;i<chunk_Length;i++)
+			List<Callable<MarkovTable>> tasks = new ArrayList<Callable<MarkovTable>>(threads);
+			for(int th=0;th<threads;++th)
 			{
-				List<Trace> List_traces=splitTrace(current_positive_trace,i+1);
-				for (Trace tracePos:List_traces)
-					updateOccurrenceMatrix(tracePos,true);
+				final int from = (int)((long)traces.size()*th/threads), to = (int)((long)traces.size()*(th+1)/threads);
+				tasks.add(() -> {
+					MarkovTable shard = createTable();
+					recordOccurrences(shard, traces, positiveNumber, from, to, onlyLongest);
+					return shard;
+				});
 			}
-		}
-		
-		// from negative traces initialize the Markov matrix
-		for(List<Label> negative_trace:neg)
-		{
-			for(int i=onlyLongest?chunk_Length-1:0; i<chunk_Length; i++)
+			try
 			{
-				Trace trace=new Trace(negative_trace,true);
-				List<Trace> List_traces=splitTrace(trace,i+1);
-				int chunkNumber = List_traces.size();
-				if (chunkNumber >= 1)
-				{
-					Trace traceNeg=List_traces.get(chunkNumber-1);
-					updateOccurrenceMatrix(traceNeg,false);
-					for (Trace tracePos:List_traces)
-						if (tracePos != traceNeg)
-							updateOccurrenceMatrix(tracePos,true);
-				}
+				for(Future<MarkovTable> outcome:GDLearnerGraph.getRowTaskPool(threads).invokeAll(tasks))
+					outcome.get().forEachOccurrence((path,occurrences) -> markovMatrix.addOccurrences(path, occurrences));
+			}
+			catch(InterruptedException | ExecutionException e)
+			{
+				Helper.throwUnchecked("failed to construct a Markov model", e);
 			}
 		}
 		
 		// Construct a matrix from trace data, including marking of conflicting data as invalid (conflicts arise where a path is too short). 
 		// A prefix of either a positive/ a negative/ a failure (where there are some states from which a shorter sequence is rejected but from other states a longer one is accepted).
-		
-		PTAExploration<Boolean> exploration = new PTAExploration<Boolean>(markovMatrix) {
-			@Override
-			public Boolean newUserObject() {
-				return null;
-			}
-
-			@Override
-			public void nodeEntered(PTAExplorationNode currentNode, @SuppressWarnings("unused")	LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				PredictionForSequence prediction = (PredictionForSequence)currentNode.getState();
-				if (prediction.occurrence.firstElem > 0 && prediction.occurrence.secondElem > 0)
-					prediction.prediction = MarkovOutcome.failure;
-				else
-				if (prediction.occurrence.firstElem > 0) 
-					prediction.prediction = MarkovOutcome.positive;
-				else
-				if (prediction.occurrence.secondElem > 0) 
-					prediction.prediction = MarkovOutcome.negative;
-			}
+		markovMatrix.computePredictionsFromOccurrences();
+		allSequencesModified();
+	}
 
-			@Override
-			public void leafEntered(PTAExplorationNode currentNode,	LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				nodeEntered(currentNode, pathToInit);
+	/** Records occurrences of chunks of traces with indices from <i>from</i> to <i>to</i> in the supplied table. 
+	 * The first <i>positiveNumber</i> traces are positive, the rest are negative.
+	 */
+	protected void recordOccurrences(MarkovTable table, List<List<Label>> traces, int positiveNumber, int from, int to, boolean onlyLongest)
+	{
+		for(int traceNumber=from;traceNumber<to;++traceNumber)
+		{
+			List<Label> trace = traces.get(traceNumber);
+			if (traceNumber < positiveNumber)
+			{// partitioning each positive trace into a list of events (a list of labels based on the chunk length)
+				for(int i=onlyLongest?chunk_Length-1:0;i<chunk_Length;i++)
+					for(int f=0;f<trace.size()-i;++f)
+						table.addOccurrence(trace, f, i+1, true);
 			}
-
-			@Override
-			public void nodeLeft(@SuppressWarnings("unused") PTAExplorationNode currentNode,	@SuppressWarnings("unused")	LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				// nothing to do here.
+			else
+			{// the last chunk of each negative trace is negative and all others are positive.
+				for(int i=onlyLongest?chunk_Length-1:0; i<chunk_Length; i++)
+				{
+					int chunkNumber = trace.size()-i;
+					for(int f=0;f<chunkNumber;++f)
+						table.addOccurrence(trace, f, i+1, f != chunkNumber-1);
+				}
 			}
-
-		};
-		exploration.walkThroughAllPaths();
+		}
 	}
 
 	public Map<List<Label>, MarkovOutcome> computePredictionMatrix()
 	{
 		final Map<List<Label>, MarkovOutcome> outcome = new LinkedHashMap<List<Label>,MarkovOutcome>();
-		PTAExploration<Boolean> exploration = new PTAExploration<Boolean>(markovMatrix) {
-			@Override
-			public Boolean newUserObject() {
-				return null;
-			}
-
-			@Override
-			public void nodeEntered(PTAExplorationNode currentNode, LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				PredictionForSequence prediction = (PredictionForSequence)currentNode.getState();
-				LinkedList<Label> path = new LinkedList<Label>();for(PTAExplorationNode elem:pathToInit) path.addFirst(elem.getInput());
-				if (prediction.prediction != null)
-					outcome.put(path, prediction.prediction);
-			}
-
-			@Override
-			public void leafEntered(PTAExplorationNode currentNode,	LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				nodeEntered(currentNode, pathToInit);
-			}
-
-			@Override
-			public void nodeLeft(@SuppressWarnings("unused") PTAExplorationNode currentNode,	@SuppressWarnings("unused")	LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				// nothing to do here.
-			}
-
-		};
-		exploration.walkThroughAllPaths();
+		markovMatrix.forEachPrediction((path,prediction) -> outcome.put(path, prediction.prediction));
 		return outcome;
 	}
 	
 	public Map<List<Label>, UpdatablePairInteger> computeOccurrenceMatrix()
 	{
 		final Map<List<Label>, UpdatablePairInteger> outcome = new LinkedHashMap<List<Label>,UpdatablePairInteger>();
-		PTAExploration<Boolean> exploration = new PTAExploration<Boolean>(markovMatrix) {
-			@Override
-			public Boolean newUserObject() {
-				return null;
-			}
-
-			@Override
-			public void nodeEntered(PTAExplorationNode currentNode, LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				PredictionForSequence prediction = (PredictionForSequence)currentNode.getState();
-				LinkedList<Label> path = new LinkedList<Label>();for(PTAExplorationNode elem:pathToInit) path.addFirst(elem.getInput());
-
-				if (prediction.prediction != null)
-					outcome.put(path, prediction.occurrence);
-			}
-
-			@Override
-			public void leafEntered(PTAExplorationNode currentNode,	LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				nodeEntered(currentNode, pathToInit);
-			}
-
-			@Override
-			public void nodeLeft(@SuppressWarnings("unused") PTAExplorationNode currentNode,	@SuppressWarnings("unused")	LinkedList<PTAExplorationNode> pathToInit) 
-			{
-				// nothing to do here.
-			}
-
-		};
-		exploration.walkThroughAllPaths();
+		markovMatrix.forEachPrediction((path,prediction) -> outcome.put(path, prediction.occurrence));
 		return outcome;
 	}
 	
-	protected void updateOccurrenceMatrix(Trace traceToMarkov, boolean positive)
-	{
-		UpdatablePairInteger occurrence_of_trace=markovMatrix.getPredictionAndCreateNewOneIfNecessary(traceToMarkov.getList()).occurrence;
-		if(positive)
-			occurrence_of_trace.add(1,0);
-		else  // if negative
-			occurrence_of_trace.add(0,1);
-	}
-
 	public static List<Trace> splitTrace (Trace t,int chunkLen)
 	{
 		List<Trace> chunks=new ArrayList<Trace>();
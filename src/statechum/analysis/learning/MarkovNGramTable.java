@@ -0,0 +1,251 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import statechum.Label;
+import statechum.LabelRegistry;
+import statechum.analysis.learning.MarkovModel.MarkovMatrixEngine.PredictionForSequence;
+import statechum.analysis.learning.MarkovModel.MarkovOutcome;
+import statechum.analysis.learning.MarkovModel.UpdatablePairInteger;
+
+/** A Markov table where each sequence of up to <i>chunkLen</i> labels is packed into a long, made of identifiers of its labels.
+ * Sequences are stored in an open-addressing hash table with primitive arrays of occurrences and predictions,
+ * hence recording and looking up sequences does not allocate memory.
+ * Similarly to {@link MarkovModel.MarkovMatrixEngine}, all prefixes of recorded sequences are stored, with zero occurrences.
+ * <p>
+ * Predictions returned by this table are copies, hence they have to be updated using {@link #updatePrediction(List, boolean)}.
+ *
+ * @author agent
+ */
+public class MarkovNGramTable implements MarkovModel.MarkovTable
+{
+	/** Marks empty slots, keys are never negative. */
+	protected static final long EMPTY = -1;
+
+	/** Predictions in the order of their codes stored in {@link #prediction}, code zero meaning no prediction. */
+	protected static final MarkovOutcome [] codeToOutcome = new MarkovOutcome[]{null, MarkovOutcome.positive, MarkovOutcome.negative, MarkovOutcome.failure, MarkovOutcome.unknown};
+
+	protected final int chunkLen, bitsPerLabel;
+
+	protected final LabelRegistry labelIds = new LabelRegistry((label, id) -> label);
+
+	protected long [] keys;
+	protected int [] positive, negative;
+	protected byte [] prediction;
+	protected int size = 0;
+
+	/** Constructs the table for sequences of up to the supplied length. */
+	public MarkovNGramTable(int chunkLength)
+	{
+		if (chunkLength < 1)
+			throw new IllegalArgumentException("chunkLen should be positive");
+		chunkLen = chunkLength;bitsPerLabel = 63/chunkLen;
+		if (bitsPerLabel < 2)
+			throw new IllegalArgumentException("chunkLen of "+chunkLen+" is too long to pack into a long");
+		allocate(64);
+		slotFor(0, true);// the empty sequence is always present, similarly to the root of a PTA
+	}
+
+	protected void allocate(int capacity)
+	{
+		keys = new long[capacity];Arrays.fill(keys, EMPTY);
+		positive = new int[capacity];negative = new int[capacity];prediction = new byte[capacity];
+		size = 0;
+	}
+
+	protected static int codeOf(MarkovOutcome outcome)
+	{
+		for(int i=0;i<codeToOutcome.length;++i)
+			if (codeToOutcome[i] == outcome)
+				return i;
+		throw new IllegalArgumentException("unknown outcome "+outcome);
+	}
+
+	/** Returns the slot associated with the supplied key, -1 if absent and <i>create</i> is false. */
+	protected int slotFor(long key, boolean create)
+	{
+		int mask = keys.length-1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int)(hash ^ (hash >>> 32)) & mask;
+		while(keys[slot] != EMPTY)
+		{
+			if (keys[slot] == key)
+				return slot;
+			slot = (slot+1) & mask;
+		}
+		if (!create)
+			return -1;
+		if ((size+1)*4 > keys.length*3)
+		{
+			rehash();return slotFor(key, true);
+		}
+		keys[slot] = key;++size;
+		return slot;
+	}
+
+	protected void rehash()
+	{
+		long [] oldKeys = keys;int [] oldPositive = positive, oldNegative = negative;byte [] oldPrediction = prediction;
+		allocate(oldKeys.length*2);
+		for(int i=0;i<oldKeys.length;++i)
+			if (oldKeys[i] != EMPTY)
+			{
+				int slot = slotFor(oldKeys[i], true);
+				positive[slot] = oldPositive[i];negative[slot] = oldNegative[i];prediction[slot] = oldPrediction[i];
+			}
+	}
+
+	/** Returns the key after appending a label to a sequence with the supplied key, registering the label if <i>create</i> is true.
+	 * Returns -1 if the label has not been seen and should not be registered.
+	 */
+	protected long appendLabel(long key, Label label, boolean create)
+	{
+		int id = create? labelIds.getId(label):labelIds.findId(label);
+		if (id < 0)
+			return -1;
+		if (id+1L >= (1L << bitsPerLabel))
+			throw new IllegalArgumentException("too many labels for chunkLen of "+chunkLen);
+		return (key << bitsPerLabel) | (id+1);
+	}
+
+	/** Returns the slot associated with a sequence, creating it and slots for all its prefixes if <i>create</i> is true.
+	 * Returns -1 if the sequence is not present and should not be created.
+	 */
+	protected int slotForSequence(List<Label> sequence, int start, int length, boolean create)
+	{
+		if (length > chunkLen)
+		{
+			if (create)
+				throw new IllegalArgumentException("sequence "+sequence+" is longer than chunkLen of "+chunkLen);
+			return -1;
+		}
+		long key = 0;int slot = slotFor(0, create);
+		for(int i=start;i<start+length && slot >= 0;++i)
+		{
+			key = appendLabel(key, sequence.get(i), create);
+			slot = key < 0? -1:slotFor(key, create);
+		}
+		return slot;
+	}
+
+	protected PredictionForSequence predictionAt(int slot)
+	{
+		if (slot < 0)
+			return null;
+		PredictionForSequence result = new PredictionForSequence();
+		result.occurrence.add(positive[slot], negative[slot]);result.prediction = codeToOutcome[prediction[slot]];
+		return result;
+	}
+
+	@Override
+	public PredictionForSequence getPrediction(List<Label> sequence)
+	{
+		return predictionAt(slotForSequence(sequence, 0, sequence.size(), false));
+	}
+
+	@Override
+	public MarkovModel.MarkovPrefix getPrefix(List<Label> sequenceWithoutLastElement)
+	{
+		int length = sequenceWithoutLastElement.size();
+		if (slotForSequence(sequenceWithoutLastElement, 0, length, false) < 0)
+			return null;
+		if (length >= chunkLen)
+			return label -> null;// the prefix has been recorded but nothing can follow it
+		long prefixKey = 0;
+		for(Label label:sequenceWithoutLastElement)
+			prefixKey = appendLabel(prefixKey, label, false);
+		final long key = prefixKey;
+		return label -> {
+			long extended = appendLabel(key, label, false);
+			return extended < 0? null:predictionAt(slotFor(extended, false));
+		};
+	}
+
+	@Override
+	public void addOccurrence(List<Label> sequence, int start, int length, boolean positiveSequence)
+	{
+		int slot = slotForSequence(sequence, start, length, true);
+		if (positiveSequence)
+			++positive[slot];
+		else
+			++negative[slot];
+	}
+
+	@Override
+	public PredictionForSequence updatePrediction(List<Label> sequence, boolean positiveSequence)
+	{
+		int slot = slotForSequence(sequence, 0, sequence.size(), true);
+		if (positiveSequence)
+			++positive[slot];
+		else
+			++negative[slot];
+		prediction[slot] = (byte)codeOf(MarkovOutcome.reconcileOpinions_PosNeg_Overrides_Null(codeToOutcome[prediction[slot]], positiveSequence?MarkovOutcome.positive:MarkovOutcome.negative));
+		return predictionAt(slot);
+	}
+
+	@Override
+	public void computePredictionsFromOccurrences()
+	{
+		for(int slot=0;slot<keys.length;++slot)
+			if (keys[slot] != EMPTY)
+				prediction[slot] = (byte)codeOf(MarkovModel.MarkovMatrixEngine.predictionFromOccurrences(positive[slot], negative[slot], codeToOutcome[prediction[slot]]));
+	}
+
+	/** Converts a key to the sequence of labels it was built from. */
+	protected List<Label> keyToSequence(long key)
+	{
+		LinkedList<Label> sequence = new LinkedList<>();
+		for(long k=key;k != 0;k >>>= bitsPerLabel)
+			sequence.addFirst(labelIds.getLabel((int)(k & ((1L << bitsPerLabel)-1))-1));
+		return sequence;
+	}
+
+	@Override
+	public void forEachPrediction(BiConsumer<List<Label>,PredictionForSequence> consumer)
+	{
+		for(int slot=0;slot<keys.length;++slot)
+			if (keys[slot] != EMPTY && prediction[slot] != 0)
+				consumer.accept(keyToSequence(keys[slot]), predictionAt(slot));
+	}
+
+	@Override
+	public void forEachOccurrence(BiConsumer<List<Label>,UpdatablePairInteger> consumer)
+	{
+		for(int slot=0;slot<keys.length;++slot)
+			if (keys[slot] != EMPTY)
+				consumer.accept(keyToSequence(keys[slot]), new UpdatablePairInteger(positive[slot], negative[slot]));
+	}
+
+	@Override
+	public void addOccurrences(List<Label> sequence, UpdatablePairInteger occurrences)
+	{
+		int slot = slotForSequence(sequence, 0, sequence.size(), true);
+		positive[slot]+=occurrences.firstElem;negative[slot]+=occurrences.secondElem;
+	}
+
+	/** The number of sequences stored, including the empty sequence and all prefixes of recorded sequences. */
+	public int size()
+	{
+		return size;
+	}
+}
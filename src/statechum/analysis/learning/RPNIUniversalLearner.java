@@ -23,6 +23,7 @@ import statechum.DeterministicDirectedSparseGraph.VertID;
 import statechum.GlobalConfiguration;
 import statechum.JUConstants;
 import statechum.Label;
+import statechum.LearnerMetrics;
 import statechum.Pair;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.GlobalConfiguration.G_PROPERTIES;
@@ -232,6 +233,20 @@ public class RPNIUniversalLearner extends RPNILearner
 	
 	@Override 
 	public LearnerGraph learnMachine()
+	{
+		long started = LearnerMetrics.startPhase();
+		try
+		{
+			return learnMachine_internal();
+		}
+		finally
+		{
+			LearnerMetrics.endPhase(LearnerMetrics.PHASE.LEARN, started);
+		}
+	}
+	
+	/** Learns a machine, called from {@link #learnMachine()} which records the time taken. */
+	protected LearnerGraph learnMachine_internal()
 	{
 		final Configuration shallowCopy = getTentativeAutomaton().config.copy();shallowCopy.setLearnerCloneGraph(false);
 		ptaHardFacts = new LearnerGraph(shallowCopy);// this is now cloned to eliminate counter-examples added to ptaSoftFacts by Spin
@@ -266,7 +281,7 @@ public class RPNIUniversalLearner extends RPNILearner
 		updateGraph(getTentativeAutomaton(),ptaHardFacts);
 		while (!possibleMerges.isEmpty()) 
 		{
-			iterations++;
+			iterations++;LearnerMetrics.increment(LearnerMetrics.COUNTER.ITERATIONS);
 			PairScore pair = possibleMerges.pop();
 			final LearnerGraph temp = topLevelListener.MergeAndDeterminize(getTentativeAutomaton(), pair);
 			Collection<List<Label>> questions = new LinkedList<List<Label>>();
@@ -354,10 +369,12 @@ public class RPNIUniversalLearner extends RPNILearner
 						}
 					List<Boolean> acceptedElements = PathRoutines.mapPathToConfirmedElements(ptaHardFacts,question,ifthenAutomata);
 
+					long oracleStarted = LearnerMetrics.startPhase();LearnerMetrics.increment(LearnerMetrics.COUNTER.QUESTIONS_ASKED);
 					answer = topLevelListener.CheckWithEndUser(getTentativeAutomaton(), question, 
 							tempVertex.isAccept()?AbstractOracle.USER_ACCEPTED:question.size() - 1,
 									acceptedElements, pair,
 							new Object[] { "LTL","IFTHEN","IGNORE QUESTION","MARK AS INCOMPATIBLE","Add trace"});
+					LearnerMetrics.endPhase(LearnerMetrics.PHASE.ORACLE, oracleStarted);
 				}
 				if (answer.firstElem == AbstractOracle.USER_CANCELLED) 
 				{
@@ -616,6 +633,8 @@ public class RPNIUniversalLearner extends RPNILearner
 				}
 			}
 
+			if (restartLearning != RestartLearningEnum.restartNONE)
+				LearnerMetrics.increment(LearnerMetrics.COUNTER.RESTARTS);
 			topLevelListener.Restart(restartLearning);
 			
 			//System.out.println("<info> restart: "+restartLearning);
@@ -677,7 +696,9 @@ public class RPNIUniversalLearner extends RPNILearner
 						List<Boolean> acceptedElements = null;
 						if (getTentativeAutomaton().config.isUseConstraints())
 							acceptedElements = PathRoutines.mapPathToConfirmedElements(hardFacts,question,ifthenAutomata);
+						long oracleStarted = LearnerMetrics.startPhase();LearnerMetrics.increment(LearnerMetrics.COUNTER.QUESTIONS_ASKED);
 						Pair<Integer,String> answer = topLevelListener.CheckWithEndUser(getTentativeAutomaton(),question, tempNew.getVertex(question).isAccept()?AbstractOracle.USER_ACCEPTED:question.size() - 1,acceptedElements,pair,new Object [] {"Test"});
+						LearnerMetrics.endPhase(LearnerMetrics.PHASE.ORACLE, oracleStarted);
 						if (answer.firstElem == AbstractOracle.USER_CANCELLED)
 						{
 							System.out.println("CANCELLED");
@@ -149,20 +149,32 @@ public class LearningAlgorithms
 		public LearnerGraph MergeAndDeterminize(LearnerGraph original, StatePair pair)
 		{
 			LearnerGraph outcome = null;
+			List<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices = null;
 			if (config.getOverride_usePTAMerging())
 			{
 				outcome = MergeStates.mergeAndDeterminize(original, pair);
 			}
 			else
 			{
-				Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices = new LinkedList<>();
+				mergedVertices = new LinkedList<>();
 				if (original.pairscores.computePairCompatibilityScore_general(pair,null,mergedVertices, false) < 0)
 					throw new IllegalArgumentException("elements of the pair "+pair+" are incompatible, orig score was "+original.pairscores.computePairCompatibilityScore(pair));
 				outcome = MergeStates.mergeCollectionOfVertices(original,pair.getR(),mergedVertices,false);
 			}
 			outcome.pathroutines.updateDepthLabelling();// this is important for the choice of representative vertices in merging of states, this in turn affects IDs of merged states which affects selection of pairs for merging.
+			if (mergedVertices != null)
+				mergePerformed(original, mergedVertices, outcome);
 			return outcome;
 		}
+		
+		/** Called by {@link #MergeAndDeterminize(LearnerGraph, StatePair)} with the equivalence classes of the merger it performed, 
+		 * making it possible for learners to update information they keep about the graph being learnt rather than rebuild it.
+		 * Mergers are not always accepted by a learner, hence the outcome is not necessarily the graph the next iteration will start from.
+		 */
+		@SuppressWarnings("unused")
+		protected void mergePerformed(LearnerGraph original, List<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices, LearnerGraph outcome)
+		{
+		}
 	}
 	
 	/** This class knows what the reference automaton is and is able to pick correct pairs out of a set to merge. */
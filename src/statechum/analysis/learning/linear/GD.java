@@ -50,6 +50,10 @@ import java.text.DateFormat;
 import java.util.List;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * @author kirill
@@ -125,6 +129,57 @@ public class GD<TARGET_A_TYPE,TARGET_B_TYPE,
 
 	/** Number of threads to use in a computation. */
 	int ThreadNumber = 0;
+
+	/** Wave expansion and patch construction are only split between threads where each thread gets at least this number of items. */
+	protected int minItemsPerThread = 64;
+
+	/** Returns the number of threads to use to process the supplied number of items when expanding waves or constructing a patch. */
+	protected int threadsFor(int itemNumber)
+	{
+		int threads = grCombined.config.getGdThreadNumber() > 0? grCombined.config.getGdThreadNumber():ThreadNumber;
+		return Math.max(1, Math.min(threads, itemNumber/minItemsPerThread));
+	}
+
+	/** Applies the supplied function to each of the items, splitting them into continuous ranges processed by different threads.
+	 * Results are returned in the order of items, hence the outcome does not depend on the number of threads.
+	 * 
+	 * @param items items to process
+	 * @param function function to apply, has to be thread-safe.
+	 * @return results of the function for each of the items.
+	 */
+	protected <T,R> List<R> mapInParallel(final List<T> items, final Function<T,R> function)
+	{
+		final int threads = threadsFor(items.size());
+		final List<R> result = new ArrayList<>(items.size());
+		if (threads <= 1)
+		{
+			for(T item:items) result.add(function.apply(item));
+			return result;
+		}
+		@SuppressWarnings("unchecked")
+		final R [] outcome = (R[]) new Object[items.size()];
+		final int [] workLoad = GDLearnerGraph.partitionWorkLoadLinear(threads, items.size());
+		List<Callable<Integer>> jobs = new ArrayList<>(threads);
+		for(int threadCnt=0;threadCnt<threads;++threadCnt)
+		{
+			final int threadNo = threadCnt;
+			jobs.add(() -> {
+				for(int i=workLoad[threadNo];i<workLoad[threadNo+1];++i) outcome[i]=function.apply(items.get(i));
+				return 0;
+			});
+		}
+		try
+		{
+			for(Future<Integer> job:GDLearnerGraph.getRowTaskPool(threads).invokeAll(jobs))
+				job.get();// this will throw an exception if any of the tasks failed.
+		}
+		catch(Exception ex)
+		{
+			throw new IllegalArgumentException("failed to compute, the problem is: "+ex, ex);
+		}
+		result.addAll(Arrays.asList(outcome));
+		return result;
+	}
 	
 	/** Converts the supplied array to the corresponding Erlang representation. */
 	private static OtpErlangList serialiseDoubleArray(double []array)
@@ -607,107 +662,29 @@ public class GD<TARGET_A_TYPE,TARGET_B_TYPE,
 			}
 			
 			// Pick all transitions and incompatible pairs which have been added/removed from the matched states.
-			for(Entry<CmpVertex,CmpVertex> entry:aTOb.entrySet())
-			{
-				// check records of compatible/incompatible pairs of states. This is based on what our compatibility matrix
-				// says about states A (i.e. from the left-hand side of the aTOb set) and then matching it to what it says
-				// about the right-hand side of it (the B part).
-				{
-					// targetsB are the states&compatibility values associated with the B state in the entry pair.
-					Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY> targetsB = grCombined.pairCompatibility.compatibility.get(entry.getValue());// this is a function - there is no potential for non-determinism unlike that of transitionMatrix
-					Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY> newTargetsForB= new TreeMap<>();if (targetsB != null) newTargetsForB.putAll(targetsB);
-					if (grCombined.pairCompatibility.compatibility.containsKey(entry.getKey())) // we have some pairs recorded in A which may match those in B
-						for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> targetInA:grCombined.pairCompatibility.compatibility.get(entry.getKey()).entrySet())
-							if (aTOb.containsKey(targetInA.getKey()))
-							{// both the current state (entry.getKey()) and the other side (targetInA.getKey()) are part of key pairs,
-							 // hence we have to check what happens to the corresponding side (entry.getValue(),targetInB.getKey())
-								if (targetsB == null || // this state has no compatible/incompatible states recorded in B
-										!targetsB.containsKey(aTOb.get(targetInA.getKey())) || // It is not enough to check if both targetA and targetB are 
-										// key states, but the two have to be part of the same key state. 
-										// Otherwise, we risk making mistakes (see <em>testComputeGD6()</em> for an illustration).
-										
-										targetsB.get(aTOb.get(targetInA.getKey())) != targetInA.getValue()) // different value of the relation
-									removeFromCompatibility(entry.getKey(), targetInA.getKey(),targetInA.getValue());
-								else
-									newTargetsForB.remove(aTOb.get(targetInA.getKey()));// relations match (note that here I may easily ask to remove elements from an empty collection or remove a null element which is fine since there cannot be such elements in newTargetsForB)
-							} 	
-							// There is no "else" clause because if a target state is not a matched one, 
-					 		// such a relation will be removed later on when we focus on removing transitions from/to unmatched states
-					
-					for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> newTarget:newTargetsForB.entrySet())
-						// the pair entry.getKey(),targetInA.getKey() are not related or
-						// they in a different relation to entry.getValue(),targetInB.getKey() (such as INCOMPATIBLE v.s. IFTHEN)						
-						addToCompatibility(entry.getKey(), getOrig(newTarget.getKey()),newTarget.getValue());
-				}
-				
-				// Transitions from the A part. We only consider outgoing transitions because incoming ones are either from other key pairs or from unmatched states.
-				// Those from other key pairs will be matched eventually, those from unmatched states are unconditionally removed. This may cause the same transition to be 
-				// both removed and then added, but this is taken into account in a separate step of the algorithm.
-				for(Entry<Label,List<CmpVertex>> transitionA:grCombined.transitionMatrix.get(entry.getKey()).entrySet())
-				{
-					List<CmpVertex> targetsInB = grCombined.transitionMatrix.get(entry.getValue()).get(transitionA.getKey());
-					if (targetsInB == null) // this transition does not exist in B, record that all target states have to be removed
-						for(CmpVertex targetA:grCombined.getTargets(transitionA.getValue()))
-							removeTransition(entry.getKey(), transitionA.getKey(),targetA);
-					else
-					{
-						Collection<CmpVertex> targetsA=grCombined.getTargets(transitionA.getValue()), targetsB=grCombined.getTargets(targetsInB);
-						Set<CmpVertex> newTargetsForB = new TreeSet<>(targetsB);
-						
-						// It is not enough to check if both targetA and targetB are 
-						// key states, but the two have to be part of the same key state. 
-						// Otherwise, we risk making mistakes (see <em>testComputeGD6()</em> for an illustration).
-						// Targets which are only in A should be removed, those only in B should be added and 
-						// those shared but not from the same key pair should be updated (add/remove).
-						for(CmpVertex targetA:targetsA)
-						{
-							CmpVertex targetB = aTOb.get(targetA);
-							if (targetB == null)
-								removeTransition(entry.getKey(), transitionA.getKey(),targetA);// target is not a key state
-							else
-							if (!targetsB.contains(targetB))
-							// Transition leads to a state which is not key in either of the two machines or both are parts of different key states.
-								removeTransition(entry.getKey(), transitionA.getKey(),targetA);
-							else
-								newTargetsForB.remove(targetB);
-						}
-						
-						for(CmpVertex targetB:newTargetsForB)
-							addTransition(entry.getKey(), transitionA.getKey(),getOrig(targetB));
-					}
-				}
-				
-				// transitions from the B part which were not covered above.
-				for(Entry<Label,List<CmpVertex>> transitionB:grCombined.transitionMatrix.get(entry.getValue()).entrySet())
-				{
-					List<CmpVertex> targetsInA = grCombined.transitionMatrix.get(entry.getKey()).get(transitionB.getKey());
-					if (targetsInA == null) // a transition unique to B
-						for(CmpVertex targetB:grCombined.getTargets(transitionB.getValue()))
-							addTransition(getOrig(entry.getValue()), transitionB.getKey(),getOrig(targetB));
-				}
-				
-			}
+			collectChanges(new ArrayList<>(aTOb.entrySet()), this::collectKeyPairChanges);
 
 			// now we just need to go through states which are not key states
+			List<CmpVertex> unmatchedStatesOfA = new ArrayList<>(statesOfA.size());
 			for(CmpVertex vertex:statesOfA)
 				if (!statesInKeyPairs.contains(vertex))
-				{
-					for(Entry<Label,List<CmpVertex>> target:grCombined.transitionMatrix.get(vertex).entrySet())
-						// transition not matched because some states are not known hence remove it.
-						for(CmpVertex targetState:grCombined.getTargets(target.getValue()))
-								// if either of the two vertices does not exist or the transition does not exist on the B's side
-								removeTransition(vertex, target.getKey(),targetState);
-					// incompatible pairs.
-					if (grCombined.pairCompatibility.compatibility.containsKey(vertex))
-						for(Entry<CmpVertex,PAIRCOMPATIBILITY> vertOther:grCombined.pairCompatibility.compatibility.get(vertex).entrySet())
-							removeFromCompatibility(vertex, vertOther.getKey(),vertOther.getValue());// we are talking in terms of the original vertices hence no need to call getOrig here unlike below when we go through vertices of B
-				}
-
-			for(CmpVertex vertex:statesOfB)
-			{
+					unmatchedStatesOfA.add(vertex);
+			collectChanges(unmatchedStatesOfA, (vertex, patch) -> {
+				for(Entry<Label,List<CmpVertex>> target:grCombined.transitionMatrix.get(vertex).entrySet())
+					// transition not matched because some states are not known hence remove it.
+					for(CmpVertex targetState:grCombined.getTargets(target.getValue()))
+							// if either of the two vertices does not exist or the transition does not exist on the B's side
+							patch.removeTransition(vertex, target.getKey(),targetState);
+				// incompatible pairs.
+				if (grCombined.pairCompatibility.compatibility.containsKey(vertex))
+					for(Entry<CmpVertex,PAIRCOMPATIBILITY> vertOther:grCombined.pairCompatibility.compatibility.get(vertex).entrySet())
+						patch.removeFromCompatibility(vertex, vertOther.getKey(),vertOther.getValue());// we are talking in terms of the original vertices hence no need to call getOrig here unlike below when we go through vertices of B
+			});
+
+			collectChanges(new ArrayList<>(statesOfB), (vertex, patch) -> {
 				CmpVertex vertexA = getOrig(vertex);
 				if ( (grCombined.transitionMatrix.get(vertex).isEmpty() && inverse.matrixForward.transitionMatrix.get(vertex).isEmpty())) // disconnected vertex, regardless whether in a key pair or not.
-					addVertex(vertexA);
+					patch.addVertex(vertexA);
 
 				if (!statesInKeyPairs.contains(vertex))
 				{
@@ -715,15 +692,15 @@ public class GD<TARGET_A_TYPE,TARGET_B_TYPE,
 					for (Entry<Label, List<CmpVertex>> target : grCombined.transitionMatrix.get(vertex).entrySet()) {
 						// transition not matched because some states are not known hence append it.
 						for (CmpVertex targetState : grCombined.getTargets(target.getValue()))
-							addTransition(vertexA, target.getKey(), getOrig(targetState));
+							patch.addTransition(vertexA, target.getKey(), getOrig(targetState));
 					}
 
 					// incompatible pairs.
 					if (grCombined.pairCompatibility.compatibility.containsKey(vertex))
 						for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> vertEntry:grCombined.pairCompatibility.compatibility.get(vertex).entrySet())
-							addToCompatibility(vertexA, getOrig(vertEntry.getKey()),vertEntry.getValue());
+							patch.addToCompatibility(vertexA, getOrig(vertEntry.getKey()),vertEntry.getValue());
 				}
-			}
+			});
 			// Add relabelling: first, aTOb , then duplicates. If this is done in a different order
 			// we might relabel a vertex to the name already in use and relabel will choke.
 			for(Entry<CmpVertex,CmpVertex> entry:aTOb.entrySet())
@@ -746,6 +723,106 @@ public class GD<TARGET_A_TYPE,TARGET_B_TYPE,
 			setInitial(initialState);
 		}
 
+		/** Passes changes for each of the supplied items to this collector, in the order of items. Where there are many items,
+		 * changes are computed on multiple threads, recorded and then replayed, hence the outcome is the same as where a single thread is used.
+		 *  
+		 * @param items items to compute changes for
+		 * @param changes computes changes for an item, passing them to the supplied patch. Has to be thread-safe. 
+		 */
+		protected <T> void collectChanges(List<T> items, final BiConsumer<T,PatchGraph> changes)
+		{
+			if (threadsFor(items.size()) <= 1)
+				for(T item:items) changes.accept(item, this);
+			else
+				for(DeferredPatch patch:mapInParallel(items, item -> { DeferredPatch patch = new DeferredPatch();changes.accept(item, patch);return patch; }))
+					patch.replay(this);
+		}
+		
+		/** Computes changes to transitions and compatibility of states in the supplied key pair. 
+		 * 
+		 * @param entry key pair, the first element is in A and the second one in the B part of grCombined.
+		 * @param patch where to pass changes.
+		 */
+		protected void collectKeyPairChanges(Entry<CmpVertex,CmpVertex> entry, PatchGraph patch)
+		{
+			// check records of compatible/incompatible pairs of states. This is based on what our compatibility matrix
+			// says about states A (i.e. from the left-hand side of the aTOb set) and then matching it to what it says
+			// about the right-hand side of it (the B part).
+			{
+				// targetsB are the states&compatibility values associated with the B state in the entry pair.
+				Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY> targetsB = grCombined.pairCompatibility.compatibility.get(entry.getValue());// this is a function - there is no potential for non-determinism unlike that of transitionMatrix
+				Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY> newTargetsForB= new TreeMap<>();if (targetsB != null) newTargetsForB.putAll(targetsB);
+				if (grCombined.pairCompatibility.compatibility.containsKey(entry.getKey())) // we have some pairs recorded in A which may match those in B
+					for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> targetInA:grCombined.pairCompatibility.compatibility.get(entry.getKey()).entrySet())
+						if (aTOb.containsKey(targetInA.getKey()))
+						{// both the current state (entry.getKey()) and the other side (targetInA.getKey()) are part of key pairs,
+						 // hence we have to check what happens to the corresponding side (entry.getValue(),targetInB.getKey())
+							if (targetsB == null || // this state has no compatible/incompatible states recorded in B
+									!targetsB.containsKey(aTOb.get(targetInA.getKey())) || // It is not enough to check if both targetA and targetB are 
+									// key states, but the two have to be part of the same key state. 
+									// Otherwise, we risk making mistakes (see <em>testComputeGD6()</em> for an illustration).
+									
+									targetsB.get(aTOb.get(targetInA.getKey())) != targetInA.getValue()) // different value of the relation
+								patch.removeFromCompatibility(entry.getKey(), targetInA.getKey(),targetInA.getValue());
+							else
+								newTargetsForB.remove(aTOb.get(targetInA.getKey()));// relations match (note that here I may easily ask to remove elements from an empty collection or remove a null element which is fine since there cannot be such elements in newTargetsForB)
+						} 	
+						// There is no "else" clause because if a target state is not a matched one, 
+				 		// such a relation will be removed later on when we focus on removing transitions from/to unmatched states
+				
+				for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> newTarget:newTargetsForB.entrySet())
+					// the pair entry.getKey(),targetInA.getKey() are not related or
+					// they in a different relation to entry.getValue(),targetInB.getKey() (such as INCOMPATIBLE v.s. IFTHEN)						
+					patch.addToCompatibility(entry.getKey(), getOrig(newTarget.getKey()),newTarget.getValue());
+			}
+			
+			// Transitions from the A part. We only consider outgoing transitions because incoming ones are either from other key pairs or from unmatched states.
+			// Those from other key pairs will be matched eventually, those from unmatched states are unconditionally removed. This may cause the same transition to be 
+			// both removed and then added, but this is taken into account in a separate step of the algorithm.
+			for(Entry<Label,List<CmpVertex>> transitionA:grCombined.transitionMatrix.get(entry.getKey()).entrySet())
+			{
+				List<CmpVertex> targetsInB = grCombined.transitionMatrix.get(entry.getValue()).get(transitionA.getKey());
+				if (targetsInB == null) // this transition does not exist in B, record that all target states have to be removed
+					for(CmpVertex targetA:grCombined.getTargets(transitionA.getValue()))
+						patch.removeTransition(entry.getKey(), transitionA.getKey(),targetA);
+				else
+				{
+					Collection<CmpVertex> targetsA=grCombined.getTargets(transitionA.getValue()), targetsB=grCombined.getTargets(targetsInB);
+					Set<CmpVertex> newTargetsForB = new TreeSet<>(targetsB);
+					
+					// It is not enough to check if both targetA and targetB are 
+					// key states, but the two have to be part of the same key state. 
+					// Otherwise, we risk making mistakes (see <em>testComputeGD6()</em> for an illustration).
+					// Targets which are only in A should be removed, those only in B should be added and 
+					// those shared but not from the same key pair should be updated (add/remove).
+					for(CmpVertex targetA:targetsA)
+					{
+						CmpVertex targetB = aTOb.get(targetA);
+						if (targetB == null)
+							patch.removeTransition(entry.getKey(), transitionA.getKey(),targetA);// target is not a key state
+						else
+						if (!targetsB.contains(targetB))
+						// Transition leads to a state which is not key in either of the two machines or both are parts of different key states.
+							patch.removeTransition(entry.getKey(), transitionA.getKey(),targetA);
+						else
+							newTargetsForB.remove(targetB);
+					}
+					
+					for(CmpVertex targetB:newTargetsForB)
+						patch.addTransition(entry.getKey(), transitionA.getKey(),getOrig(targetB));
+				}
+			}
+			
+			// transitions from the B part which were not covered above.
+			for(Entry<Label,List<CmpVertex>> transitionB:grCombined.transitionMatrix.get(entry.getValue()).entrySet())
+			{
+				List<CmpVertex> targetsInA = grCombined.transitionMatrix.get(entry.getKey()).get(transitionB.getKey());
+				if (targetsInA == null) // a transition unique to B
+					for(CmpVertex targetB:grCombined.getTargets(transitionB.getValue()))
+						patch.addTransition(getOrig(entry.getValue()), transitionB.getKey(),getOrig(targetB));
+			}
+		}
+
 		/**
 		 * @see GD.PatchGraph#addTransition(CmpVertex, Label, CmpVertex)
 		 */
@@ -782,6 +859,53 @@ public class GD<TARGET_A_TYPE,TARGET_B_TYPE,
 	}
 	
 	
+	/** Records changes passed to it, so that they can be passed to another patch later. */
+	protected static class DeferredPatch implements PatchGraph
+	{
+		private final List<java.util.function.Consumer<PatchGraph>> changes = new ArrayList<>();
+		
+		/** Passes all recorded changes to the supplied patch, in the order they were recorded. */
+		public void replay(PatchGraph target)
+		{
+			for(java.util.function.Consumer<PatchGraph> change:changes) change.accept(target);
+		}
+		
+		@Override
+		public void addRelabelling(VertID a, VertID b) {
+			changes.add(target -> target.addRelabelling(a, b));
+		}
+
+		@Override
+		public void addVertex(CmpVertex vertex) {
+			changes.add(target -> target.addVertex(vertex));
+		}
+
+		@Override
+		public void addToCompatibility(CmpVertex a, CmpVertex b, JUConstants.PAIRCOMPATIBILITY value) {
+			changes.add(target -> target.addToCompatibility(a, b, value));
+		}
+
+		@Override
+		public void removeFromCompatibility(CmpVertex a, CmpVertex b, JUConstants.PAIRCOMPATIBILITY value) {
+			changes.add(target -> target.removeFromCompatibility(a, b, value));
+		}
+
+		@Override
+		public void addTransition(CmpVertex from, Label label, CmpVertex to) {
+			changes.add(target -> target.addTransition(from, label, to));
+		}
+
+		@Override
+		public void removeTransition(CmpVertex from, Label label, CmpVertex to) {
+			changes.add(target -> target.removeTransition(from, label, to));
+		}
+
+		@Override
+		public void setInitial(CmpVertex vertex) {
+			changes.add(target -> target.setInitial(vertex));
+		}
+	}
+	
 	/** Sorts waves in place, in the order of descending scores.
 	 * 
 	 * @param wave wave to sort
@@ -1695,29 +1819,45 @@ public class GD<TARGET_A_TYPE,TARGET_B_TYPE,
 	 * 
 	 * @param matrixND the (non-deterministic) matrix
 	 */
-	protected void populateCurrentWave(LearnerGraphND matrixND) 
+	protected void populateCurrentWave(final LearnerGraphND matrixND) 
 	{
-		for(PairScore pair:frontWave)
+		if (threadsFor(frontWave.size()) <= 1)
+			for(PairScore pair:frontWave)
+				addPairsReachableFrom(pair, matrixND, currentWave);
+		else
+			for(List<PairScore> pairs:mapInParallel(new ArrayList<>(frontWave), pair -> {
+					List<PairScore> wave = new LinkedList<>();addPairsReachableFrom(pair, matrixND, wave);return wave;
+				}))
+				currentWave.addAll(pairs);
+	}
+	
+	/** Adds pairs of states reachable from the supplied pair via matched transitions to the supplied wave, 
+	 * as long as none of these target states are contained in statesInKeyPairs.
+	 *  
+	 * @param pair pair to explore from
+	 * @param matrixND the (non-deterministic) matrix
+	 * @param wave where to add pairs
+	 */
+	protected void addPairsReachableFrom(PairScore pair, LearnerGraphND matrixND, Collection<PairScore> wave)
+	{
+		for(Entry<Label,List<CmpVertex>> targetCollectionA:matrixND.transitionMatrix.get(pair.getQ()).entrySet())
 		{
-			for(Entry<Label,List<CmpVertex>> targetCollectionA:matrixND.transitionMatrix.get(pair.getQ()).entrySet())
-			{
-				List<CmpVertex> targetCollectionB = matrixND.transitionMatrix.get(pair.getR()).get(targetCollectionA.getKey());
-				if (targetCollectionB != null)
-				{// matched pair, now iterate over target states
-					for(CmpVertex targetStateA:targetCollectionA.getValue())
-						for(CmpVertex targetStateB:targetCollectionB)
-							if (!statesInKeyPairs.contains(targetStateA) && !statesInKeyPairs.contains(targetStateB))
+			List<CmpVertex> targetCollectionB = matrixND.transitionMatrix.get(pair.getR()).get(targetCollectionA.getKey());
+			if (targetCollectionB != null)
+			{// matched pair, now iterate over target states
+				for(CmpVertex targetStateA:targetCollectionA.getValue())
+					for(CmpVertex targetStateB:targetCollectionB)
+						if (!statesInKeyPairs.contains(targetStateA) && !statesInKeyPairs.contains(targetStateB))
+						{
+							double score = 0;
+							if (!fallbackToInitialPair)
 							{
-								double score = 0;
-								if (!fallbackToInitialPair)
-								{
-									int scorePosition = pairScores[forward.vertexToIntNR(targetStateA,targetStateB)];
-									score = scoresForward[scorePosition] + scoresInverse[scorePosition];
-								}
-								currentWave.add(new PairScore(targetStateA,targetStateB,(int)(multiplier*score),0));
-								
+								int scorePosition = pairScores[forward.vertexToIntNR(targetStateA,targetStateB)];
+								score = scoresForward[scorePosition] + scoresInverse[scorePosition];
 							}
-				}
+							wave.add(new PairScore(targetStateA,targetStateB,(int)(multiplier*score),0));
+							
+						}
 			}
 		}
 	}
@@ -20,16 +20,20 @@ package statechum.analysis.learning.linear;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 //import java.util.concurrent.atomic.AtomicInteger;
 
 import statechum.Configuration;
 import statechum.Configuration.GDScoreComputationEnum;
 import statechum.Helper;
+import statechum.JUConstants;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.analysis.learning.PairScore;
 import statechum.analysis.learning.StatePair;
@@ -399,14 +403,28 @@ public class GDLearnerGraph
 		return result;
 	}
 	
+	/** Pools of threads used to process rows, one per number of threads. These are shared between graphs and are never shut down,
+	 * so that threads are not created for every step of learning; threads of these pools are daemon threads and thus do not prevent
+	 * the JVM from exiting.
+	 */
+	private static final ConcurrentMap<Integer,ForkJoinPool> rowTaskPools = new ConcurrentHashMap<>();
+
+	/** Returns a pool of threads with the supplied parallelism, creating one if necessary. */
+	public static ForkJoinPool getRowTaskPool(int ThreadNumber)
+	{
+		return rowTaskPools.computeIfAbsent(ThreadNumber, ForkJoinPool::new);
+	}
+
 	/** Runs the supplied handler on all the rows in our matrix, using the specified number of threads.
+	 * Each thread handles a range of rows given by <em>workLoad</em>, hence threads may idle if rows take different time to process; 
+	 * {@link #performRowTasksAdaptive} should be used where handlers do not depend on a thread processing a continuous range of rows.
 	 * 
 	 * @param handlerList A list of handlers. Each instance of this class is associated with a collection of rows and the appropriate method is called for each row.
 	 * The reason we are not using a single instance is to make it possible for different handlers to have instance variables,
 	 * i.e. variables shared between different handlers (and hence different threads).
 	 * 
-	 * @param ThreadNumber the number of threads to create. If this is one, no 
-	 * <em>ExecutorService</em> is created and the handler is called directly.
+	 * @param ThreadNumber the number of threads to use. If this is one, the handler is called directly, otherwise 
+	 * a shared pool of threads is used, obtained from {@link #getRowTaskPool(int)}.
 	 * 
 	 * @param matrix transition matrix to run tasks on
 	 * @param workLoad the which rows to be processed by which threads.
@@ -414,23 +432,16 @@ public class GDLearnerGraph
 	public static <TARGET_TYPE> void performRowTasks(List<? extends HandleRow<TARGET_TYPE>> handlerList,int ThreadNumber, 
 			final Map<CmpVertex,MapWithSearch<Label,Label, TARGET_TYPE>> matrix, final StatesToConsider filter,final int[]workLoad)
 	{
-		//final int[]workLoad = partitionWorkLoad(ThreadNumber,matrix.size());
-		/* The runner of computational threads. */
-		ExecutorService executorService = null;
 		try
 		{
 			if (ThreadNumber > 1)
 			{// Run multi-threaded
-				executorService = Executors.newFixedThreadPool(ThreadNumber);
-
-				/* Stores tasks to complete. */
-				CompletionService<Integer> runner = new ExecutorCompletionService<>(executorService);
-				
+				List<Job<TARGET_TYPE>> jobs = new ArrayList<>(ThreadNumber);
 				for(int count=0;count < ThreadNumber;++count) 
-					runner.submit(new Job<>(workLoad, count, handlerList.get(count), matrix, filter));
+					jobs.add(new Job<>(workLoad, count, handlerList.get(count), matrix, filter));
 			
-				for(int count=0;count < ThreadNumber;++count)
-					runner.take().get();// this will throw an exception if any of the tasks failed.
+				for(Future<Integer> outcome:getRowTaskPool(ThreadNumber).invokeAll(jobs))
+					outcome.get();// this will throw an exception if any of the tasks failed.
 			}
 			else
 				// Run single-threaded.
@@ -441,9 +452,126 @@ public class GDLearnerGraph
 			IllegalArgumentException e = new IllegalArgumentException("failed to compute, the problem is: "+ex, ex);
 			throw e;
 		}
-		finally
+	}
+
+	/** The number of chunks per thread rows are split into by {@link #performRowTasksAdaptive}, so that threads which completed their 
+	 * chunks can take over chunks of those which are still busy.
+	 */
+	public static final int ROW_CHUNKS_PER_THREAD = 16;
+
+	/** Processes a range of rows, splitting it in halves until it is no longer than a chunk. */
+	protected static class RowRangeTask<TARGET_TYPE> extends RecursiveAction
+	{
+		private static final long serialVersionUID = 5106218245476563409L;
+		
+		private final List<Entry<CmpVertex,MapWithSearch<Label,Label,TARGET_TYPE>>> rows;
+		private final List<? extends HandleRow<TARGET_TYPE>> handlerList;
+		
+		/** Numbers of handlers which are not currently used by any thread. */
+		private final BlockingQueue<Integer> freeHandlers;
+		
+		/** Whether each handler has been initialised, only accessed by the thread holding the handler. */
+		private final boolean [] initialised;
+		private final int from, to, chunkSize;
+		
+		public RowRangeTask(List<Entry<CmpVertex,MapWithSearch<Label,Label,TARGET_TYPE>>> r, List<? extends HandleRow<TARGET_TYPE>> h,
+				BlockingQueue<Integer> free, boolean [] init, int f, int t, int chunk)
+		{
+			rows = r;handlerList = h;freeHandlers = free;initialised = init;from = f;to = t;chunkSize = chunk;
+		}
+		
+		@Override
+		protected void compute() 
+		{
+			if (to - from > chunkSize)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new RowRangeTask<>(rows, handlerList, freeHandlers, initialised, from, middle, chunkSize),
+						new RowRangeTask<>(rows, handlerList, freeHandlers, initialised, middle, to, chunkSize));
+				return;
+			}
+			
+			int handlerNo = 0;
+			try
+			{// there are as many handlers as threads in the pool, hence one is almost always available.
+				handlerNo = freeHandlers.take();
+			}
+			catch(InterruptedException ex)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalArgumentException("interrupted while waiting for a row handler", ex);
+			}
+			try
+			{
+				HandleRow<TARGET_TYPE> handler = handlerList.get(handlerNo);
+				if (!initialised[handlerNo])
+				{
+					try
+					{
+						handler.init(handlerNo);
+					}
+					catch(InstantiationException | IllegalAccessException ex)
+					{
+						Helper.throwUnchecked("failed to initialise a row handler", ex);
+					}
+					initialised[handlerNo] = true;
+				}
+				for(int row=from;row<to;++row)
+					handler.handleEntry(rows.get(row), handlerNo);
+			}
+			finally
+			{
+				freeHandlers.add(handlerNo);
+			}
+		}
+	}
+	
+	/** Runs the supplied handler on all the rows in our matrix, using the specified number of threads.
+	 * Unlike {@link #performRowTasks}, rows are not split between threads in advance: they are split into chunks 
+	 * which are processed by a shared pool of threads, obtained from {@link #getRowTaskPool(int)}, where threads which
+	 * have nothing to do take chunks queued for other threads. This balances the load where
+	 * some rows take much longer to process than others, such as for states of a PTA with many incoming transitions.
+	 * <p>
+	 * A handler is called by at most one thread at a time and is passed its position in <em>handlerList</em> as the thread number,
+	 * but will generally be called for rows from a number of non-adjacent chunks in an arbitrary order. Handlers are initialised before
+	 * they are first used and are not initialised at all if there are fewer chunks than threads.
+	 * 
+	 * @param handlerList handlers, there should be at least as many as the number of threads.
+	 * @param ThreadNumber the number of threads to use. If this is one, the handler is called directly.
+	 * @param matrix transition matrix to run tasks on
+	 * @param filter determines rows to process.
+	 */
+	public static <TARGET_TYPE> void performRowTasksAdaptive(List<? extends HandleRow<TARGET_TYPE>> handlerList,int ThreadNumber, 
+			final Map<CmpVertex,MapWithSearch<Label,Label, TARGET_TYPE>> matrix, final StatesToConsider filter)
+	{
+		List<Entry<CmpVertex,MapWithSearch<Label,Label,TARGET_TYPE>>> rows = new ArrayList<>(matrix.size());
+		for(Entry<CmpVertex,MapWithSearch<Label,Label,TARGET_TYPE>> entry:matrix.entrySet())
+			if (filter.stateToConsider(entry.getKey()))
+				rows.add(entry);
+		if (rows.isEmpty())
+			return;
+		
+		try
+		{
+			if (ThreadNumber > 1)
+			{
+				BlockingQueue<Integer> freeHandlers = new ArrayBlockingQueue<>(ThreadNumber);
+				for(int count=0;count < ThreadNumber;++count) freeHandlers.add(count);
+				int chunkSize = Math.max(1, rows.size()/(ThreadNumber*ROW_CHUNKS_PER_THREAD));
+				getRowTaskPool(ThreadNumber).invoke(new RowRangeTask<>(rows, handlerList, freeHandlers, new boolean[ThreadNumber], 0, rows.size(), chunkSize));
+			}
+			else
+			{// Run single-threaded.
+				HandleRow<TARGET_TYPE> handler = handlerList.get(0);
+				handler.init(0);
+				for(Entry<CmpVertex,MapWithSearch<Label,Label,TARGET_TYPE>> row:rows)
+					handler.handleEntry(row, 0);
+			}
+		}
+		catch(Exception ex)
 		{
-			if (executorService != null) executorService.shutdown();
+			IllegalArgumentException e = new IllegalArgumentException("failed to compute, the problem is: "+ex, ex);
+			throw e;
 		}
 	}
 
@@ -552,13 +680,11 @@ public class GDLearnerGraph
 			 */
 			Set<Integer> sourceData = new TreeSet<>();
 
-			/**
-			 * Used to detect non-consecutive state pair numbers - in this case an internal error should be reported.
-			 */
-			int prevStatePairNumber = -1;
-
 			@Override
 			public void handleEntry(Entry<CmpVertex, MapWithSearch<Label, Label, List<CmpVertex>>> entryA, @SuppressWarnings("unused") int threadNo) {// we are never called with entryA which has been filtered out.
+				// Used to detect non-consecutive state pair numbers in a row - in this case an internal error should be reported.
+				// Rows are not necessarily handled in order, hence this is only checked within a row.
+				int prevStatePairNumber = -1;
 				Collection<Entry<Label, List<CmpVertex>>> rowA_collection = matrixInverse.transitionMatrix.get(entryA.getKey()).entrySet();// the "inverse" row
 				BitVector inputsAcceptedFromA = inputsAccepted.get(entryA.getKey()), inputsRejectedFromA = inputsRejected.get(entryA.getKey());
 
@@ -617,8 +743,7 @@ public class GDLearnerGraph
 				}// B-loop
 			}
 		});
-		performRowTasks(handlerList, ThreadNumber, matrixForward.transitionMatrix, filter,
-				GDLearnerGraph.partitionWorkLoadTriangular(ThreadNumber,matrixForward.transitionMatrix.size()));
+		performRowTasksAdaptive(handlerList, ThreadNumber, matrixForward.transitionMatrix, filter);
 		//inputsAccepted=null;inputsRejected=null;
 		
 		// At this point, we've marked all clearly incompatible pairs of states and need to propagate 
@@ -905,7 +1030,7 @@ public class GDLearnerGraph
 		final Map<CmpVertex, GraphAndWalk>[] workerMap =new Map[ThreadNumber];
  
 		List<HandleRow<List<CmpVertex>>> handlerList = new LinkedList<>();
-		for(int threadCnt=0;threadCnt<ThreadNumber;++threadCnt)// this is not doing workload balancing because it should iterate over currently-used left-hand sides, not just all possible ones.
+		for(int threadCnt=0;threadCnt<ThreadNumber;++threadCnt)// workload is balanced by performRowTasksAdaptive, since the time taken to build walks varies a lot between states.
 		{
 			workerMap[threadCnt] = new TreeMap<>();
 		
@@ -964,7 +1089,7 @@ public class GDLearnerGraph
 				}
 			});
 		}
-		GDLearnerGraph.performRowTasks(handlerList, ThreadNumber, matrixForward.transitionMatrix,new LearnerGraphND.ignoreNoneClass(), GDLearnerGraph.partitionWorkLoadLinear(ThreadNumber,matrixForward.getStateNumber()));
+		GDLearnerGraph.performRowTasksAdaptive(handlerList, ThreadNumber, matrixForward.transitionMatrix,new LearnerGraphND.ignoreNoneClass());
 		
 		// Now collect the results
 		for(int th=0;th<ThreadNumber;++th) stateToCorrespondingGraph.putAll(workerMap[th]);
@@ -1164,13 +1289,7 @@ public class GDLearnerGraph
 			public void init(int threadNo) {
 
 				// instances of ddrh are stateful, hence we need one per thread.
-				if (ddrh == null) ddrhInstance = new DDRH_default();
-				else
-					try {// from http://forums.sun.com/thread.jspa?threadID=767974
-						ddrhInstance = ddrh.getDeclaredConstructor(new Class[]{GDLearnerGraph.class}).newInstance(new Object[]{GDLearnerGraph.this});
-					} catch (Exception e) {
-						Helper.throwUnchecked("failed to create an instance of ddrh", e);
-					}
+				ddrhInstance = createDDRH(ddrh);
 
 				if (config.getGdScoreComputation() == GDScoreComputationEnum.GD_RH) {// since we need 'em, allocate the arrays.
 					tmpAi = new IntArrayList(getExpectedIncomingPerPairOfStates() * pairsNumber);
@@ -1384,21 +1503,251 @@ public class GDLearnerGraph
 			}
 			Ap[pairsNumber]=prevLastPos;
 			result = new LSolver(Ap,Ai,Ax,b,new double[pairsNumber]);
+			result.configure(config);
 		}
 		else
-		{// we are here to compute the right-hand side only, hence build a dummy solver.
-			result = new LSolver(pairsNumber)
+			result = buildDirectSolver(b);// we are here to compute the right-hand side only, hence build a dummy solver.
+		return result;
+	}
+
+	/** Creates an instance of a class computing diagonal and the right-hand side, {@link DDRH_default} if <em>ddrh</em> is null. */
+	protected DetermineDiagonalAndRightHandSideInterface createDDRH(Class<? extends DetermineDiagonalAndRightHandSideInterface> ddrh)
+	{
+		DetermineDiagonalAndRightHandSideInterface ddrhInstance = null;
+		if (ddrh == null) ddrhInstance = new DDRH_default();
+		else
+			try {// from http://forums.sun.com/thread.jspa?threadID=767974
+				ddrhInstance = ddrh.getDeclaredConstructor(new Class[]{GDLearnerGraph.class}).newInstance(new Object[]{GDLearnerGraph.this});
+			} catch (Exception e) {
+				Helper.throwUnchecked("failed to create an instance of ddrh", e);
+			}
+		return ddrhInstance;
+	}
+
+	/** Builds a dummy solver where the solution is the right-hand side, used where scores are computed with 
+	 * {@link GDScoreComputationEnum#GD_DIRECT}.
+	 */
+	protected static LSolver buildDirectSolver(final double [] b)
+	{
+		return new LSolver(b.length)
+		{
+			{// constructor: copy b to the result column
+				System.arraycopy(b, 0, j_x, 0, b.length);
+			}
+			
+			@Override
+			public void solve(@SuppressWarnings("unused") int threads)
+			{// a dummy method
+			}
+		};
+	}
+
+	/** Builds an index of pairs of states that may have non-zero compatibility scores and determines which of them are incompatible, 
+	 * as a replacement of {@link #findIncompatiblePairs(int[], int)} where the number of states is too large to number all pairs of them.
+	 * <p>
+	 * A pair of states without outgoing transitions with the same label has a zero on the right-hand side and there are no pairs
+	 * its score depends on, hence its score is zero (or it is incompatible). The remaining pairs are those which appear as 
+	 * sources of matched transitions in <em>matrixInverse</em>: these are the only pairs indexed, obtained by 
+	 * pairing states with outgoing transitions with the same label. Incompatibility is propagated backwards from 
+	 * incompatible pairs in the same way as by {@link #findIncompatiblePairs(int[], int)}, including from pairs recorded as 
+	 * incompatible in the graph which are not in the index. 
+	 * <p>
+	 * Compatible pairs are numbered; these numbers are columns for these pairs in the matrix built by {@link #buildMatrixSparse}.
+	 * 
+	 * @return index of pairs.
+	 */
+	public SparsePairIndex buildSparsePairIndex()
+	{
+		Map<Label,IntArrayList> statesWithLabel = new TreeMap<>();
+		for(Entry<CmpVertex,MapWithSearch<Label,Label,List<CmpVertex>>> entry:matrixForward.transitionMatrix.entrySet())
+		{
+			Integer state = getStatesToNumber().get(entry.getKey());
+			if (state != null)
+				for(Label label:entry.getValue().keySet())
+				{
+					IntArrayList states = statesWithLabel.get(label);
+					if (states == null)
+					{
+						states = new IntArrayList();statesWithLabel.put(label, states);
+					}
+					states.add(state);
+				}
+		}
+		SparsePairIndex pairs = new SparsePairIndex(getStateNumber()*getExpectedIncomingPerPairOfStates());
+		for(IntArrayList states:statesWithLabel.values())
+			for(int i=0;i<states.size();++i)
+				for(int j=0;j<=i;++j)
+					pairs.add(states.getQuick(i), states.getQuick(j));
+
+		// Pairs of states to propagate incompatibility from, as pairs of numbers.
+		IntArrayList boundary = new IntArrayList();
+		for(int pair=0;pair<pairs.size();++pair)
+		{
+			CmpVertex stateA = getNumberToState()[pairs.getFirst(pair)], stateB = getNumberToState()[pairs.getSecond(pair)];
+			if (!AbstractLearnerGraph.checkCompatible(stateB, stateA, pairCompatibility) ||
+					intersects(inputsAccepted.get(stateA), inputsRejected.get(stateB)) || intersects(inputsRejected.get(stateA), inputsAccepted.get(stateB)))
 			{
-				{// constructor: copy b to the result column
-					System.arraycopy(b, 0, j_x, 0, pairsNumber);
+				pairs.setNumber(pair, PAIR_INCOMPATIBLE);boundary.add(pairs.getFirst(pair));boundary.add(pairs.getSecond(pair));
+			}
+		}
+		for(Entry<CmpVertex,Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY>> entry:pairCompatibility.compatibility.entrySet())
+		{
+			Integer stateA = getStatesToNumber().get(entry.getKey());
+			if (stateA != null)
+				for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> compat:entry.getValue().entrySet())
+				{
+					Integer stateB = getStatesToNumber().get(compat.getKey());
+					if (stateB != null && compat.getValue() == JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE && pairs.find(stateA, stateB) < 0)
+					{
+						boundary.add(stateA);boundary.add(stateB);
+					}
 				}
-				
-				@Override
-				public void solve(@SuppressWarnings("unused") int threads)
-				{// a dummy method
+		}
+		
+		for(int position=0;position<boundary.size();position+=2)
+		{
+			Map<Label,List<CmpVertex>> rowB = matrixInverse.transitionMatrix.get(getNumberToState()[boundary.getQuick(position+1)]);
+			for(Entry<Label,List<CmpVertex>> outLabel:matrixInverse.transitionMatrix.get(getNumberToState()[boundary.getQuick(position)]).entrySet())
+			{
+				List<CmpVertex> to = rowB.get(outLabel.getKey());
+				if (to != null)
+					for(CmpVertex srcA:outLabel.getValue())
+						for(CmpVertex srcB:to)
+						{
+							int sourcePair = pairs.find(getStatesToNumber().get(srcA), getStatesToNumber().get(srcB));
+							if (sourcePair >= 0 && pairs.getNumber(sourcePair) == PAIR_OK)
+							{
+								pairs.setNumber(sourcePair, PAIR_INCOMPATIBLE);boundary.add(pairs.getFirst(sourcePair));boundary.add(pairs.getSecond(sourcePair));
+							}
+						}
+			}
+		}
+		pairs.numberCompatiblePairs();
+		return pairs;
+	}
+
+	/** Builds a system of equations for pairs in the supplied index, in the same way as {@link #buildMatrix_internal} does for all pairs.
+	 * Columns are split between threads in contiguous ranges, so that the parts of the matrix built by them can simply be concatenated.
+	 * 
+	 * @param pairs pairs to build equations for, obtained from {@link #buildSparsePairIndex()}.
+	 * @param ThreadNumber the number of threads to use
+	 * @param ddrh class to compute diagonal and right-hand side in state comparisons, null for {@link DDRH_default}.
+	 * @return solver for the system of equations.
+	 */
+	public LSolver buildMatrixSparse(final SparsePairIndex pairs, int ThreadNumber, 
+			final Class<? extends DetermineDiagonalAndRightHandSideInterface> ddrh)
+	{
+		final int pairsNumber = pairs.getCompatiblePairNumber();
+		final int [] columnToPair = new int[pairsNumber];
+		for(int pair=0;pair<pairs.size();++pair)
+			if (pairs.getNumber(pair) >= 0) columnToPair[pairs.getNumber(pair)] = pair;
+		
+		final boolean buildMatrix = config.getGdScoreComputation() == GDScoreComputationEnum.GD_RH;
+		final double k = config.getAttenuationK();
+		final double[] b = new double[pairsNumber];
+		final int[] Ap = buildMatrix?new int[pairsNumber+1]:null;
+		final int threadNumber = Math.max(1, Math.min(ThreadNumber, pairsNumber));
+		final int [] workLoad = partitionWorkLoadLinear(threadNumber, pairsNumber);
+		final IntArrayList[] Ai_array = new IntArrayList[threadNumber];
+		final DoubleArrayList[] Ax_array = new DoubleArrayList[threadNumber];
+		
+		List<Callable<Integer>> jobs = new ArrayList<>(threadNumber);
+		for(int threadCnt=0;threadCnt<threadNumber;++threadCnt)
+		{
+			final int threadNo = threadCnt;
+			jobs.add(() -> {
+				DetermineDiagonalAndRightHandSideInterface ddrhInstance = createDDRH(ddrh);
+				IntArrayList Ai = new IntArrayList(), tmpAi = new IntArrayList();
+				DoubleArrayList Ax = new DoubleArrayList();
+				Set<Integer> sourceData = new TreeSet<>();
+				for(int column=workLoad[threadNo];column<workLoad[threadNo+1];++column)
+				{
+					int pair = columnToPair[column];
+					CmpVertex stateA = getNumberToState()[pairs.getFirst(pair)], stateB = getNumberToState()[pairs.getSecond(pair)];
+					ddrhInstance.compute(stateA, stateB, matrixForward.transitionMatrix.get(stateA), matrixForward.transitionMatrix.get(stateB));
+					b[column] = ddrhInstance.getRightHandSide();
+					if (buildMatrix)
+					{
+						tmpAi.clear();tmpAi.add(column);// we definitely need a diagonal element, hence add it.
+						Map<Label,List<CmpVertex>> rowB = matrixInverse.transitionMatrix.get(stateB);
+						for(Entry<Label,List<CmpVertex>> outLabel:matrixInverse.transitionMatrix.get(stateA).entrySet())
+						{
+							List<CmpVertex> to = rowB.get(outLabel.getKey());
+							if (to != null)
+							{// matched pair of transitions, add the pairs leading to the current pair, each of them once for every label.
+								sourceData.clear();
+								for(CmpVertex srcA:outLabel.getValue())
+									for(CmpVertex srcB:to)
+									{
+										int sourcePair = pairs.find(getStatesToNumber().get(srcA), getStatesToNumber().get(srcB));
+										int sourceColumn = sourcePair < 0?PAIR_INCOMPATIBLE:pairs.getNumber(sourcePair);
+										if (sourceColumn >= 0 && sourceData.add(sourceColumn))
+											tmpAi.add(sourceColumn);
+									}
+							}
+						}
+						tmpAi.sort();
+						Ap[column] = Ai.size();// relative to the start of data of this thread, adjusted when results are combined.
+						int prev = -1;boolean diagonalSet = false;
+						for(int i=0;i<tmpAi.size();++i)
+						{
+							int currentValue = tmpAi.getQuick(i);
+							if (currentValue != prev)
+							{
+								prev = currentValue;
+								if (!diagonalSet && currentValue == column)
+								{
+									double diagonal = ddrhInstance.getDiagonal();
+									if (diagonal == 0)
+										diagonal = 1;// if neither element of a pair of states has an outgoing transition, force the identity to ensure that the solution will be zero.
+									Ax.add(diagonal);diagonalSet = true;
+								}
+								else
+									Ax.add(-k);
+								Ai.add(currentValue);
+							}
+							else
+								Ax.setQuick(Ax.size()-1, Ax.getQuick(Ax.size()-1) - k);
+						}
+					}
 				}
-			};
+				Ai_array[threadNo] = Ai;Ax_array[threadNo] = Ax;
+				return 0;
+			});
+		}
+		
+		try
+		{
+			if (threadNumber > 1)
+			{
+				for(Future<Integer> outcome:getRowTaskPool(threadNumber).invokeAll(jobs))
+					outcome.get();// this will throw an exception if any of the tasks failed.
+			}
+			else
+				jobs.get(0).call();
+		}
+		catch(Exception ex)
+		{
+			throw new IllegalArgumentException("failed to compute, the problem is: "+ex, ex);
+		}
+		
+		if (!buildMatrix)
+			return buildDirectSolver(b);
+		
+		int size = 0;for(int thread=0;thread<threadNumber;++thread) size+=Ai_array[thread].size();
+		int[] Ai = new int[size];double[] Ax = new double[size];
+		int offset = 0;
+		for(int thread=0;thread<threadNumber;++thread)
+		{
+			for(int column=workLoad[thread];column<workLoad[thread+1];++column)
+				Ap[column]+=offset;
+			System.arraycopy(Ai_array[thread].elements(), 0, Ai, offset, Ai_array[thread].size());
+			System.arraycopy(Ax_array[thread].elements(), 0, Ax, offset, Ax_array[thread].size());
+			offset+=Ai_array[thread].size();
 		}
+		Ap[pairsNumber]=offset;
+		LSolver result = new LSolver(Ap,Ai,Ax,b,new double[pairsNumber]);
+		result.configure(config);
 		return result;
 	}
 
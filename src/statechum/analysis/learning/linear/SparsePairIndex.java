@@ -0,0 +1,161 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.linear;
+
+import java.util.Arrays;
+
+/** Numbers a subset of unordered pairs of states, where states are identified by numbers assigned to them by {@link GDLearnerGraph}.
+ * This is used in place of the triangular numbering of all pairs of states (<em>vertexToIntNR</em>) where only a small fraction
+ * of pairs is relevant, so that memory taken is proportional to the number of such pairs rather than to the square of the number of states.
+ * <p>
+ * Each pair has an index, assigned in the order pairs are added, and a number which is either {@link GDLearnerGraph#PAIR_OK},
+ * {@link GDLearnerGraph#PAIR_INCOMPATIBLE} or the index of a column for this pair in a system of equations.
+ * Pairs are found by open addressing in an array of keys, each combining the numbers of two states.
+ *
+ * @author agent
+ */
+public class SparsePairIndex
+{
+	/** Keys of pairs, a zero means that the slot is unused, hence keys are stored incremented by one. */
+	protected long [] keys;
+
+	/** Indices of pairs in the corresponding slots of <em>keys</em>. */
+	protected int [] slotToPair;
+
+	/** States in each pair, <em>first</em> is never less than <em>second</em>. */
+	protected int [] first, second;
+
+	/** Numbers associated with pairs. */
+	protected int [] number;
+
+	protected int size = 0;
+
+	/** The number of compatible pairs, set by {@link #numberCompatiblePairs()}. */
+	protected int compatiblePairNumber = -1;
+
+	public SparsePairIndex(int expectedPairs)
+	{
+		int capacity = 16;
+		while(capacity < expectedPairs*2 && capacity < (1 << 30)) capacity <<= 1;
+		keys = new long[capacity];slotToPair = new int[capacity];
+		int pairCapacity = Math.max(16, expectedPairs);
+		first = new int[pairCapacity];second = new int[pairCapacity];number = new int[pairCapacity];
+	}
+
+	/** The number of pairs in the index. */
+	public int size()
+	{
+		return size;
+	}
+
+	protected static long key(int stateA, int stateB)
+	{
+		return stateA >= stateB?((long)stateA << 32 | stateB)+1:((long)stateB << 32 | stateA)+1;
+	}
+
+	protected static int slot(long key, int mask)
+	{
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash >>> 32) & mask;
+	}
+
+	/** Returns the index of the pair of the supplied states, -1 if there is no such pair. The order of states does not matter. */
+	public int find(int stateA, int stateB)
+	{
+		long key = key(stateA, stateB);
+		int mask = keys.length-1;
+		for(int pos = slot(key, mask);keys[pos] != 0;pos = (pos+1) & mask)
+			if (keys[pos] == key)
+				return slotToPair[pos];
+		return -1;
+	}
+
+	/** Adds a pair of states unless it is already known, returning its index. New pairs are associated with {@link GDLearnerGraph#PAIR_OK}. */
+	public int add(int stateA, int stateB)
+	{
+		if (size*2 >= keys.length)
+			rehash();
+		long key = key(stateA, stateB);
+		int mask = keys.length-1, pos = slot(key, mask);
+		for(;keys[pos] != 0;pos = (pos+1) & mask)
+			if (keys[pos] == key)
+				return slotToPair[pos];
+		if (size == first.length)
+		{
+			int newCapacity = first.length*2;
+			first = Arrays.copyOf(first, newCapacity);second = Arrays.copyOf(second, newCapacity);number = Arrays.copyOf(number, newCapacity);
+		}
+		keys[pos] = key;slotToPair[pos] = size;
+		first[size] = Math.max(stateA, stateB);second[size] = Math.min(stateA, stateB);number[size] = GDLearnerGraph.PAIR_OK;
+		return size++;
+	}
+
+	protected void rehash()
+	{
+		long [] oldKeys = keys;int [] oldSlotToPair = slotToPair;
+		keys = new long[oldKeys.length*2];slotToPair = new int[keys.length];
+		int mask = keys.length-1;
+		for(int i=0;i<oldKeys.length;++i)
+			if (oldKeys[i] != 0)
+			{
+				int pos = slot(oldKeys[i], mask);
+				while(keys[pos] != 0) pos = (pos+1) & mask;
+				keys[pos] = oldKeys[i];slotToPair[pos] = oldSlotToPair[i];
+			}
+	}
+
+	/** The state in a pair with the larger number. */
+	public int getFirst(int pair)
+	{
+		return first[pair];
+	}
+
+	/** The state in a pair with the smaller number. */
+	public int getSecond(int pair)
+	{
+		return second[pair];
+	}
+
+	public int getNumber(int pair)
+	{
+		return number[pair];
+	}
+
+	public void setNumber(int pair, int value)
+	{
+		number[pair] = value;
+	}
+
+	/** Sequentially numbers pairs associated with {@link GDLearnerGraph#PAIR_OK}, returns the number of such pairs. */
+	public int numberCompatiblePairs()
+	{
+		int num = 0;
+		for(int i=0;i<size;++i)
+			if (number[i] == GDLearnerGraph.PAIR_OK) number[i] = num++;
+		compatiblePairNumber = num;
+		return num;
+	}
+
+	/** The number of compatible pairs, only available after {@link #numberCompatiblePairs()} has been called. */
+	public int getCompatiblePairNumber()
+	{
+		if (compatiblePairNumber < 0)
+			throw new IllegalArgumentException("pairs have not been numbered");
+		return compatiblePairNumber;
+	}
+}
@@ -0,0 +1,316 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.observers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Positions of children of the top-level element in a log of a learner recorded by {@link RecordProgressDecorator} as
+ * a single XML file. With an index, {@link LearnerSimulator} can start replaying from any of the recorded elements
+ * without parsing those before it.
+ * <p>
+ * An index is built by a single pass over a log which only looks at the structure of tags and does not construct anything
+ * other than the index; it is usually stored next to the log, in a file returned by {@link #getIndexFile(File)}.
+ * Offsets are in bytes, hence the log should be in an encoding where the characters &lt; and &gt; are single bytes, such as
+ * UTF-8 used by {@link RecordProgressDecorator}.
+ *
+ * @author agent
+ */
+public class LearnerLogIndex
+{
+	/** Identifies files with an index, "SCLI". */
+	public static final int MAGIC = 0x53434c49;
+	public static final int VERSION = 1;
+
+	protected String topElementName = null;
+	protected final List<String> names = new ArrayList<>();
+	protected long [] offsets = new long[16], lengths = new long[16];
+
+	/** Returns the name of a file where an index for the supplied log is stored. */
+	public static File getIndexFile(File log)
+	{
+		return new File(log.getPath()+".idx");
+	}
+
+	/** The number of elements in the index. */
+	public int size()
+	{
+		return names.size();
+	}
+
+	public String getTopElementName()
+	{
+		return topElementName;
+	}
+
+	public String getName(int element)
+	{
+		return names.get(element);
+	}
+
+	/** The position of the first byte of the element in a log. */
+	public long getOffset(int element)
+	{
+		checkElement(element);
+		return offsets[element];
+	}
+
+	/** The number of bytes taken by the element, including the start and the end tag. */
+	public long getLength(int element)
+	{
+		checkElement(element);
+		return lengths[element];
+	}
+
+	protected void checkElement(int element)
+	{
+		if (element < 0 || element >= names.size())
+			throw new IllegalArgumentException("invalid element number "+element);
+	}
+
+	protected void add(String name, long offset, long length)
+	{
+		if (names.size() == offsets.length)
+		{
+			offsets = Arrays.copyOf(offsets, offsets.length*2);lengths = Arrays.copyOf(lengths, lengths.length*2);
+		}
+		offsets[names.size()]=offset;lengths[names.size()]=length;names.add(name);
+	}
+
+	/** Tracks the position in the stream being indexed. */
+	protected static class PositionedStream
+	{
+		protected final InputStream in;
+		protected long position = 0;
+
+		public PositionedStream(InputStream data)
+		{
+			in = data;
+		}
+
+		/** Returns the next byte, throws {@link EOFException} at the end of the stream. */
+		public int read() throws IOException
+		{
+			int result = in.read();
+			if (result < 0)
+				throw new EOFException("unexpected end of XML");
+			++position;
+			return result;
+		}
+
+		/** Skips everything until the supplied sequence of bytes, including the sequence. Where a byte does not continue a partial match,
+		 * the match falls back to the longest prefix of the sequence that is also a suffix of what was matched, the way
+		 * Knuth-Morris-Pratt algorithm does, so that sequences such as <em>]]&gt;</em> are found after <em>]</em>.
+		 */
+		public void skipPast(String terminator) throws IOException
+		{
+			int [] fallback = new int[terminator.length()];// the length of the longest proper prefix of terminator[0..i] that is also its suffix
+			for(int i=1, k=0;i<terminator.length();++i)
+			{
+				while(k > 0 && terminator.charAt(i) != terminator.charAt(k))
+					k = fallback[k-1];
+				if (terminator.charAt(i) == terminator.charAt(k))
+					++k;
+				fallback[i] = k;
+			}
+
+			int matched = 0;
+			while(matched < terminator.length())
+			{
+				int ch = read();
+				while(matched > 0 && ch != terminator.charAt(matched))
+					matched = fallback[matched-1];
+				if (ch == terminator.charAt(matched))
+					++matched;
+			}
+		}
+	}
+
+	/** Builds an index of the supplied log. The stream is closed when done.
+	 *
+	 * @param log the log to index
+	 * @return index of the log.
+	 * @throws IOException if the log cannot be read or its structure is invalid.
+	 */
+	public static LearnerLogIndex build(InputStream log) throws IOException
+	{
+		LearnerLogIndex index = new LearnerLogIndex();
+		try(InputStream data = new BufferedInputStream(log))
+		{
+			PositionedStream in = new PositionedStream(data);
+			int depth = 0, ch;
+			long elementStart = 0;
+			String elementName = null;
+			while((ch = data.read()) >= 0)
+			{
+				++in.position;
+				if (ch != '<')
+					continue;
+				long tagStart = in.position-1;
+				ch = in.read();
+				if (ch == '?')
+					in.skipPast("?>");
+				else
+				if (ch == '!')
+				{
+					ch = in.read();
+					if (ch == '-')
+						in.skipPast("-->");
+					else
+					if (ch == '[')
+						in.skipPast("]]>");
+					else
+					{// DOCTYPE, possibly with an internal subset
+						int brackets = 0;
+						while(ch != '>' || brackets > 0)
+						{
+							if (ch == '[') ++brackets;else if (ch == ']') --brackets;
+							ch = in.read();
+						}
+					}
+				}
+				else
+				if (ch == '/')
+				{
+					in.skipPast(">");
+					--depth;
+					if (depth < 0)
+						throw new IOException("unbalanced end tag at offset "+tagStart);
+					if (depth == 1)
+						index.add(elementName, elementStart, in.position-elementStart);
+				}
+				else
+				{
+					ByteArrayOutputStream name = new ByteArrayOutputStream();
+					while(ch != '>' && ch != '/' && !Character.isWhitespace(ch))
+					{
+						name.write(ch);ch = in.read();
+					}
+					int quote = 0, previous = 0;
+					while(ch != '>' || quote != 0)
+					{
+						if (quote == 0 && (ch == '"' || ch == '\''))
+							quote = ch;
+						else
+						if (ch == quote)
+							quote = 0;
+						previous = ch;ch = in.read();
+					}
+					boolean empty = previous == '/';
+					String tagName = new String(name.toByteArray(),StandardCharsets.UTF_8);
+					if (depth == 0)
+					{
+						if (index.topElementName != null)
+							throw new IOException("more than one top-level element");
+						index.topElementName = tagName;
+					}
+					else
+					if (depth == 1)
+					{
+						elementStart = tagStart;elementName = tagName;
+						if (empty)
+							index.add(elementName, elementStart, in.position-elementStart);
+					}
+					if (!empty)
+						++depth;
+				}
+			}
+			if (index.topElementName == null || depth != 0)
+				throw new IOException("incomplete XML");
+		}
+		return index;
+	}
+
+	/** Builds an index of a log stored in a file and writes it into a file returned by {@link #getIndexFile(File)}. */
+	public static LearnerLogIndex buildAndStore(File log) throws IOException
+	{
+		LearnerLogIndex index = build(new FileInputStream(log));
+		try(OutputStream out = new FileOutputStream(getIndexFile(log)))
+		{
+			index.write(out);
+		}
+		return index;
+	}
+
+	/** Writes this index to the supplied stream, flushing but not closing it. */
+	public void write(OutputStream outStream) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outStream));
+		out.writeInt(MAGIC);out.writeInt(VERSION);
+		out.writeUTF(topElementName);out.writeInt(size());
+		for(int i=0;i<size();++i)
+		{
+			out.writeUTF(names.get(i));out.writeLong(offsets[i]);out.writeLong(lengths[i]);
+		}
+		out.flush();
+	}
+
+	/** Loads an index from the supplied stream, closing it when done. */
+	public static LearnerLogIndex read(InputStream inStream) throws IOException
+	{
+		LearnerLogIndex index = new LearnerLogIndex();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(inStream)))
+		{
+			if (in.readInt() != MAGIC)
+				throw new IllegalArgumentException("not an index of a log");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IllegalArgumentException("unsupported version "+version+" of an index");
+			index.topElementName = in.readUTF();
+			int count = in.readInt();
+			for(int i=0;i<count;++i)
+				index.add(in.readUTF(), in.readLong(), in.readLong());
+		}
+		return index;
+	}
+
+	/** Returns a stream with a document containing an empty top-level element followed by everything in the log
+	 * from the start of the supplied element, so that this element becomes the first child of the top-level element.
+	 * This is an XML document with the same end as the log, hence it can be parsed by {@link XMLElementStream}.
+	 *
+	 * @param log file with the log
+	 * @param element the first element to read
+	 * @return stream starting from the supplied element.
+	 */
+	public InputStream openFrom(File log, int element) throws IOException
+	{
+		long offset = getOffset(element);
+		RandomAccessFile file = new RandomAccessFile(log, "r");
+		file.seek(offset);
+		InputStream top = new ByteArrayInputStream(("<"+topElementName+">").getBytes(StandardCharsets.UTF_8));
+		return new SequenceInputStream(top, new BufferedInputStream(Channels.newInputStream(file.getChannel())));
+	}
+}
@@ -18,10 +18,12 @@
 
 package statechum.analysis.learning.observers;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -71,6 +73,9 @@ public class LearnerSimulator extends ProgressDecorator
 
 	/** Zip input stream. */
 	protected ZipInputStream inputZip = null;
+
+	/** Elements to play back if these are read one at a time rather than loaded all at once. */
+	protected XMLElementStream elementStream = null;
 	
 	/** Graph compressor. */
 	protected GraphSeries series = null;
@@ -218,6 +223,9 @@ public class LearnerSimulator extends ProgressDecorator
 			}
 		}
 		else
+		if (elementStream != null)
+			result = elementStream.next();
+		else
 		{
 			do
 			{
@@ -272,9 +280,50 @@ public class LearnerSimulator extends ProgressDecorator
 		}
 	}
 	
+	/** Constructs a simulator which reads recorded elements one at a time from the supplied stream of them,
+	 * so that only one of them is in memory at any time.
+	 *
+	 * @param stream elements to play back, closed by {@link #close()}.
+	 * @param conv label converter to use
+	 */
+	public LearnerSimulator(XMLElementStream stream, ConvertALabel conv)
+	{
+		super(conv);decoratedLearner=this;readZip=false;
+		elementStream = stream;doc = elementStream.getDocument();
+	}
+
+	/** Constructs a simulator which plays back a log recorded as a single XML file, reading recorded elements one at a time.
+	 *
+	 * @param inStream the log
+	 * @param conv label converter to use
+	 */
+	public static LearnerSimulator createStreamingSimulator(InputStream inStream, ConvertALabel conv)
+	{
+		return new LearnerSimulator(new XMLElementStream(inStream, null), conv);
+	}
+
+	/** Constructs a simulator which plays back a log recorded as a single XML file, starting from the supplied element.
+	 * The index makes it possible to go directly to that element without parsing those preceding it.
+	 * Where graphs in a log are compressed, each of them depends on the previous ones, hence learning can only be played back
+	 * from the start of the log; starting from another element is useful for extracting specific data.
+	 *
+	 * @param log file with the log
+	 * @param index index of the log
+	 * @param element the number of the first element to play back.
+	 * @param conv label converter to use
+	 */
+	public static LearnerSimulator createStreamingSimulator(File log, LearnerLogIndex index, int element, ConvertALabel conv) throws IOException
+	{
+		return new LearnerSimulator(new XMLElementStream(index.openFrom(log, element), StandardCharsets.UTF_8.name()), conv);
+	}
+
 	public void close()
 	{
 		childElements = null;childOfTopElement=JUConstants.intUNKNOWN;
+		if (elementStream != null)
+		{
+			elementStream.close();elementStream = null;
+		}
 		if (inputZip != null)
 		{
 			try {
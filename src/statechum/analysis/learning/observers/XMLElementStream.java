@@ -0,0 +1,190 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.observers;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/** Reads children of the top-level element of an XML file one at a time, using StAX. Each child is returned as a DOM element
+ * so that it can be processed in the same way as an element of a document loaded in full, but only one of them is in memory at a time.
+ * <p>
+ * Elements are built in the same way as by a DOM parser that is not namespace-aware, which is how
+ * {@link LearnerSimulator#getDocumentOfXML(java.io.Reader)} loads documents: names of elements and attributes include prefixes
+ * and declarations of namespaces are attributes.
+ *
+ * @author agent
+ */
+public class XMLElementStream
+{
+	protected final XMLStreamReader reader;
+
+	/** Where elements are created, they are never added to this document. */
+	protected final Document doc;
+
+	/** The stream to close when done. */
+	protected final InputStream inputStream;
+
+	/** The name of the top-level element, null if it has not yet been read. */
+	protected String topElementName = null;
+
+	/** Whether the end of the top-level element has been reached. */
+	protected boolean finished = false;
+
+	/** Constructs a stream of elements from the supplied data.
+	 *
+	 * @param inStream data to read
+	 * @param encoding encoding of the data, null to determine it from the data.
+	 */
+	public XMLElementStream(InputStream inStream, String encoding)
+	{
+		inputStream = inStream;
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		try
+		{
+			reader = encoding == null?factory.createXMLStreamReader(inStream):factory.createXMLStreamReader(inStream, encoding);
+			DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+			docFactory.setFeature(javax.xml.XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			doc = docFactory.newDocumentBuilder().newDocument();
+		}
+		catch(Exception e)
+		{
+			throw new IllegalArgumentException("failed to start reading XML: "+e, e);
+		}
+	}
+
+	/** Returns the document elements are created in. */
+	public Document getDocument()
+	{
+		return doc;
+	}
+
+	/** Returns the name of the top-level element, reading it if necessary. */
+	public String getTopElementName()
+	{
+		if (topElementName == null)
+			try
+			{
+				while(reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT)
+				{// skip the prologue
+				}
+				if (!reader.isStartElement())
+					throw new IllegalArgumentException("missing top-level element");
+				topElementName = reader.getLocalName();
+			}
+			catch(XMLStreamException e)
+			{
+				throw new IllegalArgumentException("failed to read XML: "+e, e);
+			}
+		return topElementName;
+	}
+
+	/** Returns the next child of the top-level element, null if there are no more of them. Text and comments are ignored. */
+	public Element next()
+	{
+		getTopElementName();
+		if (finished)
+			return null;
+		try
+		{
+			while(reader.hasNext())
+			{
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT)
+					return readElement();
+				if (event == XMLStreamConstants.END_ELEMENT)
+					break;
+			}
+		}
+		catch(XMLStreamException e)
+		{
+			throw new IllegalArgumentException("failed to read XML: "+e, e);
+		}
+		finished = true;
+		return null;
+	}
+
+	/** Builds an element the reader is positioned at, including its descendants, leaving the reader at its end. */
+	protected Element readElement() throws XMLStreamException
+	{
+		Element result = createElement();
+		Node current = result;
+		while(current != null)
+		{
+			switch(reader.next())
+			{
+			case XMLStreamConstants.START_ELEMENT:
+				Element child = createElement();current.appendChild(child);current = child;break;
+			case XMLStreamConstants.END_ELEMENT:
+				current = current == result?null:current.getParentNode();break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				current.appendChild(doc.createTextNode(reader.getText()));break;
+			case XMLStreamConstants.CDATA:
+				current.appendChild(doc.createCDATASection(reader.getText()));break;
+			case XMLStreamConstants.COMMENT:
+				current.appendChild(doc.createComment(reader.getText()));break;
+			default:// processing instructions are ignored
+			}
+		}
+		return result;
+	}
+
+	protected Element createElement()
+	{
+		Element element = doc.createElement(reader.getLocalName());
+		for(int i=0;i<reader.getAttributeCount();++i)
+		{
+			String prefix = reader.getAttributePrefix(i);
+			String name = prefix == null || prefix.isEmpty()?reader.getAttributeLocalName(i):prefix+":"+reader.getAttributeLocalName(i);
+			element.setAttribute(name, reader.getAttributeValue(i));
+		}
+		return element;
+	}
+
+	public void close()
+	{
+		try
+		{
+			reader.close();
+		}
+		catch(XMLStreamException e)
+		{// ignored
+		}
+		try
+		{
+			inputStream.close();
+		}
+		catch(IOException e)
+		{// ignored
+		}
+	}
+}
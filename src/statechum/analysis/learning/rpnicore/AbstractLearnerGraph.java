@@ -59,6 +59,21 @@ abstract public class AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE extends Cached
 		return transitionMatrix;
 	}
 
+	/** Releases resources held by the transition matrix, such as a file storing a {@link MappedTransitionMatrix}.
+	 * The graph cannot be used after this call; graphs that are not released have their resources released when garbage-collected.
+	 */
+	public void releaseTransitionMatrix()
+	{
+		releaseTransitionMatrix(transitionMatrix);
+	}
+
+	/** Releases resources held by the supplied transition matrix, which is no longer used. */
+	protected static void releaseTransitionMatrix(MapWithSearch<VertID,CmpVertex,?> matrix)
+	{
+		if (matrix instanceof MappedTransitionMatrix)
+			((MappedTransitionMatrix)matrix).close();
+	}
+
 	/** For incompletely defined automata, it is possible to have transitions that lead to an error-response. If we load
 	 * such a graph from a file, these transitions will be eliminated at the point of loading however if these are the only
 	 * transitions in a graph with a particular input, computeAlphabet will return the wrong value - it needs to include
@@ -337,6 +352,9 @@ abstract public class AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE extends Cached
 
 		if (conv != null)
 			result = conv.convertLabelToLabel(result);
+		else
+		if (config.getInternLabelsGlobally())
+			result = LabelRegistry.getGlobalRegistry().intern(result);
 		return result;
 	}
 
@@ -390,6 +408,9 @@ abstract public class AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE extends Cached
 		}
 		if (conv != null)
 			result = conv.convertLabelToLabel(result);
+		else
+		if (config.getInternLabelsGlobally())
+			result = LabelRegistry.getGlobalRegistry().intern(result);
 		return result;
 	}
 	
@@ -694,7 +715,7 @@ abstract public class AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE extends Cached
 		void copyGraphs(AbstractLearnerGraph<TARGET_A_TYPE, CACHE_A_TYPE> from,
 				AbstractLearnerGraph<TARGET_B_TYPE, CACHE_B_TYPE> result)
 	{
-		result.initEmpty();
+		result.initEmpty();releaseTransitionMatrix(result.transitionMatrix);// makes it possible for the new matrix to reuse the file of the one being replaced
 		result.transitionMatrix = result.createNewTransitionMatrix(from);
 		result.vertNegativeID = from.vertNegativeID;result.vertPositiveID=from.vertPositiveID;
 		result.setName(from.getName());
@@ -968,6 +989,8 @@ abstract public class AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE extends Cached
 		switch(config.getTransitionMatrixImplType())
 		{
 		case STATETREE_LINKEDHASH:
+		case STATETREE_MAPPED:
+		case STATETREE_INTARRAY:// auxiliary maps and transition matrices of non-deterministic graphs, states do not have to be numeric.
 			map = new HashMapWithSearch<>(pos_neg.firstElem + pos_neg.secondElem);// the sum is usually ignored by the linkedmap, but provided just in case.
 			break;
 		case STATETREE_ARRAY:
@@ -536,7 +536,7 @@ public class AbstractPathRoutines<TARGET_TYPE,CACHE_TYPE extends CachedData<TARG
 			}
 			newMatrix.put(entry.getKey(), newRow);
 		}
-		g.transitionMatrix = newMatrix;g.learnerCache.invalidate();
+		AbstractLearnerGraph.releaseTransitionMatrix(g.transitionMatrix);g.transitionMatrix = newMatrix;g.learnerCache.invalidate();
 	}
 	
 	/** Adds all states and transitions from graph <em>what</em> to graph <em>g</em>.
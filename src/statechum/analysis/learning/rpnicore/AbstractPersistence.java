@@ -19,9 +19,12 @@
 package statechum.analysis.learning.rpnicore;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.HashSet;
@@ -224,6 +227,38 @@ public class AbstractPersistence<TARGET_TYPE,CACHE_TYPE extends CachedData<TARGE
 		}
 	}
 	
+	/** Writes a graph into a file in the binary format of {@link BinaryPersistence}, which is much more compact and faster to
+	 * load than GraphML for large graphs.
+	 */
+	public void writeBinary(String name) throws IOException
+	{
+		try (OutputStream out = new FileOutputStream(name)) {
+			writeBinary(out);
+		}
+	}
+
+	/** Writes a graph into a stream in the binary format of {@link BinaryPersistence}. The stream is not closed. */
+	public void writeBinary(OutputStream out) throws IOException
+	{
+		BinaryPersistence.writeGraph(coregraph, out);
+	}
+
+	/** Loads a graph from a file in the binary format of {@link BinaryPersistence}.
+	 *
+	 * @param fileName where to load from
+	 * @param result graph into which to copy the loaded graph (we are generic hence cannot create an instance ourselves).
+	 * @param conv how to convert loaded labels, null for no conversion.
+	 * @return loaded graph.
+	 */
+	public static <TARGET_TYPE,CACHE_TYPE extends CachedData<TARGET_TYPE,CACHE_TYPE>>
+		AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE> loadBinaryGraph(String fileName,
+				AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE> result, ConvertALabel conv) throws IOException
+	{
+		BinaryPersistence.loadGraph(new FileInputStream(fileName), result, conv);
+		result.setName(fileName);
+		return result;
+	}
+
 	public static final String graphmlAttribute="attribute", graphmlGraph = "graph", graphmlData="data", 
 		graphmlDataKey = "key",graphmlDataIncompatible="key_incompatible";
 	
@@ -0,0 +1,369 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import statechum.JUConstants;
+import statechum.Label;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.DeterministicDirectedSparseGraph.VertID;
+import statechum.DeterministicDirectedSparseGraph.VertID.VertKind;
+import statechum.DeterministicDirectedSparseGraph.VertexID;
+import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
+import statechum.collections.MapWithSearch;
+
+/** Reads and writes graphs in a compact binary format, as an alternative to GraphML for large graphs such as PTAs.
+ * Graphs are written and read state by state, without constructing a document in memory.
+ * <p>
+ * All integers are written as variable-length quantities with 7 bits per byte, signed values are zig-zag encoded.
+ * The format is
+ * <ul>
+ * <li>a header: {@link #MAGIC}, {@link #VERSION}, the number of states and the index of the initial state;</li>
+ * <li>states with their attributes (accept/reject, highlight, colour, the original state and depth).
+ * Identifiers of states with numerical identifiers are stored as numbers, others as strings;</li>
+ * <li>for every state, its outgoing transitions: a label followed by indices of target states.
+ * A label is stored as an index into a dictionary of labels; where a label is seen for the first time, its index
+ * is equal to the size of the dictionary and it is followed by the text of the label;</li>
+ * <li>pairs of states recorded in the compatibility relation.</li>
+ * </ul>
+ * Similarly to GraphML, only the graph is stored: information about the last merge kept in {@link LearnerGraphCachedData},
+ * such as merged equivalence classes and the map from merged states to hard facts, is not stored. Pairs of states recorded
+ * as {@link JUConstants.PAIRCOMPATIBILITY#MERGED} in the compatibility relation are stored.
+ *
+ * @author agent
+ */
+public class BinaryPersistence
+{
+	/** Identifies the format. */
+	public static final int MAGIC = 0x53434247, VERSION = 1;
+
+	/** Tags used to record identifiers of states. */
+	private static final int idNone = 0, idString = 1, idPositive = 2, idNegative = 3, idNonexisting = 4;
+
+	/** Bits in the flags of a state. */
+	private static final int flagReject = 1, flagHighlight = 2;
+
+	/** Writes the supplied graph into a stream. The stream is flushed but not closed.
+	 *
+	 * @param graph what to write
+	 * @param outputStream where to write
+	 * @throws IOException if writing fails.
+	 */
+	public static <TARGET_TYPE,CACHE_TYPE extends CachedData<TARGET_TYPE,CACHE_TYPE>>
+		void writeGraph(AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE> graph, OutputStream outputStream) throws IOException
+	{
+		if (graph.getInit() == null)
+			throw new IllegalArgumentException("missing initial state");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+		Map<CmpVertex,Integer> vertexToIndex = new HashMap<>(graph.transitionMatrix.size()*2);
+		for(CmpVertex vert:graph.transitionMatrix.keySet())
+			vertexToIndex.put(vert, vertexToIndex.size());
+
+		out.writeInt(MAGIC);writeInt(out, VERSION);
+		writeInt(out, vertexToIndex.size());writeInt(out, vertexToIndex.get(graph.getInit()));
+		for(CmpVertex vert:graph.transitionMatrix.keySet())
+		{
+			writeID(out, vert);
+			writeInt(out, (vert.isAccept()?0:flagReject) | (vert.isHighlight()?flagHighlight:0));
+			writeInt(out, vert.getColour() == null?0:vert.getColour().ordinal()+1);
+			writeID(out, vert.getOrigState());
+			writeSignedInt(out, vert.getDepth());
+		}
+
+		Map<Label,Integer> labelToIndex = new HashMap<>();
+		for(Entry<CmpVertex,MapWithSearch<Label,Label,TARGET_TYPE>> entry:graph.transitionMatrix.entrySet())
+		{
+			writeInt(out, entry.getValue().size());
+			for(Entry<Label,TARGET_TYPE> transition:entry.getValue().entrySet())
+			{
+				Integer labelIndex = labelToIndex.get(transition.getKey());
+				if (labelIndex == null)
+				{
+					writeInt(out, labelToIndex.size());writeString(out, transition.getKey().toErlangTerm());
+					labelToIndex.put(transition.getKey(), labelToIndex.size());
+				}
+				else
+					writeInt(out, labelIndex);
+
+				Collection<CmpVertex> targets = graph.getTargets(transition.getValue());
+				writeInt(out, targets.size());
+				for(CmpVertex target:targets)
+					writeInt(out, vertexToIndex.get(target));
+			}
+		}
+
+		// pairs are recorded in both directions, only one of each is written.
+		Set<CmpVertex> encounteredNodes = new HashSet<>();
+		int pairNumber = 0;
+		for(Entry<CmpVertex,Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY>> entry:graph.pairCompatibility.compatibility.entrySet())
+		{
+			encounteredNodes.add(entry.getKey());
+			for(CmpVertex vert:entry.getValue().keySet())
+				if (!encounteredNodes.contains(vert))
+					++pairNumber;
+		}
+		writeInt(out, pairNumber);
+		encounteredNodes.clear();
+		for(Entry<CmpVertex,Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY>> entry:graph.pairCompatibility.compatibility.entrySet())
+		{
+			encounteredNodes.add(entry.getKey());
+			for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> vert:entry.getValue().entrySet())
+				if (!encounteredNodes.contains(vert.getKey()))
+				{
+					writeInt(out, vertexToIndex.get(entry.getKey()));writeInt(out, vertexToIndex.get(vert.getKey()));
+					writeSignedInt(out, vert.getValue().getInteger());
+				}
+		}
+		out.flush();
+	}
+
+	/** Loads a graph from the supplied stream, closing it when done.
+	 *
+	 * @param inputStream where to load from
+	 * @param result graph into which to copy the loaded graph (we are generic hence cannot create an instance ourselves).
+	 * @param conv how to convert loaded labels, null for no conversion.
+	 * @return loaded graph
+	 * @throws IOException if reading fails
+	 */
+	public static <TARGET_TYPE,CACHE_TYPE extends CachedData<TARGET_TYPE,CACHE_TYPE>>
+		AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE> loadGraph(InputStream inputStream, AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE> result, ConvertALabel conv) throws IOException
+	{
+		synchronized (AbstractLearnerGraph.syncObj)
+		{// ensure that the calls to Jung's vertex-creation routines do not occur on different threads.
+			try(DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream)))
+			{
+				loadGraph(in, result, conv);
+			}
+		}
+		return result;
+	}
+
+	protected static <TARGET_TYPE,CACHE_TYPE extends CachedData<TARGET_TYPE,CACHE_TYPE>>
+		void loadGraph(DataInputStream in, AbstractLearnerGraph<TARGET_TYPE,CACHE_TYPE> result, ConvertALabel conv) throws IOException
+	{
+		result.initEmpty();
+		if (in.readInt() != MAGIC)
+			throw new IllegalArgumentException("not a binary graph");
+		int version = readInt(in);
+		if (version != VERSION)
+			throw new IllegalArgumentException("unsupported version "+version);
+		int vertexNumber = readInt(in), initIndex = readInt(in);
+		if (initIndex >= vertexNumber)
+			throw new IllegalArgumentException("missing initial state");
+
+		JUConstants [] colours = JUConstants.values();
+		CmpVertex [] vertices = new CmpVertex[vertexNumber];
+		List<MapWithSearch<Label,Label,TARGET_TYPE>> rows = new ArrayList<>(vertexNumber);
+		for(int i=0;i<vertexNumber;++i)
+		{
+			VertexID id = readID(in);
+			if (id == null)
+				throw new IllegalArgumentException("missing state identifier");
+			CmpVertex vert = AbstractLearnerGraph.generateNewCmpVertex(id, result.config);
+			int flags = readInt(in);
+			vert.setAccept((flags & flagReject) == 0);vert.setHighlight((flags & flagHighlight) != 0);
+			int colour = readInt(in);
+			if (colour > colours.length)
+				throw new IllegalArgumentException("invalid colour "+colour);
+			if (colour > 0)
+				vert.setColour(colours[colour-1]);
+			VertexID origState = readID(in);
+			if (origState != null)
+				vert.setOrigState(origState);
+			vert.setDepth(readSignedInt(in));
+
+			if (result.transitionMatrix.containsKey(vert))
+				throw new IllegalArgumentException("duplicate vertex "+vert);
+			MapWithSearch<Label,Label,TARGET_TYPE> row = result.createNewRow();
+			result.transitionMatrix.put(vert, row);
+			vertices[i]=vert;rows.add(row);
+		}
+		result.setInit(vertices[initIndex]);
+
+		List<Label> labels = new ArrayList<>();
+		for(int i=0;i<vertexNumber;++i)
+		{
+			MapWithSearch<Label,Label,TARGET_TYPE> row = rows.get(i);
+			int transitionNumber = readInt(in);
+			for(int t=0;t<transitionNumber;++t)
+			{
+				int labelIndex = readInt(in);
+				if (labelIndex == labels.size())
+				{
+					labels.add(AbstractLearnerGraph.generateNewLabel(readString(in), result.config, conv));
+				}
+				else
+					if (labelIndex > labels.size())
+						throw new IllegalArgumentException("invalid label index "+labelIndex);
+				Label label = labels.get(labelIndex);
+				int targetNumber = readInt(in);
+				for(int target=0;target<targetNumber;++target)
+					result.addTransition(row, label, vertices[readVertexIndex(in, vertexNumber)]);
+			}
+		}
+
+		int pairNumber = readInt(in);
+		for(int i=0;i<pairNumber;++i)
+		{
+			CmpVertex a = vertices[readVertexIndex(in, vertexNumber)], b = vertices[readVertexIndex(in, vertexNumber)];
+			result.addToCompatibility(a, b, JUConstants.PAIRCOMPATIBILITY.compatibilityToJUConstants(readSignedInt(in)));
+		}
+
+		result.createCache();result.setIDNumbers();
+	}
+
+	private static int readVertexIndex(DataInputStream in, int vertexNumber) throws IOException
+	{
+		int index = readInt(in);
+		if (index >= vertexNumber)
+			throw new IllegalArgumentException("invalid state index "+index);
+		return index;
+	}
+
+	/** Writes an identifier of a state, which can be null. */
+	protected static void writeID(DataOutputStream out, VertID id) throws IOException
+	{
+		if (id == null)
+			writeInt(out, idNone);
+		else
+			switch(id.getKind())
+			{
+			case POSITIVE:
+				writeInt(out, idPositive);writeInt(out, id.getIntegerID());break;
+			case NEGATIVE:
+				writeInt(out, idNegative);writeInt(out, id.getIntegerID());break;
+			case NONEXISTING:
+				writeInt(out, idNonexisting);writeInt(out, id.getIntegerID());break;
+			default:
+				writeInt(out, idString);writeString(out, id.getStringId());
+			}
+	}
+
+	/** Reads an identifier of a state, returning null if it was not recorded. */
+	protected static VertexID readID(DataInputStream in) throws IOException
+	{
+		int tag = readInt(in);
+		switch(tag)
+		{
+		case idNone:
+			return null;
+		case idString:
+			return VertexID.parseID(readString(in));
+		case idPositive:
+			return new VertexID(VertKind.POSITIVE, readInt(in));
+		case idNegative:
+			return new VertexID(VertKind.NEGATIVE, readInt(in));
+		case idNonexisting:
+			return new VertexID(VertKind.NONEXISTING, readInt(in));
+		default:
+			throw new IllegalArgumentException("invalid identifier tag "+tag);
+		}
+	}
+
+	/** Writes a non-negative integer. */
+	protected static void writeInt(DataOutputStream out, int value) throws IOException
+	{
+		if (value < 0)
+			throw new IllegalArgumentException("negative value "+value);
+		int v = value;
+		while((v & ~0x7f) != 0)
+		{
+			out.writeByte((v & 0x7f) | 0x80);v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	protected static int readInt(DataInputStream in) throws IOException
+	{
+		int value = 0;
+		for(int shift=0;shift<35;shift+=7)
+		{
+			int b = in.readByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+			{
+				if (value < 0)
+					throw new IllegalArgumentException("invalid value "+value);
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("invalid variable-length integer");
+	}
+
+	/** Writes an integer that can be negative. */
+	protected static void writeSignedInt(DataOutputStream out, int value) throws IOException
+	{
+		int v = (value << 1) ^ (value >> 31);
+		while((v & ~0x7f) != 0)
+		{
+			out.writeByte((v & 0x7f) | 0x80);v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	protected static int readSignedInt(DataInputStream in) throws IOException
+	{
+		int v = 0;
+		for(int shift=0;shift<35;shift+=7)
+		{
+			int b = in.readByte();
+			v |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return (v >>> 1) ^ -(v & 1);
+		}
+		throw new IllegalArgumentException("invalid variable-length integer");
+	}
+
+	protected static void writeString(DataOutputStream out, String str) throws IOException
+	{
+		byte [] data = str.getBytes(StandardCharsets.UTF_8);
+		writeInt(out, data.length);out.write(data);
+	}
+
+	protected static String readString(DataInputStream in) throws IOException
+	{
+		int length = readInt(in);
+		byte [] data = new byte[length];
+		try
+		{
+			in.readFully(data);
+		}
+		catch(EOFException ex)
+		{
+			throw new IllegalArgumentException("truncated string", ex);
+		}
+		return new String(data, StandardCharsets.UTF_8);
+	}
+}
@@ -32,6 +32,7 @@ import statechum.Helper;
 import statechum.JUConstants;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.Label;
+import statechum.LearnerMetrics;
 import statechum.analysis.learning.StatePair;
 import statechum.analysis.learning.rpnicore.AMEquivalenceClass.IncompatibleStatesException;
 import statechum.analysis.learning.rpnicore.LearnerGraph.NonExistingPaths;
@@ -506,13 +507,16 @@ public class ComputeQuestions {
 	 */
 	public static List<List<Label>> RecomputeQS(final StatePair pair, LearnerGraph original, LearnerGraph merged, LearnerGraph [] properties)
 	{
+		long started = LearnerMetrics.startPhase();
 		List<List<Label>> questions = null;
 		if (original.config.getQuestionGenerator() == Configuration.QuestionGeneratorKind.ORIGINAL)
 			questions = computeQS_orig(new StatePair(merged.learnerCache.stateLearnt,merged.learnerCache.stateLearnt), original, merged);
 		else
 			questions = getQuestionPta(pair,original,merged,properties).getData();// This one will return only those questions which were not answered by property automata
 		
-		return ArrayOperations.sort(questions);
+		List<List<Label>> outcome = ArrayOperations.sort(questions);
+		LearnerMetrics.endPhase(LearnerMetrics.PHASE.COMPUTE_QUESTIONS, started);LearnerMetrics.record(LearnerMetrics.HISTOGRAM.QUESTIONS_PER_MERGE, outcome.size());
+		return outcome;
 			// this appears important to ensure termination without using amber states
 			// because in an unsorted collection long paths may appear first and they will hence be added to PTA and we'll
 			// proceed to merge them.
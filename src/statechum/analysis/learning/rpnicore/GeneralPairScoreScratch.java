@@ -0,0 +1,288 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.JUConstants;
+import statechum.Label;
+import statechum.collections.IntArrayTransitionMatrix;
+import statechum.collections.MapWithSearch;
+
+/** Computes the same scores as {@link PairScoreComputation#computePairCompatibilityScore_general} but without constructing
+ * equivalence classes, collections or maps for each pair.
+ * <p>
+ * States and labels are identified by their indices in an {@link IntArrayTransitionMatrix}; where a graph uses a different
+ * kind of transition matrix, an indexed copy is built once per graph and kept in {@link LearnerGraphCachedData}, see
+ * {@link IndexedGraph}. Equivalence classes are maintained by a union-find structure stored in arrays, with a class recorded
+ * for each state as its root, and outgoing transitions of classes are stored in an open-addressing table keyed by a root
+ * and a label. All arrays are retained between calls, so that after a few pairs scoring a pair does not allocate any memory.
+ * In order to avoid clearing arrays, entries are stamped with the number of a call they were recorded in.
+ * <p>
+ * An instance is not thread-safe, hence there is one per thread, obtained using {@link #get()}.
+ *
+ * @author agent
+ */
+public class GeneralPairScoreScratch
+{
+	/** Graph data in terms of indices of states and labels. Not modified once built, hence can be shared by threads. */
+	public static class IndexedGraph
+	{
+		/** Transitions of a graph. */
+		protected final IntArrayTransitionMatrix matrix;
+
+		/** For each state, indices of states it is incompatible with are stored in <em>incompatibleTargets</em>
+		 * from position <em>incompatibleStart[state]</em> until <em>incompatibleStart[state+1]</em>.
+		 */
+		protected final int [] incompatibleStart, incompatibleTargets;
+
+		/** Whether states are accept-states. */
+		protected final boolean [] accept;
+
+		public IndexedGraph(LearnerGraph graph)
+		{
+			if (graph.transitionMatrix instanceof IntArrayTransitionMatrix)
+				matrix = (IntArrayTransitionMatrix)graph.transitionMatrix;
+			else
+			{
+				matrix = new IntArrayTransitionMatrix(graph.transitionMatrix.size());
+				for(Entry<CmpVertex,MapWithSearch<Label,Label,CmpVertex>> entry:graph.transitionMatrix.entrySet())
+					matrix.put(entry.getKey(), entry.getValue());
+			}
+			int stateNumber = matrix.getVertexIndexBound();
+			accept = new boolean[stateNumber];
+			for(int i=0;i<stateNumber;++i)
+				accept[i] = matrix.indexToVertex(i).isAccept();
+
+			incompatibleStart = new int[stateNumber+1];
+			int [] targets = new int[16];int top = 0;
+			for(int i=0;i<stateNumber;++i)
+			{
+				incompatibleStart[i]=top;
+				Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY> compatibility = graph.pairCompatibility.compatibility.get(matrix.indexToVertex(i));
+				if (compatibility != null)
+					for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> entry:compatibility.entrySet())
+						if (entry.getValue() == JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE)
+						{
+							int target = matrix.vertexToIndex(entry.getKey());
+							if (target >= 0)
+							{
+								if (top == targets.length)
+									targets = Arrays.copyOf(targets, targets.length*2);
+								targets[top++]=target;
+							}
+						}
+			}
+			incompatibleStart[stateNumber]=top;
+			incompatibleTargets = targets;
+		}
+
+		/** Returns the index of the supplied state, -1 if it is not known. */
+		public int vertexToIndex(CmpVertex vertex)
+		{
+			return matrix.vertexToIndex(vertex);
+		}
+	}
+
+	private static final ThreadLocal<GeneralPairScoreScratch> scratch = ThreadLocal.withInitial(GeneralPairScoreScratch::new);
+
+	/** Returns scratch buffers for the current thread. */
+	public static GeneralPairScoreScratch get()
+	{
+		return scratch.get();
+	}
+
+	/** The number of the current call, used to stamp entries. */
+	protected int currentStamp = 0;
+
+	/** Union-find structure: for states with <em>stateStamp</em> equal to the current stamp, <em>parent</em> is the parent in the
+	 * union-find tree, <em>classSize</em> is the size of the class for roots and <em>nextMember</em> links states of each class
+	 * in a circular list. Other states are singleton classes.
+	 */
+	protected int [] stateStamp = new int[0], parent = new int[0], classSize = new int[0], nextMember = new int[0];
+
+	/** Pairs of states to merge, stored as consecutive elements. */
+	protected int [] worklist = new int[64];
+
+	/** Open-addressing table of outgoing transitions of classes, keyed by a pair of a root and a label. */
+	protected long [] tableKeys = new long[256];
+	protected int [] tableTargets = new int[256], tableStamp = new int[256];
+	protected int tableSize = 0;
+
+	/** The number of merged pairs of accept-states in the last call to {@link #computeScore}, used to compute scores for
+	 * {@link statechum.Configuration.ScoreMode#GENERAL_PLUS_NOFULLMERGE}.
+	 */
+	protected int acceptMerges = 0;
+
+	public int getAcceptMerges()
+	{
+		return acceptMerges;
+	}
+
+	/** Computes the number of states that would be merged together with the supplied pair, -1 if the pair cannot be merged.
+	 * This is the same as the value returned by {@link PairScoreComputation#computePairCompatibilityScore_general}.
+	 *
+	 * @param graph graph to compute the score for
+	 * @param q the first state to merge
+	 * @param r the second state to merge
+	 * @return the number of states that get merged into other states.
+	 */
+	public int computeScore(IndexedGraph graph, CmpVertex q, CmpVertex r)
+	{
+		int stateNumber = graph.matrix.getVertexIndexBound();
+		if (stateStamp.length < stateNumber)
+		{
+			int size = Math.max(stateNumber, stateStamp.length*2);
+			stateStamp = new int[size];parent = new int[size];classSize = new int[size];nextMember = new int[size];
+			Arrays.fill(tableStamp, 0);currentStamp = 0;
+		}
+		if (++currentStamp == Integer.MAX_VALUE)
+		{
+			Arrays.fill(stateStamp, 0);Arrays.fill(tableStamp, 0);currentStamp = 1;
+		}
+		tableSize = 0;acceptMerges = 0;
+
+		int score = 0, top = 0;
+		worklist[top++]=graph.vertexToIndex(q);worklist[top++]=graph.vertexToIndex(r);
+		while(top > 0)
+		{
+			int b = find(worklist[--top]), a = find(worklist[--top]);
+			if (a == b)
+				continue;
+			if (classSize(a) < classSize(b))
+			{
+				int tmp = a;a = b;b = tmp;
+			}
+			if (graph.accept[a] != graph.accept[b])
+				return -1;
+			touch(graph, a);touch(graph, b);
+
+			// check whether any member of the smaller class is incompatible with the larger one, the relation is symmetric.
+			int member = b;
+			do
+			{
+				for(int i=graph.incompatibleStart[member];i<graph.incompatibleStart[member+1];++i)
+					if (find(graph.incompatibleTargets[i]) == a)
+						return -1;
+				member = nextMember[member];
+			}
+			while(member != b);
+
+			// merge the classes
+			parent[b] = a;classSize[a]+=classSize[b];
+			int next = nextMember[a];nextMember[a] = nextMember[b];nextMember[b] = next;
+			++score;if (graph.accept[a]) ++acceptMerges;
+
+			// targets of transitions with the same labels from the two classes have to be merged
+			member = b;
+			do
+			{
+				for(int i=0;i<graph.matrix.getRowSize(member);++i)
+				{
+					int label = graph.matrix.getRowLabel(member, i), target = graph.matrix.getRowTarget(member, i);
+					int existing = putTransition(a, label, target);
+					if (existing >= 0 && find(existing) != find(target))
+					{
+						if (top+2 > worklist.length)
+							worklist = Arrays.copyOf(worklist, worklist.length*2);
+						worklist[top++]=existing;worklist[top++]=target;
+					}
+				}
+				member = nextMember[member];
+			}
+			while(member != b);
+		}
+		return score;
+	}
+
+	/** The size of a class, the supplied state has to be a root. */
+	private int classSize(int root)
+	{
+		return stateStamp[root] == currentStamp?classSize[root]:1;
+	}
+
+	/** Adds the supplied state to the union-find structure as a singleton class, recording its transitions. */
+	private void touch(IndexedGraph graph, int state)
+	{
+		if (stateStamp[state] == currentStamp)
+			return;
+		stateStamp[state] = currentStamp;parent[state] = state;classSize[state] = 1;nextMember[state] = state;
+		for(int i=0;i<graph.matrix.getRowSize(state);++i)
+			putTransition(state, graph.matrix.getRowLabel(state, i), graph.matrix.getRowTarget(state, i));
+	}
+
+	private int find(int state)
+	{
+		if (stateStamp[state] != currentStamp)
+			return state;
+		int root = state;
+		while(parent[root] != root)
+			root = parent[root];
+		while(parent[state] != root)
+		{
+			int next = parent[state];parent[state] = root;state = next;
+		}
+		return root;
+	}
+
+	/** Records a transition from a class with the supplied root, unless the class already has a transition with the same label.
+	 *
+	 * @return the target of an existing transition, -1 if the supplied one was added.
+	 */
+	private int putTransition(int root, int label, int target)
+	{
+		if (2*(tableSize+1) > tableKeys.length)
+			growTable();
+		long key = ((long)root << 32) | (label & 0xffffffffL);
+		int mask = tableKeys.length-1;
+		for(int pos = hash(key) & mask;;pos = (pos+1) & mask)
+		{
+			if (tableStamp[pos] != currentStamp)
+			{
+				tableStamp[pos] = currentStamp;tableKeys[pos] = key;tableTargets[pos] = target;++tableSize;
+				return -1;
+			}
+			if (tableKeys[pos] == key)
+				return tableTargets[pos];
+		}
+	}
+
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	private void growTable()
+	{
+		long [] oldKeys = tableKeys;int [] oldTargets = tableTargets, oldStamp = tableStamp;
+		tableKeys = new long[oldKeys.length*2];tableTargets = new int[oldKeys.length*2];tableStamp = new int[oldKeys.length*2];
+		int mask = tableKeys.length-1;
+		for(int i=0;i<oldKeys.length;++i)
+			if (oldStamp[i] == currentStamp)
+			{
+				int pos = hash(oldKeys[i]) & mask;
+				while(tableStamp[pos] == currentStamp)
+					pos = (pos+1) & mask;
+				tableStamp[pos] = currentStamp;tableKeys[pos] = oldKeys[i];tableTargets[pos] = oldTargets[i];
+			}
+	}
+}
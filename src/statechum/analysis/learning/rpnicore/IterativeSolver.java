@@ -0,0 +1,224 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import statechum.analysis.learning.linear.GDLearnerGraph;
+
+/** Solves <em>Ax=b</em> for a sparse <em>A</em> in the compressed-column form used by {@link LSolver}, using
+ * BiCGSTAB with Jacobi (diagonal) preconditioning. This is entirely in Java and hence does not need the external solver;
+ * unlike the fallback on Colt, it does not construct a dense or a hash-based matrix, hence it scales to systems
+ * with millions of state pairs. Matrices built by GD and linear pair selection have a dominant diagonal, so the method usually
+ * converges in a few dozen iterations.
+ * <p>
+ * The matrix is converted into the compressed-row form once, so that multiplication of it by a vector can be split by rows
+ * between threads without any synchronisation; vector operations are cheap compared to that multiplication and are performed
+ * by a single thread. Threads are taken from the shared pool returned by {@link GDLearnerGraph#getRowTaskPool(int)}.
+ *
+ * @author agent
+ */
+public class IterativeSolver
+{
+	/** Iterations stop when the norm of the residual is below this value multiplied by the norm of <em>b</em>. */
+	public static final double TOLERANCE = 1e-12;
+
+	/** Systems with fewer rows than this are solved single-threaded, because splitting multiplication between threads costs more than it saves. */
+	public static final int MIN_ROWS_PER_THREAD = 2048;
+
+	/** The matrix in compressed-row form. */
+	protected final int [] rowStart, column;
+	protected final double [] value;
+
+	/** Inverse of the diagonal of the matrix, one where a diagonal element is zero. */
+	protected final double [] inverseDiagonal;
+
+	protected final int size;
+
+	/** Rows to be processed by each thread, thread <em>i</em> handles rows from <em>rowPartition[i]</em> to <em>rowPartition[i+1]</em>. */
+	protected final int [] rowPartition;
+
+	/** The number of threads requested, which determines the pool of threads to use, shared with other parts of the learner. */
+	protected final int threadNumberRequested;
+
+	/** The number of iterations performed by the last call to {@link #solve}. */
+	protected int iterations = 0;
+
+	/** Constructs a solver for the supplied matrix.
+	 *
+	 * @param Ap column starts
+	 * @param Ai row numbers of elements
+	 * @param Ax values of elements
+	 * @param threads the number of threads to use for multiplication of the matrix by vectors.
+	 */
+	public IterativeSolver(int [] Ap, int [] Ai, double [] Ax, int threads)
+	{
+		size = Ap.length-1;threadNumberRequested = threads;
+		int nz = Ap[size];
+		rowStart = new int[size+1];column = new int[nz];value = new double[nz];
+		for(int i=0;i<nz;++i) ++rowStart[Ai[i]+1];
+		for(int row=0;row<size;++row) rowStart[row+1]+=rowStart[row];
+		int [] position = Arrays.copyOf(rowStart, size);
+		inverseDiagonal = new double[size];
+		for(int col=0;col<size;++col)
+			for(int i=Ap[col];i<Ap[col+1];++i)
+			{
+				int row = Ai[i], pos = position[row]++;
+				column[pos]=col;value[pos]=Ax[i];
+				if (row == col) inverseDiagonal[row]+=Ax[i];
+			}
+		for(int row=0;row<size;++row)
+			inverseDiagonal[row] = inverseDiagonal[row] == 0?1:1/inverseDiagonal[row];
+
+		int threadNumber = Math.max(1, Math.min(threads, size/MIN_ROWS_PER_THREAD));
+		rowPartition = new int[threadNumber+1];
+		// partition rows so that each thread has about the same number of non-zero elements.
+		int row = 0;
+		for(int th=1;th<threadNumber;++th)
+		{
+			long target = (long)nz*th/threadNumber;
+			while(row < size && rowStart[row] < target) ++row;
+			rowPartition[th]=row;
+		}
+		rowPartition[threadNumber]=size;
+	}
+
+	/** The number of iterations performed by the last call to {@link #solve}. */
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+	/** Computes <em>result = A*vector</em> for rows from <em>from</em> to <em>to</em>. */
+	protected void multiply(double [] vector, double [] result, int from, int to)
+	{
+		for(int row=from;row<to;++row)
+		{
+			double sum = 0;
+			for(int i=rowStart[row];i<rowStart[row+1];++i)
+				sum+=value[i]*vector[column[i]];
+			result[row]=sum;
+		}
+	}
+
+	/** Computes <em>result = A*vector</em>, using the supplied pool of threads if it is not null. */
+	protected void multiply(final double [] vector, final double [] result, ForkJoinPool pool)
+	{
+		if (pool == null)
+		{
+			multiply(vector, result, 0, size);
+			return;
+		}
+		List<Callable<Object>> tasks = new ArrayList<>(rowPartition.length-1);
+		for(int th=0;th<rowPartition.length-1;++th)
+		{
+			final int from = rowPartition[th], to = rowPartition[th+1];
+			tasks.add(() -> { multiply(vector, result, from, to);return null; });
+		}
+		try
+		{
+			for(Future<Object> outcome:pool.invokeAll(tasks))
+				outcome.get();// this will throw an exception if any of the tasks failed.
+		}
+		catch(Exception ex)
+		{
+			throw new IllegalArgumentException("failed to compute, the problem is: "+ex, ex);
+		}
+	}
+
+	protected static double dot(double [] a, double [] b)
+	{
+		double result = 0;
+		for(int i=0;i<a.length;++i) result+=a[i]*b[i];
+		return result;
+	}
+
+	/** Solves <em>Ax=b</em>, throwing {@link IllegalArgumentException} if the method does not converge, such as
+	 * where the matrix is singular.
+	 *
+	 * @param b the right-hand side
+	 * @param x where to store the result.
+	 * @param maxIterations the maximal number of iterations, zero to choose it based on the size of the system.
+	 */
+	public void solve(double [] b, double [] x, int maxIterations)
+	{
+		if (b.length != size || x.length != size)
+			throw new IllegalArgumentException("inconsistent dimension of a matrix");
+		int iterationLimit = maxIterations > 0?maxIterations:Math.max(1000, 2*size);
+		iterations = 0;
+		Arrays.fill(x, 0);
+		double normB = Math.sqrt(dot(b,b));
+		if (normB == 0)
+			return;
+		double threshold = TOLERANCE*normB;
+
+		double [] r = new double[size], rHat = new double[size], p = new double[size], v = new double[size],
+			y = new double[size], s = new double[size], z = new double[size], t = new double[size];
+		ForkJoinPool pool = rowPartition.length > 2?GDLearnerGraph.getRowTaskPool(threadNumberRequested):null;
+		while(true)
+		{// each pass through this loop (re)starts the method from the current approximation, which also copes with breakdowns.
+			multiply(x, r, pool);
+			for(int i=0;i<size;++i) r[i]=b[i]-r[i];
+			if (Math.sqrt(dot(r,r)) <= threshold)
+				return;
+			if (iterations >= iterationLimit)
+				throw new IllegalArgumentException("iterative solver failed to converge after "+iterations+" iterations");
+			System.arraycopy(r, 0, rHat, 0, size);Arrays.fill(p, 0);Arrays.fill(v, 0);
+			double rho = 1, alpha = 1, omega = 1;
+			while(iterations < iterationLimit)
+			{
+				++iterations;
+				double rhoNew = dot(rHat,r);
+				if (rhoNew == 0)
+					break;
+				double beta = (rhoNew/rho)*(alpha/omega);
+				for(int i=0;i<size;++i)
+				{
+					p[i]=r[i]+beta*(p[i]-omega*v[i]);y[i]=inverseDiagonal[i]*p[i];
+				}
+				multiply(y, v, pool);
+				double rHatV = dot(rHat,v);
+				if (rHatV == 0)
+					break;
+				alpha = rhoNew/rHatV;
+				for(int i=0;i<size;++i) s[i]=r[i]-alpha*v[i];
+				if (Math.sqrt(dot(s,s)) <= threshold)
+				{
+					for(int i=0;i<size;++i) x[i]+=alpha*y[i];
+					break;
+				}
+				for(int i=0;i<size;++i) z[i]=inverseDiagonal[i]*s[i];
+				multiply(z, t, pool);
+				double tt = dot(t,t);
+				omega = tt == 0?0:dot(t,s)/tt;
+				for(int i=0;i<size;++i)
+				{
+					x[i]+=alpha*y[i]+omega*z[i];r[i]=s[i]-omega*t[i];
+				}
+				if (omega == 0 || Math.sqrt(dot(r,r)) <= threshold)
+					break;
+				rho = rhoNew;
+			}
+		}
+	}
+}
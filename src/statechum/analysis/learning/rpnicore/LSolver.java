@@ -17,6 +17,8 @@
  */
 package statechum.analysis.learning.rpnicore;
 
+import statechum.Configuration;
+import statechum.Configuration.LINEARSOLVER;
 import statechum.GlobalConfiguration;
 import statechum.GlobalConfiguration.G_PROPERTIES;
 import statechum.analysis.learning.experiments.ExperimentRunner;
@@ -337,6 +339,18 @@ public class LSolver
 		
 	}
 	
+	/** Determines which solver to use, set from {@link Configuration#getGdLinearSolver()}. */
+	protected LINEARSOLVER solverType = LINEARSOLVER.LINEARSOLVER_EXTERNAL_OR_COLT;
+	
+	/** The maximal number of iterations of the iterative solver, zero for the default. */
+	protected int maxIterations = 0;
+	
+	/** Chooses the solver to use and its parameters based on the supplied configuration. */
+	public void configure(Configuration config)
+	{
+		solverType = config.getGdLinearSolver();maxIterations = config.getGdLinearSolverMaxIterations();
+	}
+	
 	/** Sets all working arrays to null; the result is unchanged. */
 	public void freeAllButResult()
 	{
@@ -404,8 +418,8 @@ public class LSolver
 		}
 	}
 */
-	/** Solves the system of equations using the external solver 
-	 * if it is available, otherwise falls back on Colt.
+	/** Solves the system of equations using the solver chosen by {@link #configure(Configuration)}. By default, this is 
+	 * the external solver if it is available, with a fall back on Colt.
 	 * 
 	 * @param threads the number of threads to use
 	 * 
@@ -413,6 +427,15 @@ public class LSolver
 	 */
 	public void solve(int threads)
 	{
+		if (solverType == LINEARSOLVER.LINEARSOLVER_ITERATIVE)
+		{
+			solveIteratively(threads);return;
+		}
+		if (solverType == LINEARSOLVER.LINEARSOLVER_COLT)
+		{
+			solveUsingColt();return;
+		}
+		
 		if (libraryLoaded == LibraryLoadResult.NOT_ATTEMPTED)
 		try
 		{
@@ -432,7 +455,20 @@ public class LSolver
 			solveExternally(threads);
 		}
 		else
-			solveUsingColt();
+			if (solverType == LINEARSOLVER.LINEARSOLVER_EXTERNAL_OR_ITERATIVE)
+				solveIteratively(threads);
+			else
+				solveUsingColt();
+	}
+
+	/** Solves the system using {@link IterativeSolver}, which is slower than the external solver but unlike Colt 
+	 * works directly on the arrays built for the external solver and hence is usable for large systems.
+	 * 
+	 * @param threads the number of threads to use.
+	 */
+	public void solveIteratively(int threads)
+	{
+		new IterativeSolver(j_Ap, j_Ai, j_Ax, threads).solve(j_b, j_x, maxIterations);
 	}
 
 	/** Solves the system using Colt, to be used only as a fallback when external solver is
@@ -27,6 +27,7 @@ import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.DeterministicDirectedSparseGraph.VertID;
 import statechum.DeterministicDirectedSparseGraph.VertID.VertKind;
 import statechum.DeterministicDirectedSparseGraph.VertexID;
+import statechum.JUConstants;
 import statechum.Label;
 import statechum.Pair;
 import statechum.analysis.learning.PairScore;
@@ -35,9 +36,12 @@ import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
 import statechum.analysis.learning.smt.SmtLabelRepresentation;
 import statechum.analysis.learning.smt.SmtLabelRepresentation.AbstractState;
 import statechum.collections.ArrayMapWithSearchPos;
+import statechum.collections.IntArrayTransitionMatrix;
+import statechum.collections.MappedTransitionMatrix;
 import statechum.collections.MapWithSearch;
 import statechum.model.testset.PTASequenceEngine.FSMAbstraction;
 
+import java.io.File;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -365,9 +369,43 @@ public class LearnerGraph extends AbstractLearnerGraph<CmpVertex,LearnerGraphCac
 	{
 		if (config.getTransitionMatrixImplType() == STATETREE.STATETREE_ARRAY)
 			return new ArrayMapWithSearchPos<>();
+		if (config.getTransitionMatrixImplType() == STATETREE.STATETREE_INTARRAY || config.getTransitionMatrixImplType() == STATETREE.STATETREE_MAPPED)
+			return IntArrayTransitionMatrix.createRow();// detached until added to a matrix, ordered in the same way as TreeMap.
 		return new TreeMapWithSearch<>();// using TreeMap makes everything predictable
 	}
 
+	/** Deterministic graphs can store transitions in a pool of integers rather than in a map per state, hence the override.
+	 * All graphs of this type have rows with {@link CmpVertex} as targets, therefore the cast is safe. 
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public <TARGET_TYPE_A,CACHE_TYPE_A extends CachedData<TARGET_TYPE_A,CACHE_TYPE_A>> MapWithSearch<VertID,CmpVertex,MapWithSearch<Label,Label,TARGET_TYPE_A>> createNewTransitionMatrix(Pair<Integer,Integer> pos_neg)
+	{
+		if (config.getTransitionMatrixImplType() == STATETREE.STATETREE_INTARRAY)
+			return (MapWithSearch)new IntArrayTransitionMatrix(pos_neg.firstElem+pos_neg.secondElem);
+		if (config.getTransitionMatrixImplType() == STATETREE.STATETREE_MAPPED)
+			return (MapWithSearch)createMappedTransitionMatrix(pos_neg.firstElem+pos_neg.secondElem);
+		return super.createNewTransitionMatrix(pos_neg);
+	}
+
+	@Override
+	public <TARGET_TYPE_A,CACHE_TYPE_A extends CachedData<TARGET_TYPE_A,CACHE_TYPE_A>> MapWithSearch<VertID,CmpVertex,MapWithSearch<Label,Label,CmpVertex>>
+		createNewTransitionMatrix(AbstractLearnerGraph<TARGET_TYPE_A,CACHE_TYPE_A> graph)
+	{
+		if (config.getTransitionMatrixImplType() == STATETREE.STATETREE_INTARRAY)
+			return new IntArrayTransitionMatrix(graph.transitionMatrix.size());
+		if (config.getTransitionMatrixImplType() == STATETREE.STATETREE_MAPPED)
+			return createMappedTransitionMatrix(graph.transitionMatrix.size());
+		return super.createNewTransitionMatrix(graph);
+	}
+
+	/** Creates a transition matrix with transitions in a memory-mapped file in the directory set in the configuration. */
+	protected MappedTransitionMatrix createMappedTransitionMatrix(int expectedStates)
+	{
+		String directory = config.getMappedTransitionMatrixDirectory();
+		return new MappedTransitionMatrix(expectedStates, directory == null?null:new File(directory));
+	}
+
 	@Override
 	public void addTransition(MapWithSearch<Label,Label, CmpVertex> row, Label input, CmpVertex target)
 	{
@@ -481,6 +519,30 @@ public class LearnerGraph extends AbstractLearnerGraph<CmpVertex,LearnerGraphCac
 		row.remove(input);
 	}
 
+	/** In addition to updating the relation, removes retained scores that depend on the supplied states and the index of the graph. */
+	@Override
+	public void addToCompatibility(CmpVertex A, CmpVertex B,JUConstants.PAIRCOMPATIBILITY what)
+	{
+		super.addToCompatibility(A, B, what);
+		if (learnerCache.pairScoreCache != null)
+		{
+			learnerCache.pairScoreCache.invalidate(A);learnerCache.pairScoreCache.invalidate(B);
+		}
+		learnerCache.indexedGraph = null;// it records incompatible states
+	}
+
+	/** In addition to updating the relation, removes retained scores that depend on the supplied states and the index of the graph. */
+	@Override
+	public void removeFromIncompatibles(CmpVertex A, CmpVertex B)
+	{
+		super.removeFromIncompatibles(A, B);
+		if (learnerCache.pairScoreCache != null)
+		{
+			learnerCache.pairScoreCache.invalidate(A);learnerCache.pairScoreCache.invalidate(B);
+		}
+		learnerCache.indexedGraph = null;// it records incompatible states
+	}
+
 	@Override
 	public AbstractLearnerGraph<CmpVertex, LearnerGraphCachedData> copy(Configuration conf) 
 	{
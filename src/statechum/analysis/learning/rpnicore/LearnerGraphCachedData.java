@@ -79,11 +79,39 @@ public class LearnerGraphCachedData extends CachedData<CmpVertex,LearnerGraphCac
 		stateLearnt = arg;
 	}
 	
+	/** Scores of pairs of states retained between merges, null if {@link statechum.Configuration#getIncrementalPairScores()} is not set 
+	 * or scores have not yet been computed. 
+	 */
+	protected PairScoreCache pairScoreCache = null;
+	
+	public PairScoreCache getPairScoreCache()
+	{
+		return pairScoreCache;
+	}
+	
+	/** Returns the cache of scores, creating it if there is none. Synchronized because scores are computed by multiple threads. */
+	public synchronized PairScoreCache obtainPairScoreCache()
+	{
+		if (pairScoreCache == null)
+			pairScoreCache = new PairScoreCache();
+		return pairScoreCache;
+	}
+	
+	/** Transitions and incompatible states in terms of indices, used by {@link GeneralPairScoreScratch}. Built on demand. */
+	protected GeneralPairScoreScratch.IndexedGraph indexedGraph = null;
+	
+	public synchronized GeneralPairScoreScratch.IndexedGraph getIndexedGraph()
+	{
+		if (indexedGraph == null)
+			indexedGraph = new GeneralPairScoreScratch.IndexedGraph((LearnerGraph)coregraph);
+		return indexedGraph;
+	}
+	
 	@Override
 	public void invalidate()
 	{
 		super.invalidate();
-		mergedStates = null;maxScore=-1;stateLearnt = null;
+		mergedStates = null;maxScore=-1;stateLearnt = null;pairScoreCache = null;indexedGraph = null;
 		abstractStateToLabelPreviouslyChecked = null;
 		mergedToHardFacts=null;
 	}
@@ -37,6 +37,7 @@ import statechum.DeterministicDirectedSparseGraph;
 import statechum.DeterministicDirectedSparseGraph.VertID;
 import statechum.GlobalConfiguration;
 import statechum.JUConstants;
+import statechum.LearnerMetrics;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.DeterministicDirectedSparseGraph.DeterministicVertex;
 import statechum.analysis.learning.StatePair;
@@ -156,6 +157,7 @@ public class MergeStates {
 	 */
 	public static LearnerGraph mergeCollectionOfVertices(LearnerGraph original,CmpVertex redVertex, Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices, boolean updateAuxInformation)
 	{
+		long started = LearnerMetrics.startPhase();
 		LearnerGraph result = new LearnerGraph(original.config);result.initEmpty();
 		Configuration cloneConfig = result.config.copy();cloneConfig.setLearnerCloneGraph(true);
 		LearnerGraph configHolder = new LearnerGraph(cloneConfig);
@@ -244,6 +246,12 @@ public class MergeStates {
 		}
 		
 		result.layoutOptions = original.layoutOptions.copy();result.learnerCache.invalidate();
+		if (original.learnerCache.pairScoreCache != null)
+		{// scores of pairs are moved to the outcome of merging, since only the outcome is consistent with them after invalidation.
+			PairScoreCache scoreCache = original.learnerCache.pairScoreCache;original.learnerCache.pairScoreCache = null;
+			scoreCache.invalidate(mergedVertices);
+			result.learnerCache.pairScoreCache = scoreCache;
+		}
 		if (redVertex != null)
 		{
 			CmpVertex vertInSource = redVertex;
@@ -261,6 +269,7 @@ public class MergeStates {
 			result.pathroutines.updateDepthLabelling();
 		}
 
+		LearnerMetrics.endPhase(LearnerMetrics.PHASE.MERGE, started);
 		return result;
 	}
 
@@ -379,6 +388,7 @@ public class MergeStates {
 	 */
 	public static LearnerGraph mergeAndDeterminize(LearnerGraph original,StatePair pair)
 	{
+		long started = LearnerMetrics.startPhase();
 		assert pair.getQ() != pair.getR();
 		if (GlobalConfiguration.getConfiguration().isAssertEnabled() && original.config.getDebugMode()) { PathRoutines.checkPTAConsistency(original, pair.getQ());PathRoutines.checkPTAIsTree(original,null,null,null); }
 		assert original.transitionMatrix.containsKey(pair.firstElem);
@@ -462,6 +472,7 @@ public class MergeStates {
 				if (!result.transitionMatrix.containsKey(target))
 					throw new IllegalArgumentException("vertex "+target+" is not known in a transformed graph");
 		result.learnerCache.invalidate();
+		LearnerMetrics.endPhase(LearnerMetrics.PHASE.MERGE, started);
 		return result;
 	}
 	
@@ -0,0 +1,387 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+
+import statechum.Configuration;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.DeterministicDirectedSparseGraph.VertID;
+import statechum.JUConstants;
+import statechum.Label;
+import statechum.Pair;
+import statechum.analysis.learning.StatePair;
+import statechum.collections.MapWithSearch;
+
+/** Merges states of a graph in place, as an alternative to {@link MergeStates#mergeAndDeterminize_general(LearnerGraph, StatePair)}
+ * which builds a new graph for every merge.
+ * <p>
+ * Every state that is not a representative of its equivalence class is folded into the representative: its transitions are
+ * added to those of the representative, transitions entering it are redirected to the representative and it is removed
+ * from the graph. For this to be done without scanning the whole of the graph, the merger maintains an index of
+ * incoming transitions, built once when the merger is constructed. Folded states are recorded in a union-find
+ * structure, so that {@link #find(VertID)} returns a state of the current graph for any state of the original one.
+ * It uses union by size without path compression, so that a union can be undone by reverting a few entries and
+ * {@link #find(VertID)} takes time logarithmic in the number of states folded together.
+ * Every change is logged, making it possible to {@link #undo()} merges in the reverse order of them being made.
+ * <p>
+ * The outcome is the same as that of {@link MergeStates#mergeAndDeterminize_general(LearnerGraph, StatePair)} in terms of
+ * states, transitions, attributes of vertices and incompatibilities between states. The differences are that
+ * <ul>
+ * <li>vertices are not cloned, hence states of the graph are modified rather than replaced;</li>
+ * <li>merged-to-hard-facts information is not computed;</li>
+ * <li>only equivalence classes of states that participated in a merge are returned and recorded in {@link LearnerGraphCachedData#getMergedStates()},
+ * rather than a class for every state of a graph;</li>
+ * <li>since every state of a graph remains reachable after a merge, unreachable states of the original graph are not removed.</li>
+ * </ul>
+ * The graph to merge states in should not be modified other than via this merger while the merger is in use.
+ *
+ * @author agent
+ */
+public class MergeStatesInPlace
+{
+	/** The graph to merge states in. */
+	protected final LearnerGraph coregraph;
+
+	/** Used to construct vertices in order to determine colours of merged states. */
+	protected final LearnerGraph configHolder;
+
+	/** For each state, transitions entering it. Some of the entries may refer to transitions that have since been redirected or removed,
+	 * hence they have to be checked before use.
+	 */
+	protected final Map<CmpVertex,List<Pair<CmpVertex,Label>>> incoming = new HashMap<>();
+
+	/** Parents of states in the union-find structure. Roots are not included, hence neither are states that were not folded. */
+	protected final Map<VertID,VertID> parent = new HashMap<>();
+
+	/** The number of states in each tree of the union-find structure, for roots of trees with more than one state. */
+	protected final Map<VertID,Integer> size = new HashMap<>();
+
+	/** For each root of a tree with more than one state, the state of the graph all states of the tree have been folded into. */
+	protected final Map<VertID,CmpVertex> stateOfRoot = new HashMap<>();
+
+	/** A change to a graph that can be reverted. */
+	protected interface Change
+	{
+		void revert();
+	}
+
+	/** For each merge, the list of changes to the graph in the order in which they were made. */
+	protected final LinkedList<List<Change>> history = new LinkedList<>();
+
+	/** Equivalence classes used in each of the merges, needed to update the cache of pair scores when merges are undone. */
+	protected final LinkedList<Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>>> historyOfEquivalenceClasses = new LinkedList<>();
+
+	/** Changes of the merge being performed. */
+	protected List<Change> changes = null;
+
+	/** Constructs a merger for the supplied graph, labelling states of the graph with their depth and making each state its own original state,
+	 * which is what {@link MergeStates#mergeAndDeterminize_general(LearnerGraph, StatePair)} does to states it clones.
+	 * This is done once here, so that a merge only has to visit states that participate in it.
+	 *
+	 * @param graph graph to merge states in.
+	 */
+	public MergeStatesInPlace(LearnerGraph graph)
+	{
+		coregraph = graph;
+		Configuration cloneConfig = graph.config.copy();cloneConfig.setLearnerCloneGraph(true);
+		configHolder = new LearnerGraph(cloneConfig);
+		for(Entry<CmpVertex,MapWithSearch<Label,Label,CmpVertex>> entry:coregraph.transitionMatrix.entrySet())
+		{
+			entry.getKey().setOrigState(entry.getKey());
+			for(Entry<Label,CmpVertex> transition:entry.getValue().entrySet())
+				addIncoming(transition.getValue(), entry.getKey(), transition.getKey());
+		}
+		coregraph.pathroutines.updateDepthLabelling();
+	}
+
+	/** Returns the state of the graph into which the supplied state has been folded; the state itself if it was not folded.
+	 *
+	 * @param vertex the state to look for
+	 * @return the state in the current graph, null if the supplied state is not known.
+	 */
+	public CmpVertex find(VertID vertex)
+	{
+		VertID root = findRoot(vertex);
+		CmpVertex result = stateOfRoot.get(root);
+		if (result == null)
+			result = coregraph.transitionMatrix.findKey(root);
+		return result;
+	}
+
+	/** Returns the root of the tree of the union-find structure containing the supplied state. */
+	protected VertID findRoot(VertID vertex)
+	{
+		VertID result = vertex, next = parent.get(result);
+		while(next != null)
+		{
+			result = next;next = parent.get(result);
+		}
+		return result;
+	}
+
+	/** The number of merges that can be undone. */
+	public int getNumberOfMerges()
+	{
+		return history.size();
+	}
+
+	/** Merges the supplied pair of states.
+	 *
+	 * @param pair states to merge
+	 * @return equivalence classes of states that participated in the merge, some of which may be singletons.
+	 * @throws IllegalArgumentException if states of the pair cannot be merged.
+	 */
+	public Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> merge(StatePair pair)
+	{
+		assert coregraph.transitionMatrix.containsKey(pair.firstElem);
+		assert coregraph.transitionMatrix.containsKey(pair.secondElem);
+		Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices = new LinkedList<>();
+		if (coregraph.pairscores.computePairCompatibilityScore_general(pair,null,mergedVertices, false) < 0)
+			throw new IllegalArgumentException("elements of the pair "+pair+" are incompatible");
+
+		changes = new ArrayList<>();
+		List<CmpVertex> representatives = new ArrayList<>(mergedVertices.size());
+		for(EquivalenceClass<CmpVertex,LearnerGraphCachedData> eqClass:mergedVertices)
+			if (eqClass.getStates().size() > 1)
+			{// singleton classes are states that were visited but not merged with anything.
+				CmpVertex representative = eqClass.getRepresentative();representatives.add(representative);
+				eqClass.constructMergedVertex(configHolder,false,false);
+				setColour(representative, eqClass.getMergedVertex().getColour());
+				for(CmpVertex vertex:eqClass.getStates())
+					if (vertex != representative)
+						fold(vertex, representative);
+			}
+		updateDepth(representatives);
+
+		history.add(changes);historyOfEquivalenceClasses.add(mergedVertices);changes = null;
+
+		PairScoreCache scoreCache = coregraph.learnerCache.pairScoreCache;
+		coregraph.learnerCache.invalidate();
+		if (scoreCache != null)
+		{
+			invalidateScores(scoreCache, mergedVertices);coregraph.learnerCache.pairScoreCache = scoreCache;
+		}
+		coregraph.learnerCache.setMergedStates(mergedVertices);
+		coregraph.learnerCache.stateLearnt = find(pair.getR());
+		return mergedVertices;
+	}
+
+	/** Reverts the last merge.
+	 *
+	 * @throws IllegalStateException if there is no merge to undo.
+	 */
+	public void undo()
+	{
+		if (history.isEmpty())
+			throw new IllegalStateException("no merge to undo");
+		List<Change> lastChanges = history.removeLast();
+		Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices = historyOfEquivalenceClasses.removeLast();
+		for(int i=lastChanges.size()-1;i>=0;--i)
+			lastChanges.get(i).revert();
+
+		PairScoreCache scoreCache = coregraph.learnerCache.pairScoreCache;
+		coregraph.learnerCache.invalidate();
+		if (scoreCache != null)
+		{// scores computed after the merge may depend on states that have since been changed.
+			invalidateScores(scoreCache, mergedVertices);coregraph.learnerCache.pairScoreCache = scoreCache;
+		}
+	}
+
+	/** Removes scores depending on states of equivalence classes that were merged, other states are only affected by having
+	 * transitions redirected from folded states, which are themselves in merged equivalence classes.
+	 */
+	private static void invalidateScores(PairScoreCache scoreCache, Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices)
+	{
+		for(EquivalenceClass<CmpVertex,LearnerGraphCachedData> eqClass:mergedVertices)
+			if (eqClass.getStates().size() > 1)
+				for(CmpVertex v:eqClass.getStates())
+					scoreCache.invalidate(v);
+	}
+
+	private void addIncoming(CmpVertex target, CmpVertex source, Label label)
+	{
+		List<Pair<CmpVertex,Label>> transitions = incoming.computeIfAbsent(target, k -> new ArrayList<>());
+		transitions.add(new Pair<>(source,label));
+	}
+
+	/** Records an incoming transition, logging the change. */
+	private void addIncomingAndLog(CmpVertex target, CmpVertex source, Label label)
+	{
+		final List<Pair<CmpVertex,Label>> transitions = incoming.computeIfAbsent(target, k -> new ArrayList<>());
+		transitions.add(new Pair<>(source,label));
+		changes.add(() -> transitions.remove(transitions.size()-1));
+	}
+
+	/** Adds or replaces a transition, logging the change. */
+	private void putTransition(final MapWithSearch<Label,Label,CmpVertex> row, final Label label, CmpVertex target)
+	{
+		final CmpVertex previous = row.put(label, target);
+		changes.add(() -> {
+			if (previous == null)
+				row.remove(label);
+			else
+				row.put(label, previous);
+		});
+	}
+
+	private void setColour(final CmpVertex vertex, JUConstants colour)
+	{
+		final JUConstants previous = vertex.getColour();
+		if (previous != colour)
+		{
+			vertex.setColour(colour);
+			changes.add(() -> vertex.setColour(previous));
+		}
+	}
+
+	private void setDepth(final CmpVertex vertex, int depth)
+	{
+		final int previous = vertex.getDepth();
+		vertex.setDepth(depth);
+		changes.add(() -> vertex.setDepth(previous));
+	}
+
+	private void setCompatibility(final CmpVertex a, final CmpVertex b, JUConstants.PAIRCOMPATIBILITY value)
+	{
+		Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY> row = coregraph.pairCompatibility.compatibility.get(a);
+		final JUConstants.PAIRCOMPATIBILITY previous = row == null?null:row.get(b);
+		if (previous == value)
+			return;
+		if (value == null)
+			coregraph.removeFromIncompatibles(a, b);
+		else
+			coregraph.addToCompatibility(a, b, value);
+		changes.add(() -> {
+			if (previous == null)
+				coregraph.removeFromIncompatibles(a, b);
+			else
+				coregraph.addToCompatibility(a, b, previous);
+		});
+	}
+
+	/** Folds the supplied state into the representative of its equivalence class. */
+	private void fold(final CmpVertex vertex, final CmpVertex representative)
+	{
+		final MapWithSearch<Label,Label,CmpVertex> row = coregraph.transitionMatrix.get(vertex),
+				representativeRow = coregraph.transitionMatrix.get(representative);
+		for(Entry<Label,CmpVertex> transition:row.entrySet())
+			if (!representativeRow.containsKey(transition.getKey()))
+			{// where the representative has a transition with the same label, the target states are in the same equivalence class hence this transition can be ignored.
+				putTransition(representativeRow, transition.getKey(), transition.getValue());
+				addIncomingAndLog(transition.getValue(), representative, transition.getKey());
+			}
+
+		final List<Pair<CmpVertex,Label>> transitionsIn = incoming.remove(vertex);
+		if (transitionsIn != null)
+		{
+			changes.add(() -> incoming.put(vertex, transitionsIn));
+			for(Pair<CmpVertex,Label> transition:transitionsIn)
+				if (transition.firstElem != vertex)
+				{
+					MapWithSearch<Label,Label,CmpVertex> sourceRow = coregraph.transitionMatrix.get(transition.firstElem);
+					if (sourceRow != null && sourceRow.get(transition.secondElem) == vertex)
+					{
+						putTransition(sourceRow, transition.secondElem, representative);
+						addIncomingAndLog(representative, transition.firstElem, transition.secondElem);
+					}
+				}
+		}
+
+		Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY> compatibilityRow = coregraph.pairCompatibility.compatibility.get(vertex);
+		if (compatibilityRow != null)
+			for(Entry<CmpVertex,JUConstants.PAIRCOMPATIBILITY> entry:new ArrayList<>(compatibilityRow.entrySet()))
+			{
+				setCompatibility(vertex, entry.getKey(), null);
+				if (entry.getValue() == JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE)
+					setCompatibility(representative, entry.getKey(), JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+			}
+
+		if (vertex.getDepth() != JUConstants.intUNKNOWN &&
+				(representative.getDepth() == JUConstants.intUNKNOWN || representative.getDepth() > vertex.getDepth()))
+			setDepth(representative, vertex.getDepth());
+
+		if (coregraph.getInit() == vertex)
+		{
+			coregraph.setInit(representative);
+			changes.add(() -> coregraph.setInit(vertex));
+		}
+
+		final MapWithSearch<Label,Label,CmpVertex> removedRow = coregraph.transitionMatrix.remove(vertex);
+		changes.add(() -> coregraph.transitionMatrix.put(vertex, removedRow));
+
+		// now update the union-find structure, attaching the smaller tree to the root of the larger one.
+		final VertID vertexRoot = findRoot(vertex), representativeRoot = findRoot(representative);
+		final Integer vertexSize = size.get(vertexRoot), representativeSize = size.get(representativeRoot);
+		final CmpVertex vertexState = stateOfRoot.get(vertexRoot), representativeState = stateOfRoot.get(representativeRoot);
+		final int vertexCount = vertexSize == null?1:vertexSize, representativeCount = representativeSize == null?1:representativeSize;
+		final VertID root, child;
+		if (vertexCount > representativeCount)
+		{
+			root = vertexRoot;child = representativeRoot;
+		}
+		else
+		{
+			root = representativeRoot;child = vertexRoot;
+		}
+		parent.put(child, root);size.remove(child);size.put(root, vertexCount+representativeCount);
+		stateOfRoot.remove(child);stateOfRoot.put(root, representative);
+		changes.add(() -> {
+			parent.remove(child);
+			restore(size, vertexRoot, vertexSize);restore(size, representativeRoot, representativeSize);
+			restore(stateOfRoot, vertexRoot, vertexState);restore(stateOfRoot, representativeRoot, representativeState);
+		});
+	}
+
+	/** Associates the supplied key with the supplied value in a map, removing the key if the value is null. */
+	private static <K,V> void restore(Map<K,V> map, K key, V value)
+	{
+		if (value == null)
+			map.remove(key);
+		else
+			map.put(key, value);
+	}
+
+	/** Merging states can only reduce the distance of states from the initial state, hence depth is updated by propagating reductions
+	 * in depth from representatives of equivalence classes.
+	 */
+	private void updateDepth(Collection<CmpVertex> representatives)
+	{
+		Queue<CmpVertex> currentExplorationBoundary = new LinkedList<>(representatives);
+		while(!currentExplorationBoundary.isEmpty())
+		{
+			CmpVertex current = currentExplorationBoundary.remove();
+			int depth = current.getDepth();
+			if (depth == JUConstants.intUNKNOWN)
+				continue;
+			for(CmpVertex target:coregraph.transitionMatrix.get(current).values())
+				if (target.getDepth() == JUConstants.intUNKNOWN || target.getDepth() > depth+1)
+				{
+					setDepth(target, depth+1);
+					currentExplorationBoundary.offer(target);
+				}
+		}
+	}
+}
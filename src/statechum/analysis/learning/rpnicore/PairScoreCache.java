@@ -0,0 +1,186 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.DeterministicDirectedSparseGraph.VertID;
+import statechum.analysis.learning.PairScore;
+
+/** Retains scores of pairs of states between merges, so that only scores of pairs affected by a merge have to be recomputed.
+ * <p>
+ * For every pair, we record states whose transitions were examined when its score was computed. A merge changes outgoing
+ * transitions of states in non-trivial equivalence classes; transitions of other states are only redirected to merged vertices,
+ * hence a pair has the same score after a merge unless one of the states it depends on is in an equivalence class of that merge.
+ * Merged vertices keep IDs of representatives of their equivalence classes and other states are cloned with their IDs,
+ * thus the cache can be keyed by IDs and passed from a graph to the outcome of merging,
+ * see {@link MergeStates#mergeCollectionOfVertices}.
+ * <p>
+ * The cache is stored in {@link LearnerGraphCachedData} and hence is dropped by anything that modifies a graph directly.
+ * Methods are synchronized since pairs may be scored on multiple threads.
+ *
+ * @author agent
+ */
+public class PairScoreCache
+{
+	/** Score of a pair of states along with states it depends on. */
+	protected static class CachedScore
+	{
+		final VertID blue, red;
+		final long score, compatibilityScore;
+		final CmpVertex [] dependsOn;
+
+		CachedScore(VertID b, VertID r, long sc, long compat, CmpVertex [] dependencies)
+		{
+			blue = b;red = r;score = sc;compatibilityScore = compat;dependsOn = dependencies;
+		}
+	}
+
+	/** Maps blue states to red states to scores. */
+	protected final Map<VertID,Map<VertID,CachedScore>> scores = new HashMap<>();
+
+	/** Maps states to scores that depend on them. Scores that have been invalidated via a different state may still be listed here,
+	 * these are periodically removed by {@link #purgeDependencies()}.
+	 */
+	protected final Map<VertID,List<CachedScore>> dependents = new HashMap<>();
+
+	/** The number of scores in the cache. */
+	protected int size = 0;
+
+	/** The number of references in <em>dependents</em> to scores that are still in the cache and those that have been removed. */
+	protected long liveDependencies = 0, staleDependencies = 0;
+
+	/** Statistics, useful to evaluate the benefit of caching. */
+	protected long hits = 0, misses = 0;
+
+	/** Returns the score of the supplied pair, null if it has not been cached. The returned pair is constructed using the supplied vertices.
+	 *
+	 * @param blue the blue state
+	 * @param red the red state
+	 * @return the pair with scores, or null if not known.
+	 */
+	public synchronized PairScore get(CmpVertex blue, CmpVertex red)
+	{
+		CachedScore result = null;
+		Map<VertID,CachedScore> redToScore = scores.get(blue);
+		if (redToScore != null)
+			result = redToScore.get(red);
+		if (result == null)
+		{
+			++misses;return null;
+		}
+		++hits;
+		return new PairScore(blue,red,result.score,result.compatibilityScore);
+	}
+
+	/** Records the score of a pair.
+	 *
+	 * @param blue the blue state
+	 * @param red the red state
+	 * @param score the score to record
+	 * @param compatibilityScore the compatibility score to record
+	 * @param dependsOn states transitions of which were examined when the score was computed.
+	 */
+	public synchronized void put(CmpVertex blue, CmpVertex red, long score, long compatibilityScore, Collection<CmpVertex> dependsOn)
+	{
+		CachedScore entry = new CachedScore(blue,red,score,compatibilityScore,dependsOn.toArray(new CmpVertex[0]));
+		Map<VertID,CachedScore> redToScore = scores.computeIfAbsent(blue, k -> new HashMap<>());
+		CachedScore previous = redToScore.put(red, entry);
+		if (previous != null)
+			staleDependencies+=previous.dependsOn.length;
+		else
+			++size;
+		for(CmpVertex v:entry.dependsOn)
+			dependents.computeIfAbsent(v, k -> new ArrayList<>()).add(entry);
+		liveDependencies+=entry.dependsOn.length;
+		if (previous != null) liveDependencies-=previous.dependsOn.length;
+	}
+
+	/** Removes scores of all pairs that depend on the supplied state. */
+	public synchronized void invalidate(VertID vertex)
+	{
+		List<CachedScore> affected = dependents.remove(vertex);
+		if (affected == null)
+			return;
+		for(CachedScore entry:affected)
+		{
+			Map<VertID,CachedScore> redToScore = scores.get(entry.blue);
+			if (redToScore != null && redToScore.get(entry.red) == entry)
+			{// this entry is still live.
+				redToScore.remove(entry.red);--size;
+				if (redToScore.isEmpty())
+					scores.remove(entry.blue);
+				liveDependencies-=entry.dependsOn.length;
+				staleDependencies+=entry.dependsOn.length;
+			}
+			--staleDependencies;// the reference from the list we've just removed.
+		}
+		if (staleDependencies > liveDependencies && staleDependencies > 1024)
+			purgeDependencies();
+	}
+
+	/** Removes scores of all pairs that depend on states of the supplied equivalence classes,
+	 * used after the equivalence classes have been merged.
+	 */
+	public void invalidate(Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices)
+	{
+		for(EquivalenceClass<CmpVertex,LearnerGraphCachedData> eqClass:mergedVertices)
+			for(CmpVertex v:eqClass.getStates())
+				invalidate(v);
+	}
+
+	/** Rebuilds the map from states to scores that depend on them, discarding scores that are no longer in the cache. */
+	protected void purgeDependencies()
+	{
+		dependents.clear();
+		for(Map<VertID,CachedScore> redToScore:scores.values())
+			for(CachedScore entry:redToScore.values())
+				for(CmpVertex v:entry.dependsOn)
+					dependents.computeIfAbsent(v, k -> new ArrayList<>()).add(entry);
+		staleDependencies = 0;
+	}
+
+	/** Removes all scores. */
+	public synchronized void clear()
+	{
+		scores.clear();dependents.clear();size = 0;liveDependencies = 0;staleDependencies = 0;
+	}
+
+	/** The number of pairs with scores in the cache. */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/** The number of times a score was found in the cache. */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/** The number of times a score was not found in the cache. */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+}
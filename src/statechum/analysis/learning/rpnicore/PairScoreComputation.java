@@ -19,6 +19,7 @@ package statechum.analysis.learning.rpnicore;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.stream.IntStream;
 
 import harmony.collections.HashMapWithSearch;
 import statechum.*;
@@ -34,7 +35,9 @@ import statechum.analysis.learning.linear.GDLearnerGraph.DetermineDiagonalAndRig
 import statechum.analysis.learning.linear.GDLearnerGraph.DetermineDiagonalAndRightHandSideInterface;
 import statechum.analysis.learning.linear.GDLearnerGraph.HandleRow;
 import statechum.analysis.learning.linear.GDLearnerGraph.StateBasedRandom;
+import statechum.analysis.learning.linear.SparsePairIndex;
 import statechum.collections.ArrayMapWithSearchPos;
+import statechum.collections.IntArrayTransitionMatrix;
 import statechum.collections.MapWithSearch;
 
 public class PairScoreComputation {
@@ -88,6 +91,7 @@ public class PairScoreComputation {
 
 	public Stack<PairScore> chooseStatePairs(RedNodeSelectionProcedure decisionProcedure)
 	{
+		long started = LearnerMetrics.startPhase();
 		coregraph.pairsAndScores.clear();
 		if (decisionProcedure != null) decisionProcedure.initComputation(coregraph);
 		Collection<CmpVertex> reds = new ArrayList<>();// was: new LinkedHashSet<CmpVertex>();
@@ -98,6 +102,8 @@ public class PairScoreComputation {
 		
 		Queue<CmpVertex> currentExplorationBoundary = new LinkedList<>();// FIFO queue
 		Collection<CmpVertex> RedStatesFound = new ArrayList<>();
+		final int threadNumber = coregraph.config.getPairScoringThreadNumber();
+		List<CmpVertex> blueStates = threadNumber > 1?new ArrayList<>():null;
 		
 		do
 		{
@@ -117,25 +123,34 @@ public class PairScoreComputation {
 					{// the next vertex is not marked red, hence it has to become blue
 						CmpVertex currentBlueState = BlueEntry.getValue();
 						
-						int numberOfCompatiblePairs = 0;
-						for(CmpVertex oldRed:reds)
+						if (blueStates != null)
+							blueStates.add(currentBlueState);// pairs are scored after all blue states have been identified.
+						else
 						{
-							PairScore pair = obtainPair(currentBlueState,oldRed,decisionProcedure);
-							if (pair.getScore() >= coregraph.config.getGeneralisationThreshold())
+							int numberOfCompatiblePairs = 0;
+							for(CmpVertex oldRed:reds)
 							{
-								coregraph.pairsAndScores.add(pair);
-								++numberOfCompatiblePairs;
-								if (GlobalConfiguration.getConfiguration().isAssertEnabled() && coregraph.config.getDebugMode()) PathRoutines.checkPTAConsistency(coregraph, currentBlueState);
+								PairScore pair = obtainPair(currentBlueState,oldRed,decisionProcedure);
+								if (pair.getScore() >= coregraph.config.getGeneralisationThreshold())
+								{
+									coregraph.pairsAndScores.add(pair);
+									++numberOfCompatiblePairs;
+									if (GlobalConfiguration.getConfiguration().isAssertEnabled() && coregraph.config.getDebugMode()) PathRoutines.checkPTAConsistency(coregraph, currentBlueState);
+								}
 							}
-						}
-						
-						if (numberOfCompatiblePairs == 0)
-							RedStatesFound.add(currentBlueState);
 							
+							if (numberOfCompatiblePairs == 0)
+								RedStatesFound.add(currentBlueState);
+						}
 						// This node is current a blue node and remains blue until I decide which of the currently potentially red nodes become red.
 						currentBlueState.setColour(JUConstants.BLUE);
 					}
 			}
+			
+			if (blueStates != null)
+			{
+				scorePairsInParallel(blueStates, reds, decisionProcedure, threadNumber, RedStatesFound);blueStates.clear();
+			}
 	
 			// Now that we have a collection of all potentially red vertices, pick one to make red and then then check if others can remain blue.
 			CmpVertex newRedNode = null;
@@ -162,9 +177,61 @@ public class PairScoreComputation {
 		}
 		while(!RedStatesFound.isEmpty());
 
-		return getSortedPairsAndScoresStackFromUnsorted();
+		Stack<PairScore> result = getSortedPairsAndScoresStackFromUnsorted();
+		LearnerMetrics.endPhase(LearnerMetrics.PHASE.CHOOSE_PAIRS, started);LearnerMetrics.record(LearnerMetrics.HISTOGRAM.CANDIDATE_PAIRS, result.size());
+		return result;
 	}		
 
+	/** Scores every pair of a blue and a red state on a pool of threads and then adds compatible pairs to <em>pairsAndScores</em>
+	 * and blue states not compatible with any red one to <em>redStatesFound</em> in the same order as 
+	 * {@link #chooseStatePairs(RedNodeSelectionProcedure)} does when scoring pairs one by one. 
+	 * This way, the outcome of scoring does not depend on the number of threads. 
+	 * Callbacks of the decision procedure have to be thread-safe. Pairs are scored on the pool shared with row tasks, 
+	 * obtained from {@link GDLearnerGraph#getRowTaskPool(int)}.
+	 * 
+	 * @param blueStates blue states in the order they were encountered, which may include duplicates.
+	 * @param reds red states
+	 * @param decisionProcedure decision procedure, can be null.
+	 * @param threadNumber the number of threads to use.
+	 * @param redStatesFound where to add blue states that are not compatible with any red one.
+	 */
+	protected void scorePairsInParallel(final List<CmpVertex> blueStates, Collection<CmpVertex> reds, final RedNodeSelectionProcedure decisionProcedure, 
+			int threadNumber, Collection<CmpVertex> redStatesFound)
+	{
+		final CmpVertex [] redStates = reds.toArray(new CmpVertex[0]);
+		final PairScore [] scores = new PairScore[blueStates.size()*redStates.length];
+		try
+		{
+			GDLearnerGraph.getRowTaskPool(threadNumber).submit(() -> 
+				IntStream.range(0, scores.length).parallel().forEach(i -> 
+					scores[i] = obtainPair(blueStates.get(i / redStates.length),redStates[i % redStates.length],decisionProcedure))
+			).get();
+		}
+		catch(Exception ex)
+		{
+			IllegalArgumentException e = new IllegalArgumentException("failed to compute, the problem is: "+ex, ex);
+			throw e;
+		}
+		
+		int position = 0;
+		for(CmpVertex currentBlueState:blueStates)
+		{
+			int numberOfCompatiblePairs = 0;
+			for(int i=0;i<redStates.length;++i)
+			{
+				PairScore pair = scores[position++];
+				if (pair.getScore() >= coregraph.config.getGeneralisationThreshold())
+				{
+					coregraph.pairsAndScores.add(pair);
+					++numberOfCompatiblePairs;
+					if (GlobalConfiguration.getConfiguration().isAssertEnabled() && coregraph.config.getDebugMode()) PathRoutines.checkPTAConsistency(coregraph, currentBlueState);
+				}
+			}
+			if (numberOfCompatiblePairs == 0)
+				redStatesFound.add(currentBlueState);
+		}
+	}
+	
 	/** Used to sort the collection of pairs and scores and do the filtering if needed. */
 	public Stack<PairScore>  getSortedPairsAndScoresStackFromUnsorted()
 	{
@@ -181,25 +248,58 @@ public class PairScoreComputation {
 		return result;		
 	}
 	
+	/** Returns the cache of scores to use with the current graph, null if scores should not be cached. */
+	protected PairScoreCache getPairScoreCache()
+	{
+		if (!coregraph.config.getIncrementalPairScores())
+			return null;
+		Configuration.ScoreMode mode = coregraph.config.getLearnerScoreMode();
+		if (mode != Configuration.ScoreMode.CONVENTIONAL && mode != Configuration.ScoreMode.COMPATIBILITY)
+			return null;// scores in other modes depend on the whole of the graph.
+		return coregraph.learnerCache.obtainPairScoreCache();
+	}
+	
 	public PairScore obtainPair(CmpVertex blue, CmpVertex red, ScoreComputationCallback scoreComputationOverride)
 	{
 		long computedScore = -1, compatibilityScore =-1;StatePair pairToComputeFrom = new StatePair(blue,red);
+		PairScoreCache scoreCache = getPairScoreCache();
+		PairScore cachedScore = scoreCache == null?null:scoreCache.get(blue, red);
+		Set<CmpVertex> statesVisited = scoreCache == null?null:new HashSet<>();
+		if (cachedScore != null)
+		{
+			computedScore = cachedScore.getScore();compatibilityScore = cachedScore.getAnotherScore();
+		}
+		else
 		switch(coregraph.config.getLearnerScoreMode())
 		{
 			case ONLYOVERRIDE:
 				computedScore = scoreComputationOverride.overrideScoreComputation(new PairScore(blue,red,0, 0));compatibilityScore=computedScore;
 				return new PairScore(blue,red,computedScore, compatibilityScore);
 			case COMPATIBILITY:
-				computedScore = computePairCompatibilityScore(pairToComputeFrom);compatibilityScore=computedScore;
+				computedScore = computePairCompatibilityScore(pairToComputeFrom,statesVisited);compatibilityScore=computedScore;
 				break;
 			case GENERAL:
 			{
-				Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> collectionOfVerticesToMerge = new ArrayList<>();
-				computedScore = computePairCompatibilityScore_general(pairToComputeFrom,null,collectionOfVerticesToMerge, true);compatibilityScore=computedScore;
+				if (coregraph.config.getGeneralScoresWithScratchBuffers())
+					computedScore = GeneralPairScoreScratch.get().computeScore(coregraph.learnerCache.getIndexedGraph(), blue, red);
+				else
+				{
+					Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> collectionOfVerticesToMerge = new ArrayList<>();
+					computedScore = computePairCompatibilityScore_general(pairToComputeFrom,null,collectionOfVerticesToMerge, true);
+				}
+				compatibilityScore=computedScore;
 				break;
 			}
 			case GENERAL_PLUS_NOFULLMERGE:
 			{
+				if (coregraph.config.getGeneralScoresWithScratchBuffers())
+				{
+					GeneralPairScoreScratch scratch = GeneralPairScoreScratch.get();
+					computedScore = scratch.computeScore(coregraph.learnerCache.getIndexedGraph(), blue, red);compatibilityScore=computedScore;
+					if (computedScore >= 0)
+						computedScore = scratch.getAcceptMerges();
+					break;
+				}
 				Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> collectionOfVerticesToMerge = new ArrayList<>();
 				computedScore = computePairCompatibilityScore_general(pairToComputeFrom,null,collectionOfVerticesToMerge, false);compatibilityScore=computedScore;
 	
@@ -214,25 +314,23 @@ public class PairScoreComputation {
 			}
 			case KTAILS:
 			{// computeStateScore cannot be used here because it will see that we want to do KTails and will not evaluate whether a merge is feasible, hence later causing an experiment to fail with "elements of the pair are incompatible"
-				Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> collectionOfVerticesToMerge = new ArrayList<>();
-				computedScore = computePairCompatibilityScore_general(pairToComputeFrom,null,collectionOfVerticesToMerge, false);
+				computedScore = computePairCompatibilityScore_general(pairToComputeFrom);
 				if (computedScore >= 0)
 					computedScore = coregraph.pairscores.computeStateScoreKTails(pairToComputeFrom,false);
 				break;
 			}
 			case KTAILS_ANY:
 			{// computeStateScore cannot be used here because it will see that we want to do KTails and will not evaluate whether a merge is feasible, hence later causing an experiment to fail with "elements of the pair are incompatible"
-				Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> collectionOfVerticesToMerge = new ArrayList<>();
-				computedScore = computePairCompatibilityScore_general(pairToComputeFrom,null,collectionOfVerticesToMerge, false);
+				computedScore = computePairCompatibilityScore_general(pairToComputeFrom);
 				if (computedScore >= 0)
 					computedScore = coregraph.pairscores.computeStateScoreKTails(pairToComputeFrom,true);
 				break;
 			}
 			default:
-				computedScore = coregraph.pairscores.computeStateScore(pairToComputeFrom);
+				computedScore = coregraph.pairscores.computeStateScore(pairToComputeFrom,statesVisited);
 				if (computedScore >= 0)
 				{
-					compatibilityScore=	computePairCompatibilityScore(pairToComputeFrom);
+					compatibilityScore=	computePairCompatibilityScore(pairToComputeFrom,statesVisited);
 					if (compatibilityScore < 0)
 						computedScore = -1;
 				}
@@ -245,6 +343,9 @@ public class PairScoreComputation {
 				}
 				break;
 		}
+		
+		if (cachedScore == null && scoreCache != null)
+			scoreCache.put(blue, red, computedScore, compatibilityScore, statesVisited);
 
 		if (blue.isAccept() && computedScore < coregraph.config.getRejectPositivePairsWithScoresLessThan())
 			computedScore = -1;
@@ -255,11 +356,22 @@ public class PairScoreComputation {
 	}
 
 	public int computePairCompatibilityScore(StatePair origPair)
+	{
+		return computePairCompatibilityScore(origPair, null);
+	}
+	
+	/** Computes a compatibility score, recording states that were explored.
+	 *  
+	 * @param origPair the pair to compute a score for
+	 * @param statesVisited if not null, states transitions of which are examined during score computation are added to this collection.
+	 * @return the compatibility score, negative if states are not compatible.
+	 */
+	public int computePairCompatibilityScore(StatePair origPair, Collection<CmpVertex> statesVisited)
 	{
 		Map<CmpVertex,List<CmpVertex>> mergedVertices = AbstractLearnerGraph.constructMap(coregraph.config,coregraph);
 		// for every vertex of the model, gives a set of PTA vertices which were joined to it, for those of them which lead to a new (PTA-only) state
 		// note that PTA states may easily be merged with other PTA states, in which case they will feature as keys of this set.
-		return computePairCompatibilityScore_internal(origPair, mergedVertices);
+		return computePairCompatibilityScore_internal(origPair, mergedVertices, statesVisited);
 	}
 	
 	
@@ -301,6 +413,12 @@ public class PairScoreComputation {
 	 * @return a pair of states to be merged or null if the graph is deterministic.
 	 */
 	public int computePairCompatibilityScore_internal(StatePair origPair,Map<CmpVertex,List<CmpVertex>> mergedVertices) 
+	{
+		return computePairCompatibilityScore_internal(origPair, mergedVertices, null);
+	}
+	
+	/** Same as {@link #computePairCompatibilityScore_internal(StatePair, Map)} but adds all states that were explored to <em>statesVisited</em>, if it is not null. */
+	public int computePairCompatibilityScore_internal(StatePair origPair,Map<CmpVertex,List<CmpVertex>> mergedVertices, Collection<CmpVertex> statesVisited) 
 	{
 		mergedVertices.clear();// for every vertex of the model, gives a set of PTA vertices which were joined to it, for those of them which lead to a new (PTA-only) state
 			// note that PTA states may easily be merged with other PTA states, in which case they will feature as keys of this set.
@@ -313,6 +431,10 @@ public class PairScoreComputation {
 		while(!currentExplorationBoundary.isEmpty())
 		{
 			StatePair currentPair = currentExplorationBoundary.remove();Boolean redFromPta = currentRedFromPta.remove();
+			if (statesVisited != null)
+			{
+				statesVisited.add(currentPair.getQ());statesVisited.add(currentPair.getR());
+			}
 			boolean RedAndBlueToBeMerged = false;// this one is set to true if states in the current pair have to be merged. 
 			// This will be so for all state pairs where a blue node can 
 			// make moves which the red one cannot match. The term "merged" does not refer to whether 
@@ -467,6 +589,21 @@ public class PairScoreComputation {
 		return singleton;
 	}
 	
+	/** Computes the number of states that would be merged if the supplied pair were merged, -1 if the pair cannot be merged.
+	 * Where {@link Configuration#getGeneralScoresWithScratchBuffers()} is set, this is done without constructing equivalence classes, 
+	 * using {@link GeneralPairScoreScratch}.
+	 * 
+	 * @param pairToMerge pair to merge
+	 * @return the same value as that returned by {@link #computePairCompatibilityScore_general(StatePair, Collection, Collection, boolean)}.
+	 */
+	public int computePairCompatibilityScore_general(StatePair pairToMerge)
+	{
+		if (coregraph.config.getGeneralScoresWithScratchBuffers())
+			return GeneralPairScoreScratch.get().computeScore(coregraph.learnerCache.getIndexedGraph(), pairToMerge.getQ(), pairToMerge.getR());
+		
+		return computePairCompatibilityScore_general(pairToMerge,null,new ArrayList<EquivalenceClass<CmpVertex,LearnerGraphCachedData>>(), false);
+	}
+	
 	/** Similar to computePairCompatibilityScore_internal but can operate 
 	 * on arbitrary graphs rather than just a graph and a PTA.
 	 * 
@@ -643,9 +780,27 @@ public class PairScoreComputation {
 	 */
 	public long computeStateScore(StatePair pair)
 	{
+		return computeStateScore(pair, null);
+	}
+	
+	/** Computes scores by navigating a cross-product of this machine, with itself.
+	 * 
+	 *  @param pair the pair to compute a score for
+	 *  @param statesVisited if not null, states transitions of which are examined during score computation are added to this collection.
+	 *  @return the resulting score, reflecting compatibility.
+	 */
+	public long computeStateScore(StatePair pair, Collection<CmpVertex> statesVisited)
+	{
+		if (statesVisited != null)
+		{
+			statesVisited.add(pair.getQ());statesVisited.add(pair.getR());
+		}
 		if (!AbstractLearnerGraph.checkCompatible(pair.getR(),pair.getQ(),coregraph.pairCompatibility))
 			return -1;
 
+		if (coregraph.transitionMatrix instanceof IntArrayTransitionMatrix)
+			return computeStateScoreIntArray(pair, (IntArrayTransitionMatrix)coregraph.transitionMatrix, statesVisited);
+		
 		long score = 0;
 		int currentExplorationDepth=1;
 		assert pair.getQ() != pair.getR();
@@ -675,6 +830,10 @@ public class PairScoreComputation {
 					CmpVertex nextBlueState = targetBlue.get(redEntry.getKey());
 					if (nextBlueState != null)
 					{// both states can make a transition
+						if (statesVisited != null)
+						{
+							statesVisited.add(nextBlueState);statesVisited.add(redEntry.getValue());
+						}
 						if (!AbstractLearnerGraph.checkCompatible(redEntry.getValue(),nextBlueState,coregraph.pairCompatibility))
 							return -1;// incompatible states
 						
@@ -706,6 +865,104 @@ public class PairScoreComputation {
 		return score;
 	}
 
+	/** Marks the end of a wave in the queue used by {@link #computeStateScoreIntArray}. */
+	private static final int WAVE_END = -1;
+	
+	/** Does the same as {@link #computeStateScore(StatePair)} but navigates the cross-product in terms of indices of 
+	 * states and labels in the supplied matrix. Pairs of states are stored in an array of integers rather than as
+	 * {@link StatePair} objects; since rows of the matrix are sorted by label, the order of exploration is the same as
+	 * that of {@link #computeStateScore(StatePair)}.
+	 *  
+	 * @param pair the pair to compute a score for, assumed compatible.
+	 * @param matrix transition matrix of the graph.
+	 * @param statesVisited if not null, states transitions of which are examined during score computation are added to this collection.
+	 * @return the resulting score, reflecting compatibility.
+	 */
+	protected long computeStateScoreIntArray(StatePair pair, IntArrayTransitionMatrix matrix, Collection<CmpVertex> statesVisited)
+	{
+		long score = 0;
+		int currentExplorationDepth=1;
+		assert pair.getQ() != pair.getR();
+		boolean foundKTail = false;
+		final boolean ktails = coregraph.config.getLearnerScoreMode() == Configuration.ScoreMode.KTAILS;
+		final int klimit = coregraph.config.getKlimit();
+		
+		int [] queue = new int[16];// each pair takes two cells, blue followed by red, WAVE_END occupies a single cell.
+		int head = 0, tail = 0;
+		queue[tail++]=matrix.vertexToIndex(pair.getQ());queue[tail++]=matrix.vertexToIndex(pair.getR());queue[tail++]=WAVE_END;
+		
+		while(!foundKTail)
+		{
+			int blue = queue[head++];
+			if (blue == WAVE_END)
+			{// we got to the end of a wave
+				if (head == tail)
+					break;// we are at the end of the last wave, stop looping.
+
+				// mark the end of a wave.
+				if (tail == queue.length)
+				{
+					queue = compactQueue(queue, head, tail, 1);tail -= head;head = 0;
+				}
+				queue[tail++]=WAVE_END;currentExplorationDepth++;
+			}
+			else
+			{
+				int red = queue[head++];
+				for(int i=0,size=matrix.getRowSize(red);i<size;++i)
+				{
+					int nextBlue = matrix.getTarget(blue, matrix.getRowLabel(red, i));
+					if (nextBlue >= 0)
+					{// both states can make a transition
+						int nextRed = matrix.getRowTarget(red, i);
+						if (statesVisited != null)
+						{
+							statesVisited.add(matrix.indexToVertex(nextBlue));statesVisited.add(matrix.indexToVertex(nextRed));
+						}
+						if (!AbstractLearnerGraph.checkCompatible(matrix.indexToVertex(nextRed),matrix.indexToVertex(nextBlue),coregraph.pairCompatibility))
+							return -1;// incompatible states
+						
+						if (ktails && currentExplorationDepth >= klimit)
+						{
+							foundKTail = true;
+							break;// we found a path of the "currentExplorationDepth" length and using the KTAILS method, hence stop the loop.
+						}
+
+						++score;
+						
+						if (tail + 2 > queue.length)
+						{
+							queue = compactQueue(queue, head, tail, 2);tail -= head;head = 0;
+						}
+						queue[tail++]=nextBlue;queue[tail++]=nextRed;
+					}
+					// if the red can make a move, but the blue one cannot, ignore this case.
+				}
+			}
+		}
+		
+		if (coregraph.config.isBumpPositives() && pair.getQ().isAccept())
+			score++;// bumpPositives is used to give an extra weight to state pairs which are both compatible and positive (i.e. discourage reject-reject state pairs).
+		
+		if (foundKTail)
+		{// If we are operating in a k-tails mode, report a very high number if we found a k-tail.
+			if (coregraph.learnerCache.maxScore < 0) coregraph.learnerCache.maxScore = (long) coregraph.transitionMatrix.size() *coregraph.pathroutines.computeAlphabet().size();
+			score = coregraph.learnerCache.maxScore+1;
+		}
+		return score;
+	}
+	
+	/** Moves the live part of the queue to the start of an array that has space for at least <em>extra</em> more cells. */
+	private static int [] compactQueue(int [] queue, int head, int tail, int extra)
+	{
+		int live = tail - head;
+		int [] result = queue;
+		if (live + extra > queue.length)
+			result = new int[Math.max(2*queue.length, live+extra)];
+		System.arraycopy(queue, head, result, 0, live);
+		return result;
+	}
+
 	/** Computes scores by navigating a cross-product of this machine, with itself. Implements the k-tails method.
 	 * 
 	 *  @param pair the pair to compute a score for
@@ -892,6 +1149,24 @@ public class PairScoreComputation {
 			throw new IllegalArgumentException("computation algorithm "+coregraph.config.getGdScoreComputationAlgorithm()+" is not currently supported");
 		}
 		
+		if (coregraph.config.getGdSparsePairs() && threshold >= 0 &&
+				coregraph.config.getGdScoreComputationAlgorithm() == Configuration.GDScoreComputationAlgorithmEnum.SCORE_LINEAR)
+		{// pairs not in the index have zero scores or are incompatible, neither of which is above the threshold.
+			SparsePairIndex pairs = ndGraph.buildSparsePairIndex();
+			LSolver solver = ndGraph.buildMatrixSparse(pairs, ThreadNumber, ddrh);
+			solver.solve(ThreadNumber);
+			solver.freeAllButResult();
+			coregraph.pairsAndScores.clear();
+			for(int pair=0;pair<pairs.size();++pair)
+			{
+				int index = pairs.getNumber(pair);
+				if (index >= 0 && solver.j_x[index] > threshold)
+					coregraph.pairsAndScores.add(new PairScore(ndGraph.getNumberToState()[pairs.getFirst(pair)], ndGraph.getNumberToState()[pairs.getSecond(pair)], 
+							(int)(scale*solver.j_x[index]), 0));
+			}
+			return;
+		}
+		
 		final int [] incompatiblePairs = new int[ndGraph.getStateNumber()*(ndGraph.getStateNumber()+1)/2];
 		Arrays.fill(incompatiblePairs, GDLearnerGraph.PAIR_OK);
 		final int pairsNumber = ndGraph.findIncompatiblePairs(incompatiblePairs,ThreadNumber);
@@ -980,8 +1255,7 @@ public class PairScoreComputation {
 					}
 				});
 			}
-			GDLearnerGraph.performRowTasks(handlerList, ThreadNumber, coregraph.transitionMatrix,LearnerGraphND.ignoreNone,
-					GDLearnerGraph.partitionWorkLoadTriangular(ThreadNumber,coregraph.transitionMatrix.size()));
+			GDLearnerGraph.performRowTasksAdaptive(handlerList, ThreadNumber, coregraph.transitionMatrix,LearnerGraphND.ignoreNone);
 			// now collect the results of processing
 			for(int threadCnt=0;threadCnt<ThreadNumber;++threadCnt)
 				coregraph.pairsAndScores.addAll(resultsPerThread[threadCnt]);
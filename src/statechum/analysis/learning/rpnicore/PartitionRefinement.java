@@ -0,0 +1,436 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import statechum.Configuration;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.Label;
+
+/** Computes language equivalence of states of a deterministic automaton using Hopcroft's partition refinement,
+ * taking <em>O(n k log n)</em> time for <em>n</em> states and <em>k</em> labels. The automaton is made complete by adding a
+ * reject sink state, transitions missing in the original graph are assumed to lead to it. This way states accepting an empty
+ * language end up in the same block as the sink, as is the case with {@link WMethod#computeWSet_reducedmemory(LearnerGraph)}.
+ * <p>
+ * States and labels are numbered and the transition diagram is stored as an array, blocks of a partition are
+ * contiguous ranges in an array of states. Where requested, a splitting tree is then built: its root contains all states,
+ * each internal node is associated with a sequence distinguishing between all states in different children of it and leaves are
+ * blocks of equivalent states. Blocks split by Hopcroft's algorithm are not separated by a single sequence in general, hence the tree is
+ * built the way Moore's algorithm refines a partition: a leaf is split using a label leading its states to different leaves,
+ * and the sequence of the new node is this label followed by the sequence of the closest common ancestor of those leaves.
+ * There are at most <em>n-1</em> internal nodes, hence there are at most <em>n-1</em> separating sequences and the tree takes memory
+ * linear in the number of states.
+ * <p>
+ * Building the tree does not have the complexity of Hopcroft's algorithm. Leaves are retried once per pass and there can be up to <em>n</em>
+ * passes, taking <em>O(n<sup>2</sup> k)</em>. Where a leaf is split, each of its states is traced from a leaf to the closest common
+ * ancestor, taking up to <em>h</em> steps for a tree of height <em>h</em>, and every state is in at most <em>h</em> leaves being split,
+ * hence the worst case is <em>O(n<sup>2</sup> k + n h<sup>2</sup>)</em>, <em>O(n<sup>3</sup>)</em> for a tree where every split
+ * separates a single state. Sequences of a characterising set can be up to <em>n-1</em> long, hence returning them takes
+ * <em>O(n<sup>2</sup>)</em> in the worst case regardless of how the tree is built. Mealy automata are not supported.
+ *
+ * @author agent
+ */
+public class PartitionRefinement
+{
+	/** States of the graph, with the sink state at the end. */
+	protected final CmpVertex [] states;
+
+	/** The number of the sink state, equal to the number of states in the graph. */
+	protected final int sink;
+
+	protected final Label [] labels;
+
+	/** The number of states including the sink and the number of labels. */
+	protected final int stateNumber, labelNumber;
+
+	/** The transition diagram, where the target of a transition from state <em>s</em> with label <em>a</em> is stored at <em>s*labelNumber+a</em>. */
+	protected final int [] delta;
+
+	/** Sources of transitions leading to state <em>t</em> with label <em>a</em> are stored in <em>inverseSources</em> starting from <em>inverseStart[a*stateNumber+t]</em>. */
+	protected final int [] inverseStart, inverseSources;
+
+	/** States in the order of blocks they belong to and the position of each state in this array. */
+	protected final int [] elements, location;
+
+	/** For each state, the block it belongs to. */
+	protected final int [] blockOf;
+
+	/** For each block, the range of positions in <em>elements</em> it occupies and the number of states marked during the current split. */
+	protected final int [] blockFirst, blockEnd, blockMarked;
+
+	protected int blockNumber = 0;
+
+	/** Nodes of the splitting tree, only built if requested. For each node, its parent, depth, the first of its children and the next child of its parent. */
+	protected final int [] nodeParent, nodeDepth, nodeFirstChild, nodeNextSibling;
+
+	/** For each internal node, the label its sequence starts with and the node whose sequence follows this label. */
+	protected final int [] nodeLabel, nodeNext;
+
+	/** The range of positions in <em>nodeElements</em> occupied by states of each node. */
+	protected final int [] nodeFirst, nodeEnd;
+
+	/** States in the order of leaves of the splitting tree and the leaf each state belongs to. */
+	protected final int [] nodeElements, leafOf;
+
+	/** Internal nodes in the order they were split, each of which comes after the nodes its sequence continues with. */
+	protected final int [] splitOrder;
+
+	protected int nodeNumber = 0, splitNumber = 0;
+
+	/** Value of <em>nodeLabel</em> for a node separating states by acceptance conditions. */
+	protected static final int W_EMPTY = -1;
+
+	/** Builds the partition of states of the supplied graph into blocks of equivalent states.
+	 *
+	 * @param graph the graph to process
+	 * @param recordSeparatingSequences whether to build the splitting tree needed by {@link #computeWSet(boolean)}.
+	 */
+	public PartitionRefinement(LearnerGraph graph, boolean recordSeparatingSequences)
+	{
+		if (graph.config.getLabelKind() == Configuration.LABELKIND.LABEL_INPUT_OUTPUT)
+			throw new IllegalArgumentException("partition refinement does not support Mealy automata");
+		sink = graph.transitionMatrix.size();stateNumber = sink+1;
+		states = new CmpVertex[stateNumber];
+		Map<CmpVertex,Integer> stateToInt = new HashMap<>(stateNumber*2);
+		int stateCounter = 0;
+		for(CmpVertex state:graph.transitionMatrix.keySet())
+		{
+			states[stateCounter] = state;stateToInt.put(state, stateCounter++);
+		}
+		Map<Label,Integer> labelToInt = new LinkedHashMap<>();
+		for(Map<Label,CmpVertex> row:graph.transitionMatrix.values())
+			for(Label label:row.keySet())
+				if (!labelToInt.containsKey(label))
+					labelToInt.put(label, labelToInt.size());
+		labelNumber = labelToInt.size();labels = labelToInt.keySet().toArray(new Label[0]);
+
+		delta = new int[stateNumber*labelNumber];Arrays.fill(delta, sink);
+		int [] inverseCount = new int[labelNumber*stateNumber+1];
+		for(Entry<CmpVertex,? extends Map<Label,CmpVertex>> entry:graph.transitionMatrix.entrySet())
+		{
+			int from = stateToInt.get(entry.getKey());
+			for(Entry<Label,CmpVertex> transition:entry.getValue().entrySet())
+				delta[from*labelNumber+labelToInt.get(transition.getKey())] = stateToInt.get(transition.getValue());
+		}
+		for(int from=0;from<stateNumber;++from)
+			for(int label=0;label<labelNumber;++label)
+				++inverseCount[label*stateNumber+delta[from*labelNumber+label]];
+		inverseStart = new int[labelNumber*stateNumber+1];
+		for(int i=0;i<labelNumber*stateNumber;++i)
+			inverseStart[i+1] = inverseStart[i]+inverseCount[i];
+		inverseSources = new int[stateNumber*labelNumber];
+		int [] inversePos = Arrays.copyOf(inverseStart, inverseStart.length);
+		for(int from=0;from<stateNumber;++from)
+			for(int label=0;label<labelNumber;++label)
+				inverseSources[inversePos[label*stateNumber+delta[from*labelNumber+label]]++] = from;
+
+		elements = new int[stateNumber];location = new int[stateNumber];blockOf = new int[stateNumber];
+		blockFirst = new int[stateNumber];blockEnd = new int[stateNumber];blockMarked = new int[stateNumber];
+		refine();
+
+		if (recordSeparatingSequences)
+		{// a tree with n leaves has at most n-1 internal nodes.
+			nodeParent = new int[2*stateNumber];nodeDepth = new int[2*stateNumber];nodeFirstChild = new int[2*stateNumber];nodeNextSibling = new int[2*stateNumber];
+			nodeLabel = new int[2*stateNumber];nodeNext = new int[2*stateNumber];nodeFirst = new int[2*stateNumber];nodeEnd = new int[2*stateNumber];
+			nodeElements = new int[stateNumber];leafOf = new int[stateNumber];splitOrder = new int[stateNumber];
+			buildSplittingTree();
+		}
+		else
+		{
+			nodeParent = null;nodeDepth = null;nodeFirstChild = null;nodeNextSibling = null;nodeLabel = null;nodeNext = null;
+			nodeFirst = null;nodeEnd = null;nodeElements = null;leafOf = null;splitOrder = null;
+		}
+	}
+
+	protected void refine()
+	{
+		int acceptNumber = 0;
+		for(int state=0;state<sink;++state)
+			if (states[state].isAccept())
+				elements[acceptNumber++] = state;
+		int pos = acceptNumber;
+		for(int state=0;state<stateNumber;++state)
+			if (state == sink || !states[state].isAccept())
+				elements[pos++] = state;
+		for(int i=0;i<stateNumber;++i)
+		{
+			location[elements[i]] = i;blockOf[elements[i]] = i < acceptNumber?0:1;
+		}
+		if (acceptNumber == 0)
+		{// there are no accept-states, all states are equivalent.
+			blockNumber = 1;blockFirst[0]=0;blockEnd[0]=stateNumber;
+			Arrays.fill(blockOf, 0);
+			return;
+		}
+		blockNumber = 2;blockFirst[0] = 0;blockEnd[0] = acceptNumber;blockFirst[1] = acceptNumber;blockEnd[1] = stateNumber;
+
+		// Each element of the worklist is a block and a label, flags record what is in the worklist.
+		boolean [] inWorklist = new boolean[stateNumber*labelNumber];
+		int [] worklist = new int[stateNumber*labelNumber];int worklistSize = 0;
+		int smallest = acceptNumber <= stateNumber-acceptNumber?0:1;
+		for(int label=0;label<labelNumber;++label)
+		{
+			worklist[worklistSize++] = smallest*labelNumber+label;inWorklist[smallest*labelNumber+label] = true;
+		}
+
+		int [] splitter = new int[stateNumber], touched = new int[stateNumber];
+		while(worklistSize > 0)
+		{
+			int item = worklist[--worklistSize];inWorklist[item] = false;
+			int splitterBlock = item / labelNumber, label = item % labelNumber;
+			// states of the splitter are copied because marking may reorder them.
+			int splitterSize = blockEnd[splitterBlock]-blockFirst[splitterBlock];
+			System.arraycopy(elements, blockFirst[splitterBlock], splitter, 0, splitterSize);
+			int touchedNumber = 0;
+			for(int i=0;i<splitterSize;++i)
+			{
+				int target = splitter[i], inverseOffset = label*stateNumber+target;
+				for(int j=inverseStart[inverseOffset];j<inverseStart[inverseOffset+1];++j)
+				{
+					int source = inverseSources[j], block = blockOf[source];
+					int markedEnd = blockFirst[block]+blockMarked[block];
+					if (location[source] >= markedEnd)
+					{// not yet marked, move it to the marked part of its block
+						int other = elements[markedEnd];
+						elements[location[source]] = other;location[other] = location[source];
+						elements[markedEnd] = source;location[source] = markedEnd;
+						if (blockMarked[block]++ == 0)
+							touched[touchedNumber++] = block;
+					}
+				}
+			}
+
+			for(int i=0;i<touchedNumber;++i)
+			{
+				int block = touched[i], marked = blockMarked[block];blockMarked[block] = 0;
+				if (marked == blockEnd[block]-blockFirst[block])
+					continue;// all states of this block lead to the splitter
+
+				int newBlock = blockNumber++;
+				blockFirst[newBlock] = blockFirst[block];blockEnd[newBlock] = blockFirst[block]+marked;blockFirst[block] = blockEnd[newBlock];
+				for(int p=blockFirst[newBlock];p<blockEnd[newBlock];++p)
+					blockOf[elements[p]] = newBlock;
+
+				boolean newSmaller = marked <= blockEnd[block]-blockFirst[block];
+				for(int c=0;c<labelNumber;++c)
+				{
+					int toAdd = inWorklist[block*labelNumber+c] || newSmaller?newBlock:block;
+					if (!inWorklist[toAdd*labelNumber+c])
+					{
+						worklist[worklistSize++] = toAdd*labelNumber+c;inWorklist[toAdd*labelNumber+c] = true;
+					}
+				}
+			}
+		}
+	}
+
+	/** The number of blocks of equivalent states, including the one containing the sink state. */
+	public int getBlockNumber()
+	{
+		return blockNumber;
+	}
+
+	/** Returns true if there are states in the graph, not counting the sink state, which are equivalent to each other. */
+	public boolean hasEquivalentStates()
+	{
+		for(int block=0;block<blockNumber;++block)
+		{
+			int size = blockEnd[block]-blockFirst[block];
+			if (size > 2 || (size == 2 && blockOf[sink] != block))
+				return true;
+		}
+		return false;
+	}
+
+	/** Returns true if some state of the graph accepts an empty language. */
+	public boolean hasSinkLikeState()
+	{
+		return blockEnd[blockOf[sink]]-blockFirst[blockOf[sink]] > 1;
+	}
+
+	/** Associates states of the graph with numbers of blocks they belong to, in the form expected by {@link WMethod.EquivalentStatesException#construct}. */
+	public Map<CmpVertex,Integer> getEquivalenceClasses()
+	{
+		Map<CmpVertex,Integer> result = new LinkedHashMap<>(stateNumber*2);
+		for(int state=0;state<sink;++state)
+			result.put(states[state], blockOf[state]);
+		return result;
+	}
+
+	/** Adds a node to the splitting tree with states in the supplied range of positions of <em>nodeElements</em>. */
+	protected int addNode(int parent, int first, int end)
+	{
+		int node = nodeNumber++;
+		nodeParent[node] = parent;nodeDepth[node] = parent < 0?0:nodeDepth[parent]+1;nodeFirstChild[node] = -1;nodeNextSibling[node] = -1;
+		nodeFirst[node] = first;nodeEnd[node] = end;
+		if (parent >= 0)
+		{
+			nodeNextSibling[node] = nodeFirstChild[parent];nodeFirstChild[parent] = node;
+		}
+		for(int p=first;p<end;++p)
+			leafOf[nodeElements[p]] = node;
+		return node;
+	}
+
+	/** Returns true if a leaf of the splitting tree contains states that are not equivalent. */
+	protected boolean isSplittable(int leaf)
+	{
+		int block = blockOf[nodeElements[nodeFirst[leaf]]];
+		for(int p=nodeFirst[leaf]+1;p<nodeEnd[leaf];++p)
+			if (blockOf[nodeElements[p]] != block)
+				return true;
+		return false;
+	}
+
+	/** Returns the ancestor of the supplied node at the supplied depth. */
+	protected int ancestorAt(int node, int depth)
+	{
+		int result = node;
+		while(nodeDepth[result] > depth)
+			result = nodeParent[result];
+		return result;
+	}
+
+	/** Splits the leaf in the supplied range of positions of <em>nodeElements</em> into children, one for each value of the supplied keys,
+	 * and adds those containing states that are not equivalent to the supplied worklist.
+	 *
+	 * @param keys key of each state of the leaf, in the order of positions.
+	 * @return the new size of the worklist.
+	 */
+	protected int splitLeaf(int leaf, long [] keys, int [] worklist, int worklistSize)
+	{
+		int first = nodeFirst[leaf], size = nodeEnd[leaf]-first;
+		for(int i=0;i<size;++i)
+			keys[i] = (keys[i] << 32) | nodeElements[first+i];
+		Arrays.sort(keys, 0, size);
+		int result = worklistSize, groupStart = 0;
+		for(int i=0;i<size;++i)
+		{
+			nodeElements[first+i] = (int)keys[i];
+			if (i == size-1 || (keys[i] >>> 32) != (keys[i+1] >>> 32))
+			{
+				int child = addNode(leaf, first+groupStart, first+i+1);groupStart = i+1;
+				if (isSplittable(child))
+					worklist[result++] = child;
+			}
+		}
+		splitOrder[splitNumber++] = leaf;
+		return result;
+	}
+
+	/** Builds the splitting tree, where states in different children of every internal node are distinguished by the sequence of the node. */
+	protected void buildSplittingTree()
+	{
+		for(int state=0;state<stateNumber;++state)
+			nodeElements[state] = state;
+		int root = addNode(-1, 0, stateNumber);
+		int [] worklist = new int[stateNumber], nextWorklist = new int[stateNumber];int worklistSize = 0;
+		long [] keys = new long[stateNumber];
+		if (isSplittable(root))
+		{// non-equivalent states exist only where there are accept-states, which are separated from the sink by acceptance conditions.
+			nodeLabel[root] = W_EMPTY;
+			for(int state=0;state<stateNumber;++state)
+				keys[state] = state != sink && states[state].isAccept()?1:0;
+			worklistSize = splitLeaf(root, keys, worklist, 0);
+		}
+
+		while(worklistSize > 0)
+		{// each pass splits leaves the way Moore's algorithm refines a partition, leaves that cannot be split are retried in the next pass.
+			int nextSize = 0;boolean progress = false;
+			for(int w=0;w<worklistSize;++w)
+			{
+				int leaf = worklist[w], first = nodeFirst[leaf], end = nodeEnd[leaf];
+				boolean split = false;
+				for(int label=0;label<labelNumber && !split;++label)
+				{
+					int ancestor = leafOf[delta[nodeElements[first]*labelNumber+label]], p = first+1;
+					while(p < end && leafOf[delta[nodeElements[p]*labelNumber+label]] == ancestor)
+						++p;
+					if (p == end)
+						continue;// all states enter the same leaf, checked without walking the tree because leaves are retried in every pass
+
+					for(;p<end;++p)
+					{// finds the closest common ancestor of leaves entered by states of the leaf with the current label
+						int other = leafOf[delta[nodeElements[p]*labelNumber+label]];
+						if (nodeDepth[other] > nodeDepth[ancestor]) other = ancestorAt(other, nodeDepth[ancestor]);
+						else ancestor = ancestorAt(ancestor, nodeDepth[other]);
+						while(ancestor != other)
+						{
+							ancestor = nodeParent[ancestor];other = nodeParent[other];
+						}
+					}
+					for(p=first;p<end;++p)
+						keys[p-first] = ancestorAt(leafOf[delta[nodeElements[p]*labelNumber+label]], nodeDepth[ancestor]+1);
+					nodeLabel[leaf] = label;nodeNext[leaf] = ancestor;
+					nextSize = splitLeaf(leaf, keys, nextWorklist, nextSize);
+					split = true;progress = true;
+				}
+				if (!split)
+					nextWorklist[nextSize++] = leaf;
+			}
+			assert progress : "a partition that is not the coarsest stable one has a leaf that can be split";
+			int [] swap = worklist;worklist = nextWorklist;nextWorklist = swap;worklistSize = nextSize;
+		}
+	}
+
+	/** Builds a characterising set from sequences of internal nodes of the splitting tree, one for each node; these separate all pairs
+	 * of non-equivalent states. Pairs of equivalent states are ignored.
+	 *
+	 * @param includeSink whether to include the sequence distinguishing states from the sink state where no other pair of states needs it.
+	 */
+	public Collection<List<Label>> computeWSet(boolean includeSink)
+	{
+		if (nodeLabel == null)
+			throw new IllegalArgumentException("separating sequences have not been recorded");
+		// The sequence of the parent of a leaf containing only the sink state is not needed if the parent only has one other child.
+		int sinkOnlyParent = -1, sinkLeaf = leafOf[sink];
+		if (nodeEnd[sinkLeaf]-nodeFirst[sinkLeaf] == 1 && nodeParent[sinkLeaf] >= 0)
+		{
+			int parent = nodeParent[sinkLeaf], children = 0;
+			for(int child=nodeFirstChild[parent];child>=0;child=nodeNextSibling[child])
+				++children;
+			if (children == 2)
+				sinkOnlyParent = parent;
+		}
+
+		Map<Integer,List<Label>> sequences = new HashMap<>(splitNumber*2);
+		Collection<List<Label>> result = new HashSet<>();
+		for(int i=0;i<splitNumber;++i)
+		{
+			int node = splitOrder[i];
+			List<Label> seq = new ArrayList<>();
+			if (nodeLabel[node] != W_EMPTY)
+			{
+				seq.add(labels[nodeLabel[node]]);seq.addAll(sequences.get(nodeNext[node]));
+			}
+			sequences.put(node, seq);
+			if (includeSink || node != sinkOnlyParent)
+				result.add(seq);
+		}
+		return result;
+	}
+}
@@ -27,9 +27,9 @@ import statechum.Label;
 import statechum.JUConstants.PAIRCOMPATIBILITY;
 import statechum.analysis.learning.AbstractOracle;
 import statechum.analysis.learning.StatePair;
+import statechum.analysis.learning.linear.GDLearnerGraph;
 import statechum.analysis.learning.rpnicore.Transform.AugmentFromIfThenAutomatonException;
 import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
-import statechum.analysis.learning.rpnicore.WMethod.EquivalentStatesException;
 import statechum.collections.ArrayOperations;
 import statechum.collections.MapWithSearch;
 import statechum.model.testset.PTAExploration;
@@ -40,7 +40,12 @@ import java.util.List;
 import java.util.*;
 import java.util.Queue;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class PathRoutines {
 	final LearnerGraph coregraph;
@@ -729,6 +734,195 @@ public class PathRoutines {
 		return current.isAccept()? AbstractOracle.USER_ACCEPTED:pos;
 	}
 
+	/** Outcomes of tracing reported by {@link #classifyPaths}. */
+	public static final byte TRACE_ACCEPTED = 1, TRACE_REJECTED = 0, TRACE_UNDEFINED = -1;
+
+	/** The number of subtrees of a trie of paths to create for each thread when tracing in parallel. */
+	public static final int TRACE_SUBTREES_PER_THREAD = 8;
+
+	/** A node of a temporary trie built from a collection of paths to trace, making it possible to walk shared prefixes once. */
+	protected static class PathTrieNode
+	{
+		/** Indices of paths ending at this node, in the order they were supplied. */
+		int [] pathsEndingHere = null;
+		int endCount = 0;
+		Map<Label,PathTrieNode> children = null;
+
+		void addEnd(int pathIndex)
+		{
+			if (pathsEndingHere == null)
+				pathsEndingHere = new int[1];
+			else
+			if (endCount == pathsEndingHere.length)
+				pathsEndingHere = Arrays.copyOf(pathsEndingHere, endCount*2);
+			pathsEndingHere[endCount++]=pathIndex;
+		}
+
+		PathTrieNode child(Label label)
+		{
+			if (children == null)
+				children = new LinkedHashMap<>();
+			return children.computeIfAbsent(label, l -> new PathTrieNode());
+		}
+	}
+
+	/** A position in a walk of a trie of paths: the node of the trie, the state of the graph it corresponds to and, 
+	 * if the walk has already terminated, the value to be returned for all paths in this subtree.
+	 */
+	protected static class PathTrieFrame
+	{
+		final PathTrieNode node;
+		/** The state reached or null if the walk terminated. */
+		final CmpVertex state;
+		/** The number of labels traversed to reach this node. */
+		final int depth;
+		/** The value to return if the walk terminated. */
+		final int failedAt;
+		/** Whether the walk terminated because of a missing transition rather than a reject-state. */
+		final boolean undefined;
+
+		PathTrieFrame(PathTrieNode n, CmpVertex s, int d, int failure, boolean undef)
+		{
+			node = n;state = s;depth = d;failedAt = failure;undefined = undef;
+		}
+	}
+
+	/** Traces multiple paths from the supplied state, returning the same values as {@link #tracePath(List, CmpVertex, boolean)} would do for each of them.
+	 * The paths are organised into a trie so that shared prefixes are only walked once.
+	 * 
+	 * @param paths paths to trace
+	 * @param startState the state to start from
+	 * @param prefixClosed whether to stop at the first reject-state.
+	 * @param threadNumber the number of threads to use, 1 to trace on the current thread.
+	 * @return an array with an element for each of the supplied paths, in the order of iteration of the collection of paths. 
+	 */
+	public int[] tracePaths(Collection<List<Label>> paths, CmpVertex startState, boolean prefixClosed, int threadNumber)
+	{
+		int [] result = new int[paths.size()];
+		tracePaths_internal(paths, startState, prefixClosed, threadNumber, result, null);
+		return result;
+	}
+
+	/** Same as {@link #tracePaths(Collection, CmpVertex, boolean, int)} but takes a stream of paths. */
+	public int[] tracePaths(Stream<List<Label>> paths, CmpVertex startState, boolean prefixClosed, int threadNumber)
+	{
+		return tracePaths(paths.collect(Collectors.toList()), startState, prefixClosed, threadNumber);
+	}
+
+	/** Traces multiple paths from the initial state, returning {@link #TRACE_ACCEPTED} for paths leading to accept-states, 
+	 * {@link #TRACE_REJECTED} for those hitting a reject-state and {@link #TRACE_UNDEFINED} for those that cannot be followed in the graph.
+	 * 
+	 * @param paths paths to trace
+	 * @param threadNumber the number of threads to use, 1 to trace on the current thread.
+	 * @return an array with an element for each of the supplied paths, in the order of iteration of the collection of paths. 
+	 */
+	public byte[] classifyPaths(Collection<List<Label>> paths, int threadNumber)
+	{
+		byte [] outcome = new byte[paths.size()];
+		tracePaths_internal(paths, coregraph.getInit(), true, threadNumber, new int[paths.size()], outcome);
+		return outcome;
+	}
+
+	/** Same as {@link #classifyPaths(Collection, int)} but takes a stream of paths. */
+	public byte[] classifyPaths(Stream<List<Label>> paths, int threadNumber)
+	{
+		return classifyPaths(paths.collect(Collectors.toList()), threadNumber);
+	}
+
+	protected void tracePaths_internal(Collection<List<Label>> paths, CmpVertex startState, boolean prefixClosed, int threadNumber, int [] result, byte [] outcome)
+	{
+		PathTrieNode root = new PathTrieNode();
+		int pathIndex = 0;
+		for(List<Label> path:paths)
+		{
+			PathTrieNode node = root;
+			for(Label label:path)
+				node = node.child(label);
+			node.addEnd(pathIndex++);
+		}
+
+		PathTrieFrame rootFrame = startState == null?
+				new PathTrieFrame(root, null, 0, 0, true)// if we start from null (i.e. not found) state, fail immediately.
+				:new PathTrieFrame(root, startState, 0, -1, false);
+		if (threadNumber <= 1)
+		{
+			traceSubtree(rootFrame, prefixClosed, result, outcome);return;
+		}
+
+		Queue<PathTrieFrame> boundary = new LinkedList<>();// FIFO queue
+		boundary.add(rootFrame);
+		while(!boundary.isEmpty() && boundary.size() < threadNumber*TRACE_SUBTREES_PER_THREAD)
+			exploreTrieNode(boundary.remove(), prefixClosed, result, outcome, boundary);
+
+		List<Callable<Object>> tasks = new ArrayList<>(boundary.size());
+		for(final PathTrieFrame frame:boundary)
+			tasks.add(() -> { traceSubtree(frame, prefixClosed, result, outcome);return null; });
+		for(Future<Object> task:GDLearnerGraph.getRowTaskPool(threadNumber).invokeAll(tasks))
+			try
+			{
+				task.get();
+			}
+			catch(InterruptedException | ExecutionException e)
+			{
+				Helper.throwUnchecked("failed to trace paths", e);
+			}
+	}
+
+	/** Traces all paths in the subtree of the supplied frame. Different subtrees record outcomes for different paths, hence can be traced concurrently. */
+	protected void traceSubtree(PathTrieFrame top, boolean prefixClosed, int [] result, byte [] outcome)
+	{
+		Deque<PathTrieFrame> stack = new ArrayDeque<>();stack.push(top);
+		while(!stack.isEmpty())
+			exploreTrieNode(stack.pop(), prefixClosed, result, outcome, stack);
+	}
+
+	/** Records outcomes for the paths ending at the node of the supplied frame and adds frames for its children to the supplied collection. */
+	protected void exploreTrieNode(PathTrieFrame frame, boolean prefixClosed, int [] result, byte [] outcome, Collection<PathTrieFrame> next)
+	{
+		PathTrieNode node = frame.node;
+		if (node.endCount > 0)
+		{
+			int value;byte classification;
+			if (frame.state == null)
+			{
+				value = frame.failedAt;classification = frame.undefined?TRACE_UNDEFINED:TRACE_REJECTED;
+			}
+			else
+			if (frame.state.isAccept())
+			{
+				value = AbstractOracle.USER_ACCEPTED;classification = TRACE_ACCEPTED;
+			}
+			else
+			{
+				value = frame.depth == 0? 0:frame.depth-1;classification = TRACE_REJECTED;
+			}
+			for(int i=0;i<node.endCount;++i)
+			{
+				result[node.pathsEndingHere[i]]=value;
+				if (outcome != null) outcome[node.pathsEndingHere[i]]=classification;
+			}
+		}
+
+		if (node.children != null)
+		{
+			Map<Label,CmpVertex> exitingTrans = frame.state == null? null:coregraph.transitionMatrix.get(frame.state);
+			for(Entry<Label,PathTrieNode> entry:node.children.entrySet())
+				if (frame.state == null)
+					next.add(new PathTrieFrame(entry.getValue(), null, frame.depth+1, frame.failedAt, frame.undefined));
+				else
+				{
+					CmpVertex target = exitingTrans == null? null:exitingTrans.get(entry.getKey());
+					if (target == null)// cannot make a move
+						next.add(new PathTrieFrame(entry.getValue(), null, frame.depth+1, frame.depth, true));
+					else
+					if (prefixClosed && !target.isAccept())
+						next.add(new PathTrieFrame(entry.getValue(), null, frame.depth+1, frame.depth, false));
+					else
+						next.add(new PathTrieFrame(entry.getValue(), target, frame.depth+1, -1, false));
+				}
+		}
+	}
+
 	/** Traces a path in a partially-specified Mealy automaton.
 	 *
 	 * @param path sequence of inputs to trace
@@ -1010,14 +1204,9 @@ public class PathRoutines {
 	public LearnerGraph reduce()
 	{
 		LearnerGraph result = coregraph;
-		try
-		{
-			WMethod.computeWSet_reducedmemory(coregraph);
-		}
-		catch(EquivalentStatesException ex)
-		{
-			result = MergeStates.mergeCollectionOfVertices(coregraph, null,ex.getStatesToComputeReduction(),true);
-		}
+		Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> equivalentStates = WMethod.identifyEquivalentStates(coregraph);
+		if (equivalentStates != null)
+			result = MergeStates.mergeCollectionOfVertices(coregraph, null,equivalentStates,true);
 		
 		// Now we need to eliminate the sink vertex - due to merging, there will only be one of them,
 		// which has to be reject and all transitions loop in it.
@@ -1062,14 +1251,8 @@ public class PathRoutines {
 		
 		
 		if (GlobalConfiguration.getConfiguration().isAssertEnabled())
-			try
-			{
-				WMethod.computeWSet_reducedmemory(result);
-			}
-			catch(EquivalentStatesException ex)
-			{
-				Helper.throwUnchecked("failed to build a minimal version of a graph", ex);
-			}
+			if (WMethod.checkEquivalentStates(result))
+				throw new IllegalArgumentException("failed to build a minimal version of a graph");
 
 		return result;
 	}
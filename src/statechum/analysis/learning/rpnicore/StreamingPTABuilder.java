@@ -0,0 +1,167 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import statechum.Label;
+import statechum.analysis.learning.rpnicore.LTL_to_ba.Lexer;
+import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
+import statechum.apps.QSMTool;
+
+/** Builds a PTA by reading traces from a file and adding them to a graph one at a time, so that traces do not all
+ * have to be kept in memory as lists of labels before a PTA is constructed from them.
+ * <p>
+ * Two formats are supported,
+ * <ul>
+ * <li>that of {@link QSMTool}, where each line starting with {@link QSMTool#cmdPositive} or {@link QSMTool#cmdNegative}
+ * contains a collection of positive or negative traces. Other lines, such as configuration options, are ignored, so that
+ * input files for QSMTool can be read;</li>
+ * <li>that of {@link statechum.analysis.learning.experiments.PaperUAS#scanData}, where each line contains a frame number,
+ * the name of a UAV, the seed and traces in the format of QSMTool.</li>
+ * </ul>
+ * Traces on each line are parsed before they are added, hence memory use is bounded by the size of a PTA and of the longest line.
+ * In order to learn from traces without making a copy of a PTA, the graph to build should be the tentative automaton of a learner,
+ * after a call to {@link LearnerGraph#initPTA()}.
+ *
+ * @author agent
+ */
+public class StreamingPTABuilder
+{
+	/** The graph to add traces to. */
+	protected final LearnerGraph pta;
+
+	/** Converts labels when traces are parsed, can be null. */
+	protected final ConvertALabel converter;
+
+	/** The number of positive and negative traces added. */
+	protected long positives = 0, negatives = 0;
+
+	/** Chooses traces to add from a file in the format of {@link statechum.analysis.learning.experiments.PaperUAS}. */
+	public interface UAVTraceFilter
+	{
+		boolean accept(int frame, String UAV, String seed);
+	}
+
+	/** Constructs a builder adding traces to the supplied graph.
+	 *
+	 * @param graph the graph to add traces to, often an empty PTA.
+	 * @param conv converter for labels, can be null.
+	 */
+	public StreamingPTABuilder(LearnerGraph graph, ConvertALabel conv)
+	{
+		pta = graph;converter = conv;
+	}
+
+	/** Adds a trace to the PTA. */
+	public void addTrace(List<Label> trace, boolean positive)
+	{
+		pta.paths.augmentPTA(trace, positive, false, null);
+		if (positive) ++positives;else ++negatives;
+	}
+
+	public long getPositiveCount()
+	{
+		return positives;
+	}
+
+	public long getNegativeCount()
+	{
+		return negatives;
+	}
+
+	/** Returns the graph traces are added to. */
+	public LearnerGraph getPTA()
+	{
+		return pta;
+	}
+
+	/** Adds traces from a file in the format of {@link QSMTool}. The reader is closed when all traces have been read. */
+	public void loadQSMTraces(Reader inputData)
+	{
+		BufferedReader in = null;
+		try
+		{
+			in = new BufferedReader(inputData);
+			String fileString;
+			while ((fileString = in.readLine()) != null)
+				addTracesFromLine(fileString.trim());
+		} catch (IOException e) {
+			statechum.Helper.throwUnchecked("failed to read traces", e);
+		} finally {
+			if (in != null) { try { in.close();in=null; } catch(IOException toBeIgnored) { /* Ignore exception */ } }
+		}
+	}
+
+	/** Adds traces from a stream in the format of {@link QSMTool}, using UTF-8 encoding. */
+	public void loadQSMTraces(InputStream inputData)
+	{
+		loadQSMTraces(new InputStreamReader(inputData, StandardCharsets.UTF_8));
+	}
+
+	private static final int lexSimulatedTimestamp=1, lexUAV=2, lexSeed=3, lexTrace=4;
+
+	/** Adds traces from a file in the format of {@link statechum.analysis.learning.experiments.PaperUAS}.
+	 * The reader is closed when all traces have been read.
+	 *
+	 * @param inputData data to read
+	 * @param filter determines which lines to use, null to use all of them.
+	 */
+	public void loadUAVTraces(Reader inputData, UAVTraceFilter filter)
+	{
+		Lexer lexer = new Lexer("(\\w+)\\s*,\\s*(\\w+)\\s*,\\s*(\\w+)\\s*,\\s*(.*)");
+		BufferedReader in = null;
+		try
+		{
+			in = new BufferedReader(inputData);
+			String fileString;
+			while ((fileString = in.readLine()) != null)
+			{
+				lexer.startParsing(fileString);
+				int match = lexer.getMatchType();
+				if (match != 1)
+					throw new IllegalArgumentException("invalid match");
+				if (filter == null || filter.accept(Integer.parseInt(lexer.group(lexSimulatedTimestamp)), lexer.group(lexUAV), lexer.group(lexSeed)))
+					addTracesFromLine(lexer.group(lexTrace).trim());
+			}
+		} catch (IOException e) {
+			statechum.Helper.throwUnchecked("failed to read traces", e);
+		} finally {
+			if (in != null) { try { in.close();in=null; } catch(IOException toBeIgnored) { /* Ignore exception */ } }
+		}
+	}
+
+	/** Adds traces from a stream in the format of {@link statechum.analysis.learning.experiments.PaperUAS}, using UTF-8 encoding. */
+	public void loadUAVTraces(InputStream inputData, UAVTraceFilter filter)
+	{
+		loadUAVTraces(new InputStreamReader(inputData, StandardCharsets.UTF_8), filter);
+	}
+
+	/** Adds traces from the supplied line, ignoring it if it does not contain traces. Lines are recognised the same way as by {@link QSMTool}. */
+	protected void addTracesFromLine(String line)
+	{
+		if (QSMTool.isCmdWithArgs(line, QSMTool.cmdPositive) || QSMTool.isCmdWithArgs(line, QSMTool.cmdNegative))
+			QSMTool.parseSequenceOfTraces(line, pta.config, this::addTrace, converter);
+	}
+}
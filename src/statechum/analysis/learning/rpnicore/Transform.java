@@ -35,12 +35,12 @@ import java.util.TreeSet;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import harmony.collections.HashMapWithSearch;
 import statechum.Configuration;
 import statechum.DeterministicDirectedSparseGraph;
 import statechum.GlobalConfiguration;
 import statechum.Helper;
 import statechum.JUConstants;
+import statechum.LabelRegistry;
 import statechum.StringLabelInt;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.DeterministicDirectedSparseGraph.VertID.VertKind;
@@ -110,8 +110,8 @@ public class Transform
 	public static List<Boolean> wToBooleans(LearnerGraph g, CmpVertex state, Collection<List<Label>> wSet)
 	{
 		List<Boolean> result = new LinkedList<>();
-		for(List<Label> seq:wSet)
-			result.add(g.paths.tracePathPrefixClosed(seq,state) == AbstractOracle.USER_ACCEPTED);
+		for(int outcome:g.paths.tracePaths(wSet, state, true, 1))
+			result.add(outcome == AbstractOracle.USER_ACCEPTED);
 		return result;
 	}
 	
@@ -1179,28 +1179,39 @@ public class Transform
 	}
 	
 	/** This class permits one to intern labels. Any number of instances can be created, one for each group of graphs that should share labels.
+	 * Labels are turned into {@link StringLabelInt} with dense identifiers; interning a label which has already been seen does not take locks.
 	 */
 	public static class InternStringLabel implements LabelConverter, ConvertALabel
 	{
-		protected MapWithSearch<Label,Label,Label> labelDatabase = new HashMapWithSearch<>(20);
-		
-		/** ID to give to the next label. */
-		protected int nextID;
+		protected final LabelRegistry labelDatabase = new LabelRegistry((label, id) -> new StringLabelInt(label.toErlangTerm(), id));
 		
 		/** Given a label, returns an interned label. Could return the same label but should not return null. 
-		 * For multi-core operation, this method has to be synchronized.
+		 * Safe to call from multiple threads.
 		 * 
 		 * @param label label to intern.
 		 */
 		@Override
-		public synchronized Label convertLabelToLabel(Label label)
+		public Label convertLabelToLabel(Label label)
 		{
-			Label outcome = labelDatabase.get(label);
-			if (outcome == null)
-			{
-				outcome = new StringLabelInt(label.toErlangTerm(), nextID++);labelDatabase.put(outcome,outcome);
-			}
-			return outcome;
+			return labelDatabase.intern(label);
+		}
+
+		@Override
+		public Set<Label> convertLabel(Label label) {
+			return Collections.singleton(convertLabelToLabel(label));
+		}
+	}
+
+	/** Interns labels in the global registry, making labels built by different converters and graphs share identifiers.
+	 * String labels become labels returning their identifiers from <em>toInt</em>, other labels are kept as they are and their identifiers 
+	 * can be obtained from {@link LabelRegistry#getId(Label)}.
+	 */
+	public static class InternLabelGlobally implements LabelConverter, ConvertALabel
+	{
+		@Override
+		public Label convertLabelToLabel(Label label)
+		{
+			return LabelRegistry.getGlobalRegistry().intern(label);
 		}
 
 		@Override
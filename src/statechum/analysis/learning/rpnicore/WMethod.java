@@ -23,6 +23,7 @@ import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 
 import harmony.collections.HashMapWithSearch;
 import statechum.*;
@@ -34,6 +35,7 @@ import statechum.analysis.learning.StatePair;
 import statechum.analysis.learning.rpnicore.AMEquivalenceClass.IncompatibleStatesException;
 import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
 import statechum.collections.MapWithSearch;
+import statechum.model.testset.PTAArraySequenceEngine;
 import statechum.model.testset.PTASequenceEngine;
 import statechum.model.testset.PTA_FSMStructure;
 import statechum.model.testset.PrefixFreeCollection;
@@ -108,43 +110,116 @@ public class WMethod
 	}
 
 	public PTASequenceEngine computeNewTestSet(CmpVertex initialState, int numberOfExtraStates)
+	{
+		PTASequenceEngine engine = new PTA_FSMStructure(coregraph,initialState);
+		SequenceSet partialPTA = engine.new SequenceSet();partialPTA.setIdentity();
+		crossStateCoverWithW(initialState, numberOfExtraStates, partialPTA, SequenceSet::cross, SequenceSet::crossWithSet);
+		return engine;
+	}
+	
+	/** Same as {@link #computeNewTestSet(CmpVertex, int)} but builds the test set using {@link PTAArraySequenceEngine}. */
+	public PTAArraySequenceEngine computeNewTestSetCompact(final CmpVertex initialState, int numberOfExtraStates)
+	{
+		if (initialState != null) coregraph.verifyVertexInGraph(initialState);
+		PTAArraySequenceEngine engine = new PTAArraySequenceEngine();
+		engine.init(coregraph.new FSMImplementation() {
+			@Override
+			public Object getInitState() {
+				return initialState == null? coregraph.getInit():initialState;
+			}
+			@Override
+			public boolean shouldBeReturned(@SuppressWarnings("unused") Object elem)
+			{
+				return true;
+			}
+		});
+		PTAArraySequenceEngine.SequenceSet partialPTA = engine.new SequenceSet();partialPTA.setIdentity();
+		crossStateCoverWithW(initialState, numberOfExtraStates, partialPTA, PTAArraySequenceEngine.SequenceSet::cross, PTAArraySequenceEngine.SequenceSet::crossWithSet);
+		return engine;
+	}
+
+	/** Computes the state cover, the characterisation set and the transition cover of the graph and adds the test set of the W method
+	 * to the PTA containing the supplied set of sequences, which is usually the identity. Used by both
+	 * {@link #computeNewTestSet(CmpVertex, int)} and {@link #computeNewTestSetCompact(CmpVertex, int)}, that differ only in the type of PTA.
+	 *
+	 * @param initialState the state to build the state cover from, null for the initial state of the graph.
+	 * @param numberOfExtraStates the number of states the graph under test can have in addition to those of this graph.
+	 * @param identity the set of sequences to extend.
+	 * @param cross appends sequences to each element of a set, returning the set of extended sequences.
+	 * @param crossWithSet appends inputs to each element of a set, returning the set of extended sequences.
+	 */
+	protected <SET> void crossStateCoverWithW(CmpVertex initialState, int numberOfExtraStates, SET identity,
+			BiFunction<SET,Collection<List<Label>>,SET> cross, BiFunction<SET,Collection<Label>,SET> crossWithSet)
 	{
 		Set<Label> alphabet =  coregraph.learnerCache.getAlphabet();
 		List<List<Label>> stateCover = coregraph.pathroutines.computeStateCover(initialState);
 		characterisationSet = computeWSet_reducedmemory(coregraph);if (characterisationSet.isEmpty()) characterisationSet.add(List.of());
 		transitionCover = crossWithSet(stateCover,alphabet);transitionCover.addAll(stateCover);
 
-		PTASequenceEngine engine = new PTA_FSMStructure(coregraph,initialState);
-		SequenceSet partialPTA = engine.new SequenceSet();partialPTA.setIdentity();
-		partialPTA = partialPTA.cross(stateCover);
-		
-		partialPTA.cross(characterisationSet);
+		SET partialPTA = cross.apply(identity, stateCover);
+		cross.apply(partialPTA, characterisationSet);
 		for(int i=0;i<=numberOfExtraStates;i++)
 		{
-			partialPTA = partialPTA.crossWithSet(alphabet);
-			partialPTA.cross(characterisationSet);
+			partialPTA = crossWithSet.apply(partialPTA, alphabet);
+			cross.apply(partialPTA, characterisationSet);
 		}
-		
-		return engine;
 	}
-	
+
 	public Collection<List<Label>> computeNewTestSet(int numberOfExtraStates)
 	{
-		return computeNewTestSet(coregraph.getInit(),numberOfExtraStates).getData();
+		return computeNewTestSetCompact(coregraph.getInit(),numberOfExtraStates).getData();
 	}
 	
 	/** Checks if the supplied FSM has equivalent states. */
 	public static boolean checkEquivalentStates(LearnerGraph fsm)
 	{
-		try
-		{
-			computeWSet_reducedmemory(fsm);
-		}
-		catch(EquivalentStatesException e)
+		return identifyEquivalentStates(fsm) != null;
+	}
+
+	/** Returns a collection of equivalence classes of states of the supplied graph, in the form expected by 
+	 * <em>mergeCollectionOfVertices</em>, or null if there are no equivalent states. For consistency with
+	 * {@link #computeWSet_reducedmemory(LearnerGraph)}, null is also returned if equivalent states are permitted by the configuration.
+	 * Deterministic automata are handled using {@link PartitionRefinement}, Mealy ones using {@link #computeWSet_reducedmemory(LearnerGraph)}.
+	 */
+	public static Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> identifyEquivalentStates(LearnerGraph fsm)
+	{
+		if (fsm.config.getLabelKind() == Configuration.LABELKIND.LABEL_INPUT_OUTPUT)
 		{
-			return true;
+			try
+			{
+				computeWSet_reducedmemory(fsm);
+			}
+			catch(EquivalentStatesException e)
+			{
+				return e.getStatesToComputeReduction();
+			}
+			return null;
 		}
-		return false;
+		
+		if (fsm.config.getEquivalentStatesAllowedForW())
+			return null;
+		PartitionRefinement refinement = new PartitionRefinement(fsm, false);
+		if (!refinement.hasEquivalentStates())
+			return null;
+		return EquivalentStatesException.IdentifyEquivalentStates(refinement.getEquivalenceClasses(),fsm,null);
+	}
+	
+	/** Computes a characterising set using {@link PartitionRefinement}, where a sequence is built for every node of a splitting tree,
+	 * hence the set contains at most as many sequences as there are states.
+	 * The treatment of sink states and of equivalent states is the same as that of {@link #computeWSet_reducedmemory(LearnerGraph)}.
+	 * Mealy automata are not supported.
+	 * 
+	 * @param fsm the machine to process
+	 * @return characterising set
+	 */
+	public static Collection<List<Label>> computeWSet_partitionRefinement(LearnerGraph fsm) throws EquivalentStatesException
+	{
+		PartitionRefinement refinement = new PartitionRefinement(fsm, true);
+		if (refinement.hasEquivalentStates() && !fsm.config.getEquivalentStatesAllowedForW())
+			throw EquivalentStatesException.construct(refinement.getEquivalenceClasses(),fsm,null);
+		// Similarly to computeWSet_reducedmemory, our artificial sink state is only considered to be a real state
+		// if there is no graph state which accepts an empty language.
+		return refinement.computeWSet(!fsm.config.isPrefixClosed() && !refinement.hasSinkLikeState());
 	}
 	
 	public static <ELEM> List<List<ELEM>> cross(Collection<List<ELEM>> a, Collection<List<ELEM>> b){
@@ -0,0 +1,887 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.collections;
+
+import java.util.*;
+
+import statechum.Label;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.DeterministicDirectedSparseGraph.VertID;
+
+/**
+ * A transition matrix of a deterministic graph where all transitions are stored in a single pool of integers rather than
+ * in a map per state. Every state is given a dense index when it is first seen (either as a key or as a target of a transition),
+ * every label is given a dense index in the same way and each row is a segment of the pool consisting of pairs (label index, target index).
+ * Rows are kept sorted in the order of labels so that iteration through a row returns transitions in exactly the same
+ * order as a {@link TreeMap} would; the order of states follows the order of insertion, as with {@link harmony.collections.HashMapWithSearch}.
+ * This way, learners produce the same outcome regardless whether this matrix or a {@link harmony.collections.HashMapWithSearch} is used.
+ * <br>
+ * Rows returned by {@link #get(Object)} are light-weight views of the pool, hence all modifications to them are immediately
+ * reflected in the matrix. Rows created by {@link #createRow()} are detached until put in the matrix: at that point their content
+ * is copied into the pool and the row becomes a view of the corresponding segment. Where a row from a different matrix is put into
+ * this one, its content is copied.
+ * <br>
+ * Important:
+ * <ul>
+ * <li>This collection does not track modifications, so it will never throw {@link ConcurrentModificationException}
+ * but instead may return completely wrong values, same as {@link ArrayMapWithSearch}.</li>
+ * <li>States that are removed from the matrix retain their indices because other rows may still refer to them. Indices are only reclaimed by {@link #clear()}.</li>
+ * <li>Concurrent reads are permitted since lookups do not modify any of the internal data.</li>
+ * </ul>
+ * Methods operating on indices, such as {@link #vertexToIndex(Object)} and {@link #getTarget(int, int)}, make it possible for
+ * computationally-intensive routines to explore a graph without creating any objects.
+ *
+ * @author agent
+ */
+public class IntArrayTransitionMatrix extends AbstractMap<CmpVertex,MapWithSearch<Label,Label,CmpVertex>> implements MapWithSearch<VertID,CmpVertex,MapWithSearch<Label,Label,CmpVertex>>
+{
+	/** Maps indices of states to states. */
+	protected CmpVertex [] vertices;
+
+	/** The number of states that were given indices. */
+	protected int vertexNumber = 0;
+
+	/** Open-addressing hash table containing indices of states plus one, zero means an empty cell. */
+	protected int [] vertexTable;
+
+	/** For each state, the start of the row in the pool, in units of transitions. */
+	protected int [] rowStart;
+
+	/** For each state, the number of transitions in its row. */
+	protected int [] rowSize;
+
+	/** For each state, the number of transitions its row can accommodate before it has to be relocated. */
+	protected int [] rowCapacity;
+
+	/** For each state, its position in {@link #keyOrder} or -1 if the state is not a key of this map. */
+	protected int [] keyPosition;
+
+	/** Indices of states in the order they were added to this map, -1 for those which were subsequently removed. */
+	protected int [] keyOrder;
+
+	/** The number of used elements of {@link #keyOrder}. */
+	protected int keyOrderTop = 0;
+
+	/** The number of states in this map. */
+	protected int keyCount = 0;
+
+	/** Pairs of the form (label index, target index). */
+	protected int [] pool;
+
+	/** The first free transition of the pool. */
+	protected int poolTop = 0;
+
+	/** The number of transitions in the pool that are not used by any row. */
+	protected int poolWasted = 0;
+
+	/** Maps indices of labels to labels. */
+	protected Label [] labels;
+
+	/** The number of labels that were given indices. */
+	protected int labelNumber = 0;
+
+	/** Open-addressing hash table containing indices of labels plus one, zero means an empty cell. */
+	protected int [] labelTable;
+
+	/** Each transition occupies two cells in the pool. */
+	protected static final int CELLS_PER_TRANSITION = 2;
+
+	/** The number of transitions a new row is given. */
+	protected static final int INITIAL_ROW_CAPACITY = 2;
+
+	public IntArrayTransitionMatrix()
+	{
+		this(16);
+	}
+
+	/** Constructs a matrix that can accommodate the supplied number of states before any reallocation is needed. */
+	public IntArrayTransitionMatrix(int expectedStates)
+	{
+		this(expectedStates, true);
+	}
+
+	/** Constructs a matrix, optionally without allocating the pool, for subclasses that store it elsewhere. */
+	protected IntArrayTransitionMatrix(int expectedStates, boolean allocatePool)
+	{
+		if (expectedStates < 0)
+			throw new IllegalArgumentException("invalid number of states");
+		int size = Math.max(expectedStates, 4);
+		vertices = new CmpVertex[size];rowStart = new int[size];rowSize = new int[size];rowCapacity = new int[size];keyPosition = new int[size];
+		keyOrder = new int[size];
+		vertexTable = new int[tableSizeFor(size)];
+		pool = allocatePool?new int[CELLS_PER_TRANSITION*size]:null;
+		labels = new Label[8];labelTable = new int[tableSizeFor(labels.length)];
+	}
+
+	/** Returns a power of two large enough to keep the load factor of a hash table below a half. */
+	protected static int tableSizeFor(int elements)
+	{
+		int size = 8;
+		while(size < 2*elements) size <<= 1;
+		return size;
+	}
+
+	/** Spreads hash codes, since both vertices and labels often have hash codes that differ in the low bits only. */
+	protected static int spread(int hash)
+	{
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/** Returns the index of the supplied state, -1 if it is not known. The state does not have to be a key of this map. */
+	public int vertexToIndex(Object vertex)
+	{
+		if (!(vertex instanceof VertID))
+			return -1;
+		int mask = vertexTable.length-1;
+		for(int pos = spread(vertex.hashCode()) & mask;;pos = (pos+1) & mask)
+		{
+			int cell = vertexTable[pos];
+			if (cell == 0)
+				return -1;
+			if (vertex.equals(vertices[cell-1]))
+				return cell-1;
+		}
+	}
+
+	/** Returns a state with the supplied index. */
+	public CmpVertex indexToVertex(int index)
+	{
+		return vertices[index];
+	}
+
+	/** Returns an index of the supplied label, -1 if it is not used in any of the rows. */
+	public int labelToIndex(Object label)
+	{
+		if (!(label instanceof Label))
+			return -1;
+		int mask = labelTable.length-1;
+		for(int pos = spread(label.hashCode()) & mask;;pos = (pos+1) & mask)
+		{
+			int cell = labelTable[pos];
+			if (cell == 0)
+				return -1;
+			if (label.equals(labels[cell-1]))
+				return cell-1;
+		}
+	}
+
+	/** Returns a label with the supplied index. */
+	public Label indexToLabel(int index)
+	{
+		return labels[index];
+	}
+
+	/** The upper bound (exclusive) on indices of states, for sizing arrays indexed by states. */
+	public int getVertexIndexBound()
+	{
+		return vertexNumber;
+	}
+
+	/** The upper bound (exclusive) on indices of labels, for sizing arrays indexed by labels. */
+	public int getLabelIndexBound()
+	{
+		return labelNumber;
+	}
+
+	/** Whether the state with the supplied index is a key of this map. */
+	public boolean isKey(int index)
+	{
+		return keyPosition[index] >= 0;
+	}
+
+	/** The number of transitions from a state with the supplied index. */
+	public int getRowSize(int index)
+	{
+		return keyPosition[index] < 0?0:rowSize[index];
+	}
+
+	/** The index of the label of a transition number <em>position</em> from the state with the supplied index. Transitions are sorted by label. */
+	public int getRowLabel(int index, int position)
+	{
+		return getCell(CELLS_PER_TRANSITION*(rowStart[index]+position));
+	}
+
+	/** The index of the target state of a transition number <em>position</em> from the state with the supplied index. Transitions are sorted by label. */
+	public int getRowTarget(int index, int position)
+	{
+		return getCell(CELLS_PER_TRANSITION*(rowStart[index]+position)+1);
+	}
+
+	/** Returns the index of the state entered by a transition with the supplied label index from the state with the supplied index, -1 if there is no such transition. */
+	public int getTarget(int index, int label)
+	{
+		if (keyPosition[index] < 0)
+			return -1;
+		int offset = CELLS_PER_TRANSITION*rowStart[index], end = offset + CELLS_PER_TRANSITION*rowSize[index];
+		for(;offset < end;offset+=CELLS_PER_TRANSITION)
+			if (getCell(offset) == label)
+				return getCell(offset+1);
+		return -1;
+	}
+
+	/** Returns an index of the supplied state, giving it a new index if it does not have one. */
+	protected int addVertex(CmpVertex vertex)
+	{
+		int mask = vertexTable.length-1;
+		int pos = spread(vertex.hashCode()) & mask;
+		for(;;pos = (pos+1) & mask)
+		{
+			int cell = vertexTable[pos];
+			if (cell == 0)
+				break;
+			if (vertex.equals(vertices[cell-1]))
+				return cell-1;
+		}
+
+		if (vertexNumber >= vertices.length)
+		{
+			int newSize = vertices.length*2;
+			vertices = Arrays.copyOf(vertices, newSize);rowStart = Arrays.copyOf(rowStart, newSize);rowSize = Arrays.copyOf(rowSize, newSize);
+			rowCapacity = Arrays.copyOf(rowCapacity, newSize);keyPosition = Arrays.copyOf(keyPosition, newSize);
+		}
+		int index = vertexNumber++;
+		vertices[index]=vertex;rowStart[index]=0;rowSize[index]=0;rowCapacity[index]=0;keyPosition[index]=-1;
+		if (2*vertexNumber > vertexTable.length)
+			vertexTable = rehash(vertices, vertexNumber, vertexTable.length*2);
+		else
+			vertexTable[pos]=index+1;
+		return index;
+	}
+
+	/** Returns an index of the supplied label, giving it a new index if it does not have one. */
+	protected int addLabel(Label label)
+	{
+		int mask = labelTable.length-1;
+		int pos = spread(label.hashCode()) & mask;
+		for(;;pos = (pos+1) & mask)
+		{
+			int cell = labelTable[pos];
+			if (cell == 0)
+				break;
+			if (label.equals(labels[cell-1]))
+				return cell-1;
+		}
+		if (labelNumber >= labels.length)
+			labels = Arrays.copyOf(labels, labels.length*2);
+		int index = labelNumber++;
+		labels[index] = label;
+		if (2*labelNumber > labelTable.length)
+			labelTable = rehash(labels, labelNumber, labelTable.length*2);
+		else
+			labelTable[pos]=index+1;
+		return index;
+	}
+
+	/** Builds a new hash table for the supplied elements. */
+	protected static int[] rehash(Object [] elements, int number, int tableSize)
+	{
+		int [] table = new int[tableSize];int mask = tableSize-1;
+		for(int i=0;i<number;++i)
+		{
+			int pos = spread(elements[i].hashCode()) & mask;
+			while(table[pos] != 0) pos = (pos+1) & mask;
+			table[pos]=i+1;
+		}
+		return table;
+	}
+
+	/** Makes sure the row of the supplied state can accommodate the required number of transitions, relocating it to the end of the pool if necessary. */
+	protected void ensureRowCapacity(int index, int required)
+	{
+		int capacity = rowCapacity[index];
+		if (capacity >= required)
+			return;
+		int newCapacity = Math.max(INITIAL_ROW_CAPACITY, Math.max(capacity*2,required));
+		if (rowStart[index]+capacity == poolTop && capacity > 0)
+		{// the last row in the pool, extend it in place
+			ensurePoolCapacity(poolTop + newCapacity - capacity);
+			poolTop += newCapacity - capacity;
+		}
+		else
+		{
+			if (poolWasted > poolTop/2 && poolWasted > 1024)
+				compactPool();
+			ensurePoolCapacity(poolTop + newCapacity);
+			moveCells(CELLS_PER_TRANSITION*rowStart[index], CELLS_PER_TRANSITION*poolTop, CELLS_PER_TRANSITION*rowSize[index]);
+			poolWasted += rowCapacity[index];
+			rowStart[index] = poolTop;poolTop+=newCapacity;
+		}
+		rowCapacity[index] = newCapacity;
+	}
+
+	/** Returns the value of a cell of the pool. Together with {@link #setCell(int, int)}, {@link #moveCells(int, int, int)},
+	 * {@link #ensurePoolCapacity(int)} and {@link #compactPool()}, this is all the access to the pool, so that it can be stored elsewhere.
+	 */
+	protected int getCell(int cell)
+	{
+		return pool[cell];
+	}
+
+	protected void setCell(int cell, int value)
+	{
+		pool[cell] = value;
+	}
+
+	/** Copies the supplied number of cells, with the same semantics as {@link System#arraycopy} where ranges overlap. */
+	protected void moveCells(int from, int to, int length)
+	{
+		System.arraycopy(pool, from, pool, to, length);
+	}
+
+	protected void ensurePoolCapacity(int transitions)
+	{
+		if (CELLS_PER_TRANSITION*transitions > pool.length)
+			pool = Arrays.copyOf(pool, Math.max(CELLS_PER_TRANSITION*transitions, pool.length*2));
+	}
+
+	/** Moves all rows to the start of the pool, eliminating gaps left by rows that were relocated or removed. */
+	protected void compactPool()
+	{
+		int [] newPool = new int[pool.length];int top = 0;
+		for(int i=0;i<keyOrderTop;++i)
+		{
+			int index = keyOrder[i];
+			if (index >= 0)
+			{
+				System.arraycopy(pool, CELLS_PER_TRANSITION*rowStart[index], newPool, CELLS_PER_TRANSITION*top, CELLS_PER_TRANSITION*rowSize[index]);
+				rowStart[index]=top;rowCapacity[index]=rowSize[index];top+=rowSize[index];
+			}
+		}
+		pool = newPool;poolTop = top;poolWasted = 0;
+	}
+
+	/** Adds a transition to the row of the supplied state, returning the previous target of a transition with the same label, if any. */
+	protected CmpVertex putTransition(int index, Label label, CmpVertex target)
+	{
+		if (keyPosition[index] < 0)
+			throw new IllegalStateException("state "+vertices[index]+" is not in the transition matrix");
+		int labelIndex = addLabel(label), targetIndex = addVertex(target);
+		int start = CELLS_PER_TRANSITION*rowStart[index], size = rowSize[index];
+		int position = 0;
+		for(;position < size;++position)
+		{
+			int existingLabel = getCell(start+CELLS_PER_TRANSITION*position);
+			if (existingLabel == labelIndex)
+			{
+				CmpVertex previous = vertices[getCell(start+CELLS_PER_TRANSITION*position+1)];
+				setCell(start+CELLS_PER_TRANSITION*position+1, targetIndex);
+				return previous;
+			}
+			if (labels[existingLabel].compareTo(label) > 0)
+				break;
+		}
+		for(int i=position+1;i<size;++i)
+			assert getCell(start+CELLS_PER_TRANSITION*i) != labelIndex;
+		ensureRowCapacity(index, size+1);
+		start = CELLS_PER_TRANSITION*rowStart[index];
+		int offset = start+CELLS_PER_TRANSITION*position;
+		moveCells(offset, offset+CELLS_PER_TRANSITION, CELLS_PER_TRANSITION*(size-position));
+		setCell(offset, labelIndex);setCell(offset+1, targetIndex);
+		rowSize[index]=size+1;
+		return null;
+	}
+
+	/** Removes a transition at the supplied position of a row. */
+	protected void removeTransitionAt(int index, int position)
+	{
+		int offset = CELLS_PER_TRANSITION*(rowStart[index]+position), size = rowSize[index];
+		moveCells(offset+CELLS_PER_TRANSITION, offset, CELLS_PER_TRANSITION*(size-position-1));
+		rowSize[index]=size-1;
+	}
+
+	/** Removes a transition with the supplied label from the row of the supplied state, returning the target of the removed transition or null if there was no transition. */
+	protected CmpVertex removeTransition(int index, Object label)
+	{
+		if (keyPosition[index] < 0)
+			return null;
+		int labelIndex = labelToIndex(label);
+		if (labelIndex < 0)
+			return null;
+		int start = CELLS_PER_TRANSITION*rowStart[index], size = rowSize[index];
+		for(int position = 0;position < size;++position)
+			if (getCell(start+CELLS_PER_TRANSITION*position) == labelIndex)
+			{
+				CmpVertex previous = vertices[getCell(start+CELLS_PER_TRANSITION*position+1)];
+				removeTransitionAt(index, position);
+				return previous;
+			}
+		return null;
+	}
+
+	/** Makes the supplied state a key of this map, with an empty row. */
+	protected void addKey(int index)
+	{
+		assert keyPosition[index] < 0;
+		if (keyOrderTop >= keyOrder.length)
+		{
+			if (2*keyCount < keyOrderTop)
+			{// more than half of the entries were removed, compact the collection of keys.
+				int top = 0;
+				for(int i=0;i<keyOrderTop;++i)
+					if (keyOrder[i] >= 0)
+					{
+						keyOrder[top]=keyOrder[i];keyPosition[keyOrder[i]]=top;++top;
+					}
+				keyOrderTop = top;
+			}
+			else
+				keyOrder = Arrays.copyOf(keyOrder, keyOrder.length*2);
+		}
+		keyPosition[index]=keyOrderTop;keyOrder[keyOrderTop++]=index;++keyCount;
+		rowStart[index]=poolTop;rowSize[index]=0;rowCapacity[index]=0;
+	}
+
+	/** Copies the content of the row of a state into a detached row. */
+	protected Row snapshot(int index)
+	{
+		Row outcome = new Row();
+		for(int i=0;i<rowSize[index];++i)
+			outcome.detached.put(labels[getRowLabel(index, i)], vertices[getRowTarget(index, i)]);
+		return outcome;
+	}
+
+	/** Creates a new detached row, to be populated and subsequently put into a transition matrix. */
+	public static Row createRow()
+	{
+		return new Row();
+	}
+
+	@Override
+	public MapWithSearch<Label, Label, CmpVertex> put(CmpVertex key, MapWithSearch<Label, Label, CmpVertex> value)
+	{
+		if (key == null)
+			throw new IllegalArgumentException("key cannot be null for IntArrayTransitionMatrix");
+		if (value == null)
+			throw new IllegalArgumentException("value cannot be null for IntArrayTransitionMatrix");
+		int index = addVertex(key);
+		if (value instanceof Row && ((Row)value).matrix == this && ((Row)value).index == index)
+			return value;// putting a row of a state back
+
+		// the supplied row may be a view of this very matrix, hence its content has to be copied out before we start making any changes to the pool.
+		int size = value.size(), i=0;
+		Label [] rowLabels = new Label[size];CmpVertex [] rowTargets = new CmpVertex[size];
+		for(Entry<Label,CmpVertex> entry:value.entrySet())
+		{
+			rowLabels[i]=entry.getKey();rowTargets[i]=entry.getValue();++i;
+		}
+
+		MapWithSearch<Label, Label, CmpVertex> previous = null;
+		if (keyPosition[index] >= 0)
+		{
+			previous = snapshot(index);
+			poolWasted += rowCapacity[index];rowCapacity[index] = 0;rowSize[index] = 0;rowStart[index]=poolTop;
+		}
+		else
+		{
+			vertices[index]=key;// the state may previously have been added as a target of some transition, in which case we replace it with the key.
+			addKey(index);
+		}
+		ensureRowCapacity(index, size);
+		for(i=0;i<size;++i)
+			putTransition(index, rowLabels[i], rowTargets[i]);
+
+		if (value instanceof Row && ((Row)value).matrix == null)
+		{// attach the supplied row to this matrix
+			Row row = (Row)value;row.matrix = this;row.index = index;row.detached = null;
+		}
+		return previous;
+	}
+
+	@Override
+	public MapWithSearch<Label, Label, CmpVertex> get(Object key)
+	{
+		int index = vertexToIndex(key);
+		if (index < 0 || keyPosition[index] < 0)
+			return null;
+		return new Row(this,index);
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		int index = vertexToIndex(key);
+		return index >= 0 && keyPosition[index] >= 0;
+	}
+
+	@Override
+	public MapWithSearch<Label, Label, CmpVertex> remove(Object key)
+	{
+		int index = vertexToIndex(key);
+		if (index < 0 || keyPosition[index] < 0)
+			return null;
+		Row previous = snapshot(index);
+		keyOrder[keyPosition[index]] = -1;keyPosition[index] = -1;--keyCount;
+		poolWasted += rowCapacity[index];rowCapacity[index] = 0;rowSize[index] = 0;
+		return previous;
+	}
+
+	@Override
+	public int size()
+	{
+		return keyCount;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return keyCount == 0;
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(vertices, 0, vertexNumber, null);Arrays.fill(vertexTable, 0);vertexNumber = 0;
+		Arrays.fill(labels, 0, labelNumber, null);Arrays.fill(labelTable, 0);labelNumber = 0;
+		keyOrderTop = 0;keyCount = 0;poolTop = 0;poolWasted = 0;
+	}
+
+	/** Iterates through states in the order they were added to this map. */
+	abstract class KeyIterator<T> implements Iterator<T>
+	{
+		int nextPosition = 0, lastIndex = -1;
+
+		@Override
+		public boolean hasNext()
+		{
+			while(nextPosition < keyOrderTop && keyOrder[nextPosition] < 0)
+				++nextPosition;
+			return nextPosition < keyOrderTop;
+		}
+
+		protected int nextIndex()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			lastIndex = keyOrder[nextPosition++];
+			return lastIndex;
+		}
+
+		@Override
+		public void remove()
+		{
+			if (lastIndex < 0)
+				throw new IllegalStateException("next was not yet called or was already called");
+			IntArrayTransitionMatrix.this.remove(vertices[lastIndex]);
+			lastIndex = -1;
+		}
+	}
+
+	@Override
+	public Set<CmpVertex> keySet()
+	{
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<CmpVertex> iterator() {
+				return new KeyIterator<>() {
+					@Override
+					public CmpVertex next() {
+						return vertices[nextIndex()];
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public boolean remove(Object o) {
+				return IntArrayTransitionMatrix.this.remove(o) != null;
+			}
+
+			@Override
+			public void clear() {
+				IntArrayTransitionMatrix.this.clear();
+			}
+
+			@Override
+			public int size() {
+				return keyCount;
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<CmpVertex, MapWithSearch<Label, Label, CmpVertex>>> entrySet()
+	{
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<Entry<CmpVertex, MapWithSearch<Label, Label, CmpVertex>>> iterator() {
+				return new KeyIterator<>() {
+					@Override
+					public Entry<CmpVertex, MapWithSearch<Label, Label, CmpVertex>> next() {
+						final int index = nextIndex();
+						return new Entry<>() {
+							@Override
+							public CmpVertex getKey() {
+								return vertices[index];
+							}
+
+							@Override
+							public MapWithSearch<Label, Label, CmpVertex> getValue() {
+								return new Row(IntArrayTransitionMatrix.this,index);
+							}
+
+							@Override
+							public MapWithSearch<Label, Label, CmpVertex> setValue(MapWithSearch<Label, Label, CmpVertex> value) {
+								return put(vertices[index],value);
+							}
+
+							@Override
+							public int hashCode() {
+								return getKey().hashCode() ^ getValue().hashCode();
+							}
+
+							@Override
+							public boolean equals(Object obj) {
+								if (!(obj instanceof Entry))
+									return false;
+								Entry<?,?> other = (Entry<?,?>)obj;
+								return getKey().equals(other.getKey()) && getValue().equals(other.getValue());
+							}
+
+							@Override
+							public String toString() {
+								return getKey()+"="+getValue();
+							}
+						};
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keyCount;
+			}
+
+			@Override
+			public void clear() {
+				IntArrayTransitionMatrix.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public boolean expectsConvertibleToInt()
+	{
+		return false;
+	}
+
+	@Override
+	public CmpVertex findKey(VertID id)
+	{
+		int index = vertexToIndex(id);
+		if (index < 0 || keyPosition[index] < 0)
+			return null;
+		return vertices[index];
+	}
+
+	@Override
+	public Set<Entry<CmpVertex, MapWithSearch<Label, Label, CmpVertex>>> getTreeEntrySet()
+	{
+		return new TreeMap<>(this).entrySet();
+	}
+
+	@Override
+	public Set<Entry<CmpVertex, MapWithSearch<Label, Label, CmpVertex>>> getPotentiallyOrderedEntrySet(boolean ordered)
+	{
+		if (!ordered)
+			return entrySet();
+		return getTreeEntrySet();
+	}
+
+	@Override
+	public Set<CmpVertex> getPotentiallyOrderedKeySet(boolean ordered)
+	{
+		if (!ordered)
+			return keySet();
+		return new TreeMap<>(this).keySet();
+	}
+
+	/** A row of the transition matrix. Either a view of a segment of the pool of a matrix or a detached collection of transitions that will
+	 * be copied into a pool when this row is put in a matrix.
+	 */
+	public static final class Row extends AbstractMap<Label,CmpVertex> implements MapWithSearch<Label,Label,CmpVertex>
+	{
+		/** The matrix this row belongs to, null for a detached row. */
+		IntArrayTransitionMatrix matrix;
+
+		/** The index of the state this row belongs to. */
+		int index;
+
+		/** Transitions of a detached row. */
+		TreeMap<Label,CmpVertex> detached;
+
+		Row()
+		{
+			detached = new TreeMap<>();
+		}
+
+		Row(IntArrayTransitionMatrix m, int idx)
+		{
+			matrix = m;index = idx;
+		}
+
+		@Override
+		public CmpVertex get(Object key)
+		{
+			if (matrix == null)
+				return key == null?null:detached.get(key);
+			int label = matrix.labelToIndex(key);
+			if (label < 0)
+				return null;
+			int target = matrix.getTarget(index, label);
+			return target < 0?null:matrix.vertices[target];
+		}
+
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return get(key) != null;
+		}
+
+		@Override
+		public CmpVertex put(Label key, CmpVertex value)
+		{
+	        if (key == null)
+	            throw new IllegalArgumentException("key cannot be null for IntArrayTransitionMatrix");
+	        if (value == null)
+	            throw new IllegalArgumentException("value cannot be null for IntArrayTransitionMatrix");
+			if (matrix == null)
+				return detached.put(key, value);
+			return matrix.putTransition(index, key, value);
+		}
+
+		@Override
+		public CmpVertex remove(Object key)
+		{
+			if (matrix == null)
+				return key == null?null:detached.remove(key);
+			return matrix.removeTransition(index, key);
+		}
+
+		@Override
+		public int size()
+		{
+			if (matrix == null)
+				return detached.size();
+			return matrix.getRowSize(index);
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return size() == 0;
+		}
+
+		@Override
+		public void clear()
+		{
+			if (matrix == null)
+				detached.clear();
+			else
+				if (matrix.keyPosition[index] >= 0)
+					matrix.rowSize[index]=0;
+		}
+
+		@Override
+		public Set<Entry<Label, CmpVertex>> entrySet()
+		{
+			if (matrix == null)
+				return detached.entrySet();
+			return new AbstractSet<>() {
+
+				@Override
+				public Iterator<Entry<Label, CmpVertex>> iterator() {
+					return new Iterator<>() {
+						int position = 0;
+						boolean canRemove = false;
+
+						@Override
+						public boolean hasNext() {
+							return position < matrix.getRowSize(index);
+						}
+
+						@Override
+						public Entry<Label, CmpVertex> next() {
+							if (!hasNext())
+								throw new NoSuchElementException();
+							canRemove = true;
+							int pos = position++;
+							return new SimpleImmutableEntry<>(matrix.labels[matrix.getRowLabel(index, pos)],matrix.vertices[matrix.getRowTarget(index, pos)]);
+						}
+
+						@Override
+						public void remove() {
+							if (!canRemove)
+								throw new IllegalStateException("next was not yet called or was already called");
+							matrix.removeTransitionAt(index, --position);canRemove = false;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return Row.this.size();
+				}
+			};
+		}
+
+		@Override
+		public boolean expectsConvertibleToInt()
+		{
+			return false;
+		}
+
+		@Override
+		public Label findKey(Label id)
+		{
+			if (matrix == null)
+			{
+				Entry<Label,CmpVertex> entry = id == null?null:detached.ceilingEntry(id);
+				return entry != null && entry.getKey().equals(id)?entry.getKey():null;
+			}
+			int label = matrix.labelToIndex(id);
+			if (label < 0 || matrix.getTarget(index, label) < 0)
+				return null;
+			return matrix.labels[label];
+		}
+
+		@Override
+		public Set<Entry<Label, CmpVertex>> getTreeEntrySet()
+		{// rows are already ordered.
+			return entrySet();
+		}
+
+		@Override
+		public Set<Entry<Label, CmpVertex>> getPotentiallyOrderedEntrySet(@SuppressWarnings("unused") boolean ordered)
+		{
+			return entrySet();
+		}
+
+		@Override
+		public Set<Label> getPotentiallyOrderedKeySet(@SuppressWarnings("unused") boolean ordered)
+		{
+			return keySet();
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.collections;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.Cleaner;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * A version of {@link IntArrayTransitionMatrix} where the pool of transitions is not on the Java heap but in a file mapped into memory.
+ * The file is split in segments of a fixed size, each of which is mapped separately, so that the pool can grow beyond 2GB and
+ * new segments can be added without remapping existing ones. Pages of the file that are not in use are written out by the operating
+ * system, which makes it possible to learn from PTAs whose transitions do not fit in the heap.
+ * <p>
+ * States and labels are still objects on the heap and so are per-state indices of rows; for a PTA, these take a fraction of
+ * memory taken by rows stored as maps.
+ * <p>
+ * The file is created in a supplied directory (the default temporary directory if null) and is deleted immediately after it
+ * is opened where the operating system permits this. When a matrix is closed, its file along with the segments mapped from it
+ * is returned to a pool and reused by the next matrix created in the same directory with the same size of segments, so that
+ * learners building a graph for every merge do not create a file and map segments for each of them. Up to {@link #IDLE_STORAGE_LIMIT} files
+ * are kept in the pool, others are closed and deleted. Matrices that are not closed return their files to the pool
+ * when they are garbage-collected.
+ *
+ * @author agent
+ */
+public class MappedTransitionMatrix extends IntArrayTransitionMatrix implements Closeable
+{
+	/** Segments of 2^24 cells, 64MB each. */
+	public static final int DEFAULT_SEGMENT_BITS = 24;
+
+	/** The maximal number of files kept for reuse by matrices created in the future. */
+	public static final int IDLE_STORAGE_LIMIT = 4;
+
+	/** A file with segments mapped from it, used by one matrix at a time. */
+	protected static class Storage implements Runnable
+	{
+		final File directory, file;
+		final int segmentBits;
+		final RandomAccessFile randomAccessFile;
+
+		/** Segments mapped so far, some of which may not be used by the current matrix. */
+		IntBuffer [] segments = new IntBuffer[0];
+
+		Storage(File dir, int bits)
+		{
+			directory = dir;segmentBits = bits;
+			try
+			{
+				file = File.createTempFile("statechum_transitions", ".bin", directory);
+				randomAccessFile = new RandomAccessFile(file, "rw");
+			}
+			catch(IOException ex)
+			{
+				throw new IllegalArgumentException("failed to create a file for a transition matrix: "+ex, ex);
+			}
+			if (!file.delete())
+				file.deleteOnExit();// the file is open and cannot be deleted at this point, such as on Windows.
+		}
+
+		/** Called when a matrix using this storage is closed or garbage-collected, hence it must not refer to the matrix. */
+		@Override
+		public void run()
+		{
+			releaseStorage(this);
+		}
+
+		void close()
+		{
+			segments = new IntBuffer[0];
+			try
+			{
+				randomAccessFile.close();
+			}
+			catch(IOException ex)
+			{// nothing can be done about a file that is no longer used and could not be closed, it will be deleted when the JVM exits.
+			}
+			if (file.exists())
+				file.delete();
+		}
+	}
+
+	/** Files that are not used by any matrix, the most recently released at the end. */
+	private static final ArrayDeque<Storage> idleStorage = new ArrayDeque<>();
+
+	private static final Cleaner cleaner = Cleaner.create();
+
+	/** Returns a file previously used by a matrix, with the same directory and size of segments as requested, or a new one. */
+	protected static Storage obtainStorage(File directory, int segmentBits)
+	{
+		synchronized(idleStorage)
+		{
+			Iterator<Storage> iterator = idleStorage.descendingIterator();
+			while(iterator.hasNext())
+			{
+				Storage storage = iterator.next();
+				if (storage.segmentBits == segmentBits && Objects.equals(storage.directory, directory))
+				{
+					iterator.remove();return storage;
+				}
+			}
+		}
+		return new Storage(directory, segmentBits);
+	}
+
+	protected static void releaseStorage(Storage storage)
+	{
+		Storage toClose = storage;
+		synchronized(idleStorage)
+		{
+			idleStorage.addLast(storage);
+			if (idleStorage.size() > IDLE_STORAGE_LIMIT)
+				toClose = idleStorage.removeFirst();
+			else
+				toClose = null;
+		}
+		if (toClose != null)
+			toClose.close();
+	}
+
+	/** The number of files kept for reuse. */
+	public static int getIdleStorageNumber()
+	{
+		synchronized(idleStorage)
+		{
+			return idleStorage.size();
+		}
+	}
+
+	protected final int segmentBits, segmentMask;
+
+	/** Segments of the pool used by this matrix, a prefix of those mapped in the storage. */
+	protected IntBuffer [] segments = new IntBuffer[0];
+
+	protected final Storage storage;
+
+	/** Returns the storage to the pool when this matrix is closed or garbage-collected. */
+	protected final Cleaner.Cleanable cleanable;
+
+	public MappedTransitionMatrix(int expectedStates, File directory)
+	{
+		this(expectedStates, directory, DEFAULT_SEGMENT_BITS);
+	}
+
+	/** Constructs a matrix that can accommodate the supplied number of states before any reallocation of indices is needed.
+	 *
+	 * @param expectedStates the expected number of states.
+	 * @param directory where to create a file for the pool, null for the default temporary directory.
+	 * @param segmentSizeBits the number of cells in a segment of the pool is two to the power of this value.
+	 */
+	public MappedTransitionMatrix(int expectedStates, File directory, int segmentSizeBits)
+	{
+		super(expectedStates, false);
+		if (segmentSizeBits < 4 || segmentSizeBits > 28)
+			throw new IllegalArgumentException("invalid segment size");
+		segmentBits = segmentSizeBits;segmentMask = (1 << segmentBits)-1;
+		storage = obtainStorage(directory, segmentBits);
+		cleanable = cleaner.register(this, storage);
+		ensurePoolCapacity(Math.max(expectedStates, 4));
+	}
+
+	/** Returns the file storing the pool, which may already be deleted. */
+	public File getFile()
+	{
+		return storage.file;
+	}
+
+	@Override
+	protected int getCell(int cell)
+	{
+		return segments[cell >>> segmentBits].get(cell & segmentMask);
+	}
+
+	@Override
+	protected void setCell(int cell, int value)
+	{
+		segments[cell >>> segmentBits].put(cell & segmentMask, value);
+	}
+
+	@Override
+	protected void moveCells(int from, int to, int length)
+	{
+		if (from > to)
+			for(int i=0;i<length;++i)
+				setCell(to+i, getCell(from+i));
+		else
+			for(int i=length-1;i>=0;--i)
+				setCell(to+i, getCell(from+i));
+	}
+
+	/** Maps as many segments as necessary to accommodate the supplied number of transitions. */
+	@Override
+	protected void ensurePoolCapacity(int transitions)
+	{
+		long cellsRequired = (long)CELLS_PER_TRANSITION*transitions;
+		if (cellsRequired <= ((long)segments.length << segmentBits))
+			return;
+		if (cellsRequired > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("too many transitions");
+		int segmentNumber = (int)((cellsRequired + segmentMask) >>> segmentBits);
+		if (segmentNumber > storage.segments.length)
+		{
+			IntBuffer [] newSegments = Arrays.copyOf(storage.segments, segmentNumber);
+			long segmentBytes = (long)Integer.BYTES << segmentBits;
+			try
+			{
+				FileChannel channel = storage.randomAccessFile.getChannel();
+				for(int i=storage.segments.length;i<segmentNumber;++i)
+					newSegments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i*segmentBytes, segmentBytes).order(ByteOrder.nativeOrder()).asIntBuffer();
+			}
+			catch(IOException ex)
+			{
+				throw new IllegalArgumentException("failed to map a transition matrix: "+ex, ex);
+			}
+			storage.segments = newSegments;
+		}
+		segments = Arrays.copyOf(storage.segments, segmentNumber);// segments beyond those needed may have been mapped by a matrix that used the storage before.
+	}
+
+	/** Compacts rows in place, since copying the pool as done by {@link IntArrayTransitionMatrix} would need twice the space.
+	 * Rows are moved in the order of their positions in the pool, hence each row moves towards the start of the pool
+	 * and does not overwrite any row that has not yet been moved.
+	 */
+	@Override
+	protected void compactPool()
+	{
+		long [] rows = new long[keyCount];int rowNumber = 0;
+		for(int i=0;i<keyOrderTop;++i)
+		{
+			int index = keyOrder[i];
+			if (index >= 0)
+				rows[rowNumber++] = ((long)rowStart[index] << 32) | index;
+		}
+		Arrays.sort(rows, 0, rowNumber);
+		int top = 0;
+		for(int i=0;i<rowNumber;++i)
+		{
+			int index = (int)rows[i];
+			moveCells(CELLS_PER_TRANSITION*rowStart[index], CELLS_PER_TRANSITION*top, CELLS_PER_TRANSITION*rowSize[index]);
+			rowStart[index]=top;rowCapacity[index]=rowSize[index];top+=rowSize[index];
+		}
+		poolTop = top;poolWasted = 0;
+	}
+
+	/** Returns the file storing the pool to the pool of files for reuse by other matrices. The matrix cannot be used after this call. */
+	@Override
+	public void close()
+	{
+		segments = new IntBuffer[0];
+		cleanable.clean();
+	}
+}
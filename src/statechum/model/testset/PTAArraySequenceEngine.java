@@ -0,0 +1,598 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.model.testset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.Label;
+import statechum.model.testset.PTASequenceEngine.FSMAbstraction;
+import statechum.model.testset.PTASequenceEngine.FilterPredicate;
+
+/** A counterpart of {@link PTASequenceEngine} where nodes of a trie are numbered and labels are interned, so that
+ * a trie is stored in a few arrays of integers rather than in a map of maps. Sets of sequences are arrays of
+ * node numbers rather than linked lists of nodes. This is intended for generation of large test sets where
+ * the trie is only built and then turned into sequences; {@link PTAExploration} and the classes based on it
+ * continue to rely on {@link PTASequenceEngine}.
+ * <p>
+ * The order of sequences returned by {@link #getData()} is the same as that of {@link PTASequenceEngine#getData()}
+ * for the same sequence of operations.
+ *
+ * @author agent
+ */
+public class PTAArraySequenceEngine
+{
+	/** The number of the reject node. All transitions to reject-states lead to it and it has no outgoing transitions. */
+	public static final int REJECT = -1;
+
+	/** The machine used to match all paths supplied against */
+	protected FSMAbstraction fsm = null;
+
+	/** Labels indexed by their numbers. */
+	protected final List<Label> idToLabel = new ArrayList<>();
+
+	/** Numbers of labels. */
+	protected final Map<Label,Integer> labelToId = new HashMap<>();
+
+	/** States of the FSM corresponding to nodes. */
+	protected Object [] states = new Object[16];
+
+	/** For each node, the number of outgoing transitions and the numbers of labels and of target nodes of these transitions, in the order they were added. */
+	protected int [] childCount = new int[16];
+	protected int [][] childLabels = new int[16][], childNodes = new int[16][];
+
+	/** The number of nodes, excluding the reject one. */
+	protected int nodeCount = 0;
+
+	/** Maps a pair of a node and a label to the target node, using open addressing.
+	 * Keys combine the number of a node and that of a label, incremented by one so that zero denotes an unused slot.
+	 */
+	protected long [] transitionKeys = new long[64];
+	protected int [] transitionTargets = new int[64];
+	protected int transitionCount = 0;
+
+	/** The initial node of the trie, either zero or {@link #REJECT}. */
+	protected int init = REJECT;
+
+	public FSMAbstraction getFSM()
+	{
+		return fsm;
+	}
+
+	/** Initialises this engine with an underlying machine, discarding all existing nodes.
+	 *
+	 * @param machine The handler for LTS to use for building a trie.
+	 */
+	public void init(FSMAbstraction machine)
+	{
+		fsm = machine;
+		nodeCount = 0;transitionCount = 0;
+		Arrays.fill(transitionKeys, 0);
+		if (machine.isAccept(machine.getInitState()))
+			init = newNode(machine.getInitState());
+		else
+			init = REJECT;
+	}
+
+	/** Returns the number of the supplied label, interning it if it has not been seen before. */
+	protected int labelToInt(Label label)
+	{
+		Integer id = labelToId.get(label);
+		if (id == null)
+		{
+			id = idToLabel.size();idToLabel.add(label);labelToId.put(label, id);
+		}
+		return id;
+	}
+
+	public Label intToLabel(int id)
+	{
+		return idToLabel.get(id);
+	}
+
+	/** Returns the state of the FSM associated with the supplied node, null for the reject node. */
+	public Object getState(int node)
+	{
+		return node == REJECT?null:states[node];
+	}
+
+	public static boolean isAccept(int node)
+	{
+		return node != REJECT;
+	}
+
+	protected int newNode(Object state)
+	{
+		if (state == null)
+			throw new IllegalArgumentException("state name cannot be null");
+		if (nodeCount == states.length)
+		{
+			int newCapacity = states.length*2;
+			states = Arrays.copyOf(states, newCapacity);childCount = Arrays.copyOf(childCount, newCapacity);
+			childLabels = Arrays.copyOf(childLabels, newCapacity);childNodes = Arrays.copyOf(childNodes, newCapacity);
+		}
+		states[nodeCount] = state;childCount[nodeCount] = 0;childLabels[nodeCount] = null;childNodes[nodeCount] = null;
+		return nodeCount++;
+	}
+
+	protected static long transitionKey(int node, int label)
+	{
+		return ((long)node << 32 | label)+1;
+	}
+
+	protected static int slot(long key, int mask)
+	{
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash >>> 32) & mask;
+	}
+
+	/** Returns the target of a transition from the supplied node with the supplied label,
+	 * {@link #REJECT} if it leads to the reject node and <em>REJECT-1</em> if there is no such transition.
+	 */
+	protected int findTransition(int node, int label)
+	{
+		long key = transitionKey(node, label);
+		int mask = transitionKeys.length-1;
+		for(int pos = slot(key, mask);transitionKeys[pos] != 0;pos = (pos+1) & mask)
+			if (transitionKeys[pos] == key)
+				return transitionTargets[pos];
+		return REJECT-1;
+	}
+
+	protected void addTransition(int node, int label, int target)
+	{
+		if (transitionCount*2 >= transitionKeys.length)
+		{
+			long [] oldKeys = transitionKeys;int [] oldTargets = transitionTargets;
+			transitionKeys = new long[oldKeys.length*2];transitionTargets = new int[transitionKeys.length];
+			int mask = transitionKeys.length-1;
+			for(int i=0;i<oldKeys.length;++i)
+				if (oldKeys[i] != 0)
+				{
+					int pos = slot(oldKeys[i], mask);
+					while(transitionKeys[pos] != 0) pos = (pos+1) & mask;
+					transitionKeys[pos] = oldKeys[i];transitionTargets[pos] = oldTargets[i];
+				}
+		}
+		long key = transitionKey(node, label);
+		int mask = transitionKeys.length-1, pos = slot(key, mask);
+		while(transitionKeys[pos] != 0) pos = (pos+1) & mask;
+		transitionKeys[pos] = key;transitionTargets[pos] = target;++transitionCount;
+
+		int count = childCount[node];
+		if (childLabels[node] == null)
+		{
+			childLabels[node] = new int[4];childNodes[node] = new int[4];
+		}
+		else
+			if (count == childLabels[node].length)
+			{
+				childLabels[node] = Arrays.copyOf(childLabels[node], count*2);childNodes[node] = Arrays.copyOf(childNodes[node], count*2);
+			}
+		childLabels[node][count] = label;childNodes[node][count] = target;childCount[node] = count+1;
+	}
+
+	/** Follows a transition from the supplied node, extending the trie using the underlying FSM if there is no such transition. */
+	protected int followToNextNode(int currentNode, Label input)
+	{
+		if (!isAccept(currentNode))
+			return REJECT;// the reject node has no outgoing transitions
+		int label = labelToInt(input);
+		int nextNode = findTransition(currentNode, label);
+		if (nextNode < REJECT)
+		{// No transition in the pta with the given input, hence we have to extend the pta by adding a new transition
+			Object newState = fsm.getNextState(states[currentNode], input);
+			if (newState == null || !fsm.isAccept(newState))
+				nextNode = REJECT;
+			else
+				nextNode = newNode(newState);
+			addTransition(currentNode, label, nextNode);
+		}
+		return nextNode;
+	}
+
+	/** Represents a set of sequences using a trie, backed by an underlying state machine, passed in at initialisation. */
+	public class SequenceSet
+	{
+		protected int [] ptaNodes = new int[4];
+		protected int size = 0;
+
+		protected PTAArraySequenceEngine getEnclosingObject()
+		{
+			return PTAArraySequenceEngine.this;
+		}
+
+		protected void add(int node)
+		{
+			if (size == ptaNodes.length)
+				ptaNodes = Arrays.copyOf(ptaNodes, size*2);
+			ptaNodes[size++] = node;
+		}
+
+		public void setIdentity()
+		{
+			size = 0;add(init);
+		}
+
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+
+		/** Limits the number of nodes in the set to the specified number,
+		 * by throwing away the rest of the elements.
+		 *
+		 * @param number the number of nodes to limit this set to. -1 means include all elements.
+		 */
+		public void limitTo(int number)
+		{
+			if (number >= 0 && number < size)
+				size = number;
+		}
+
+		public int getSize()
+		{
+			return size;
+		}
+
+		/** Expects the set to contain exactly one element and returns it. Throws an exception if there is either none or more than one element. */
+		public int getTheOnlyElement()
+		{
+			if (size != 1)
+				throw new IllegalArgumentException("wrong number of elements: the set should contain exactly one");
+			return ptaNodes[0];
+		}
+
+		/** Unites the given set of sequence with the supplied one.
+		 * Important: cannot cope well with duplicate nodes, they will be preserved.
+		 *
+		 * @param with a sequence set to unite with
+		 */
+		public void unite(SequenceSet with)
+		{
+			if (getEnclosingObject() != with.getEnclosingObject())
+				throw new IllegalArgumentException("unite with an argument from a different PTA machine");
+			int withSize = with.size;
+			if (size+withSize > ptaNodes.length)
+				ptaNodes = Arrays.copyOf(ptaNodes, Math.max(size+withSize, ptaNodes.length*2));
+			System.arraycopy(with.ptaNodes, 0, ptaNodes, size, withSize);size+=withSize;
+		}
+
+		/** Appends elements from the supplied set to those stored in this sequenceSet.
+		 *
+		 * @param inputs set with elements to append
+		 * @return PTA nodes reached.
+		 */
+		public SequenceSet crossWithSet(Collection<? extends Label> inputs)
+		{
+			SequenceSet result = new SequenceSet();
+			for(int i=0;i<size;++i)
+				for(Label input:inputs)
+				{
+					int newNode = followToNextNode(ptaNodes[i], input);
+					if (isAccept(newNode)) // successfully extended
+						result.add(newNode);
+				}
+			return result;
+		}
+
+		public SequenceSet crossWithMap(Map<Label, CmpVertex> map)
+		{
+			SequenceSet result = new SequenceSet();
+			for(int i=0;i<size;++i)
+				for(Entry<Label,CmpVertex> entry:map.entrySet())
+				{
+					int newNode = followToNextNode(ptaNodes[i], entry.getKey());
+					if (isAccept(newNode)) // successfully extended
+					{
+						result.add(newNode);
+						fsm.setAccept(states[newNode],entry.getValue().isAccept());
+					}
+				}
+			return result;
+		}
+
+		protected int followSequence(int node, List<Label> inputSequence)
+		{
+			int currentNode = node;
+			for(Label input:inputSequence)
+			{
+				if (!isAccept(currentNode))
+					break;
+				currentNode = followToNextNode(currentNode, input);
+			}
+			return currentNode;
+		}
+
+		public SequenceSet cross(Collection<List<Label>> inputSequences)
+		{
+			SequenceSet result = new SequenceSet();
+			for(List<Label> inputSequence:inputSequences)
+				for(int i=0;i<size;++i)
+				{
+					int currentNode = followSequence(ptaNodes[i], inputSequence);
+					if (isAccept(currentNode))
+						result.add(currentNode);
+				}
+			return result;
+		}
+
+		public SequenceSet crossWithSequence(List<Label> inputSequence)
+		{
+			SequenceSet result = new SequenceSet();
+			for(int i=0;i<size;++i)
+			{
+				int currentNode = followSequence(ptaNodes[i], inputSequence);
+				if (isAccept(currentNode))
+					result.add(currentNode);
+			}
+			return result;
+		}
+
+		/** Given a node, this method determines whether that node belongs to this set of nodes. */
+		boolean contains(int someNode)
+		{
+			for(int i=0;i<size;++i)
+				if (ptaNodes[i] == someNode)
+					return true;
+			return false;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = 1;
+			for(int i=0;i<size;++i)
+				result = 31 * result + ptaNodes[i];
+			return 31 * result + getEnclosingObject().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof SequenceSet))
+				return false;
+			final SequenceSet other = (SequenceSet) obj;
+			if (getEnclosingObject() != other.getEnclosingObject() || size != other.size)
+				return false;
+			for(int i=0;i<size;++i)
+				if (ptaNodes[i] != other.ptaNodes[i])
+					return false;
+			return true;
+		}
+	}
+
+	/** Extracts the last node on the sequence, <em>REJECT-1</em> if a sequence cannot be followed. */
+	protected int getNodeFromSequence(List<Label> inputSequence)
+	{
+		if (!isAccept(init)) throw new IllegalArgumentException("untested on empty graphs");
+		int currentNode = init;
+		for(Label input:inputSequence)
+		{
+			if (!isAccept(currentNode))
+				return REJECT-1;// reached a reject state but not the end of the sequence
+			Integer label = labelToId.get(input);
+			if (label == null)
+				return REJECT-1;
+			currentNode = findTransition(currentNode, label);
+			if (currentNode < REJECT)
+				return REJECT-1;// no transition with the current input
+		}
+		return currentNode;
+	}
+
+	/** Checks whether the supplied sequence is contained in this PTA.
+	 *
+	 * @param inputSequence the sequence to check the existence of.
+	 */
+	public boolean containsSequence(List<Label> inputSequence)
+	{
+		return getNodeFromSequence(inputSequence) >= REJECT;
+	}
+
+	/** Returns true if the supplied sequence leads to a leaf in this PTA.
+	 *
+	 * @param inputSequence the sequence to check the existence of.
+	 */
+	public boolean containsAsLeaf(List<Label> inputSequence)
+	{
+		int node = getNodeFromSequence(inputSequence);
+		return node == REJECT || (node > REJECT && childCount[node] == 0);
+	}
+
+	/** Checks whether the supplied sequence extends a leaf of this PTA, the same way as {@link PTASequenceEngine#extendsLeaf(List)}. */
+	public boolean extendsLeaf(List<Label> inputSequence)
+	{
+		int currentNode = init;
+		for(Label input:inputSequence)
+		{
+			if (!isAccept(currentNode))
+				return true;// reached a reject state but not the end of the sequence; the reject node is definitely a leaf.
+			Integer label = labelToId.get(input);
+			int nextNode = label == null?REJECT-1:findTransition(currentNode, label);
+			if (nextNode < REJECT)
+				// no transition with the current input, if this is a leaf node the current sequence will extend it.
+				return currentNode != init && childCount[currentNode] == 0;
+			currentNode = nextNode;
+		}
+		return false;
+	}
+
+	/** Returns the number of nodes, including the reject one, for consistency with {@link PTASequenceEngine#getSize()}. */
+	public int getSize()
+	{
+		return nodeCount+1;
+	}
+
+	public List<List<Label>> getData()
+	{
+		return getData(null);
+	}
+
+	/** Returns the data from the PTA where only paths ending at nodes marked as
+	 * true by the supplied predicate are returned.
+	 * If null, uses the internal predicate of the fsm. Sequences are returned in a depth-first order,
+	 * the same as {@link PTAExploration#walkThroughAllPaths()} does.
+	 *
+	 * @param predicate determines which paths are returned.
+	 * @return the collection of paths for which the predicate holds.
+	 */
+	public List<List<Label>> getData(final FilterPredicate predicate)
+	{
+		List<List<Label>> result = new LinkedList<>();
+		Iterator<List<Label>> iter = getDataIterator(predicate);
+		while(iter.hasNext())
+			result.add(new ArrayList<>(iter.next()));
+		return result;
+	}
+
+	/** Returns an iterator over sequences of this PTA, producing the same sequences in the same order as
+	 * {@link #getData(FilterPredicate)} without building the whole collection. Each returned sequence is a fixed-size list.
+	 * The PTA should not be modified while the iterator is in use.
+	 *
+	 * @param predicate determines which paths are returned, if null uses the internal predicate of the fsm.
+	 */
+	public Iterator<List<Label>> getDataIterator(FilterPredicate predicate)
+	{
+		return new DataIterator(predicate == null?getFSM_filterPredicate():predicate);
+	}
+
+	/** Same as {@link #getDataIterator(FilterPredicate)} but returns a sequential stream. */
+	public Stream<List<Label>> getDataStream(FilterPredicate predicate)
+	{
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(getDataIterator(predicate), Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/** Walks the trie depth-first with an explicit stack of nodes and positions in the lists of their children,
+	 * labels on the current path are kept in a single array.
+	 */
+	protected class DataIterator implements Iterator<List<Label>>
+	{
+		private final FilterPredicate predicate;
+		private int [] nodeStack = new int[16], posStack = new int[16];
+		private Label [] path = new Label[16];
+		private int depth = -1;
+		private List<Label> nextSequence = null;
+
+		protected DataIterator(FilterPredicate pred)
+		{
+			predicate = pred;
+			if (!isAccept(init) || childCount[init] == 0)
+			{
+				if (predicate.shouldBeReturned(getState(init)))
+					nextSequence = Collections.emptyList();
+			}
+			else
+			{
+				depth = 0;nodeStack[0] = init;posStack[0] = 0;
+				advance();
+			}
+		}
+
+		/** Moves to the next leaf for which the predicate holds, setting <em>nextSequence</em> to null if there are no more. */
+		private void advance()
+		{
+			nextSequence = null;
+			while(nextSequence == null && depth >= 0)
+			{
+				int node = nodeStack[depth], pos = posStack[depth];
+				if (pos < childCount[node])
+				{
+					posStack[depth] = pos+1;
+					int child = childNodes[node][pos];
+					path[depth] = idToLabel.get(childLabels[node][pos]);
+					if (!isAccept(child) || childCount[child] == 0)
+					{
+						if (predicate.shouldBeReturned(getState(child)))
+							nextSequence = Arrays.asList(Arrays.copyOf(path, depth+1));
+					}
+					else
+					{
+						if (++depth == nodeStack.length)
+						{
+							nodeStack = Arrays.copyOf(nodeStack, depth*2);posStack = Arrays.copyOf(posStack, depth*2);path = Arrays.copyOf(path, depth*2);
+						}
+						nodeStack[depth] = child;posStack[depth] = 0;
+					}
+				}
+				else
+					--depth;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return nextSequence != null;
+		}
+
+		@Override
+		public List<Label> next()
+		{
+			if (nextSequence == null)
+				throw new NoSuchElementException();
+			List<Label> result = nextSequence;
+			advance();
+			return result;
+		}
+	}
+
+	/** Returns the number of tail nodes in this PTA for which sequences would be returned by {@link #getData()}. */
+	public int numberOfLeafNodes()
+	{
+		boolean rejectReturned = fsm.shouldBeReturned(null);
+		if (!isAccept(init))
+			return rejectReturned?1:0;
+
+		int result = 0;
+		for(int node=0;node<nodeCount;++node)
+			if (childCount[node] == 0)
+			{
+				if (fsm.shouldBeReturned(states[node]))
+					++result;
+			}
+			else
+				if (rejectReturned)
+					for(int i=0;i<childCount[node];++i)
+						if (childNodes[node][i] == REJECT)
+							++result;
+		return result;
+	}
+
+	/** Returned a filter predicate determined by the underlying fsm. */
+	public FilterPredicate getFSM_filterPredicate()
+	{
+		return name -> fsm.shouldBeReturned(name);
+	}
+}
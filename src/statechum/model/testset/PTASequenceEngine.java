@@ -18,16 +18,24 @@
 
 package statechum.model.testset;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import harmony.collections.HashMapWithSearch;
 import statechum.Pair;
@@ -600,6 +608,97 @@ public class PTASequenceEngine
 		exploration.walkThroughAllPaths();
 		return result;
 	}
+
+	/** Returns an iterator over sequences of this PTA, producing the same sequences in the same order as
+	 * {@link #getData(FilterPredicate)} but without building the whole collection. The trie is walked
+	 * depth-first as sequences are requested, hence the memory used by the iterator is proportional to the
+	 * depth of the PTA rather than to the number of sequences in it. Each returned sequence is a fixed-size list.
+	 * The PTA should not be modified while the iterator is in use.
+	 *
+	 * @param predicate determines which paths are returned, if null uses the internal predicate of the fsm.
+	 */
+	public Iterator<List<Label>> getDataIterator(FilterPredicate predicate)
+	{
+		return new DataIterator(predicate == null?getFSM_filterPredicate():predicate);
+	}
+
+	/** Same as {@link #getDataIterator(FilterPredicate)} but returns a sequential stream. */
+	public Stream<List<Label>> getDataStream(FilterPredicate predicate)
+	{
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(getDataIterator(predicate), Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/** Walks the PTA with an explicit stack of iterators over rows of nodes on the current path,
+	 * the labels on this path are kept in a single array.
+	 */
+	protected class DataIterator implements Iterator<List<Label>>
+	{
+		private final FilterPredicate predicate;
+		private final List<Iterator<Entry<Label,Node>>> stack = new ArrayList<>();
+		private Label [] path = new Label[16];
+		private List<Label> nextSequence = null;
+
+		protected DataIterator(FilterPredicate pred)
+		{
+			predicate = pred;
+			if (pta.get(init).isEmpty())
+			{
+				if (predicate.shouldBeReturned(init.getState()))
+					nextSequence = Collections.emptyList();
+			}
+			else
+			{
+				stack.add(pta.get(init).entrySet().iterator());
+				advance();
+			}
+		}
+
+		/** Moves to the next leaf for which the predicate holds, setting <em>nextSequence</em> to null if there are no more. */
+		private void advance()
+		{
+			nextSequence = null;
+			while(nextSequence == null && !stack.isEmpty())
+			{
+				int depth = stack.size()-1;
+				Iterator<Entry<Label,Node>> iter = stack.get(depth);
+				if (iter.hasNext())
+				{
+					Entry<Label,Node> entry = iter.next();
+					path[depth] = entry.getKey();
+					Map<Label,Node> row = pta.get(entry.getValue());
+					if (row.isEmpty())
+					{
+						if (predicate.shouldBeReturned(entry.getValue().getState()))
+							nextSequence = Arrays.asList(Arrays.copyOf(path, depth+1));
+					}
+					else
+					{
+						if (depth+1 == path.length)
+							path = Arrays.copyOf(path, path.length*2);
+						stack.add(row.entrySet().iterator());
+					}
+				}
+				else
+					stack.remove(depth);
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return nextSequence != null;
+		}
+
+		@Override
+		public List<Label> next()
+		{
+			if (nextSequence == null)
+				throw new NoSuchElementException();
+			List<Label> result = nextSequence;
+			advance();
+			return result;
+		}
+	}
 	
 	/** Returns a textual representation of nodes held in the supplied set.
 	 * Important: do not change the returned data unless you are prepared to modify tests
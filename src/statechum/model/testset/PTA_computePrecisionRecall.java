@@ -18,6 +18,7 @@
 
 package statechum.model.testset;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -25,10 +26,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.Helper;
 import statechum.Label;
 import statechum.analysis.learning.PrecisionRecall.PosNegPrecisionRecall;
+import statechum.analysis.learning.linear.GDLearnerGraph;
 import statechum.analysis.learning.rpnicore.LearnerGraph;
 
 /** Computes precision and recall by tracing a given pta structure through this machine. 
@@ -77,21 +83,32 @@ public class PTA_computePrecisionRecall extends PTA_FSMStructure {
 
 	private void updateCounters(Node walkNode, Node ptaNode)
 	{
-		if (!walkNode.isAccept() && ptaNode.getState() == null) // ptaNode.getState() == null means it is a reject node
+		updateCounters(walkNode.isAccept(), ptaNode.getState() == null, 1);// ptaNode.getState() == null means it is a reject node
+	}
+	
+	/** Records outcomes of walks that are finished.
+	 *
+	 * @param walkAccept whether walks are expected to be accepted.
+	 * @param ptaReject whether walks are rejected by the machine.
+	 * @param number the number of walks.
+	 */
+	protected void updateCounters(boolean walkAccept, boolean ptaReject, int number)
+	{
+		if (!walkAccept && ptaReject)
 		{// True Positive
-			resultTN++;neg_Rel++;neg_Ret++;
+			resultTN+=number;neg_Rel+=number;neg_Ret+=number;
 		}
-		if (!walkNode.isAccept() && ptaNode.getState() != null)
+		if (!walkAccept && !ptaReject)
 		{// False Positive
-			resultFP++;neg_Rel++;pos_Ret++;
+			resultFP+=number;neg_Rel+=number;pos_Ret+=number;
 		}
-		if (walkNode.isAccept() && ptaNode.getState() == null)
+		if (walkAccept && ptaReject)
 		{// False Negative
-			resultFN++;pos_Rel++;neg_Ret++;
+			resultFN+=number;pos_Rel+=number;neg_Ret+=number;
 		}
-		if (walkNode.isAccept() && ptaNode.getState() != null)
+		if (walkAccept && !ptaReject)
 		{// True Negative
-			resultTP++;pos_Rel++;pos_Ret++;
+			resultTP+=number;pos_Rel+=number;pos_Ret+=number;
 		}		
 	}
 	
@@ -172,44 +189,209 @@ public class PTA_computePrecisionRecall extends PTA_FSMStructure {
 		testExplorationBoundary.add(walk.init);ptaExplorationBoundary.add(init);
 		
 		while(!testExplorationBoundary.isEmpty()) // we explore all of the pc supplied
+			exploreNode(walk, testExplorationBoundary.remove(), ptaExplorationBoundary.remove(), testExplorationBoundary, ptaExplorationBoundary);
+	}
+
+	/** Traces transitions from the supplied node of a walk, adding the nodes entered to exploration boundaries. */
+	protected void exploreNode(PTASequenceEngine walk, Node walkCurrentNode, Node ptaCurrentNode, Queue<Node> testExplorationBoundary, Queue<Node> ptaExplorationBoundary)
+	{
+		assert ptaCurrentNode != rejectNode;
+		Map<Label,Node> walkRow = walk.pta.get(walkCurrentNode), ptaRow = pta.get(ptaCurrentNode);
+
+		for(Entry<Label,Node> walkNextInputAndState:walkRow.entrySet())
+		{// for each outgoing transition of a test, we need to do something with the current transition of a machine
+			Node nextPtaNode=ptaRow.get(walkNextInputAndState.getKey());
+			if (nextPtaNode == null)
+			{// Since next PTA node is null, this means that we've not seen this already. This is important where we do a cross
+			 // with set including training data which has to be filtered out. In this case, we first do cross with training and
+		     // then only new nodes are considered for the purpose of performance evaluation.
+			 // Note that we also end up here if the current node is a reject node.
+
+				nextPtaNode = followWithRejectNodes(ptaCurrentNode,walkNextInputAndState.getKey());
+				
+				// if we reach a reject node of a PTA, it does not mean that we can stop: there could be numerous walks
+				// which are not finished yet. Some of them may be accept-walks, others reject-walks, hence we have to follow
+				// them through to their ends. The PTA will stay in its rejectNode and we will just unwind walks until they reach
+				// their ends (walk.pta.get(walkNextInputAndState.getValue()).isEmpty())
+				if (walk.pta.get(walkNextInputAndState.getValue()).isEmpty())
+				{// The walk is finished.
+					updateCounters(walkNextInputAndState.getValue(),nextPtaNode);
+				}
+			}
+			else
+				if (walk.pta.get(walkNextInputAndState.getValue()).isEmpty() && !pta.get(nextPtaNode).isEmpty())
+				{// The walk is finished.
+					updateCounters(walkNextInputAndState.getValue(),nextPtaNode);
+				}
+
+				
+			testExplorationBoundary.offer(walkNextInputAndState.getValue());ptaExplorationBoundary.offer(nextPtaNode);
+		}
+	}
+	
+	/** The number of subtrees of a test PTA per thread, traced concurrently by {@link #crossWithNoReset(PTASequenceEngine, int)}. */
+	public static final int SUBTREES_PER_THREAD = 8;
+
+	/** Same as {@link #crossWith(PTASequenceEngine)} but traces the supplied sequences using the specified number of threads. */
+	public void crossWith(PTASequenceEngine pc, int threadNumber)
+	{
+		reset();
+		crossWithNoReset(pc, threadNumber);
+	}
+
+	/** Same as {@link #crossWithNoReset(PTASequenceEngine)} but traces the supplied sequences using the specified number of threads.
+	 * The upper levels of the walk are explored sequentially until there are enough subtrees to trace, these subtrees are then
+	 * traced concurrently against the machine. During this stage, this PTA is only read, new nodes are recorded separately
+	 * for each subtree and added to this PTA at the end, so that subsequent calls see the traced sequences the same way as
+	 * they would after {@link #crossWithNoReset(PTASequenceEngine)}. The underlying machine has to permit concurrent calls to
+	 * <em>getNextState</em> and <em>isAccept</em>, which is the case for {@link LearnerGraph}.
+	 *
+	 * @param walk the set of sequences.
+	 * @param threadNumber the number of threads to use.
+	 */
+	public void crossWithNoReset(final PTASequenceEngine walk, int threadNumber)
+	{
+		if (threadNumber <= 1)
+		{
+			crossWithNoReset(walk);return;
+		}
+
+		Queue<Node> testExplorationBoundary = new LinkedList<Node>(), ptaExplorationBoundary = new LinkedList<Node>();// FIFO queue
+		testExplorationBoundary.add(walk.init);ptaExplorationBoundary.add(init);
+		while(!testExplorationBoundary.isEmpty() && testExplorationBoundary.size() < threadNumber*SUBTREES_PER_THREAD)
+			exploreNode(walk, testExplorationBoundary.remove(), ptaExplorationBoundary.remove(), testExplorationBoundary, ptaExplorationBoundary);
+
+		List<SubtreeTracer> tracers = new ArrayList<SubtreeTracer>(testExplorationBoundary.size());
+		while(!testExplorationBoundary.isEmpty())
+			tracers.add(new SubtreeTracer(walk, testExplorationBoundary.remove(), ptaExplorationBoundary.remove()));
+		for(Future<SubtreeTracer> outcome:GDLearnerGraph.getRowTaskPool(threadNumber).invokeAll(tracers))
+		{
+			SubtreeTracer tracer = null;
+			try
+			{
+				tracer = outcome.get();
+			}
+			catch(InterruptedException | ExecutionException e)
+			{
+				Helper.throwUnchecked("failed to trace a test subtree", e);
+			}
+			for(int kind=0;kind<tracer.outcomes.length;++kind)
+				updateCounters(kind >= 2, (kind & 1) != 0, tracer.outcomes[kind]);
+			for(PendingNode extension:tracer.extensions)
+				addPendingNodes(extension);
+		}
+	}
+
+	/** A node of a PTA which has been reached by a trace but not yet added to the PTA. */
+	protected static class PendingNode
+	{
+		final Label input;
+
+		/** The state of the machine, null for reject nodes. */
+		final Object state;
+
+		final List<PendingNode> children = new ArrayList<PendingNode>();
+
+		/** The existing node of a PTA this node should be added to, null if the parent is a pending node. */
+		final Node existingParent;
+
+		PendingNode(Node argExistingParent, Label argInput, Object argState)
+		{
+			existingParent = argExistingParent;input = argInput;state = argState;
+		}
+	}
+
+	/** Adds a tree of pending nodes to this PTA. */
+	protected void addPendingNodes(PendingNode top)
+	{
+		Queue<Node> parents = new LinkedList<Node>();Queue<PendingNode> pending = new LinkedList<PendingNode>();
+		parents.add(top.existingParent);pending.add(top);
+		while(!pending.isEmpty())
+		{
+			Node currentParent = parents.remove();PendingNode current = pending.remove();
+			Node node = current.state == null?new Node():new Node(current.state);
+			pta.get(currentParent).put(current.input, node);pta.put(node, new HashMap<Label,PTASequenceEngine.Node>());
+			for(PendingNode child:current.children)
+			{
+				parents.add(node);pending.add(child);
+			}
+		}
+	}
+
+	/** Traces a subtree of a test PTA without modifying this PTA, recording new nodes and counting outcomes separately. */
+	protected class SubtreeTracer implements Callable<SubtreeTracer>
+	{
+		final PTASequenceEngine walk;
+		final Node walkTop, ptaTop;
+
+		/** The number of finished walks for each combination of outcomes, at index 2 if a walk is expected to be accepted plus 1 if it is rejected. 
+		 * Counters are updated from these by {@link PTA_computePrecisionRecall#updateCounters(boolean, boolean, int)} once tracing is complete.
+		 */
+		final int [] outcomes = new int[4];
+
+		/** New nodes to be added to existing nodes of this PTA. */
+		final List<PendingNode> extensions = new ArrayList<PendingNode>();
+
+		SubtreeTracer(PTASequenceEngine argWalk, Node argWalkTop, Node argPtaTop)
+		{
+			walk = argWalk;walkTop = argWalkTop;ptaTop = argPtaTop;
+		}
+
+		/** Records the outcome of a finished walk. */
+		private void updateCounters(Node walkNode, boolean ptaReject)
 		{
-			Node walkCurrentNode = testExplorationBoundary.remove(), ptaCurrentNode = ptaExplorationBoundary.remove();
-			assert ptaCurrentNode != rejectNode;
-			Map<Label,Node> walkRow = walk.pta.get(walkCurrentNode), ptaRow = pta.get(ptaCurrentNode);
-
-			for(Entry<Label,Node> walkNextInputAndState:walkRow.entrySet())
-			{// for each outgoing transition of a test, we need to do something with the current transition of a machine
-				Node nextPtaNode=ptaRow.get(walkNextInputAndState.getKey());
-				if (nextPtaNode == null)
-				{// Since next PTA node is null, this means that we've not seen this already. This is important where we do a cross
-				 // with set including training data which has to be filtered out. In this case, we first do cross with training and
-			     // then only new nodes are considered for the purpose of performance evaluation.
-				 // Note that we also end up here if the current node is a reject node.
-
-					nextPtaNode = followWithRejectNodes(ptaCurrentNode,walkNextInputAndState.getKey());
-					
-					// if we reach a reject node of a PTA, it does not mean that we can stop: there could be numerous walks
-					// which are not finished yet. Some of them may be accept-walks, others reject-walks, hence we have to follow
-					// them through to their ends. The PTA will stay in its rejectNode and we will just unwind walks until they reach
-					// their ends (walk.pta.get(walkNextInputAndState.getValue()).isEmpty())
-					if (walk.pta.get(walkNextInputAndState.getValue()).isEmpty())
-					{// The walk is finished.
-						updateCounters(walkNextInputAndState.getValue(),nextPtaNode);
+			++outcomes[(walkNode.isAccept()?2:0)+(ptaReject?1:0)];
+		}
+
+		/** Determines the state entered from the supplied one, null if a reject node is entered, the same way as <em>followWithRejectNodes</em> does. */
+		private Object nextState(Object currentState, Label input)
+		{
+			if (currentState == null)
+				return null;
+			Object newState = fsm.getNextState(currentState, input);
+			if (newState == null || !fsm.isAccept(newState))
+				return null;
+			return newState;
+		}
+
+		@Override
+		public SubtreeTracer call()
+		{
+			// Each element of the stack is a node of a walk, associated with either an existing node of this PTA or a pending one.
+			LinkedList<Node> walkStack = new LinkedList<Node>(), ptaStack = new LinkedList<Node>();
+			LinkedList<PendingNode> pendingStack = new LinkedList<PendingNode>();
+			walkStack.push(walkTop);ptaStack.push(ptaTop);pendingStack.push(null);
+			while(!walkStack.isEmpty())
+			{
+				Node walkCurrentNode = walkStack.pop(), ptaCurrentNode = ptaStack.pop();PendingNode pendingCurrentNode = pendingStack.pop();
+				for(Entry<Label,Node> walkNextInputAndState:walk.pta.get(walkCurrentNode).entrySet())
+				{
+					boolean walkFinished = walk.pta.get(walkNextInputAndState.getValue()).isEmpty();
+					Node nextPtaNode = ptaCurrentNode == null?null:pta.get(ptaCurrentNode).get(walkNextInputAndState.getKey());
+					if (nextPtaNode == null)
+					{// the next node is not in this PTA, hence it is recorded as pending.
+						Object state = nextState(ptaCurrentNode == null?pendingCurrentNode.state:ptaCurrentNode.getState(), walkNextInputAndState.getKey());
+						PendingNode nextPending = new PendingNode(ptaCurrentNode, walkNextInputAndState.getKey(), state);
+						if (ptaCurrentNode == null)
+							pendingCurrentNode.children.add(nextPending);
+						else
+							extensions.add(nextPending);
+						if (walkFinished)
+							updateCounters(walkNextInputAndState.getValue(), state == null);
+						walkStack.push(walkNextInputAndState.getValue());ptaStack.push(null);pendingStack.push(nextPending);
 					}
-				}
-				else
-					if (walk.pta.get(walkNextInputAndState.getValue()).isEmpty() && !pta.get(nextPtaNode).isEmpty())
-					{// The walk is finished.
-						updateCounters(walkNextInputAndState.getValue(),nextPtaNode);
+					else
+					{
+						if (walkFinished && !pta.get(nextPtaNode).isEmpty())
+							updateCounters(walkNextInputAndState.getValue(), nextPtaNode.getState() == null);
+						walkStack.push(walkNextInputAndState.getValue());ptaStack.push(nextPtaNode);pendingStack.push(null);
 					}
-
-					
-				testExplorationBoundary.offer(walkNextInputAndState.getValue());ptaExplorationBoundary.offer(nextPtaNode);
+				}
 			}
+			return this;
 		}
-		
 	}
-	
+
 	/** Converts counters stored in this object to precision/recall values.
 	 * 
 	 * @return precision/recall values 
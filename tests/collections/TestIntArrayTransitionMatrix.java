@@ -0,0 +1,189 @@
+package collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.Label;
+import statechum.analysis.learning.rpnicore.AbstractLearnerGraph;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.collections.IntArrayTransitionMatrix;
+import statechum.collections.MapWithSearch;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+/** Tests the int-array based transition matrix. */
+public class TestIntArrayTransitionMatrix {
+
+	private final Configuration config;
+	private final Configuration configIntArray;
+
+	public TestIntArrayTransitionMatrix()
+	{
+		config = Configuration.getDefaultConfiguration().copy();
+		configIntArray = config.copy();configIntArray.setTransitionMatrixImplType(STATETREE.STATETREE_INTARRAY);
+	}
+
+	private static CmpVertex vert(String name, Configuration conf)
+	{
+		return AbstractLearnerGraph.generateNewCmpVertex(statechum.DeterministicDirectedSparseGraph.VertexID.parseID(name), conf);
+	}
+
+	private Label lbl(String name)
+	{
+		return AbstractLearnerGraph.generateNewLabel(name, config, null);
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		IntArrayTransitionMatrix matrix = new IntArrayTransitionMatrix(0);
+		Assert.assertTrue(matrix.isEmpty());Assert.assertEquals(0,matrix.size());
+		Assert.assertNull(matrix.get(vert("A",config)));
+		Assert.assertNull(matrix.findKey(vert("A",config)));
+		Assert.assertEquals(-1,matrix.vertexToIndex(vert("A",config)));
+		Assert.assertEquals(-1,matrix.labelToIndex(lbl("a")));
+		Assert.assertEquals(-1,matrix.vertexToIndex("A"));
+	}
+
+	@Test
+	public void testPutGetRemove()
+	{
+		IntArrayTransitionMatrix matrix = new IntArrayTransitionMatrix(0);
+		CmpVertex A = vert("A",config), B = vert("B",config), C = vert("C",config);
+		MapWithSearch<Label,Label,CmpVertex> row = IntArrayTransitionMatrix.createRow();
+		row.put(lbl("c"), B);row.put(lbl("a"), C);
+		Assert.assertNull(matrix.put(A, row));
+		Assert.assertNull(matrix.put(B, IntArrayTransitionMatrix.createRow()));
+		Assert.assertEquals(2,matrix.size());
+
+		// the row is now a view of the matrix
+		row.put(lbl("b"), A);
+		Map<Label,CmpVertex> rowA = matrix.get(A);
+		Assert.assertEquals(Arrays.asList(lbl("a"),lbl("b"),lbl("c")),new ArrayList<>(rowA.keySet()));
+		Assert.assertEquals(Arrays.asList(C,A,B),new ArrayList<>(rowA.values()));
+		Assert.assertSame(A,matrix.findKey(vert("A",config)));
+
+		// C is a target but not a key
+		Assert.assertTrue(matrix.vertexToIndex(C) >= 0);Assert.assertFalse(matrix.isKey(matrix.vertexToIndex(C)));
+		Assert.assertNull(matrix.get(C));Assert.assertFalse(matrix.containsKey(C));
+
+		int a = matrix.vertexToIndex(A);
+		Assert.assertEquals(3,matrix.getRowSize(a));
+		Assert.assertEquals(matrix.vertexToIndex(B),matrix.getTarget(a, matrix.labelToIndex(lbl("c"))));
+		Assert.assertEquals(matrix.labelToIndex(lbl("b")),matrix.getRowLabel(a, 1));
+		Assert.assertEquals(a,matrix.getRowTarget(a, 1));
+
+		Assert.assertEquals(A,rowA.remove(lbl("b")));
+		Assert.assertEquals(-1,matrix.getTarget(a, matrix.labelToIndex(lbl("b"))));
+		Assert.assertEquals(2,row.size());
+
+		Map<Label,CmpVertex> previous = matrix.remove(A);
+		Assert.assertEquals(2,previous.size());Assert.assertEquals(C,previous.get(lbl("a")));
+		Assert.assertEquals(1,matrix.size());Assert.assertNull(matrix.get(A));
+		Assert.assertEquals(0,matrix.getRowSize(a));
+	}
+
+	@Test
+	public void testReplaceRow()
+	{
+		IntArrayTransitionMatrix matrix = new IntArrayTransitionMatrix(0);
+		CmpVertex A = vert("A",config), B = vert("B",config);
+		MapWithSearch<Label,Label,CmpVertex> row = IntArrayTransitionMatrix.createRow();
+		row.put(lbl("a"), B);
+		matrix.put(A, row);
+
+		Map<Label,CmpVertex> replacement = new TreeMap<>();replacement.put(lbl("b"), A);
+		Map<Label,CmpVertex> previous = matrix.put(A, IntArrayTransitionMatrix.createRow());
+		matrix.get(A).putAll(replacement);
+		Assert.assertEquals(Collections.singletonMap(lbl("a"),B),previous);
+		Assert.assertEquals(replacement,matrix.get(A));
+	}
+
+	@Test
+	public void testKeyOrderIsInsertionOrder()
+	{
+		IntArrayTransitionMatrix matrix = new IntArrayTransitionMatrix(0);
+		List<CmpVertex> expected = new ArrayList<>();
+		for(int i=20;i>0;--i)
+		{
+			CmpVertex v = vert("V"+i,config);expected.add(v);
+			matrix.put(v, IntArrayTransitionMatrix.createRow());
+		}
+		Assert.assertEquals(expected,new ArrayList<>(matrix.keySet()));
+
+		Iterator<CmpVertex> keyIterator = matrix.keySet().iterator();
+		keyIterator.next();keyIterator.remove();expected.remove(0);
+		Assert.assertEquals(expected,new ArrayList<>(matrix.keySet()));
+		Assert.assertEquals(19,matrix.size());
+	}
+
+	@Test
+	public void testRemovedRowCannotBeModified()
+	{
+		IntArrayTransitionMatrix matrix = new IntArrayTransitionMatrix(0);
+		final CmpVertex A = vert("A",config);
+		matrix.put(A, IntArrayTransitionMatrix.createRow());
+		final Map<Label,CmpVertex> row = matrix.get(A);
+		matrix.remove(A);
+		statechum.Helper.checkForCorrectException(() -> row.put(lbl("a"), A), IllegalStateException.class, "");
+	}
+
+	@Test
+	public void testNullTargetRejected()
+	{
+		final MapWithSearch<Label,Label,CmpVertex> row = IntArrayTransitionMatrix.createRow();
+		statechum.Helper.checkForCorrectException(() -> row.put(lbl("a"), null), IllegalArgumentException.class, "");
+	}
+
+	/** Many small modifications should trigger compaction of the pool without affecting the contents. */
+	@Test
+	public void testCompaction()
+	{
+		IntArrayTransitionMatrix matrix = new IntArrayTransitionMatrix(0);
+		Map<CmpVertex,Map<Label,CmpVertex>> expected = new LinkedHashMap<>();
+		List<CmpVertex> states = new ArrayList<>();
+		for(int i=0;i<200;++i)
+		{
+			CmpVertex v = vert("S"+i,config);states.add(v);
+			matrix.put(v, IntArrayTransitionMatrix.createRow());expected.put(v, new TreeMap<>());
+		}
+		Random rnd = new Random(0);
+		for(int step=0;step<20000;++step)
+		{
+			CmpVertex from = states.get(rnd.nextInt(states.size())), to = states.get(rnd.nextInt(states.size()));
+			Label label = lbl("l"+rnd.nextInt(15));
+			if (rnd.nextInt(4) == 0)
+			{
+				Assert.assertEquals(expected.get(from).remove(label),matrix.get(from).remove(label));
+			}
+			else
+				Assert.assertEquals(expected.get(from).put(label,to),matrix.get(from).put(label,to));
+		}
+		Assert.assertEquals(expected.size(),matrix.size());
+		for(Entry<CmpVertex,Map<Label,CmpVertex>> entry:expected.entrySet())
+		{
+			Assert.assertEquals(entry.getValue(),matrix.get(entry.getKey()));
+			Assert.assertEquals(new ArrayList<>(entry.getValue().keySet()),new ArrayList<>(matrix.get(entry.getKey()).keySet()));
+		}
+	}
+
+	@Test
+	public void testGraphsAreEqual()
+	{
+		final String fsm = "A-a->B-b->C-a->A-c->D\nB-c->A\nC-d-#E";
+		LearnerGraph graph = buildLearnerGraph(fsm, "testGraphsAreEqual", config, null),
+			graphIntArray = buildLearnerGraph(fsm, "testGraphsAreEqual", configIntArray, null);
+		Assert.assertTrue(graphIntArray.transitionMatrix instanceof IntArrayTransitionMatrix);
+		Assert.assertEquals(graph, graphIntArray);
+		Assert.assertEquals(graph.transitionMatrix, graphIntArray.transitionMatrix);
+
+		LearnerGraph copy = new LearnerGraph(graphIntArray, configIntArray);
+		Assert.assertTrue(copy.transitionMatrix instanceof IntArrayTransitionMatrix);
+		Assert.assertEquals(graph, copy);
+	}
+}
@@ -0,0 +1,200 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.Label;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.rpnicore.AbstractLearnerGraph;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.MergeStates;
+import statechum.collections.IntArrayTransitionMatrix;
+import statechum.collections.MappedTransitionMatrix;
+import statechum.model.testset.PTASequenceEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+/** Tests the transition matrix with transitions in a memory-mapped file. */
+public class TestMappedTransitionMatrix {
+
+	private final Configuration config;
+	private final Configuration configMapped;
+
+	public TestMappedTransitionMatrix()
+	{
+		config = Configuration.getDefaultConfiguration().copy();
+		configMapped = config.copy();configMapped.setTransitionMatrixImplType(STATETREE.STATETREE_MAPPED);
+	}
+
+	private CmpVertex vert(String name)
+	{
+		return AbstractLearnerGraph.generateNewCmpVertex(statechum.DeterministicDirectedSparseGraph.VertexID.parseID(name), config);
+	}
+
+	private Label lbl(String name)
+	{
+		return AbstractLearnerGraph.generateNewLabel(name, config, null);
+	}
+
+	@Test
+	public void testInvalidSegmentSize()
+	{
+		statechum.Helper.checkForCorrectException(() -> new MappedTransitionMatrix(0, null, 2), IllegalArgumentException.class, "invalid segment size");
+	}
+
+	/** Small segments, so that rows span segments and many segments are mapped, with compaction of the pool. */
+	@Test
+	public void testManySegments()
+	{
+		try(MappedTransitionMatrix matrix = new MappedTransitionMatrix(0, null, 4))
+		{
+			Map<CmpVertex,Map<Label,CmpVertex>> expected = new LinkedHashMap<>();
+			List<CmpVertex> states = new ArrayList<>();
+			for(int i=0;i<200;++i)
+			{
+				CmpVertex v = vert("S"+i);states.add(v);
+				matrix.put(v, IntArrayTransitionMatrix.createRow());expected.put(v, new TreeMap<>());
+			}
+			Random rnd = new Random(0);
+			for(int step=0;step<20000;++step)
+			{
+				CmpVertex from = states.get(rnd.nextInt(states.size())), to = states.get(rnd.nextInt(states.size()));
+				Label label = lbl("l"+rnd.nextInt(15));
+				if (!matrix.containsKey(from))
+					continue;
+				if (rnd.nextInt(4) == 0)
+					Assert.assertEquals(expected.get(from).remove(label),matrix.get(from).remove(label));
+				else
+					Assert.assertEquals(expected.get(from).put(label,to),matrix.get(from).put(label,to));
+				if (step % 5000 == 0)
+				{
+					CmpVertex toRemove = states.get(rnd.nextInt(states.size()));
+					Assert.assertEquals(expected.remove(toRemove),matrix.remove(toRemove));
+				}
+			}
+			Assert.assertEquals(expected.size(),matrix.size());
+			for(Entry<CmpVertex,Map<Label,CmpVertex>> entry:expected.entrySet())
+			{
+				Assert.assertEquals(entry.getValue(),matrix.get(entry.getKey()));
+				Assert.assertEquals(new ArrayList<>(entry.getValue().keySet()),new ArrayList<>(matrix.get(entry.getKey()).keySet()));
+			}
+		}
+	}
+
+	@Test
+	public void testFileIsRemoved()
+	{
+		MappedTransitionMatrix matrix = new MappedTransitionMatrix(10, null);
+		matrix.put(vert("A"), IntArrayTransitionMatrix.createRow());matrix.get(vert("A")).put(lbl("a"), vert("B"));
+		matrix.close();
+		Assert.assertFalse(matrix.getFile().exists());
+	}
+
+	@Test
+	public void testGraphsAreEqual()
+	{
+		final String fsm = "A-a->B-b->C-a->A-c->D\nB-c->A\nC-d-#E";
+		LearnerGraph graph = buildLearnerGraph(fsm, "testGraphsAreEqual", config, null),
+			graphMapped = buildLearnerGraph(fsm, "testGraphsAreEqual", configMapped, null);
+		Assert.assertTrue(graphMapped.transitionMatrix instanceof MappedTransitionMatrix);
+		Assert.assertEquals(graph, graphMapped);
+
+		LearnerGraph copy = new LearnerGraph(graphMapped, configMapped);
+		Assert.assertTrue(copy.transitionMatrix instanceof MappedTransitionMatrix);
+		Assert.assertEquals(graph, copy);
+	}
+
+	/** A matrix created after another one is closed reuses its file. */
+	@Test
+	public void testStorageIsReused() throws IOException
+	{
+		File directory = Files.createTempDirectory("testStorageIsReused").toFile();
+		try
+		{
+			MappedTransitionMatrix matrix = new MappedTransitionMatrix(10, directory, 8);
+			matrix.put(vert("A"), IntArrayTransitionMatrix.createRow());matrix.get(vert("A")).put(lbl("a"), vert("B"));
+			File file = matrix.getFile();matrix.close();matrix.close();
+			MappedTransitionMatrix reused = new MappedTransitionMatrix(0, directory, 8);
+			Assert.assertSame(file, reused.getFile());
+			Assert.assertTrue(reused.isEmpty());
+			matrix = new MappedTransitionMatrix(0, directory, 8);
+			Assert.assertNotSame(file, matrix.getFile());
+
+			MappedTransitionMatrix matrixOtherSegments = new MappedTransitionMatrix(0, directory, 9);
+			Assert.assertNotSame(matrix.getFile(), matrixOtherSegments.getFile());
+			matrixOtherSegments.close();matrix.close();reused.close();
+		}
+		finally
+		{
+			directory.delete();
+		}
+	}
+
+	/** Copying a graph reuses the file of the matrix replaced by the copy. */
+	@Test
+	public void testCopyReusesStorage() throws IOException
+	{
+		LearnerGraph graphMapped = buildLearnerGraph("A-a->B-b->C-a->A-c->D\nB-c->A\nC-d-#E", "testCopyReusesStorage", configMapped, null);
+		File directory = Files.createTempDirectory("testCopyReusesStorage").toFile();
+		try
+		{
+			Configuration conf = configMapped.copy();conf.setMappedTransitionMatrixDirectory(directory.getAbsolutePath());
+			LearnerGraph graph = new LearnerGraph(conf);
+			File file = ((MappedTransitionMatrix)graph.transitionMatrix).getFile();
+			graph.releaseTransitionMatrix();
+			LearnerGraph copy = new LearnerGraph(graphMapped, conf);
+			Assert.assertSame(file, ((MappedTransitionMatrix)copy.transitionMatrix).getFile());
+			Assert.assertEquals(graphMapped, copy);
+			copy.releaseTransitionMatrix();
+		}
+		finally
+		{
+			directory.delete();
+		}
+	}
+
+	/** Learning with the mapped matrix gives the same outcome as with the default one, releasing graphs that are no longer needed. */
+	@Test
+	public void testLearning()
+	{
+		Configuration conf = config.copy();conf.setLearnerCloneGraph(false);
+		Configuration confMapped = configMapped.copy();confMapped.setLearnerCloneGraph(false);
+		PTASequenceEngine sequences = BlueFringeFixture.generateSequences(config, 0, 5, 100);
+		LearnerGraph graph = new LearnerGraph(conf);graph.paths.augmentPTA(sequences);
+		LearnerGraph graphMapped = new LearnerGraph(confMapped);graphMapped.paths.augmentPTA(sequences);
+		Assert.assertTrue(graphMapped.transitionMatrix instanceof MappedTransitionMatrix);
+		LearnerGraph [] outcome = BlueFringeFixture.compareBlueFringe(graph, graphMapped, g -> g.pairscores.chooseStatePairs(null),
+				(g, pair) ->
+				{
+					LearnerGraph merged = MergeStates.mergeAndDeterminize_general(g, pair);
+					g.releaseTransitionMatrix();return merged;
+				}, null);
+		Assert.assertEquals(outcome[0], outcome[1]);
+		outcome[1].releaseTransitionMatrix();
+	}
+}
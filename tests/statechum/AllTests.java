@@ -54,6 +54,12 @@ public class AllTests {
         statechum.analysis.learning.rpnicore.TestAugmentUsingIFTHEN.class,
         statechum.analysis.learning.rpnicore.TestAugmentUsingIFTHEN.TestQuestionPTA.class,
         statechum.analysis.learning.rpnicore.TestRandomPathGenerator.class,
+        statechum.analysis.learning.rpnicore.TestPairScoreCache.class,
+        statechum.analysis.learning.rpnicore.TestMergeStatesInPlace.class,
+        statechum.analysis.learning.rpnicore.TestGeneralPairScoreScratch.class,
+        statechum.analysis.learning.rpnicore.TestParallelPairScoring.class,
+        statechum.analysis.learning.rpnicore.TestStreamingPTABuilder.class,
+        statechum.analysis.learning.rpnicore.TestBinaryPersistence.class,
         statechum.analysis.learning.TestLoadAnswers.class,
         statechum.model.testset.TestPTA_computePrecisionRecall.class,
         statechum.analysis.learning.TestLearnerWithLabelRefinementViaPta.class
@@ -71,6 +77,7 @@ public class AllTests {
         statechum.analysis.learning.observers.TestWriteReadAugmentPta.class,
         statechum.analysis.learning.observers.TestGraphSeries.class,
         statechum.analysis.learning.observers.TestRecorderIntegration.class,
+        statechum.analysis.learning.observers.TestStreamingLearnerSimulator.class,
         statechum.analysis.learning.observers.TestAutoAnswers.class
     })
     public static class ObserversTests {// all tests are included in the annotation.
@@ -79,8 +86,12 @@ public class AllTests {
     @RunWith(Suite.class)
     @Suite.SuiteClasses({
         statechum.TestConfiguration.class,
+        statechum.TestLabelRegistry.class,
+        statechum.TestLearnerMetrics.class,
         collections.TestMapWithSearch.class,
         collections.TestMapWithSearchMisc.class,
+        collections.TestIntArrayTransitionMatrix.class,
+        collections.TestMappedTransitionMatrix.class,
         statechum.analysis.learning.rpnicore.TestEqualityComparisonAndHashCode.class,
         statechum.analysis.learning.rpnicore.TestFSMParser.class,
         statechum.analysis.learning.rpnicore.TestFSMAlgo.class,
@@ -108,10 +119,12 @@ public class AllTests {
         statechum.analysis.learning.TestPathTracing.class,
         statechum.model.testset.TestPrefixRemovingCollection.class,
         statechum.model.testset.TestPTASequenceEngine.class,
+        statechum.model.testset.TestPTAArraySequenceEngine.class,
         statechum.analysis.learning.rpnicore.TestMiscTransformFunctions.class,
         statechum.analysis.learning.rpnicore.TestTransform.class,
         statechum.analysis.learning.rpnicore.TestWMethodUniversal.class,
         statechum.analysis.learning.rpnicore.TestWMethod.class,
+        statechum.analysis.learning.rpnicore.TestPartitionRefinement.class,
         statechum.analysis.learning.experiments.TestForestFireGenerator.class,
         statechum.analysis.learning.TestDrawGraphs.class,
         statechum.analysis.learning.experiments.mutation.TestGraphMutator.class,
@@ -129,6 +142,8 @@ public class AllTests {
         statechum.analysis.learning.linear.TestLinear.class,
         statechum.analysis.learning.linear.TestSolverRandomly.class,
         statechum.analysis.learning.linear.TestSolver.class,
+        statechum.analysis.learning.linear.TestIterativeSolver.class,
+        statechum.analysis.learning.linear.TestSparsePairIndex.class,
         statechum.analysis.learning.linear.TestMatrixComputationWithMultipleThreads.class,
         statechum.analysis.learning.linear.TestGD.class,
         statechum.analysis.learning.linear.TestGD_Multithreaded.class,
@@ -0,0 +1,171 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum;
+
+import static statechum.Helper.checkForCorrectException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.analysis.learning.rpnicore.AbstractLearnerGraph;
+import statechum.analysis.learning.rpnicore.Transform;
+
+public class TestLabelRegistry
+{
+	@Test
+	public void testIntern()
+	{
+		LabelRegistry registry = new LabelRegistry();
+		Assert.assertEquals(0, registry.size());
+		Label a = registry.intern(new StringLabel("a")), b = registry.intern(new StringLabel("b"));
+		Assert.assertTrue(a instanceof StringLabelInt);
+		Assert.assertEquals(0, a.toInt());Assert.assertEquals(1, b.toInt());
+		Assert.assertSame(a, registry.intern(new StringLabel("a")));
+		Assert.assertSame(a, registry.intern(a));
+		Assert.assertEquals(1, registry.getId(new StringLabel("b")));
+		Assert.assertSame(b, registry.getLabel(1));
+		Assert.assertEquals(2, registry.size());
+		checkForCorrectException(() -> registry.getLabel(2), IllegalArgumentException.class, "has not been registered");
+		checkForCorrectException(() -> registry.getLabel(-1), IllegalArgumentException.class, "has not been registered");
+	}
+
+	@Test
+	public void testInternNonStringLabels()
+	{
+		LabelRegistry registry = new LabelRegistry();
+		Label io = new LabelInputOutput("a/b");
+		Assert.assertSame(io, registry.intern(io));
+		Assert.assertSame(io, registry.intern(new LabelInputOutput("a/b")));
+		Assert.assertEquals(0, registry.getId(new LabelInputOutput("a/b")));
+		Assert.assertEquals(1, registry.getId(new LabelInputOutput("c/d")));
+	}
+
+	/** String labels numbered elsewhere are given identifiers of the registry. */
+	@Test
+	public void testInternNumberedStringLabels()
+	{
+		LabelRegistry registry = new LabelRegistry();
+		Label b = registry.intern(new StringLabelInt("b", 0)), a = registry.intern(new StringLabelInt("a", 0));
+		Assert.assertEquals(0, b.toInt());Assert.assertEquals(1, a.toInt());
+		Assert.assertSame(a, registry.intern(new StringLabel("a")));
+		Assert.assertSame(b, registry.getLabel(0));
+	}
+
+	/** Labels of different classes with the same hash code are kept apart rather than compared by casting one to the class of the other. */
+	@Test
+	public void testInternMixedLabels()
+	{
+		LabelRegistry registry = new LabelRegistry();
+		Label io = new LabelInputOutput("a/b"), str = new StringLabel("a");
+		Assert.assertEquals(io.hashCode(), str.hashCode());
+		Assert.assertFalse(str.equals(io));Assert.assertFalse(io.equals(str));
+		Assert.assertEquals(0, registry.getId(io));
+		Assert.assertEquals(1, registry.getId(str));
+		Assert.assertSame(io, registry.intern(new LabelInputOutput("a/b")));
+		Assert.assertTrue(registry.intern(new StringLabel("a")) instanceof StringLabelInt);
+		Assert.assertEquals(1, registry.intern(new StringLabel("a")).toInt());
+	}
+
+	@Test
+	public void testManyLabels()
+	{
+		LabelRegistry registry = new LabelRegistry();
+		for(int i=0;i<5000;++i)
+			Assert.assertEquals(i, registry.getId(new StringLabel("L"+i)));
+		for(int i=0;i<5000;++i)
+			Assert.assertEquals("L"+i, registry.getLabel(i).toErlangTerm());
+	}
+
+	/** Multiple threads interning overlapping sets of labels should obtain the same identifiers, with no gaps. */
+	@Test
+	public void testConcurrentIntern() throws Exception
+	{
+		final LabelRegistry registry = new LabelRegistry();
+		final int labelNumber = 3000, threadNumber = 6;
+		ExecutorService executor = Executors.newFixedThreadPool(threadNumber);
+		try
+		{
+			List<Callable<int[]>> tasks = new ArrayList<>();
+			for(int t=0;t<threadNumber;++t)
+			{
+				final int offset = t*labelNumber/threadNumber;
+				tasks.add(() -> {
+					int [] ids = new int[labelNumber];
+					for(int i=0;i<labelNumber;++i)
+					{
+						int labelNumberToUse = (i+offset) % labelNumber;
+						ids[labelNumberToUse] = registry.getId(new StringLabel("L"+labelNumberToUse));
+					}
+					return ids;
+				});
+			}
+			int [] expected = null;
+			for(Future<int[]> outcome:executor.invokeAll(tasks))
+			{
+				if (expected == null)
+					expected = outcome.get();
+				else
+					Assert.assertArrayEquals(expected, outcome.get());
+			}
+			Set<Integer> ids = new HashSet<>();
+			for(int id:expected) ids.add(id);
+			Assert.assertEquals(labelNumber, ids.size());
+			Assert.assertEquals(labelNumber, registry.size());
+			for(int i=0;i<labelNumber;++i)
+				Assert.assertEquals("L"+i, registry.getLabel(expected[i]).toErlangTerm());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testInternStringLabel()
+	{
+		Transform.InternStringLabel converter = new Transform.InternStringLabel();
+		Label a = converter.convertLabelToLabel(new StringLabel("a"));
+		Assert.assertEquals(0, a.toInt());
+		Assert.assertSame(a, converter.convertLabelToLabel(new StringLabel("a")));
+		Assert.assertEquals(1, converter.convertLabelToLabel(new StringLabel("b")).toInt());
+		Assert.assertEquals(0, new Transform.InternStringLabel().convertLabelToLabel(new StringLabel("b")).toInt());
+	}
+
+	@Test
+	public void testGenerateNewLabel()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		Assert.assertEquals(StringLabel.class, AbstractLearnerGraph.generateNewLabel("a", config, null).getClass());
+		config.setInternLabelsGlobally(true);
+		Label a = AbstractLearnerGraph.generateNewLabel("testGenerateNewLabel_a", config, null);
+		Assert.assertSame(a, AbstractLearnerGraph.generateNewLabel("testGenerateNewLabel_a", config, null));
+		Assert.assertSame(a, LabelRegistry.getGlobalRegistry().getLabel(a.toInt()));
+		Assert.assertSame(a, new Transform.InternLabelGlobally().convertLabelToLabel(new StringLabel("testGenerateNewLabel_a")));
+		// an explicit converter takes precedence over the global registry
+		Assert.assertEquals(0, AbstractLearnerGraph.generateNewLabel("testGenerateNewLabel_a", config, new Transform.InternStringLabel()).toInt());
+	}
+}
@@ -0,0 +1,231 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum;
+
+import static statechum.Helper.checkForCorrectException;
+import static statechum.analysis.learning.rpnicore.TestFSMAlgo.buildSet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import statechum.LearnerMetrics.COUNTER;
+import statechum.LearnerMetrics.HISTOGRAM;
+import statechum.LearnerMetrics.PHASE;
+import statechum.analysis.learning.PairScore;
+import statechum.analysis.learning.RPNILearner;
+import statechum.analysis.learning.RPNIUniversalLearner;
+import statechum.analysis.learning.observers.ProgressDecorator.LearnerEvaluationConfiguration;
+import statechum.analysis.learning.rpnicore.FsmParser;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+
+public class TestLearnerMetrics
+{
+	@Before
+	public void before()
+	{
+		LearnerMetrics.setEnabled(false);LearnerMetrics.reset();
+	}
+
+	@After
+	public void after()
+	{
+		LearnerMetrics.stopPeriodicDump();LearnerMetrics.setEnabled(false);LearnerMetrics.reset();
+	}
+
+	@Test
+	public void testDisabled()
+	{
+		LearnerMetrics.increment(COUNTER.ITERATIONS);
+		LearnerMetrics.record(HISTOGRAM.CANDIDATE_PAIRS, 5);
+		long started = LearnerMetrics.startPhase();
+		Assert.assertEquals(LearnerMetrics.NOT_STARTED, started);
+		LearnerMetrics.endPhase(PHASE.MERGE, started);
+		Assert.assertEquals(0, LearnerMetrics.getCounter(COUNTER.ITERATIONS));
+		Assert.assertEquals(0, LearnerMetrics.getHistogram(HISTOGRAM.CANDIDATE_PAIRS).getCount());
+		Assert.assertEquals(0, LearnerMetrics.getPhase(PHASE.MERGE).getCount());
+	}
+
+	@Test
+	public void testCollection()
+	{
+		LearnerMetrics.setEnabled(true);
+		Assert.assertTrue(LearnerMetrics.isEnabled());
+		LearnerMetrics.increment(COUNTER.ITERATIONS);LearnerMetrics.increment(COUNTER.ITERATIONS);
+		for(long value:new long[]{0,1,2,3,100})
+			LearnerMetrics.record(HISTOGRAM.CANDIDATE_PAIRS, value);
+		long started = LearnerMetrics.startPhase();
+		Assert.assertNotEquals(LearnerMetrics.NOT_STARTED, started);
+		LearnerMetrics.endPhase(PHASE.MERGE, started);
+		// a phase started when metrics were disabled is not recorded
+		LearnerMetrics.endPhase(PHASE.MERGE, LearnerMetrics.NOT_STARTED);
+
+		Assert.assertEquals(2, LearnerMetrics.getCounter(COUNTER.ITERATIONS));
+		LearnerMetrics.Histogram histogram = LearnerMetrics.getHistogram(HISTOGRAM.CANDIDATE_PAIRS);
+		Assert.assertEquals(5, histogram.getCount());Assert.assertEquals(106, histogram.getSum());Assert.assertEquals(100, histogram.getMax());
+		Assert.assertEquals(0, histogram.getQuantile(0));
+		Assert.assertEquals(3, histogram.getQuantile(0.5));// 2 is in the bucket of values with two significant bits
+		Assert.assertEquals(100, histogram.getQuantile(1));
+		checkForCorrectException(() -> histogram.getQuantile(1.5), IllegalArgumentException.class, "quantile");
+		Assert.assertEquals(1, LearnerMetrics.getPhase(PHASE.MERGE).getCount());
+
+		// disabling retains values
+		LearnerMetrics.setEnabled(false);
+		Assert.assertEquals(2, LearnerMetrics.getCounter(COUNTER.ITERATIONS));
+		LearnerMetrics.reset();
+		Assert.assertEquals(0, LearnerMetrics.getCounter(COUNTER.ITERATIONS));
+		Assert.assertEquals(0, histogram.getCount());Assert.assertEquals(0, histogram.getMax());Assert.assertEquals(0, histogram.getQuantile(0.5));
+	}
+
+	@Test
+	public void testCSVandJSON()
+	{
+		LearnerMetrics.setEnabled(true);
+		LearnerMetrics.increment(COUNTER.RESTARTS);
+		LearnerMetrics.record(HISTOGRAM.QUESTIONS_PER_MERGE, 4);
+		String [] lines = LearnerMetrics.toCSV(7).split("\n");
+		Assert.assertEquals(COUNTER.values().length+HISTOGRAM.values().length+PHASE.values().length, lines.length);
+		Assert.assertEquals("7,counter,RESTARTS,1,1,,,", lines[COUNTER.RESTARTS.ordinal()]);
+		Assert.assertEquals("7,histogram,QUESTIONS_PER_MERGE,1,4,4,4,4", lines[COUNTER.values().length+HISTOGRAM.QUESTIONS_PER_MERGE.ordinal()]);
+		for(String line:lines)
+			Assert.assertEquals(LearnerMetrics.CSV_HEADER.split(",").length, line.split(",",-1).length);
+
+		String json = LearnerMetrics.toJSON(7);
+		Assert.assertTrue(json.startsWith("{\"timestamp\":7,\"counters\":{\"ITERATIONS\":0,\"RESTARTS\":1,"));
+		Assert.assertTrue(json.contains("\"QUESTIONS_PER_MERGE\":{\"count\":1,\"sum\":4,\"max\":4,\"p50\":4,\"p99\":4}"));
+		Assert.assertTrue(json.contains("\"phases\":{\"LEARN\":{\"count\":0,"));
+		Assert.assertEquals(json.replaceAll("[^{]", "").length(), json.replaceAll("[^}]", "").length());
+		Assert.assertEquals(json.substring("{\"timestamp\":7".length()), JConsole_Diagnostics.getDiagnostics().getMetrics().replaceFirst("\\{\"timestamp\":[0-9]+", ""));
+	}
+
+	@Test
+	public void testDump() throws Exception
+	{
+		File csv = File.createTempFile("metrics", ".csv"), json = File.createTempFile("metrics", ".json");
+		try
+		{
+			LearnerMetrics.dump(csv, false);LearnerMetrics.dump(csv, false);
+			List<String> lines = Files.readAllLines(csv.toPath());
+			Assert.assertEquals(LearnerMetrics.CSV_HEADER, lines.get(0));
+			Assert.assertEquals(1+2*(COUNTER.values().length+HISTOGRAM.values().length+PHASE.values().length), lines.size());
+
+			checkForCorrectException(() -> LearnerMetrics.startPeriodicDump(json, 0, true), IllegalArgumentException.class, "positive");
+			LearnerMetrics.startPeriodicDump(json, 10, true);
+			for(int i=0;i<500 && Files.readAllLines(json.toPath()).size() < 2;++i)
+				Thread.sleep(10);
+			LearnerMetrics.stopPeriodicDump();
+			lines = Files.readAllLines(json.toPath());
+			Assert.assertTrue(lines.size() >= 2);
+			for(String line:lines)
+				Assert.assertTrue(line.startsWith("{\"timestamp\":"));
+		}
+		finally
+		{
+			csv.delete();json.delete();
+		}
+	}
+
+	/** A dump to a file that cannot be written stops and reports the failure. */
+	@Test
+	public void testPeriodicDumpFailure() throws Exception
+	{
+		File directory = Files.createTempDirectory("metrics").toFile();
+		try
+		{
+			File file = new File(new File(directory, "missing"), "metrics.json");
+			LearnerMetrics.startPeriodicDump(file, 10, true);
+			for(int i=0;i<500 && LearnerMetrics.getDumpFailure() == null;++i)
+				Thread.sleep(10);
+			Assert.assertNotNull(LearnerMetrics.getDumpFailure());
+			Assert.assertTrue(JConsole_Diagnostics.getDiagnostics().getStatus().startsWith("metrics dump to "+file+" stopped"));
+			Assert.assertFalse(file.exists());
+
+			LearnerMetrics.startPeriodicDump(new File(directory, "metrics.json"), 10, true);
+			Assert.assertNull(LearnerMetrics.getDumpFailure());
+			LearnerMetrics.stopPeriodicDump();
+		}
+		finally
+		{
+			new File(directory, "metrics.json").delete();directory.delete();
+		}
+	}
+
+	@Test
+	public void testMBean()
+	{
+		JConsole_Diagnostics diagnostics = JConsole_Diagnostics.getDiagnostics();
+		Assert.assertFalse(diagnostics.isMetricsEnabled());
+		diagnostics.setMetricsEnabled(true);
+		Assert.assertTrue(LearnerMetrics.isEnabled());
+		LearnerMetrics.increment(COUNTER.ITERATIONS);
+		Assert.assertTrue(diagnostics.getMetrics().contains("\"ITERATIONS\":1"));
+		diagnostics.resetMetrics();
+		Assert.assertTrue(diagnostics.getMetrics().contains("\"ITERATIONS\":0"));
+	}
+
+	/** Learns a machine with metrics enabled, checking that hooks in the learner record the phases of learning. */
+	@Test
+	public void testLearning()
+	{
+		final Configuration config = Configuration.getDefaultConfiguration().copy();
+		config.setGdFailOnDuplicateNames(false);
+		final LearnerGraph reference = FsmParser.buildLearnerGraph("A-e->A-c->B-b->C-p->G-e->A\nB-a->D-a->E-a->D\nE-b->F-p->G\nB-e->A\nC-e->A\nD-e->A\nE-e->A\nF-e->A","testLearning",config,null);
+		RPNILearner learner = new RPNIUniversalLearner(null,new LearnerEvaluationConfiguration(null,null,config,null,null))
+		{
+			@Override
+			public Pair<Integer,String> CheckWithEndUser(
+					@SuppressWarnings("unused")	LearnerGraph model,
+					List<Label> question, @SuppressWarnings("unused") int responseForNoRestart,
+					@SuppressWarnings("unused") List<Boolean> acceptedElements,
+					@SuppressWarnings("unused") PairScore pairBeingMerged,
+					@SuppressWarnings("unused")	final Object [] moreOptions)
+			{
+				return new Pair<Integer,String>(reference.paths.tracePathPrefixClosed(question),null);
+			}
+		};
+		LearnerMetrics.setEnabled(true);
+		learner.learnMachine(
+			buildSet(new String[][]{
+				new String[] { "c","b","p","e","e" },
+				new String[] { "c","a","a","b","p", "e" },
+				new String[] { "c","a","e","c" },
+				new String[] { "c","a","a","a","a","b","p" }},config,null),
+			buildSet(new String[][]{
+				new String[] { "c", "a", "a", "b", "p", "a" },
+				new String[] { "c", "b", "p", "a" },
+				new String[] { "c", "c" },
+				new String[] { "b" },
+				new String[] { "a" }
+			},config,null));
+		Assert.assertEquals(1, LearnerMetrics.getPhase(PHASE.LEARN).getCount());
+		Assert.assertTrue(LearnerMetrics.getPhase(PHASE.LEARN).getSum() > 0);
+		long iterations = LearnerMetrics.getCounter(COUNTER.ITERATIONS);
+		Assert.assertTrue(iterations > 0);
+		Assert.assertEquals(iterations+1, LearnerMetrics.getPhase(PHASE.CHOOSE_PAIRS).getCount());// pairs are chosen before each iteration and after the last one
+		Assert.assertEquals(iterations+1, LearnerMetrics.getHistogram(HISTOGRAM.CANDIDATE_PAIRS).getCount());
+		Assert.assertTrue(LearnerMetrics.getPhase(PHASE.MERGE).getCount() >= iterations);
+		Assert.assertTrue(LearnerMetrics.getPhase(PHASE.COMPUTE_QUESTIONS).getCount() > 0);
+		Assert.assertEquals(LearnerMetrics.getCounter(COUNTER.QUESTIONS_ASKED), LearnerMetrics.getPhase(PHASE.ORACLE).getCount());
+		Assert.assertTrue(LearnerMetrics.getCounter(COUNTER.QUESTIONS_ASKED) > 0);
+	}
+}
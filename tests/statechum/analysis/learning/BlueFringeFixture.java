@@ -0,0 +1,107 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning;
+
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.util.Random;
+import java.util.Stack;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.junit.Assert;
+
+import statechum.Configuration;
+import statechum.JUConstants;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.MergeStates;
+import statechum.analysis.learning.rpnicore.RandomPathGenerator;
+import statechum.model.testset.PTASequenceEngine;
+
+/** PTAs made of random paths of a reference machine and a blue-fringe learner used to check that alternative implementations
+ * of parts of a learner choose the same pairs as the original ones.
+ *
+ * @author agent
+ */
+public class BlueFringeFixture
+{
+	/** The machine random paths are generated from. */
+	public static final String referenceMachine = "A-a->B-b->C-a->A-c->D-a->B\nB-c->E-b->A\nC-c->C\nD-b->E-a->D\nE-c->F-a->A\nF-b->B";
+
+	/** Generates positive and negative random paths of {@link #referenceMachine}.
+	 *
+	 * @param config configuration to construct the reference machine with.
+	 * @param seed the seed of the random number generator.
+	 * @param extraLength how much longer than the diameter of the reference machine paths can be.
+	 * @param number how many paths to generate.
+	 */
+	public static PTASequenceEngine generateSequences(Configuration config, long seed, int extraLength, int number)
+	{
+		LearnerGraph reference = buildLearnerGraph(referenceMachine, "BlueFringeFixture", config, null);
+		RandomPathGenerator generator = new RandomPathGenerator(reference,new Random(seed),extraLength,null);
+		generator.generateRandomPosNeg(number, 1);
+		return generator.getAllSequences(0);
+	}
+
+	/** Builds a PTA from paths returned by {@link #generateSequences(Configuration, long, int, int)}. */
+	public static LearnerGraph buildPTA(Configuration config, long seed, int extraLength, int number)
+	{
+		LearnerGraph pta = new LearnerGraph(config);pta.paths.augmentPTA(generateSequences(config, seed, extraLength, number));
+		return pta;
+	}
+
+	/** Runs blue-fringe learners on the two supplied graphs, checking that the same pairs are chosen at every step.
+	 * Learning stops when there are no pairs left or the best pair has a negative score.
+	 *
+	 * @param graph the graph to learn from, states of which are merged using {@link MergeStates#mergeAndDeterminize_general}.
+	 * @param graphToCompare the graph to compare learning from <i>graph</i> with.
+	 * @param choosePairs chooses pairs of states in a graph.
+	 * @param mergeToCompare merges a pair in a graph to compare, returning the outcome.
+	 * @param afterMerge called with both graphs after each merger, can be null.
+	 * @return both graphs after learning, the first element obtained from <i>graph</i>.
+	 */
+	public static LearnerGraph [] compareBlueFringe(LearnerGraph graph, LearnerGraph graphToCompare, Function<LearnerGraph,Stack<PairScore>> choosePairs,
+			BiFunction<LearnerGraph,PairScore,LearnerGraph> mergeToCompare, BiConsumer<LearnerGraph,LearnerGraph> afterMerge)
+	{
+		LearnerGraph first = graph, second = graphToCompare;
+		first.clearColours();first.getInit().setColour(JUConstants.RED);
+		second.clearColours();second.getInit().setColour(JUConstants.RED);
+
+		while(true)
+		{
+			Stack<PairScore> pairs = choosePairs.apply(first), pairsToCompare = choosePairs.apply(second);
+			Assert.assertEquals(pairs.toString(), pairsToCompare.toString());
+			if (pairs.isEmpty() || pairs.peek().getScore() < 0)
+				break;
+			first = MergeStates.mergeAndDeterminize_general(first, pairs.peek());
+			second = mergeToCompare.apply(second, pairsToCompare.peek());
+			if (afterMerge != null)
+				afterMerge.accept(first, second);
+		}
+		return new LearnerGraph[]{first, second};
+	}
+
+	/** Same as {@link #compareBlueFringe(LearnerGraph, LearnerGraph, Function, BiFunction, BiConsumer)} where both graphs are merged
+	 * using {@link MergeStates#mergeAndDeterminize_general} and pairs are chosen without a merger procedure.
+	 */
+	public static LearnerGraph [] compareBlueFringe(LearnerGraph graph, LearnerGraph graphToCompare)
+	{
+		return compareBlueFringe(graph, graphToCompare, g -> g.pairscores.chooseStatePairs(null), MergeStates::mergeAndDeterminize_general, null);
+	}
+}
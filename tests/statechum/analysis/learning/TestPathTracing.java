@@ -19,9 +19,11 @@ package statechum.analysis.learning;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -34,14 +36,19 @@ import org.junit.runners.ParameterizedWithName.ParametersToString;
 import statechum.Configuration;
 import statechum.DeterministicDirectedSparseGraph;
 import statechum.JUConstants;
+import statechum.Label;
 import statechum.Configuration.STATETREE;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.DeterministicDirectedSparseGraph.VertexID;
 import statechum.analysis.learning.rpnicore.AbstractLearnerGraph;
 import statechum.analysis.learning.rpnicore.FsmParser;
+import statechum.analysis.learning.experiments.ForestFireLabelledStateMachineGenerator;
 import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.PathRoutines;
+import statechum.analysis.learning.rpnicore.RandomPathGenerator;
 import statechum.analysis.learning.rpnicore.Transform;
 import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
+import statechum.model.testset.PTASequenceEngine;
 import edu.uci.ics.jung.graph.Vertex;
 import edu.uci.ics.jung.graph.impl.DirectedSparseGraph;
 
@@ -138,6 +145,7 @@ public class TestPathTracing {
 				fsm.findVertex(VertexID.parseID(reject)).setAccept(false);
 		
 		assertEquals(ExpectedResult, fsm.paths.tracePath(AbstractLearnerGraph.buildList(Arrays.asList(path),config,conv),fsm.findVertex(startingState), conf.isPrefixClosed()));
+		checkBatchTracing(fsm, AbstractLearnerGraph.buildList(Arrays.asList(path),config,conv), fsm.findVertex(startingState), conf.isPrefixClosed());
 		
 		// this tests MarkovClassifier's tracePath
 		if (conf.isPrefixClosed())
@@ -156,6 +164,59 @@ public class TestPathTracing {
 		}
 	}
 
+	/** Checks that tracing all prefixes of the supplied path in a batch gives the same results as tracing them one by one. */
+	public static void checkBatchTracing(LearnerGraph fsm, List<Label> path, CmpVertex startingState, boolean prefixClosed)
+	{
+		List<List<Label>> prefixes = new ArrayList<>();
+		for(int len=path.size();len>=0;--len)
+			prefixes.add(path.subList(0, len));
+		prefixes.add(path);
+		checkBatchTracing(fsm, prefixes, startingState, prefixClosed);
+	}
+
+	/** Checks that tracing the supplied paths in a batch gives the same results as tracing them one by one. */
+	public static void checkBatchTracing(LearnerGraph fsm, Collection<List<Label>> paths, CmpVertex startingState, boolean prefixClosed)
+	{
+		int [] expected = new int[paths.size()];
+		byte [] expectedOutcome = new byte[paths.size()];
+		int i=0;
+		for(List<Label> p:paths)
+		{
+			expected[i] = fsm.paths.tracePath(p, startingState, prefixClosed);
+			if (startingState == fsm.getInit() && prefixClosed)
+				expectedOutcome[i] = expected[i] == AbstractOracle.USER_ACCEPTED? PathRoutines.TRACE_ACCEPTED:
+					!p.isEmpty() && fsm.paths.getVertex(p.subList(0, expected[i]+1)) == null? PathRoutines.TRACE_UNDEFINED:PathRoutines.TRACE_REJECTED;
+			++i;
+		}
+		for(int threads:new int[]{1,3})
+		{
+			Assert.assertArrayEquals(expected, fsm.paths.tracePaths(paths, startingState, prefixClosed, threads));
+			Assert.assertArrayEquals(expected, fsm.paths.tracePaths(paths.stream(), startingState, prefixClosed, threads));
+			if (startingState == fsm.getInit() && prefixClosed)
+				Assert.assertArrayEquals(expectedOutcome, fsm.paths.classifyPaths(paths, threads));
+		}
+	}
+
+	@Test
+	public void testTracePathsRandomGraphs()
+	{
+		for(int seed=0;seed<4;++seed)
+		{
+			LearnerGraph graph = new ForestFireLabelledStateMachineGenerator(0.3,0.2,0.2,0.1,6,seed,config,converter).buildMachine(30+seed*10);
+			RandomPathGenerator generator = new RandomPathGenerator(graph, new Random(seed), 8, graph.getInit());
+			generator.generateRandomPosNeg(200, 1);
+			List<List<Label>> paths = new ArrayList<>(generator.getAllSequences(0).getData(PTASequenceEngine.truePred));
+			paths.addAll(generator.getAllSequences(0).getData(PTASequenceEngine.truePred));// duplicates
+			paths.add(new ArrayList<Label>());
+			for(boolean prefixClosed:new boolean[]{true,false})
+			{
+				checkBatchTracing(graph, paths, graph.getInit(), prefixClosed);
+				checkBatchTracing(graph, paths, graph.transitionMatrix.keySet().iterator().next(), prefixClosed);
+			}
+			Assert.assertArrayEquals(new int[paths.size()], graph.paths.tracePaths(paths, null, true, 2));
+		}
+	}
+
 	@Test
 	public void testTraceEmptyPath1()
 	{
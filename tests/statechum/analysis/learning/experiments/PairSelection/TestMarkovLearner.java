@@ -10,10 +10,13 @@ import org.junit.runners.ParameterizedWithName.ParametersToString;
 import statechum.*;
 import statechum.DeterministicDirectedSparseGraph.CmpVertex;
 import statechum.analysis.learning.MarkovClassifier;
+import statechum.analysis.learning.MarkovEDSM.EDSM_MarkovLearner;
 import statechum.analysis.learning.MarkovModel;
 import statechum.analysis.learning.MarkovModel.MarkovOutcome;
 import statechum.analysis.learning.MarkovModel.UpdatablePairInteger;
 import statechum.analysis.learning.StatePair;
+import statechum.analysis.learning.experiments.ForestFireLabelledStateMachineGenerator;
+import statechum.analysis.learning.observers.ProgressDecorator.LearnerEvaluationConfiguration;
 import statechum.analysis.learning.rpnicore.*;
 import statechum.analysis.learning.rpnicore.Transform.ConvertALabel;
 import statechum.analysis.learning.rpnicore.WMethod.DifferentFSMException;
@@ -64,10 +67,10 @@ public class TestMarkovLearner
 	final Label lblA,lblB,lblC,lblD,lblU;
 
 	LearnerGraph trainingGraphForClosures = null;
-	final boolean markovPTAUseMatrix;
+	final boolean markovPTAUseMatrix, markovUseNGramTable;
 	
-	public TestMarkovLearner(boolean useMatrix) {
-		markovPTAUseMatrix = useMatrix;
+	public TestMarkovLearner(boolean useMatrix, boolean useNGramTable) {
+		markovPTAUseMatrix = useMatrix;markovUseNGramTable = useNGramTable;
 		lblA = AbstractLearnerGraph.generateNewLabel("a", config, converter);
 		lblB = AbstractLearnerGraph.generateNewLabel("b", config, converter);
 		lblC = AbstractLearnerGraph.generateNewLabel("c", config, converter);
@@ -79,16 +82,16 @@ public class TestMarkovLearner
 	@Parameters
 	public static Collection<Object[]> data() 
 	{
-		return Arrays.asList(new Object[]{true},new Object[]{false});
+		return Arrays.asList(new Object[]{true,false},new Object[]{false,false},new Object[]{false,true});
 	}
 	/** Given a test configuration, returns a textual description of its purpose. 
 	 * 
 	 * @return description.
 	 */ 
 	@ParametersToString
-	public static String parametersToString(Boolean value)
+	public static String parametersToString(Boolean value, Boolean useNGramTable)
 	{
-		return value ?"using matrix":"no matrix";
+		return useNGramTable?"n-gram table":(value ?"using matrix":"no matrix");
 	}
 	
 	@Before
@@ -144,14 +147,14 @@ public class TestMarkovLearner
 	public void testCreateMarkovMatrixFail()
 	{
 		Helper.checkForCorrectException(
-				() -> new MarkovModel(1,true,true,markovPTAUseMatrix),
+				() -> new MarkovModel(1,true,true,markovPTAUseMatrix,markovUseNGramTable),
 				IllegalArgumentException.class, "chunkLen");
 	}
 	
 	@Test
 	public void testCreateMarkovMatrix1()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b","c"}, new String[]{"a","b"}, new String[]{"a","d","c"}},config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","b","c","d"}, new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		Map<List<Label>, MarkovOutcome> matrix = m.computePredictionMatrix();
@@ -173,7 +176,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCreateMarkovMatrix2()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter), minusStrings = new HashSet<>();
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		Map<List<Label>, MarkovOutcome> matrix = m.computePredictionMatrix();
@@ -187,7 +190,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCreateMarkovMatrix3a()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = new HashSet<>(), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		Map<List<Label>, MarkovOutcome> matrix = m.computePredictionMatrix();
@@ -202,7 +205,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCreateMarkovMatrix3b()
 	{
-		MarkovModel m = new MarkovModel(3,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(3,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = new HashSet<>(), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		Map<List<Label>, MarkovOutcome> matrix = m.computePredictionMatrix();
@@ -213,10 +216,41 @@ public class TestMarkovLearner
 		Assert.assertSame(MarkovOutcome.negative, matrix.get(Collections.singletonList(lblU)));
 	}
 	
+	/** Checks that Markov models constructed on multiple threads are the same as those constructed on a single thread. */
+	@Test
+	public void testCreateMarkovMatrixMultipleThreads()
+	{
+		for(int seed=0;seed<3;++seed)
+		{
+			LearnerGraph graph = new ForestFireLabelledStateMachineGenerator(0.3,0.2,0.2,0.1,8,seed,config,new Transform.InternStringLabel()).buildMachine(30);
+			RandomPathGenerator generator = new RandomPathGenerator(graph, new Random(seed), 5, graph.getInit());
+			generator.generateRandomPosNeg(600, 1);
+			List<List<Label>> pos = generator.getAllSequences(0).getData(name -> ((RandomPathGenerator.StateName)name).accept),
+					neg = generator.getAllSequences(0).getData(name -> !((RandomPathGenerator.StateName)name).accept);
+			for(boolean onlyLongest:new boolean[]{false,true})
+			{
+				MarkovModel expected = new MarkovModel(3,true,true,markovPTAUseMatrix,markovUseNGramTable);
+				expected.createMarkovLearner(pos, neg, onlyLongest);
+				Map<List<Label>,UpdatablePairInteger> expectedSequences = new HashMap<>();
+				expected.markovMatrix.forEachOccurrence(expectedSequences::put);
+				for(int threads:new int[]{2,3,8})
+				{
+					MarkovModel actual = new MarkovModel(3,true,true,markovPTAUseMatrix,markovUseNGramTable);
+					actual.createMarkovLearner(pos, neg, onlyLongest, threads);
+					Assert.assertEquals(expected.computePredictionMatrix(), actual.computePredictionMatrix());
+					Assert.assertEquals(expected.computeOccurrenceMatrix(), actual.computeOccurrenceMatrix());
+					Map<List<Label>,UpdatablePairInteger> actualSequences = new HashMap<>();
+					actual.markovMatrix.forEachOccurrence(actualSequences::put);
+					Assert.assertEquals(expectedSequences, actualSequences);
+				}
+			}
+		}
+	}
+
 	@Test
 	public void testCreateMarkovMatrix4()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = new HashSet<>(), minusStrings = buildSet(new String[][] { new String[]{"u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		Map<List<Label>, MarkovOutcome> matrix = m.computePredictionMatrix();
@@ -229,7 +263,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCreateMarkovMatrix5()
 	{
-		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		final Set<List<Label>> plusStrings = new HashSet<>(), minusStrings = buildSet(new String[][] { new String[]{},new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		Map<List<Label>, MarkovOutcome> matrix = m.computePredictionMatrix();
@@ -243,7 +277,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCreateMarkovMatrix6()
 	{
-		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		final Set<List<Label>> plusStrings = new HashSet<>(), minusStrings = new HashSet<>();
 		Helper.checkForCorrectException(
 				() -> m.createMarkovLearner(plusStrings, minusStrings,false),
@@ -253,7 +287,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCreateMarkovMatrix7()
 	{
-		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		final Set<List<Label>> plusStrings = new HashSet<>(), minusStrings = buildSet(new String[][] { new String[]{},new String[]{} },config,converter);
 		Helper.checkForCorrectException(
 				() -> m.createMarkovLearner(plusStrings, minusStrings,false),
@@ -264,7 +298,7 @@ public class TestMarkovLearner
 	@Test
 	public void testConstructExtendedGraph1()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","p"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-u->B-p->B","testConstructExtendedGraph1",config, converter);
@@ -283,7 +317,7 @@ public class TestMarkovLearner
 	@Test
 	public void testConstructExtendedGraph2()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","p"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B","testConstructExtendedGraph2",config, converter);
@@ -302,7 +336,7 @@ public class TestMarkovLearner
 	@Test
 	public void testConstructExtendedGraph3()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / T-b->T-u->T","testConstructExtendedGraph3a",config, converter);
@@ -326,7 +360,7 @@ public class TestMarkovLearner
 	@Test
 	public void testConstructExtendedGraph4()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"a","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / T-b->T-u->T","testConstructExtendedGraph3a",config, converter);
@@ -351,7 +385,7 @@ public class TestMarkovLearner
 	@Test
 	public void testConstructExtendedGraph5()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);// w below is to ensure that all elements of the alphabet are included in traces.
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);// w below is to ensure that all elements of the alphabet are included in traces.
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"},new String[]{"w"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-w->M-c->B / T-b->T-u->T","testConstructExtendedGraph5a",config, converter);// the purpose of the w-transition is to ensure transition c is taken into account in graph comparison
@@ -375,7 +409,7 @@ public class TestMarkovLearner
 	@Test
 	public void testConstructExtendedGraph6()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / T-b->T-u->T","testConstructExtendedGraph6a",config, converter);
@@ -400,7 +434,7 @@ public class TestMarkovLearner
 	@Test
 	public void testConstructExtendedGraph7()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B-c->Z / T-b->T-u->T","testConstructExtendedGraph7a",config, converter);
@@ -427,7 +461,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1a()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / T-b->T-u->T","testCheckFanoutInconsistency1a",config, converter);
@@ -439,7 +473,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1b1()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / B-u->F / T-b->T-u->T","testCheckFanoutInconsistency1b1",config, converter);
@@ -451,7 +485,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1b2()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"a","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / B-u->F / T-b->T-u->T","testCheckFanoutInconsistency1b2",config, converter);
@@ -463,7 +497,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1b3()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"a","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / B-u->F / T-b->T-u->T","testCheckFanoutInconsistency1b2",config, converter);
@@ -489,7 +523,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1c()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"},new String[]{"a","d"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / B-d->F / T-b->T-u->T-d->T","testCheckFanoutInconsistency1c",config, converter);
@@ -501,7 +535,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1d()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"}},config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / B-d->F / T-b->T-u->T-d->T","testCheckFanoutInconsistency1d",config, converter);
@@ -513,7 +547,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1e()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"}},config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / B-b-#F / T-b->T-u->T-d->T","testCheckFanoutInconsistency1e",config, converter);
@@ -525,7 +559,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency1f()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B / B-d-#F / T-b->T-u->T-d->T","testCheckFanoutInconsistency1f",config, converter);
@@ -538,7 +572,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency2()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B-b->C / B-u->F / T-b->T-u->T","testCheckFanoutInconsistency2",config, converter);
@@ -550,7 +584,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency3()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B / A-c->B-u->C / T-b->T-u->T","testCheckFanoutInconsistency3",config, converter);
@@ -562,7 +596,7 @@ public class TestMarkovLearner
 	@Test
 	public void testCheckFanoutInconsistency4()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->D-b->C / A-c->B-b->C / B-u->E / T-b->T-u->T","testCheckFanoutInconsistency4",config, converter);
@@ -576,12 +610,12 @@ public class TestMarkovLearner
 	@Test
 	public void testMarkovUpdate1_longest()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","b"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,true);
 
 		final LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(plusStrings, true, false);graph.paths.augmentPTA(minusStrings, false, false);
-		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(mOther,graph).updateMarkov(true);
 		Assert.assertEquals(m.computePredictionMatrix(),mOther.computePredictionMatrix());
 		Assert.assertEquals(m.computeOccurrenceMatrix(),mOther.computeOccurrenceMatrix());
@@ -593,12 +627,12 @@ public class TestMarkovLearner
 	@Test
 	public void testMarkovUpdate1_prefixclosed()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","b"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,false);
 
 		final LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(plusStrings, true, false);graph.paths.augmentPTA(minusStrings, false, false);
-		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(mOther,graph).updateMarkov(false);
 		Assert.assertEquals(m.computePredictionMatrix(),mOther.computePredictionMatrix());
 		
@@ -615,12 +649,12 @@ public class TestMarkovLearner
 	@Test
 	public void testMarkovUpdate2()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"},new String[]{"c","b"},new String[]{"c","u"} },config,converter), minusStrings = buildSet(new String[][] {},config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,true);
 
 		final LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(plusStrings, true, false);graph.paths.augmentPTA(minusStrings, false, false);
-		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix);new MarkovClassifier(mOther,graph).updateMarkov(true);
+		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);new MarkovClassifier(mOther,graph).updateMarkov(true);
 		Assert.assertEquals(m.computePredictionMatrix(),mOther.computePredictionMatrix());
 		Assert.assertEquals(m.computeOccurrenceMatrix(),mOther.computeOccurrenceMatrix());
 	}
@@ -629,12 +663,12 @@ public class TestMarkovLearner
 	@Test
 	public void testMarkovUpdate3()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] {},config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,true);
 
 		final LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(plusStrings, true, false);graph.paths.augmentPTA(minusStrings, false, false);
-		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix);new MarkovClassifier(mOther,graph).updateMarkov(true);
+		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);new MarkovClassifier(mOther,graph).updateMarkov(true);
 		Assert.assertEquals(m.computePredictionMatrix(),mOther.computePredictionMatrix());
 		Assert.assertEquals(m.computeOccurrenceMatrix(),mOther.computeOccurrenceMatrix());
 	}
@@ -643,12 +677,12 @@ public class TestMarkovLearner
 	@Test
 	public void testMarkovUpdate4()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Set<List<Label>> plusStrings = buildSet(new String[][] { new String[]{"a","b"} },config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","u"} },config,converter);
 		m.createMarkovLearner(plusStrings, minusStrings,true);
 
 		final LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(plusStrings, true, false);graph.paths.augmentPTA(minusStrings, false, false);
-		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix);new MarkovClassifier(mOther,graph).updateMarkov(true);
+		MarkovModel mOther = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);new MarkovClassifier(mOther,graph).updateMarkov(true);
 		Assert.assertEquals(m.computePredictionMatrix(),mOther.computePredictionMatrix());
 		Assert.assertEquals(m.computeOccurrenceMatrix(),mOther.computeOccurrenceMatrix());
 	}
@@ -657,7 +691,7 @@ public class TestMarkovLearner
 	public void testUpdateMarkovSideways1a()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-a->C / B-b->C","testUpdateMarkovSideways1",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Map<List<Label>,UpdatablePairInteger> mOccurrenceMatrix = m.computeOccurrenceMatrix();Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertEquals(4,mPredictionsMatrix.size());
@@ -672,7 +706,7 @@ public class TestMarkovLearner
 	public void testUpdateMarkovSideways1b()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-a->C / B-b->C","testUpdateMarkovSideways1",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Map<List<Label>,UpdatablePairInteger> mOccurrenceMatrix = m.computeOccurrenceMatrix();Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertEquals(6,mPredictionsMatrix.size());
@@ -691,7 +725,7 @@ public class TestMarkovLearner
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-a->C / B-b->C-a-#D / B-c-#D","testUpdateMarkovSideways1c",config, converter);
 
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertEquals(9,mPredictionsMatrix.size());
@@ -712,7 +746,7 @@ public class TestMarkovLearner
 	public void testUpdateMarkovSideways1d()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-a->C / B-b->C-a-#D / B-c-#D","testUpdateMarkovSideways1c",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertEquals(7,mPredictionsMatrix.size());
@@ -726,7 +760,7 @@ public class TestMarkovLearner
 		Assert.assertEquals(MarkovOutcome.negative,mPredictionsMatrix.get(Collections.singletonList(lblC)));
 		
 		Set<List<Label>> plusStrings = buildSet(new String[][] {},config,converter), minusStrings = buildSet(new String[][] { new String[]{"a","a","a"},new String[]{"a","b","a"},new String[]{"a","c"} },config,converter);
-		MarkovModel another = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel another = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		another.createMarkovLearner(plusStrings, minusStrings, false);
 
 		Map<List<Label>,MarkovOutcome> anotherPredictionsMatrix = another.computePredictionMatrix();
@@ -745,7 +779,7 @@ public class TestMarkovLearner
 	public void testUpdateMarkovSideways2()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-c->C / B-b-#D","testUpdateMarkovSideways2",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertEquals(3,mPredictionsMatrix.size());
@@ -758,7 +792,7 @@ public class TestMarkovLearner
 	public void testUpdateMarkovSideways3()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertEquals(9,mPredictionsMatrix.size());
@@ -779,7 +813,7 @@ public class TestMarkovLearner
 	public void testUpdateMarkovSideways4()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(3,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(3,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertEquals(6,mPredictionsMatrix.size());
@@ -797,7 +831,7 @@ public class TestMarkovLearner
 	public void testUpdateMarkovSideways5()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(4,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(4,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
 		Assert.assertTrue(mPredictionsMatrix.isEmpty());
@@ -807,7 +841,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsSideways1()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel mSideways = new MarkovModel(2,false,true,markovPTAUseMatrix), mForward = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel mSideways = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable), mForward = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(mSideways,graph).updateMarkov(true);
 		Assert.assertEquals(9,mSideways.computePredictionMatrix().size());Assert.assertTrue(mForward.computePredictionMatrix().isEmpty());
 		
@@ -834,7 +868,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsSideways2()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-b->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		
 		Map<List<Label>,MarkovOutcome> mPredictionsMatrix = m.computePredictionMatrix();
@@ -857,7 +891,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesSideways1()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
@@ -870,10 +904,68 @@ public class TestMarkovLearner
 		Assert.assertEquals(MarkovOutcome.positive,predictions.get(lblA));
 	}
 	
+	@Test
+	public void testPredictionCache()
+	{
+		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testPredictionCache",config, converter);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
+		new MarkovClassifier(m,graph).updateMarkov(false);
+		MarkovClassifier cl = new MarkovClassifier(m,graph);
+		CmpVertex B = graph.findVertex("B"), G = graph.findVertex("G");
+		Map<Label, MarkovOutcome> predictions = cl.predictTransitionsFromState(B,null,2,null), expected = new HashMap<>(predictions);
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(0,cl.getPredictionCacheHits());Assert.assertEquals(1,cl.getPredictionCacheMisses());
+		predictions.clear();// returned predictions are copies
+		Assert.assertEquals(expected,new HashMap<>(cl.predictTransitionsFromState(B,null,2,null)));
+		Assert.assertEquals(1,cl.getPredictionCacheHits());Assert.assertEquals(1,cl.getPredictionCacheMisses());
+		
+		// predictions collecting paths or extending paths beyond the current state are not cached
+		List<List<Label>> interestingPaths = new LinkedList<>();
+		Assert.assertEquals(expected,new HashMap<>(cl.predictTransitionsFromState(B,null,2,interestingPaths)));
+		Assert.assertEquals(1,interestingPaths.size());
+		Assert.assertEquals(1,cl.getPredictionCacheHits());Assert.assertEquals(1,cl.getPredictionCacheMisses());
+		
+		// updates to predictions of sequences of a different length do not affect cached predictions
+		cl.updateMarkov(B,1);
+		cl.predictTransitionsFromState(B,null,2,null);
+		Assert.assertEquals(2,cl.getPredictionCacheHits());Assert.assertEquals(1,cl.getPredictionCacheMisses());
+		cl.updateMarkov(B,2);
+		cl.predictTransitionsFromState(B,null,2,null);
+		Assert.assertEquals(2,cl.getPredictionCacheHits());Assert.assertEquals(2,cl.getPredictionCacheMisses());
+		
+		// G is two transitions away from A hence is not affected by changes to A with a prediction length of 1
+		cl.predictTransitionsFromState(G,null,2,null);
+		Assert.assertEquals(2,cl.getPredictionCacheHits());Assert.assertEquals(3,cl.getPredictionCacheMisses());
+		cl.invalidatePredictions(Collections.singleton(graph.findVertex("A")));
+		cl.predictTransitionsFromState(G,null,2,null);
+		Assert.assertEquals(3,cl.getPredictionCacheHits());Assert.assertEquals(3,cl.getPredictionCacheMisses());
+		cl.predictTransitionsFromState(B,null,2,null);
+		Assert.assertEquals(3,cl.getPredictionCacheHits());Assert.assertEquals(4,cl.getPredictionCacheMisses());
+	}
+	
+	@Test
+	public void testPredictionCacheSize()
+	{
+		Configuration configWithSmallCache = config.copy();configWithSmallCache.setMarkovPredictionCacheSize(2);
+		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testPredictionCacheSize",configWithSmallCache, converter);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
+		new MarkovClassifier(m,graph).updateMarkov(false);
+		MarkovClassifier cl = new MarkovClassifier(m,graph);
+		for(String state:new String[]{"B","E","G","G","E","B"})
+			cl.predictTransitionsFromState(graph.findVertex(state),null,2,null);
+		Assert.assertEquals(2,cl.getPredictionCacheHits());Assert.assertEquals(4,cl.getPredictionCacheMisses());// B is evicted when G is added
+		
+		configWithSmallCache.setMarkovPredictionCacheSize(0);
+		cl = new MarkovClassifier(m,graph);
+		for(String state:new String[]{"B","B"})
+			cl.predictTransitionsFromState(graph.findVertex(state),null,2,null);
+		Assert.assertEquals(0,cl.getPredictionCacheHits());Assert.assertEquals(0,cl.getPredictionCacheMisses());
+	}
+	
 	@Test
 	public void testPredictTransitionsFromStatesForward1()
 	{
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		Assert.assertTrue(m.computePredictionMatrix().isEmpty());
 		
 		final LearnerGraph graph2 = FsmParser.buildLearnerGraph("A-a->B / A-c->A","testCheckFanoutInconsistencySideways4",config, converter);
@@ -885,7 +977,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesForward2a()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(4,m.computePredictionMatrix().size());
 		
@@ -904,14 +996,14 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesForward2b()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(4,m.computePredictionMatrix().size());
 		
 		final LearnerGraph graph2 = new LearnerGraph(config);graph2.getInit().setAccept(false);
 		Map<CmpVertex, Map<Label, MarkovOutcome>> predictions = new MarkovClassifier(m, graph2).predictTransitions();
 		Assert.assertTrue(predictions.isEmpty());
-		predictions = new MarkovClassifier(new MarkovModel(2,false,true,markovPTAUseMatrix),graph2).predictTransitions();
+		predictions = new MarkovClassifier(new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable),graph2).predictTransitions();
 		Assert.assertTrue(predictions.isEmpty());
 	}
 	
@@ -919,7 +1011,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesForward3()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(4,m.computePredictionMatrix().size());
 		
@@ -934,7 +1026,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesSideways2()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(9,m.computePredictionMatrix().size());
 		
@@ -948,7 +1040,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesSideways3()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(9,m.computePredictionMatrix().size());
 		
@@ -963,7 +1055,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesWithPathBeyondCurrentState1()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -980,7 +1072,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesWithPathBeyondCurrentState2()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		final MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		final MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -996,7 +1088,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesWithPathBeyondCurrentState3()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(4,m.computePredictionMatrix().size());
 		
@@ -1014,7 +1106,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesWithPathBeyondCurrentState4()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(4,m.computePredictionMatrix().size());
 		
@@ -1032,7 +1124,7 @@ public class TestMarkovLearner
 	public void testPredictTransitionsFromStatesWithPathBeyondCurrentState5()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		final MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(true);
 		Assert.assertEquals(4,m.computePredictionMatrix().size());
 		
@@ -1050,7 +1142,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways1_s1()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1091,7 +1183,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways1_s2()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1132,7 +1224,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways1_a()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1173,7 +1265,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways2()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1213,7 +1305,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways3()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1255,7 +1347,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways4()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1297,7 +1389,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways5()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1339,7 +1431,7 @@ public class TestMarkovLearner
 	public void testCheckFanoutInconsistencySideways6()
 	{
 		final LearnerGraph graph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,false,true,markovPTAUseMatrix,markovUseNGramTable);
 		new MarkovClassifier(m,graph).updateMarkov(false);
 		Assert.assertEquals(9+graph.getCache().getAlphabet().size(),m.computePredictionMatrix().size());
 		
@@ -1765,7 +1857,7 @@ public class TestMarkovLearner
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));
 		
 		//for(LearnerGraph g:grForPaths.values())	System.out.println(g.transitionMatrix);
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(1,collectionOfSets.size());
 		Assert.assertEquals(gr.transitionMatrix.keySet(), collectionOfSets.iterator().next());
 	}
@@ -1777,7 +1869,7 @@ public class TestMarkovLearner
 		LearnerGraph gr=FsmParser.buildLearnerGraph("A-a->B / A-b->A / B-a->C-b->D-a->E / D-c->D / E-d->E","testBuildVerticesToMergeForPath1",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));
 		//for(LearnerGraph g:grForPaths.values())	System.out.println(g.transitionMatrix);
-		Collection<Set<CmpVertex>> collectionOfSets = new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets = new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(1,collectionOfSets.size());
 		Iterator<Set<CmpVertex>> iterator = collectionOfSets.iterator();
 		Set<CmpVertex> partA = new TreeSet<>(gr.transitionMatrix.keySet());
@@ -1793,7 +1885,7 @@ public class TestMarkovLearner
 		LearnerGraph gr=FsmParser.buildLearnerGraph("A-a->B / A-b->A / B-a->C-b->D-a->E / D-c->D / E-d->E","testBuildVerticesToMergeForPath3",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));paths.add(Collections.singletonList(lblD));
 		//for(LearnerGraph g:grForPaths.values())	System.out.println(g.transitionMatrix);
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(2,collectionOfSets.size());
 		Iterator<Set<CmpVertex>> iterator = collectionOfSets.iterator();
 		Set<CmpVertex> partA = new TreeSet<>(gr.transitionMatrix.keySet());
@@ -1811,7 +1903,7 @@ public class TestMarkovLearner
 		LearnerGraph gr=FsmParser.buildLearnerGraph("A-a->B / A-b->A / B-a->C-d->D-a->E / D-c->D / E-d->E","testBuildVerticesToMergeForPath4",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));paths.add(Collections.singletonList(lblD));
 		//for(LearnerGraph g:grForPaths.values())	System.out.println(g.transitionMatrix);
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(2,collectionOfSets.size());
 		Iterator<Set<CmpVertex>> iterator = collectionOfSets.iterator();
 		Set<CmpVertex> partA = new TreeSet<>(gr.transitionMatrix.keySet());
@@ -1827,7 +1919,7 @@ public class TestMarkovLearner
 	{
 		LearnerGraph gr=FsmParser.buildLearnerGraph("A-a->B / A-b->A / B-a->C-b->D-a->E / D-c->D / E-c->E-d->F-d->F-u->G-u->G","testBuildVerticesToMergeForPath5",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));paths.add(Collections.singletonList(lblD));paths.add(Collections.singletonList(lblU));
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(1,collectionOfSets.size());
 		Assert.assertEquals(gr.transitionMatrix.keySet(), collectionOfSets.iterator().next());
 	}
@@ -1838,7 +1930,7 @@ public class TestMarkovLearner
 	{
 		LearnerGraph gr=FsmParser.buildLearnerGraph("B-a->C-b->D-a->E / D-c->D / E-c->E-d->F-d->F-u->G-u->G / Z-a->B / Z-b->Z","testBuildVerticesToMergeForPath6",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));paths.add(Collections.singletonList(lblD));paths.add(Collections.singletonList(lblU));
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(1,collectionOfSets.size());
 		Assert.assertEquals(gr.transitionMatrix.keySet(), collectionOfSets.iterator().next());
 	}
@@ -1849,7 +1941,7 @@ public class TestMarkovLearner
 	{
 		LearnerGraph gr=FsmParser.buildLearnerGraph("B-a->C-b->D-a->E / D-c->D / E-c->E-d->F-d->F-u->G-u->G / Z-a->B / Z-b->Z","testBuildVerticesToMergeForPath6",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertTrue(collectionOfSets.isEmpty());
 	}
 	
@@ -1859,7 +1951,7 @@ public class TestMarkovLearner
 	{
 		LearnerGraph gr=new LearnerGraph(config);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertTrue(collectionOfSets.isEmpty());
 	}
 	
@@ -1870,7 +1962,7 @@ public class TestMarkovLearner
 		LearnerGraph gr=FsmParser.buildLearnerGraph("A-a->B / A-b->A / B-a->C-d->D-a->E / D-c->D / E-d->E-e->F-d->F-u->F / G-u->G","testBuildVerticesToMergeForPath8",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));paths.add(Collections.singletonList(lblD));paths.add(Collections.singletonList(AbstractLearnerGraph.generateNewLabel("e", config, converter)));paths.add(Collections.singletonList(lblU));
 		//for(LearnerGraph g:grForPaths.values())	System.out.println(g.transitionMatrix);
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(2,collectionOfSets.size());
 		Iterator<Set<CmpVertex>> iterator = collectionOfSets.iterator();
 		Set<CmpVertex> partA = new TreeSet<>();partA.add(gr.findVertex("A"));partA.add(gr.findVertex("B"));partA.add(gr.findVertex("D"));
@@ -1887,7 +1979,7 @@ public class TestMarkovLearner
 		LearnerGraph gr=FsmParser.buildLearnerGraph("A-a->B / A-b->A / B-a->C-d->D-a->E / D-c->D / E-d->E-e->F-d->F-u->F / G-e->G","testBuildVerticesToMergeForPath8",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));paths.add(Collections.singletonList(lblD));paths.add(Collections.singletonList(AbstractLearnerGraph.generateNewLabel("e", config, converter)));paths.add(Collections.singletonList(lblU));
 		//for(LearnerGraph g:grForPaths.values())	System.out.println(g.transitionMatrix);
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(2,collectionOfSets.size());
 		Iterator<Set<CmpVertex>> iterator = collectionOfSets.iterator();
 		Set<CmpVertex> partA = new TreeSet<>();partA.add(gr.findVertex("A"));partA.add(gr.findVertex("B"));partA.add(gr.findVertex("D"));
@@ -1904,7 +1996,7 @@ public class TestMarkovLearner
 		LearnerGraph gr=FsmParser.buildLearnerGraph("A-a->B / A-b->A / B-a->C-d->D-a->E / D-c->D / E-d->E-e->F-d->F-u->F / G-f->G","testBuildVerticesToMergeForPath8",config, converter);
 		Collection<List<Label>> paths = new LinkedList<>();paths.add(Collections.singletonList(lblA));paths.add(Collections.singletonList(lblB));paths.add(Collections.singletonList(lblC));paths.add(Collections.singletonList(lblD));paths.add(Collections.singletonList(AbstractLearnerGraph.generateNewLabel("e", config, converter)));paths.add(Collections.singletonList(AbstractLearnerGraph.generateNewLabel("f", config, converter)));paths.add(Collections.singletonList(lblU));
 		//for(LearnerGraph g:grForPaths.values())	System.out.println(g.transitionMatrix);
-		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix),gr).buildVerticesToMergeForPaths(paths);
+		Collection<Set<CmpVertex>> collectionOfSets=new MarkovClassifier(new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable),gr).buildVerticesToMergeForPaths(paths);
 		Assert.assertEquals(3,collectionOfSets.size());
 		Iterator<Set<CmpVertex>> iterator = collectionOfSets.iterator();
 		Set<CmpVertex> partA = new TreeSet<>();partA.add(gr.findVertex("A"));partA.add(gr.findVertex("B"));partA.add(gr.findVertex("D"));
@@ -2259,7 +2351,7 @@ public class TestMarkovLearner
 	public void testMarkovPerformance1()
 	{
 		final LearnerGraph trainingGraph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		MarkovClassifier cl=new MarkovClassifier(m,trainingGraph);cl.updateMarkov(false);
 		statechum.Pair<Double,Double> pairTraining = cl.evaluateCorrectnessOfMarkov();
 		Assert.assertEquals(2./3,pairTraining.firstElem,Configuration.fpAccuracy);// reflects that transitions u and c from G are not present but predicted
@@ -2278,7 +2370,7 @@ public class TestMarkovLearner
 	public void testMarkovPerformance2()
 	{
 		final LearnerGraph trainingGraph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		MarkovClassifier cl=new MarkovClassifier(m,trainingGraph);cl.updateMarkov(false);
 		
 		MarkovClassifier eval = new MarkovClassifier(m,FsmParser.buildLearnerGraph("A-a->B-u-#D / B-b->G","testMarkovPerformance2",config, converter));
@@ -2290,7 +2382,7 @@ public class TestMarkovLearner
 	public void testMarkovPerformance3()
 	{
 		final LearnerGraph trainingGraph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		MarkovClassifier cl=new MarkovClassifier(m,trainingGraph);cl.updateMarkov(false);
 		
 		MarkovClassifier eval = new MarkovClassifier(m,FsmParser.buildLearnerGraph("A-a->B-u-#D / B-b->G / B-e->Z","testMarkovPerformance3",config, converter));
@@ -2302,7 +2394,7 @@ public class TestMarkovLearner
 	public void testMarkovPerformance4()
 	{
 		final LearnerGraph trainingGraph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		MarkovClassifier cl=new MarkovClassifier(m,trainingGraph);cl.updateMarkov(false);
 		
 		MarkovClassifier eval = new MarkovClassifier(m,FsmParser.buildLearnerGraph("A-a->B-b->C-c->D-u->E","testMarkovPerformance4",config, converter));
@@ -2315,7 +2407,7 @@ public class TestMarkovLearner
 	public void testMarkovPerformance5()
 	{
 		final LearnerGraph trainingGraph = FsmParser.buildLearnerGraph("A-a->B-b->C / B-u-#D / A-c->E-u->F / E-c->G","testUpdateMarkovSideways3",config, converter);
-		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
 		MarkovClassifier cl=new MarkovClassifier(m,trainingGraph);cl.updateMarkov(false);
 		
 		MarkovClassifier eval = new MarkovClassifier(m,FsmParser.buildLearnerGraph("A-a->B-b->G","testMarkovPerformance5",config, converter));
@@ -2366,6 +2458,113 @@ public class TestMarkovLearner
 		Iterator<CmpVertex> iter=verts.iterator();Assert.assertSame(trainingGraphForClosures.findVertex("B"),iter.next());Assert.assertSame(trainingGraphForClosures.findVertex("C"),iter.next());Assert.assertSame(trainingGraphForClosures.findVertex("D"),iter.next());
 	}
 	
+	@Test
+	public void testComputeClosureOfPredecessors()
+	{
+		Assert.assertTrue(MarkovClassifier.computeClosureOfPredecessors(trainingGraphForClosures,Collections.emptyList(),2).isEmpty());
+		CmpVertex D = trainingGraphForClosures.findVertex("D");
+		Assert.assertEquals(Collections.singleton(D),MarkovClassifier.computeClosureOfPredecessors(trainingGraphForClosures,Collections.singleton(D),0));
+		Assert.assertEquals(new TreeSet<>(Arrays.asList(D,trainingGraphForClosures.findVertex("C"))),
+				new TreeSet<>(MarkovClassifier.computeClosureOfPredecessors(trainingGraphForClosures,Collections.singleton(D),1)));
+		Assert.assertEquals(new TreeSet<>(Arrays.asList(D,trainingGraphForClosures.findVertex("C"),trainingGraphForClosures.findVertex("B"))),
+				new TreeSet<>(MarkovClassifier.computeClosureOfPredecessors(trainingGraphForClosures,Collections.singleton(D),2)));
+		Assert.assertEquals(trainingGraphForClosures.transitionMatrix.keySet(),
+				MarkovClassifier.computeClosureOfPredecessors(trainingGraphForClosures,Collections.singleton(trainingGraphForClosures.findVertex("E")),4));
+	}
+	
+	/** Merges pairs of states in a PTA one after another, checking that the inconsistency tracker agrees with computation of inconsistencies of entire graphs. */
+	@Test
+	public void testInconsistencyTracker()
+	{
+		final MarkovClassifier.ConsistencyChecker checker = new MarkovClassifier.DifferentPredictionsInconsistencyNoBlacklistingIncludeMissingPrefixes();
+		for(int seed=0;seed<3;++seed)
+		{
+			LearnerGraph graph = new ForestFireLabelledStateMachineGenerator(0.3,0.2,0.2,0.1,6,seed,config,new Transform.InternStringLabel()).buildMachine(20);
+			RandomPathGenerator generator = new RandomPathGenerator(graph, new Random(seed), 5, graph.getInit());
+			generator.generateRandomPosNeg(60, 1);
+			List<List<Label>> pos = generator.getAllSequences(0).getData(name -> ((RandomPathGenerator.StateName)name).accept),
+					neg = generator.getAllSequences(0).getData(name -> !((RandomPathGenerator.StateName)name).accept);
+			for(boolean predictForward:new boolean[]{true,false})
+				for(boolean directionForward:new boolean[]{true,false})
+				{
+					MarkovModel m = new MarkovModel(2,predictForward,directionForward,markovPTAUseMatrix,markovUseNGramTable);
+					m.createMarkovLearner(pos, neg, false);
+					LearnerGraph current = new LearnerGraph(config);current.paths.augmentPTA(pos, true, false);current.paths.augmentPTA(neg, false, false);
+					MarkovClassifier.InconsistencyTracker tracker = new MarkovClassifier.InconsistencyTracker(m, current, checker);
+					Assert.assertEquals(MarkovClassifier.computeInconsistency(current, m, checker, false), tracker.getInconsistency());
+					Random rnd = new Random(seed);int mergers = 0;long inheritedPredictions = 0;
+					for(int attempt=0;attempt<40;++attempt)
+					{
+						List<CmpVertex> states = new ArrayList<>(current.transitionMatrix.keySet());
+						StatePair pair = new StatePair(states.get(rnd.nextInt(states.size())),states.get(rnd.nextInt(states.size())));
+						List<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> verticesToMerge = new LinkedList<>();
+						if (pair.getQ() == pair.getR() || current.pairscores.computePairCompatibilityScore_general(pair, null, verticesToMerge, false) < 0)
+							continue;
+						LearnerGraph merged = MergeStates.mergeCollectionOfVertices(current, null, verticesToMerge, false);
+						long expectedInconsistency = MarkovClassifier.computeInconsistency(merged, m, checker, false);
+						Assert.assertEquals(expectedInconsistency-tracker.getInconsistency(), tracker.computeInconsistencyOfAMerger(verticesToMerge, merged));
+						for(CmpVertex v:current.transitionMatrix.keySet())
+							if (v.isAccept())
+								tracker.getClassifier().predictTransitionsFromState(v, null, m.getChunkLen(), null);
+						tracker.mergePerformed(verticesToMerge, merged);current = merged;++mergers;
+						Assert.assertSame(merged, tracker.getGraph());
+						Assert.assertEquals(expectedInconsistency, tracker.getInconsistency());
+						
+						// predictions retained from the graph before a merger should be the same as those computed afresh
+						MarkovClassifier fresh = new MarkovClassifier(m, merged);
+						for(CmpVertex v:merged.transitionMatrix.keySet())
+							if (v.isAccept())
+								Assert.assertEquals(new HashMap<>(fresh.predictTransitionsFromState(v, null, m.getChunkLen(), null)),
+										new HashMap<>(tracker.getClassifier().predictTransitionsFromState(v, null, m.getChunkLen(), null)));
+						inheritedPredictions+=tracker.getClassifier().getPredictionCacheHits();
+					}
+					Assert.assertTrue(mergers > 2);Assert.assertTrue(inheritedPredictions > 0);
+				}
+		}
+	}
+	
+	/** Merges pairs of states using the learner, checking that its inconsistency tracker is updated by mergers rather than rebuilt 
+	 * and rebuilt where the learner is asked to work on a graph that is not the outcome of the last merger. 
+	 */
+	@Test
+	public void testInconsistencyTrackerOfLearner()
+	{
+		final MarkovClassifier.ConsistencyChecker checker = new MarkovClassifier.DifferentPredictionsInconsistencyNoBlacklistingIncludeMissingPrefixes();
+		LearnerGraph graph = new ForestFireLabelledStateMachineGenerator(0.3,0.2,0.2,0.1,6,0,config,new Transform.InternStringLabel()).buildMachine(20);
+		RandomPathGenerator generator = new RandomPathGenerator(graph, new Random(0), 5, graph.getInit());
+		generator.generateRandomPosNeg(60, 1);
+		List<List<Label>> pos = generator.getAllSequences(0).getData(name -> ((RandomPathGenerator.StateName)name).accept),
+				neg = generator.getAllSequences(0).getData(name -> !((RandomPathGenerator.StateName)name).accept);
+		MarkovModel m = new MarkovModel(2,true,true,markovPTAUseMatrix,markovUseNGramTable);
+		m.createMarkovLearner(pos, neg, false);
+		LearnerGraph current = new LearnerGraph(config);current.paths.augmentPTA(pos, true, false);current.paths.augmentPTA(neg, false, false);
+		EDSM_MarkovLearner learner = new EDSM_MarkovLearner(new LearnerEvaluationConfiguration(config),current,0);
+		learner.setMarkov(m);learner.setChecker(checker);
+		learner.initComputation(current);
+		MarkovClassifier.InconsistencyTracker tracker = learner.getInconsistencyTracker();
+		Assert.assertSame(current, tracker.getGraph());
+		
+		Random rnd = new Random(0);int mergers = 0;
+		for(int attempt=0;attempt<40;++attempt)
+		{
+			List<CmpVertex> states = new ArrayList<>(current.transitionMatrix.keySet());
+			StatePair pair = new StatePair(states.get(rnd.nextInt(states.size())),states.get(rnd.nextInt(states.size())));
+			if (pair.getQ() == pair.getR() || current.pairscores.computePairCompatibilityScore_general(pair, null, new LinkedList<>(), false) < 0)
+				continue;
+			LearnerGraph merged = learner.MergeAndDeterminize(current, pair);
+			learner.initComputation(merged);current = merged;++mergers;
+			Assert.assertSame(tracker, learner.getInconsistencyTracker());
+			Assert.assertSame(merged, tracker.getGraph());
+			Assert.assertEquals(MarkovClassifier.computeInconsistency(merged, m, checker, false), tracker.getInconsistency());
+		}
+		Assert.assertTrue(mergers > 2);
+		
+		LearnerGraph copy = new LearnerGraph(current,config);
+		learner.initComputation(copy);
+		Assert.assertNotSame(tracker, learner.getInconsistencyTracker());
+		Assert.assertSame(copy, learner.getInconsistencyTracker().getGraph());
+	}
+	
 	@Test
 	public void testExistenceOfPathsFromVertex1()
 	{
@@ -1044,6 +1044,60 @@ public class TestGD {
 	}
 
 
+	/** Builds a pair of large graphs, where the second one is obtained by modifying the first one. */
+	protected LearnerGraph [] buildLargeGraphs(Configuration config)
+	{
+		LearnerGraph grA = new statechum.analysis.learning.experiments.ForestFireLabelledStateMachineGenerator(0.3,0.2,0.2,0.1,10,0,config,converter).buildMachine(200);
+		LearnerGraph grB = new LearnerGraph(grA,config);
+		Random rnd = new Random(1);
+		List<CmpVertex> states = new ArrayList<CmpVertex>(grB.transitionMatrix.keySet());
+		for(int i=0;i<20;++i)
+		{
+			CmpVertex from = states.get(rnd.nextInt(states.size())), to = states.get(rnd.nextInt(states.size()));
+			if (!grB.transitionMatrix.get(from).isEmpty())
+				grB.transitionMatrix.get(from).put(grB.transitionMatrix.get(from).keySet().iterator().next(), to);
+		}
+		return new LearnerGraph[]{grA, grB};
+	}
+	
+	/** Wave expansion and patch construction on multiple threads produce the same changes in the same order as on a single thread. */
+	@Test
+	public final void testComputeGD_ThreadNumberDoesNotAffectOutcome()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		config.setGdLinearSolver(Configuration.LINEARSOLVER.LINEARSOLVER_ITERATIVE);
+		LearnerGraph [] graphs = buildLargeGraphs(config);
+		
+		config.setGdThreadNumber(1);
+		GD.ChangesDisplay expected = new GD.ChangesDisplay(null);
+		new GD<CmpVertex,CmpVertex,LearnerGraphCachedData,LearnerGraphCachedData>().computeGD(graphs[0], graphs[1], 1, expected, config);
+		for(int threads:new int[]{2,4,7})
+		{
+			config.setGdThreadNumber(threads);
+			for(int minItems:new int[]{1,64})
+			{
+				GD.ChangesDisplay actual = new GD.ChangesDisplay(null);
+				GD<CmpVertex,CmpVertex,LearnerGraphCachedData,LearnerGraphCachedData> gd = new GD<CmpVertex,CmpVertex,LearnerGraphCachedData,LearnerGraphCachedData>();
+				gd.minItemsPerThread = minItems;// makes sure that even small waves are split between threads
+				gd.computeGD(graphs[0], graphs[1], 1, actual, config);
+				Assert.assertEquals(expected.toString(), actual.toString());
+			}
+		}
+		
+		LearnerGraph graph = new LearnerGraph(graphs[0],config);
+		ChangesRecorder.applyGD(graph, new GD<CmpVertex,CmpVertex,LearnerGraphCachedData,LearnerGraphCachedData>().computeGDToXML(graphs[0], graphs[1], 4, createDoc(), null, config), converter);
+		Assert.assertNull(WMethod.checkM(graphs[1], graph));
+	}
+
+	@Test
+	public final void testGdThreadNumberInvalid()
+	{
+		final Configuration config = Configuration.getDefaultConfiguration().copy();
+		checkForCorrectException(new whatToRun() { public @Override void run() {
+			config.setGdThreadNumber(-1);
+		}},IllegalArgumentException.class,"should be non-negative");
+	}
+
 	/*
 	@Test
 	public final void testComputeGD_big5()
@@ -0,0 +1,166 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.linear;
+
+import static statechum.Helper.checkForCorrectException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Configuration.LINEARSOLVER;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.rpnicore.IterativeSolver;
+import statechum.analysis.learning.rpnicore.LSolver;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.LearnerGraphND;
+import cern.colt.matrix.DoubleFactory1D;
+import cern.colt.matrix.DoubleFactory2D;
+import cern.colt.matrix.DoubleMatrix2D;
+
+/** Tests the solver based on BiCGSTAB, which is used where the external solver is not available. */
+public class TestIterativeSolver
+{
+	/** Builds a random sparse system with a dominant diagonal. */
+	public static LSolver buildSolver(int size, int offDiagonal, Random rnd)
+	{
+		int [] Ap = new int[size+1];int [] Ai = new int[size*(offDiagonal+1)];double [] Ax = new double[Ai.length];
+		double [] b = new double[size];
+		int pos = 0;
+		for(int col=0;col<size;++col)
+		{
+			Ap[col]=pos;
+			Ai[pos]=col;Ax[pos++]=offDiagonal+1+rnd.nextDouble();
+			java.util.Set<Integer> rows = new java.util.TreeSet<Integer>();rows.add(col);
+			for(int i=0;i<offDiagonal;++i)
+			{
+				int row = rnd.nextInt(size);
+				if (rows.add(row))
+				{// the external solver expects no duplicate entries
+					Ai[pos]=row;Ax[pos++]=-rnd.nextDouble();
+				}
+			}
+			b[col]=rnd.nextDouble()*10;
+		}
+		Ap[size]=pos;
+		return new LSolver(Ap,Arrays.copyOf(Ai, pos),Arrays.copyOf(Ax, pos),b,new double[size]);
+	}
+
+	/** Checks that <em>Ax=b</em> without converting the matrix into a dense form. */
+	public static void verifyAxb(LSolver solver)
+	{
+		double [] Ax = new double[solver.j_b.length];
+		for(int col=0;col<solver.j_Ap.length-1;++col)
+			for(int i=solver.j_Ap[col];i<solver.j_Ap[col+1];++i)
+				Ax[solver.j_Ai[i]]+=solver.j_Ax[i]*solver.j_x[col];
+		for(int i=0;i<Ax.length;++i)
+			Assert.assertEquals(solver.j_b[i], Ax[i], Configuration.fpAccuracy);
+	}
+
+	@Test
+	public void testSmall()
+	{
+		DoubleMatrix2D testMatrix = DoubleFactory2D.sparse.make(5,5);
+		testMatrix.set(0, 0, 2);testMatrix.set(1, 0, 3);testMatrix.set(0, 1, 3);testMatrix.set(1, 2, 4);testMatrix.set(1, 4, 6);
+		testMatrix.set(2, 1,-1);testMatrix.set(2, 2,-3);testMatrix.set(2, 3, 2);testMatrix.set(3, 2, 1);testMatrix.set(4, 1, 4);
+		testMatrix.set(4, 2, 2);testMatrix.set(4, 4, 1);
+		LSolver s = new LSolver(testMatrix,DoubleFactory1D.dense.make(new double[]{8., 45., -3., 3., 19.}));
+		s.solveIteratively(1);
+		for(int i=0;i<5;++i)
+			Assert.assertEquals(i+1, s.j_x[i],Configuration.fpAccuracy);
+	}
+
+	@Test
+	public void testZeroRightHandSide()
+	{
+		LSolver s = buildSolver(100, 3, new Random(0));
+		Arrays.fill(s.j_b, 0);Arrays.fill(s.j_x, 1);
+		s.solveIteratively(1);
+		for(double x:s.j_x)
+			Assert.assertEquals(0, x, Configuration.fpAccuracy);
+	}
+
+	@Test
+	public void testSameAsColt()
+	{
+		for(int seed=0;seed<10;++seed)
+		{
+			LSolver solver = buildSolver(300, 5, new Random(seed)), coltSolver = buildSolver(300, 5, new Random(seed));
+			solver.solveIteratively(1);coltSolver.solveUsingColt();
+			for(int i=0;i<solver.j_x.length;++i)
+				Assert.assertEquals(coltSolver.j_x[i], solver.j_x[i], Configuration.fpAccuracy);
+		}
+	}
+
+	/** A system large enough to be split between threads. */
+	@Test
+	public void testLargeMultithreaded()
+	{
+		LSolver solver = buildSolver(50000, 6, new Random(1)), singleThreaded = buildSolver(50000, 6, new Random(1));
+		solver.solveIteratively(4);singleThreaded.solveIteratively(1);
+		verifyAxb(solver);
+		for(int i=0;i<solver.j_x.length;++i)
+			Assert.assertEquals(singleThreaded.j_x[i], solver.j_x[i], Configuration.fpAccuracy);
+	}
+
+	@Test
+	public void testSingular()
+	{
+		final LSolver solver = new LSolver(new int[]{0,2,4},new int[]{0,1,0,1},new double[]{1,1,1,1},new double[]{1,2},new double[2]);
+		checkForCorrectException(() -> solver.solveIteratively(1), IllegalArgumentException.class, "failed to converge");
+	}
+
+	@Test
+	public void testIterationLimit()
+	{
+		final LSolver solver = buildSolver(1000, 5, new Random(0));
+		Configuration config = Configuration.getDefaultConfiguration().copy();config.setGdLinearSolverMaxIterations(1);
+		config.setGdLinearSolver(LINEARSOLVER.LINEARSOLVER_ITERATIVE);solver.configure(config);
+		checkForCorrectException(() -> solver.solve(1), IllegalArgumentException.class, "failed to converge after 1 iterations");
+	}
+
+	@Test
+	public void testInvalidDimensions()
+	{
+		final LSolver solver = buildSolver(10, 2, new Random(0));
+		checkForCorrectException(() -> new IterativeSolver(solver.j_Ap, solver.j_Ai, solver.j_Ax, 1).solve(new double[5], new double[10], 0),
+				IllegalArgumentException.class, "inconsistent dimension");
+	}
+
+	/** Compatibility scores computed by linear with the iterative solver are the same as those with Colt. */
+	@Test
+	public void testStateCompatibility()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		LearnerGraph pta = BlueFringeFixture.buildPTA(config, 0, 5, 40);
+
+		config.setGdLinearSolver(LINEARSOLVER.LINEARSOLVER_COLT);
+		double [] expected = new GDLearnerGraph(new LearnerGraph(pta,config),LearnerGraphND.ignoreRejectStates, false).computeStateCompatibility(1,null);
+		Configuration configIterative = config.copy();configIterative.setGdLinearSolver(LINEARSOLVER.LINEARSOLVER_ITERATIVE);
+		for(int threads:new int[]{1,4})
+		{
+			double [] actual = new GDLearnerGraph(new LearnerGraph(pta,configIterative),LearnerGraphND.ignoreRejectStates, false).computeStateCompatibility(threads,null);
+			Assert.assertEquals(expected.length, actual.length);
+			for(int i=0;i<expected.length;++i)
+				Assert.assertEquals(expected[i], actual[i], Configuration.fpAccuracy);
+		}
+	}
+}
@@ -385,7 +385,95 @@ public class TestLinear {
 		for(Integer numberOfRows:threadToRowNumber.values()) counterOfAllUsedRows+=numberOfRows;
 		Assert.assertEquals(2, counterOfAllUsedRows);// 2 is the number of states which were not ignored
 	}
-	
+
+	/** Runs adaptive row tasks on a large graph, checking that each row is processed once, that a handler is never
+	 * used by two threads at the same time and that each handler is initialised once.
+	 */
+	public final void checkPerformRowTasksAdaptive(int ThreadNumber)
+	{
+		LearnerGraph gr = new LearnerGraph(configMain);
+		CmpVertex prev = gr.getInit();
+		for(int i=0;i<1000;++i)
+		{
+			CmpVertex next = AbstractLearnerGraph.generateNewCmpVertex(VertexID.parseID("S"+i), configMain);
+			gr.transitionMatrix.put(next, gr.createNewRow());
+			gr.addTransition(gr.transitionMatrix.get(prev), AbstractLearnerGraph.generateNewLabel("a", configMain, converter), next);prev = next;
+		}
+		final Map<CmpVertex,Integer> rowToCount = Collections.synchronizedMap(new TreeMap<CmpVertex,Integer>());
+		final java.util.concurrent.atomic.AtomicIntegerArray inUse = new java.util.concurrent.atomic.AtomicIntegerArray(ThreadNumber),
+				initCount = new java.util.concurrent.atomic.AtomicIntegerArray(ThreadNumber);
+
+		List<HandleRow<CmpVertex>> handlerList = new LinkedList<HandleRow<CmpVertex>>();
+		for(int threadCnt=0;threadCnt<ThreadNumber;++threadCnt)
+			handlerList.add(new HandleRow<CmpVertex>()
+			{
+				@Override
+				public void init(int threadNo) {
+					initCount.incrementAndGet(threadNo);
+				}
+
+				@Override
+				public void handleEntry(Entry<CmpVertex, MapWithSearch<Label,Label, CmpVertex>> entryA, int threadNo)
+				{
+					Assert.assertEquals(1, inUse.incrementAndGet(threadNo));
+					Assert.assertEquals(1, initCount.get(threadNo));
+					Integer newValue = rowToCount.get(entryA.getKey());
+					rowToCount.put(entryA.getKey(),newValue == null?1:newValue+1);
+					if (entryA.getKey().getStringId().endsWith("7")) Thread.yield();// make some rows slower than others.
+					inUse.decrementAndGet(threadNo);
+				}
+
+			});
+		GDLearnerGraph.performRowTasksAdaptive(handlerList, ThreadNumber, gr.transitionMatrix, vert -> !vert.getStringId().equals("S5"));
+		Assert.assertEquals(gr.getStateNumber()-1, rowToCount.size());
+		Assert.assertFalse(rowToCount.containsKey(gr.findVertex("S5")));
+		for(Integer count:rowToCount.values()) Assert.assertEquals(1, count.intValue());
+		for(int i=0;i<ThreadNumber;++i) Assert.assertTrue(initCount.get(i) <= 1);
+	}
+
+	@Test
+	public final void testPerformRowTasksAdaptive1()
+	{
+		checkPerformRowTasksAdaptive(1);
+	}
+
+	@Test
+	public final void testPerformRowTasksAdaptive2()
+	{
+		checkPerformRowTasksAdaptive(2);
+	}
+
+	@Test
+	public final void testPerformRowTasksAdaptive7()
+	{
+		checkPerformRowTasksAdaptive(7);
+	}
+
+	/** An exception thrown by a handler is reported to the caller. */
+	@Test
+	public final void testPerformRowTasksAdaptiveFailure()
+	{
+		final LearnerGraph gr=buildLearnerGraph("A-a->B-a->C\nA-b->D\nA-c->E\nB-b->F\nB-c->G","testPerformRowTasksAdaptiveFailure",configMain,converter);
+		final List<HandleRow<CmpVertex>> handlerList = new LinkedList<HandleRow<CmpVertex>>();
+		for(int threadCnt=0;threadCnt<3;++threadCnt)
+			handlerList.add(new HandleRow<CmpVertex>()
+			{
+				@Override
+				public void init(@SuppressWarnings("unused") int threadNo) {
+					// No per-thread initialisation is needed.
+				}
+
+				@Override
+				public void handleEntry(Entry<CmpVertex, MapWithSearch<Label,Label, CmpVertex>> entryA, @SuppressWarnings("unused") int threadNo)
+				{
+					if (entryA.getKey().getStringId().equals("F")) throw new IllegalArgumentException("failure in F");
+				}
+
+			});
+		statechum.Helper.checkForCorrectException(() -> GDLearnerGraph.performRowTasksAdaptive(handlerList, 3, gr.transitionMatrix, LearnerGraphND.ignoreNone),
+				IllegalArgumentException.class, "failure in F");
+	}
+
 	public static final int PAIR_INCOMPATIBLE=GDLearnerGraph.PAIR_INCOMPATIBLE, PAIR_OK=GDLearnerGraph.PAIR_OK;
 	
 	@Test
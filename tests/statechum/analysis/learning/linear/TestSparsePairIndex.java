@@ -0,0 +1,137 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.linear;
+
+import static statechum.Helper.checkForCorrectException;
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.JUConstants;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.PairScore;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.LearnerGraphND;
+
+/** Tests that pair selection over a sparse index of pairs of states gives the same outcome as that over all pairs. */
+public class TestSparsePairIndex
+{
+	@Test
+	public void testAddFind()
+	{
+		SparsePairIndex index = new SparsePairIndex(0);
+		Assert.assertEquals(0, index.size());
+		Assert.assertEquals(-1, index.find(1, 2));
+		Assert.assertEquals(0, index.add(1, 2));
+		Assert.assertEquals(0, index.add(2, 1));
+		Assert.assertEquals(0, index.find(2, 1));
+		Assert.assertEquals(2, index.getFirst(0));Assert.assertEquals(1, index.getSecond(0));
+		Assert.assertEquals(GDLearnerGraph.PAIR_OK, index.getNumber(0));
+		Assert.assertEquals(1, index.add(3, 3));
+		Assert.assertEquals(2, index.size());
+	}
+
+	/** Adds enough pairs to cause the index to grow a few times. */
+	@Test
+	public void testRehash()
+	{
+		SparsePairIndex index = new SparsePairIndex(4);
+		int counter = 0;
+		for(int i=0;i<200;++i)
+			for(int j=0;j<=i;j+=3)
+				Assert.assertEquals(counter++, index.add(j, i));
+		Assert.assertEquals(counter, index.size());
+		counter = 0;
+		for(int i=0;i<200;++i)
+			for(int j=0;j<=i;++j)
+				if (j % 3 == 0)
+					Assert.assertEquals(counter++, index.find(i, j));
+				else
+					Assert.assertEquals(-1, index.find(i, j));
+	}
+
+	@Test
+	public void testNumbering()
+	{
+		final SparsePairIndex index = new SparsePairIndex(4);
+		checkForCorrectException(() -> index.getCompatiblePairNumber(), IllegalArgumentException.class, "have not been numbered");
+		index.add(0, 0);index.add(1, 0);index.add(1, 1);
+		index.setNumber(1, GDLearnerGraph.PAIR_INCOMPATIBLE);
+		Assert.assertEquals(2, index.numberCompatiblePairs());
+		Assert.assertEquals(2, index.getCompatiblePairNumber());
+		Assert.assertEquals(0, index.getNumber(0));Assert.assertEquals(GDLearnerGraph.PAIR_INCOMPATIBLE, index.getNumber(1));Assert.assertEquals(1, index.getNumber(2));
+	}
+
+	protected static Set<String> pairsToStrings(Iterable<PairScore> pairs)
+	{
+		Set<String> result = new TreeSet<>();
+		for(PairScore pair:pairs)
+		{
+			String q = pair.getQ().getStringId(), r = pair.getR().getStringId();
+			result.add((q.compareTo(r) < 0?q+","+r:r+","+q)+"="+pair.getScore());
+		}
+		return result;
+	}
+
+	protected static void compareWithDense(LearnerGraph graph, int threads)
+	{
+		Configuration config = graph.config.copy();config.setGdSparsePairs(false);
+		Set<String> expected = pairsToStrings(new LearnerGraph(graph,config).pairscores.chooseStatePairs_filtered(0, 10, threads, null, LearnerGraphND.ignoreRejectStates, null));
+		config.setGdSparsePairs(true);
+		Set<String> actual = pairsToStrings(new LearnerGraph(graph,config).pairscores.chooseStatePairs_filtered(0, 10, threads, null, LearnerGraphND.ignoreRejectStates, null));
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testSameAsDense()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		for(int seed=0;seed<5;++seed)
+		{
+			LearnerGraph pta = BlueFringeFixture.buildPTA(config, seed, 5, 40);
+			for(int threads:new int[]{1,4})
+				compareWithDense(pta, threads);
+		}
+	}
+
+	@Test
+	public void testSameAsDenseGDDirect()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();config.setGdScoreComputation(Configuration.GDScoreComputationEnum.GD_DIRECT);
+		compareWithDense(BlueFringeFixture.buildPTA(config, 0, 5, 40), 2);
+	}
+
+	/** Incompatibility recorded in a graph has to be propagated to pairs leading to the incompatible pair. */
+	@Test
+	public void testSameAsDenseWithPairCompatibility()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		LearnerGraph graph = buildLearnerGraph("A-a->B-a->C-b->D\nA-b->E-a->F-b->G\nA-c->H-a->I-b->J\nB-c->K-a->L", "testSameAsDenseWithPairCompatibility", config, null);
+		compareWithDense(graph, 1);
+		graph.addToCompatibility(graph.findVertex("D"), graph.findVertex("J"), JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		graph.addToCompatibility(graph.findVertex("C"), graph.findVertex("L"), JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		for(int threads:new int[]{1,3})
+			compareWithDense(graph, threads);
+	}
+}
@@ -0,0 +1,268 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.observers;
+
+import static statechum.Helper.checkForCorrectException;
+import static statechum.analysis.learning.rpnicore.TestFSMAlgo.buildSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import statechum.Configuration;
+import statechum.Label;
+import statechum.Pair;
+import statechum.StatechumXML;
+import statechum.Configuration.IDMode;
+import statechum.analysis.learning.Learner;
+import statechum.analysis.learning.PairScore;
+import statechum.analysis.learning.RPNIUniversalLearner;
+import statechum.analysis.learning.observers.ProgressDecorator.LearnerEvaluationConfiguration;
+import statechum.analysis.learning.rpnicore.FsmParser;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.WMethod;
+
+/** Tests that logs of learners can be played back by reading one element at a time and starting from any element.
+ *
+ * @author agent
+ */
+public class TestStreamingLearnerSimulator
+{
+	protected final Configuration testConfig = Configuration.getDefaultConfiguration().copy();
+
+	protected final String [][] plus = new String[][]{new String[]{"b","b","a"},new String[]{"b","a"},new String[]{"b","c"}, new String[]{"b","c","c"}},
+		minus = new String[][]{new String[]{"c"},new String[]{"b","b","c"}};
+
+	/** Records a learner as a single XML file. */
+	protected byte [] recordLearner(boolean compression)
+	{
+		testConfig.setGdFailOnDuplicateNames(false);testConfig.setCompressLogs(compression);
+		final LearnerGraph expected = FsmParser.buildLearnerGraph("A-a->B<-a-C-b->A\nA-b->C\nC-c->C\n","recordLearner",testConfig, null);
+		Learner l = new RPNIUniversalLearner(null,new LearnerEvaluationConfiguration(null,null,testConfig,null,null))
+		{
+			@Override
+			public Pair<Integer,String> CheckWithEndUser(
+					@SuppressWarnings("unused")	LearnerGraph model,
+					List<Label> question, @SuppressWarnings("unused") int responseForNoRestart,
+					@SuppressWarnings("unused") List<Boolean> acceptedElements,
+					@SuppressWarnings("unused") PairScore pairBeingMerged,
+					@SuppressWarnings("unused")	final Object [] moreOptions)
+			{
+				return new Pair<Integer,String>(expected.paths.tracePathPrefixClosed(question),null);
+			}
+		};
+		testConfig.setLearnerIdMode(IDMode.POSITIVE_NEGATIVE);
+		ByteArrayOutputStream logStream = new ByteArrayOutputStream();
+		RecordProgressDecorator recorder = new RecordProgressDecorator(l,logStream,1,testConfig,false);
+		recorder.writeLearnerEvaluationData(new LearnerEvaluationConfiguration(expected, new LinkedList<List<Label>>(), testConfig, null, null));
+		recorder.learnMachine(buildSet(plus,testConfig,null), buildSet(minus,testConfig,null));
+		return logStream.toByteArray();
+	}
+
+	/** Returns children of the top-level element of the supplied log, loaded as DOM. */
+	protected static List<Element> getElements(byte [] log)
+	{
+		List<Element> result = new ArrayList<Element>();
+		NodeList children = LearnerSimulator.getDocumentOfXML(new InputStreamReader(new ByteArrayInputStream(log),StandardCharsets.UTF_8)).getDocumentElement().getChildNodes();
+		for(int i=0;i<children.getLength();++i)
+			if (children.item(i).getNodeType() == Node.ELEMENT_NODE)
+				result.add((Element)children.item(i));
+		return result;
+	}
+
+	protected void checkStreamingSimulator(boolean compression)
+	{
+		byte [] log = recordLearner(compression);
+		LearnerSimulator simulator = new LearnerSimulator(new ByteArrayInputStream(log),false,null),
+			streamingSimulator = LearnerSimulator.createStreamingSimulator(new ByteArrayInputStream(log),null);
+		LearnerEvaluationConfiguration eval1 = simulator.readLearnerConstructionData(testConfig), eval2 = streamingSimulator.readLearnerConstructionData(testConfig);
+		Assert.assertNull(WMethod.checkM(eval1.graph, eval2.graph));
+		Assert.assertEquals(eval1.testSet, eval2.testSet);
+		new Test_LearnerComparator(simulator,streamingSimulator,true).learnMachine(buildSet(plus,testConfig,null), buildSet(minus,testConfig,null));
+		streamingSimulator.close();
+	}
+
+	@Test
+	public void testStreamingSimulator1()
+	{
+		checkStreamingSimulator(false);
+	}
+
+	@Test
+	public void testStreamingSimulator2()
+	{
+		checkStreamingSimulator(true);
+	}
+
+	@Test
+	public void testStreamedElementsAreTheSame()
+	{
+		byte [] log = recordLearner(true);
+		List<Element> expected = getElements(log);
+		XMLElementStream stream = new XMLElementStream(new ByteArrayInputStream(log), null);
+		Assert.assertEquals(StatechumXML.ELEM_STATECHUM_TESTTRACE.name(), stream.getTopElementName());
+		for(Element elem:expected)
+			Assert.assertTrue(elem.isEqualNode(stream.next()));
+		Assert.assertNull(stream.next());Assert.assertNull(stream.next());
+		stream.close();
+	}
+
+	@Test
+	public void testIndex() throws IOException
+	{
+		byte [] log = recordLearner(true);
+		List<Element> expected = getElements(log);
+		LearnerLogIndex index = LearnerLogIndex.build(new ByteArrayInputStream(log));
+		Assert.assertEquals(StatechumXML.ELEM_STATECHUM_TESTTRACE.name(), index.getTopElementName());
+		Assert.assertEquals(expected.size(), index.size());
+		for(int i=0;i<index.size();++i)
+		{
+			Assert.assertEquals(expected.get(i).getNodeName(), index.getName(i));
+			Assert.assertEquals('<', log[(int)index.getOffset(i)]);
+			Assert.assertEquals('>', log[(int)(index.getOffset(i)+index.getLength(i)-1)]);
+		}
+
+		ByteArrayOutputStream indexData = new ByteArrayOutputStream();index.write(indexData);
+		LearnerLogIndex loaded = LearnerLogIndex.read(new ByteArrayInputStream(indexData.toByteArray()));
+		Assert.assertEquals(index.getTopElementName(), loaded.getTopElementName());
+		Assert.assertEquals(index.size(), loaded.size());
+		for(int i=0;i<index.size();++i)
+		{
+			Assert.assertEquals(index.getName(i), loaded.getName(i));
+			Assert.assertEquals(index.getOffset(i), loaded.getOffset(i));
+			Assert.assertEquals(index.getLength(i), loaded.getLength(i));
+		}
+	}
+
+	/** Starting from every element of a log stored in a file. */
+	@Test
+	public void testRandomAccess() throws IOException
+	{
+		byte [] log = recordLearner(true);
+		List<Element> expected = getElements(log);
+		File logFile = File.createTempFile("testRandomAccess", ".xml");
+		try
+		{
+			try(FileOutputStream out = new FileOutputStream(logFile))
+			{
+				out.write(log);
+			}
+			LearnerLogIndex.buildAndStore(logFile);
+			LearnerLogIndex index = LearnerLogIndex.read(new FileInputStream(LearnerLogIndex.getIndexFile(logFile)));
+			for(int i=0;i<index.size();++i)
+			{
+				XMLElementStream stream = new XMLElementStream(index.openFrom(logFile, i), StandardCharsets.UTF_8.name());
+				for(int j=i;j<expected.size();++j)
+					Assert.assertTrue(expected.get(j).isEqualNode(stream.next()));
+				Assert.assertNull(stream.next());
+				stream.close();
+			}
+
+			// Playing back a learner from a file via an index.
+			LearnerSimulator simulator = new LearnerSimulator(new ByteArrayInputStream(log),false,null),
+				streamingSimulator = LearnerSimulator.createStreamingSimulator(logFile, index, 0, null);
+			Assert.assertEquals(StatechumXML.ELEM_EVALUATIONDATA.name(), index.getName(0));
+			simulator.readLearnerConstructionData(testConfig);streamingSimulator.readLearnerConstructionData(testConfig);
+			new Test_LearnerComparator(simulator,streamingSimulator,true).learnMachine(buildSet(plus,testConfig,null), buildSet(minus,testConfig,null));
+			streamingSimulator.close();
+		}
+		finally
+		{
+			Assert.assertTrue(LearnerLogIndex.getIndexFile(logFile).delete());
+			Assert.assertTrue(logFile.delete());
+		}
+	}
+
+	/** Comments, processing instructions, character data and elements without content are skipped or indexed correctly. */
+	@Test
+	public void testIndexOfHandwrittenXML() throws IOException
+	{
+		String xml = "<?xml version=\"1.0\"?><!-- a <comment> --><top a=\"1\">\n<el x='>' y=\"/\">text<![CDATA[<b>]]><?pi <a>?></el>\n<!-- <c> --><other/><el><inner/><inner>t</inner></el></top>";
+		byte [] data = xml.getBytes(StandardCharsets.UTF_8);
+		LearnerLogIndex index = LearnerLogIndex.build(new ByteArrayInputStream(data));
+		Assert.assertEquals("top", index.getTopElementName());
+		Assert.assertEquals(3, index.size());
+		Assert.assertEquals("<el x='>' y=\"/\">text<![CDATA[<b>]]><?pi <a>?></el>", new String(data, (int)index.getOffset(0), (int)index.getLength(0), StandardCharsets.UTF_8));
+		Assert.assertEquals("<other/>", new String(data, (int)index.getOffset(1), (int)index.getLength(1), StandardCharsets.UTF_8));
+		Assert.assertEquals("<el><inner/><inner>t</inner></el>", new String(data, (int)index.getOffset(2), (int)index.getLength(2), StandardCharsets.UTF_8));
+
+		XMLElementStream stream = new XMLElementStream(new ByteArrayInputStream(data), null);
+		Element first = stream.next();
+		Assert.assertEquals(">", first.getAttribute("x"));Assert.assertEquals("text<b>", first.getTextContent());
+		Assert.assertEquals("other", stream.next().getNodeName());
+		Assert.assertEquals(2, stream.next().getChildNodes().getLength());
+		Assert.assertNull(stream.next());
+	}
+
+	/** The end of character data is found where it is preceded by a part of the terminator. */
+	@Test
+	public void testIndexOfCharacterDataEndingWithBracket() throws IOException
+	{
+		String xml = "<top><el><![CDATA[a]]]></el><other><![CDATA[]]]]]></other><last/></top>";
+		byte [] data = xml.getBytes(StandardCharsets.UTF_8);
+		LearnerLogIndex index = LearnerLogIndex.build(new ByteArrayInputStream(data));
+		Assert.assertEquals(3, index.size());
+		Assert.assertEquals("<el><![CDATA[a]]]></el>", new String(data, (int)index.getOffset(0), (int)index.getLength(0), StandardCharsets.UTF_8));
+		Assert.assertEquals("<other><![CDATA[]]]]]></other>", new String(data, (int)index.getOffset(1), (int)index.getLength(1), StandardCharsets.UTF_8));
+		Assert.assertEquals("<last/>", new String(data, (int)index.getOffset(2), (int)index.getLength(2), StandardCharsets.UTF_8));
+
+		XMLElementStream stream = new XMLElementStream(new ByteArrayInputStream(data), null);
+		Assert.assertEquals("a]", stream.next().getTextContent());
+		Assert.assertEquals("]]]", stream.next().getTextContent());
+		Assert.assertEquals("last", stream.next().getNodeName());
+		Assert.assertNull(stream.next());
+	}
+
+	@Test
+	public void testIndexOfIncompleteXML()
+	{
+		checkForCorrectException(() -> LearnerLogIndex.build(new ByteArrayInputStream("<top><el></el>".getBytes(StandardCharsets.UTF_8))),
+				IOException.class, "incomplete XML");
+		checkForCorrectException(() -> LearnerLogIndex.build(new ByteArrayInputStream("<top><el a=\"".getBytes(StandardCharsets.UTF_8))),
+				java.io.EOFException.class, "unexpected end");
+	}
+
+	@Test
+	public void testLoadInvalidIndex()
+	{
+		checkForCorrectException(() -> LearnerLogIndex.read(new ByteArrayInputStream(new byte[]{1,2,3,4,5,6,7,8})),
+				IllegalArgumentException.class, "not an index");
+	}
+
+	@Test
+	public void testInvalidElementNumber() throws IOException
+	{
+		final LearnerLogIndex index = LearnerLogIndex.build(new ByteArrayInputStream("<top><el/></top>".getBytes(StandardCharsets.UTF_8)));
+		checkForCorrectException(() -> index.getOffset(1), IllegalArgumentException.class, "invalid element number");
+		checkForCorrectException(() -> index.getLength(-1), IllegalArgumentException.class, "invalid element number");
+	}
+}
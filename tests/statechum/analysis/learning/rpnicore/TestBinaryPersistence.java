@@ -0,0 +1,174 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import static statechum.Helper.checkForCorrectException;
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraphND;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.Label;
+import statechum.StringLabel;
+import statechum.JUConstants;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.DeterministicDirectedSparseGraph.VertID.VertKind;
+import statechum.DeterministicDirectedSparseGraph.VertexID;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.rpnicore.WMethod.VERTEX_COMPARISON_KIND;
+
+public class TestBinaryPersistence
+{
+	protected final Configuration config = Configuration.getDefaultConfiguration().copy();
+
+	protected static byte [] write(AbstractLearnerGraph<?,?> graph) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();graph.storage.writeBinary(out);
+		return out.toByteArray();
+	}
+
+	protected LearnerGraph checkLoading(LearnerGraph gr) throws IOException
+	{
+		LearnerGraph loaded = new LearnerGraph(config);
+		BinaryPersistence.loadGraph(new ByteArrayInputStream(write(gr)), loaded, null);
+		Exception ex=WMethod.checkM(gr,gr.getInit(),loaded,loaded.getInit(),VERTEX_COMPARISON_KIND.DEEP, true);
+		Assert.assertNull(ex == null?"":ex.toString(),ex);
+		Assert.assertEquals(gr, loaded);
+		Assert.assertEquals(gr.pairCompatibility,loaded.pairCompatibility);
+		for(CmpVertex vert:gr.transitionMatrix.keySet())
+			Assert.assertEquals(vert.getDepth(),loaded.findVertex(vert).getDepth());
+		Assert.assertTrue(TestTransform.ids_are_valid(loaded));
+		return loaded;
+	}
+
+	@Test
+	public void testSimple() throws IOException
+	{
+		checkLoading(buildLearnerGraph("A-a->B-b->C-a->A\nB-c-#D", "testSimple", config, null));
+	}
+
+	@Test
+	public void testSingleState() throws IOException
+	{
+		LearnerGraph graph = new LearnerGraph(config);graph.initPTA();
+		checkLoading(graph);
+	}
+
+	@Test
+	public void testAttributes() throws IOException
+	{
+		LearnerGraph fsm = buildLearnerGraph("S-a->A\nS-b->B\nS-c->C\nA-a->A1-b->A2-a->K1-a->K1\nB-a->B1-z->B2-b->K1\nC-a->C1-b-#C2", "testAttributes", config, null);
+		fsm.findVertex("B").setColour(JUConstants.BLUE);fsm.findVertex("B").setHighlight(true);fsm.findVertex("B").setAccept(false);
+		fsm.findVertex("B").setOrigState(VertexID.parseID("P4500"));fsm.findVertex("B").setDepth(5);
+		fsm.findVertex("S").setColour(JUConstants.RED);fsm.findVertex("A").setOrigState(VertexID.parseID("some text"));
+		fsm.findVertex("A1").setOrigState(new VertexID(VertKind.NEGATIVE,3));fsm.findVertex("A1").setDepth(0);
+		fsm.addToCompatibility(fsm.findVertex("B"), fsm.findVertex("A"),JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		fsm.addToCompatibility(fsm.findVertex("B"), fsm.findVertex("C"),JUConstants.PAIRCOMPATIBILITY.MERGED);
+		LearnerGraph loaded = checkLoading(fsm);
+		Assert.assertEquals(VertexID.parseID("P4500"),loaded.findVertex("B").getOrigState());
+		Assert.assertEquals(JUConstants.PAIRCOMPATIBILITY.MERGED,loaded.pairCompatibility.compatibility.get(loaded.findVertex("C")).get(loaded.findVertex("B")));
+	}
+
+	/** A PTA with numerical identifiers of states and a non-default kind of transition matrix. */
+	@Test
+	public void testPTA() throws IOException
+	{
+		Configuration conf = config.copy();conf.setTransitionMatrixImplType(STATETREE.STATETREE_INTARRAY);
+		LearnerGraph pta = BlueFringeFixture.buildPTA(conf, 0, 6, 200);
+		checkLoading(pta);
+
+		StringWriter xml = new StringWriter();pta.storage.writeGraphML(xml);
+		Assert.assertTrue(write(pta).length*4 < xml.toString().length());
+	}
+
+	/** Labels are converted once when loaded. */
+	@Test
+	public void testLabelConversion() throws IOException
+	{
+		LearnerGraph graph = buildLearnerGraph("A-a->B-b->C-a->A", "testLabelConversion", config, null);
+		LearnerGraph loaded = new LearnerGraph(config);
+		BinaryPersistence.loadGraph(new ByteArrayInputStream(write(graph)), loaded, label -> new StringLabel(label.toErlangTerm()+"_c"));
+		Assert.assertEquals(buildLearnerGraph("A-a_c->B-b_c->C-a_c->A", "testLabelConversion", config, null), loaded);
+		Label a = loaded.transitionMatrix.get(loaded.getInit()).keySet().iterator().next();
+		Assert.assertSame(a, loaded.transitionMatrix.get(loaded.findVertex("C")).keySet().iterator().next());
+	}
+
+	@Test
+	public void testNondeterministic() throws IOException
+	{
+		LearnerGraphND graph = buildLearnerGraphND("A-a->B-b->C\nA-a->C-a->A\nB-b->D", "testNondeterministic", config, null);
+		graph.addToCompatibility(graph.findVertex("B"), graph.findVertex("C"),JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		LearnerGraphND loaded = new LearnerGraphND(config);
+		BinaryPersistence.loadGraph(new ByteArrayInputStream(write(graph)), loaded, null);
+		Assert.assertEquals(graph, loaded);
+		Assert.assertEquals(2, loaded.transitionMatrix.get(loaded.findVertex("A")).get(AbstractLearnerGraph.generateNewLabel("a", config, null)).size());
+	}
+
+	@Test
+	public void testLoadFromFile() throws IOException
+	{
+		LearnerGraph graph = buildLearnerGraph("A-a->B-b->C-a->A\nB-c-#D", "testLoadFromFile", config, null);
+		java.io.File file = java.io.File.createTempFile("testLoadFromFile", ".bin");
+		try
+		{
+			graph.storage.writeBinary(file.getAbsolutePath());
+			LearnerGraph loaded = new LearnerGraph(config);AbstractPersistence.loadBinaryGraph(file.getAbsolutePath(), loaded, null);
+			Assert.assertEquals(graph, loaded);
+		}
+		finally
+		{
+			Assert.assertTrue(file.delete());
+		}
+	}
+
+	@Test
+	public void testLoadInvalid1()
+	{
+		checkForCorrectException(
+				() -> BinaryPersistence.loadGraph(new ByteArrayInputStream(new byte[]{1,2,3,4,5}), new LearnerGraph(config), null),
+				IllegalArgumentException.class, "not a binary graph");
+	}
+
+	@Test
+	public void testLoadInvalid2() throws IOException
+	{
+		final byte [] data = write(buildLearnerGraph("A-a->B-b->C-a->A\nB-c-#D", "testLoadInvalid2", config, null));
+		data[4]=2;
+		checkForCorrectException(
+				() -> BinaryPersistence.loadGraph(new ByteArrayInputStream(data), new LearnerGraph(config), null),
+				IllegalArgumentException.class, "unsupported version");
+	}
+
+	@Test
+	public void testLoadTruncated() throws IOException
+	{
+		final byte [] data = write(buildLearnerGraph("A-a->B-b->C-a->A\nB-c-#D", "testLoadTruncated", config, null));
+		checkForCorrectException(
+				() -> BinaryPersistence.loadGraph(new ByteArrayInputStream(Arrays.copyOf(data, data.length-3)), new LearnerGraph(config), null),
+				java.io.EOFException.class, null);
+	}
+}
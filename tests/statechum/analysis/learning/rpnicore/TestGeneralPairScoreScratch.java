@@ -0,0 +1,127 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.Configuration.ScoreMode;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.JUConstants;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.StatePair;
+
+public class TestGeneralPairScoreScratch
+{
+	@Test
+	public void testSimpleGraph()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		LearnerGraph graph = buildLearnerGraph("A-a->B-a->C-b->D\nA-b->E-a->F-b->G\nB-c-#H", "testSimpleGraph", config, null);
+		GeneralPairScoreScratch scratch = GeneralPairScoreScratch.get();
+		Assert.assertEquals(3, scratch.computeScore(graph.learnerCache.getIndexedGraph(), graph.findVertex("B"), graph.findVertex("A")));
+		Assert.assertEquals(3, scratch.getAcceptMerges());
+		Assert.assertEquals(-1, scratch.computeScore(graph.learnerCache.getIndexedGraph(), graph.findVertex("H"), graph.findVertex("A")));
+		Assert.assertEquals(1, scratch.computeScore(graph.learnerCache.getIndexedGraph(), graph.findVertex("D"), graph.findVertex("G")));
+
+		graph.addToCompatibility(graph.findVertex("D"), graph.findVertex("E"), JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		Assert.assertEquals(-1, scratch.computeScore(graph.learnerCache.getIndexedGraph(), graph.findVertex("B"), graph.findVertex("A")));
+		Assert.assertEquals(-1, graph.pairscores.computePairCompatibilityScore_general(new StatePair(graph.findVertex("B"), graph.findVertex("A")),null,new ArrayList<EquivalenceClass<CmpVertex,LearnerGraphCachedData>>(),true));
+
+		graph.removeFromIncompatibles(graph.findVertex("D"), graph.findVertex("E"));
+		Assert.assertEquals(3, scratch.computeScore(graph.learnerCache.getIndexedGraph(), graph.findVertex("B"), graph.findVertex("A")));
+	}
+
+	/** Compares scores of all pairs of states of a PTA with those computed using equivalence classes. */
+	protected static void checkAllPairs(STATETREE matrixType, long seed)
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();config.setTransitionMatrixImplType(matrixType);
+		LearnerGraph graph = BlueFringeFixture.buildPTA(config, seed, 4, 40);
+		Random rnd = new Random(seed);
+		List<CmpVertex> states = new ArrayList<>(graph.transitionMatrix.keySet());
+		for(int i=0;i<states.size()/4;++i)
+		{
+			CmpVertex a = states.get(rnd.nextInt(states.size())), b = states.get(rnd.nextInt(states.size()));
+			if (a != b)
+				graph.addToCompatibility(a, b, JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		}
+		GeneralPairScoreScratch scratch = GeneralPairScoreScratch.get();
+		for(CmpVertex q:states)
+			for(CmpVertex r:states)
+				if (q != r)
+				{
+					Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> mergedVertices = new ArrayList<>();
+					StatePair pair = new StatePair(q,r);
+					int expected = graph.pairscores.computePairCompatibilityScore_general(pair,null,mergedVertices,false);
+					Assert.assertEquals(pair.toString(),expected, scratch.computeScore(graph.learnerCache.getIndexedGraph(), q, r));
+					if (expected >= 0)
+					{
+						int acceptMerges = 0;
+						for(EquivalenceClass<CmpVertex,LearnerGraphCachedData> eqClass:mergedVertices)
+							if (eqClass.getRepresentative().isAccept())
+								acceptMerges += eqClass.getStates().size()-1;
+						Assert.assertEquals(pair.toString(),acceptMerges, scratch.getAcceptMerges());
+					}
+				}
+	}
+
+	@Test
+	public void testAllPairs1()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkAllPairs(STATETREE.STATETREE_LINKEDHASH, seed);
+	}
+
+	@Test
+	public void testAllPairs2()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkAllPairs(STATETREE.STATETREE_INTARRAY, seed);
+	}
+
+	/** Runs a blue-fringe learner with and without scratch buffers and checks that the same pairs are chosen at every step. */
+	protected static void checkLearnerChoosesSamePairs(ScoreMode scoreMode, long seed)
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();config.setLearnerScoreMode(scoreMode);config.setLearnerCloneGraph(false);
+		Configuration configScratch = config.copy();configScratch.setGeneralScoresWithScratchBuffers(true);
+		BlueFringeFixture.compareBlueFringe(BlueFringeFixture.buildPTA(config, seed, 4, 40), BlueFringeFixture.buildPTA(configScratch, seed, 4, 40));
+	}
+
+	@Test
+	public void testLearnerGeneral()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkLearnerChoosesSamePairs(ScoreMode.GENERAL, seed);
+	}
+
+	@Test
+	public void testLearnerGeneralNoFullMerge()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkLearnerChoosesSamePairs(ScoreMode.GENERAL_PLUS_NOFULLMERGE, seed);
+	}
+}
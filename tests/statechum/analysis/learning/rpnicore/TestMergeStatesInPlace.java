@@ -0,0 +1,161 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.DeterministicDirectedSparseGraph;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.JUConstants;
+import statechum.Label;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.StatePair;
+import statechum.collections.MapWithSearch;
+import statechum.model.testset.PTASequenceEngine;
+
+public class TestMergeStatesInPlace
+{
+	/** Checks that the two graphs have the same states, transitions, colours, depth and incompatibilities. */
+	protected static void checkSameGraphs(LearnerGraph expected, LearnerGraph actual)
+	{
+		Assert.assertEquals(expected.getInit(), actual.getInit());
+		Assert.assertEquals(expected.transitionMatrix.keySet(), actual.transitionMatrix.keySet());
+		for(Entry<CmpVertex,MapWithSearch<Label,Label,CmpVertex>> entry:expected.transitionMatrix.entrySet())
+		{
+			CmpVertex actualVertex = actual.findVertex(entry.getKey());
+			Assert.assertTrue(entry.getKey().toString(),DeterministicDirectedSparseGraph.deepEquals(entry.getKey(),actualVertex));
+			Assert.assertEquals(entry.getKey().toString(),entry.getKey().getDepth(), actualVertex.getDepth());
+			Assert.assertEquals(entry.getKey().toString(),entry.getValue(), actual.transitionMatrix.get(actualVertex));
+		}
+		Assert.assertEquals(expected.pairCompatibility.compatibility.keySet(), actual.pairCompatibility.compatibility.keySet());
+		for(Entry<CmpVertex,Map<CmpVertex,JUConstants.PAIRCOMPATIBILITY>> entry:expected.pairCompatibility.compatibility.entrySet())
+			Assert.assertEquals(entry.getValue(), actual.pairCompatibility.compatibility.get(entry.getKey()));
+	}
+
+	/** Copies a graph, labelling states the way {@link MergeStatesInPlace} does when it is constructed. */
+	protected static LearnerGraph copyAsLabelledByMerger(LearnerGraph graph, Configuration config)
+	{
+		LearnerGraph copy = new LearnerGraph(graph,config);copy.pathroutines.updateDepthLabelling();
+		for(CmpVertex vertex:copy.transitionMatrix.keySet())
+			vertex.setOrigState(vertex);
+		return copy;
+	}
+
+	@Test
+	public void testMergeAndUndo()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();config.setLearnerCloneGraph(false);
+		LearnerGraph graph = buildLearnerGraph("A-a->B-a->C-a->D-b->E\nA-b->F-a->G-b->H\nB-b->I", "testMergeAndUndo", config, null);
+		graph.addToCompatibility(graph.findVertex("E"), graph.findVertex("H"), JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		graph.getInit().setColour(JUConstants.RED);graph.findVertex("B").setColour(JUConstants.BLUE);
+		LearnerGraph original = copyAsLabelledByMerger(graph,config);
+
+		MergeStatesInPlace merger = new MergeStatesInPlace(graph);
+		StatePair pair = new StatePair(graph.findVertex("B"),graph.findVertex("A"));
+		LearnerGraph expected = MergeStates.mergeAndDeterminize_general(original, pair);
+		merger.merge(pair);
+		checkSameGraphs(expected, graph);
+		Assert.assertEquals(graph.findVertex("A"), merger.find(original.findVertex("D")));
+		Assert.assertEquals(graph.findVertex("F"), merger.find(original.findVertex("I")));
+		Assert.assertNotNull(graph.pairCompatibility.compatibility.get(graph.findVertex("F")));
+		Assert.assertEquals(1, merger.getNumberOfMerges());
+
+		merger.undo();
+		checkSameGraphs(original, graph);
+		Assert.assertEquals(original.findVertex("D"), merger.find(original.findVertex("D")));
+		Assert.assertEquals(0, merger.getNumberOfMerges());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMergeIncompatible()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		LearnerGraph graph = buildLearnerGraph("A-a->B-a-#C\nA-b->D-a->E", "testMergeIncompatible", config, null);
+		new MergeStatesInPlace(graph).merge(new StatePair(graph.findVertex("D"),graph.findVertex("B")));
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testUndoWithoutMerge()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		new MergeStatesInPlace(buildLearnerGraph("A-a->B", "testUndoWithoutMerge", config, null)).undo();
+	}
+
+	/** Runs a blue-fringe learner merging states in place and by constructing new graphs, checking that the two produce the same
+	 * graphs and that undoing every merge restores the graph. Where scores are retained across merges, checks that merging in place
+	 * only discards some of them.
+	 */
+	protected static void checkInPlaceMergeMatchesMergeAndDeterminize(STATETREE matrixType, boolean incremental, long seed)
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		config.setTransitionMatrixImplType(matrixType);config.setLearnerCloneGraph(false);config.setIncrementalPairScores(incremental);
+		PTASequenceEngine sequences = BlueFringeFixture.generateSequences(config, seed, 4, 60);
+		LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(sequences);
+		final LearnerGraph graphInPlace = new LearnerGraph(config);graphInPlace.paths.augmentPTA(sequences);
+		graphInPlace.clearColours();graphInPlace.getInit().setColour(JUConstants.RED);
+		LearnerGraph original = copyAsLabelledByMerger(graphInPlace,config);
+		final MergeStatesInPlace merger = new MergeStatesInPlace(graphInPlace);
+
+		BlueFringeFixture.compareBlueFringe(graph, graphInPlace, g -> g.pairscores.chooseStatePairs(null), (g, pair) -> { merger.merge(pair);return g; },
+				(g, inPlace) -> {
+					checkSameGraphs(g, inPlace);
+					for(CmpVertex vertex:original.transitionMatrix.keySet())
+						Assert.assertTrue(inPlace.transitionMatrix.containsKey(merger.find(vertex)));
+					if (incremental)
+						Assert.assertNotNull(inPlace.learnerCache.getPairScoreCache());
+				});
+		if (incremental)
+			Assert.assertTrue(graphInPlace.learnerCache.getPairScoreCache().getHits() > 0);
+
+		while(merger.getNumberOfMerges() > 0)
+			merger.undo();
+		original.clearColours();original.getInit().setColour(JUConstants.RED);
+		checkSameGraphs(original, graphInPlace);
+		for(CmpVertex vertex:original.transitionMatrix.keySet())
+			Assert.assertEquals(vertex, merger.find(vertex));
+	}
+
+	@Test
+	public void testInPlaceMerge1()
+	{
+		for(long seed=0;seed<5;++seed)
+			checkInPlaceMergeMatchesMergeAndDeterminize(STATETREE.STATETREE_LINKEDHASH, false, seed);
+	}
+
+	@Test
+	public void testInPlaceMerge2()
+	{
+		for(long seed=0;seed<5;++seed)
+			checkInPlaceMergeMatchesMergeAndDeterminize(STATETREE.STATETREE_INTARRAY, false, seed);
+	}
+
+	@Test
+	public void testInPlaceMergeIncremental()
+	{
+		for(long seed=0;seed<5;++seed)
+			checkInPlaceMergeMatchesMergeAndDeterminize(STATETREE.STATETREE_LINKEDHASH, true, seed);
+	}
+}
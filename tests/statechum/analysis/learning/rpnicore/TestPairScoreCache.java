@@ -0,0 +1,117 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Configuration.STATETREE;
+import statechum.Configuration.ScoreMode;
+import statechum.JUConstants;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.DeterministicDirectedSparseGraph.VertexID;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.PairScore;
+import statechum.model.testset.PTASequenceEngine;
+
+public class TestPairScoreCache
+{
+	@Test
+	public void testInvalidation()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		CmpVertex A = AbstractLearnerGraph.generateNewCmpVertex(VertexID.parseID("A"), config),
+			B = AbstractLearnerGraph.generateNewCmpVertex(VertexID.parseID("B"), config),
+			C = AbstractLearnerGraph.generateNewCmpVertex(VertexID.parseID("C"), config),
+			D = AbstractLearnerGraph.generateNewCmpVertex(VertexID.parseID("D"), config);
+		PairScoreCache cache = new PairScoreCache();
+		Assert.assertNull(cache.get(B, A));
+		cache.put(B, A, 3, 1, Arrays.asList(A,B,C));
+		cache.put(D, A, 4, 2, Arrays.asList(A,D));
+		Assert.assertEquals(2, cache.size());
+
+		PairScore score = cache.get(B, A);
+		Assert.assertSame(B,score.getQ());Assert.assertSame(A,score.getR());
+		Assert.assertEquals(3,score.getScore());Assert.assertEquals(1,score.getAnotherScore());
+
+		// vertices are compared by ID
+		Assert.assertEquals(4,cache.get(AbstractLearnerGraph.generateNewCmpVertex(VertexID.parseID("D"), config),A).getScore());
+
+		cache.invalidate(C);
+		Assert.assertNull(cache.get(B, A));Assert.assertNotNull(cache.get(D, A));Assert.assertEquals(1, cache.size());
+		cache.invalidate(A);
+		Assert.assertNull(cache.get(D, A));Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(3, cache.getHits());Assert.assertEquals(3, cache.getMisses());
+	}
+
+	/** Scores of pairs depending on states with modified compatibility should be recomputed. */
+	@Test
+	public void testCompatibilityInvalidates()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();config.setIncrementalPairScores(true);
+		LearnerGraph graph = buildLearnerGraph("A-a->B-a->C-b->D\nA-b->E-a->F", "testCompatibilityInvalidates", config, null);
+		graph.getInit().setColour(JUConstants.RED);
+		graph.pairscores.chooseStatePairs(null);
+		PairScoreCache cache = graph.learnerCache.getPairScoreCache();
+		Assert.assertNotNull(cache);
+		int size = cache.size();Assert.assertTrue(size > 0);
+		graph.addToCompatibility(graph.findVertex("A"), graph.findVertex("B"), JUConstants.PAIRCOMPATIBILITY.INCOMPATIBLE);
+		Assert.assertTrue(cache.size() < size);
+		Assert.assertEquals(-1,graph.pairscores.obtainPair(graph.findVertex("B"), graph.findVertex("A"), null).getScore());
+	}
+
+	/** Runs a blue-fringe learner with and without retaining scores and checks that the same pairs with the same scores are obtained at every step. */
+	protected static void checkIncrementalScoresMatchComputed(STATETREE matrixType, ScoreMode scoreMode, long seed)
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		config.setTransitionMatrixImplType(matrixType);config.setLearnerScoreMode(scoreMode);config.setLearnerCloneGraph(false);
+		Configuration configIncremental = config.copy();configIncremental.setIncrementalPairScores(true);
+		PTASequenceEngine sequences = BlueFringeFixture.generateSequences(config, seed, 4, 60);
+		LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(sequences);
+		LearnerGraph graphIncremental = new LearnerGraph(configIncremental);graphIncremental.paths.augmentPTA(sequences);
+		LearnerGraph outcome = BlueFringeFixture.compareBlueFringe(graph, graphIncremental, g -> g.pairscores.chooseStatePairs(null), MergeStates::mergeAndDeterminize_general,
+				(g, incremental) -> Assert.assertNotNull(incremental.learnerCache.getPairScoreCache()))[1];
+		Assert.assertTrue(outcome.learnerCache.getPairScoreCache().getHits() > 0);
+	}
+
+	@Test
+	public void testIncrementalScores1()
+	{
+		for(long seed=0;seed<5;++seed)
+			checkIncrementalScoresMatchComputed(STATETREE.STATETREE_LINKEDHASH, ScoreMode.CONVENTIONAL, seed);
+	}
+
+	@Test
+	public void testIncrementalScores2()
+	{
+		for(long seed=0;seed<5;++seed)
+			checkIncrementalScoresMatchComputed(STATETREE.STATETREE_LINKEDHASH, ScoreMode.COMPATIBILITY, seed);
+	}
+
+	@Test
+	public void testIncrementalScores3()
+	{
+		for(long seed=0;seed<5;++seed)
+			checkIncrementalScoresMatchComputed(STATETREE.STATETREE_INTARRAY, ScoreMode.CONVENTIONAL, seed);
+	}
+}
@@ -0,0 +1,145 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Configuration.ScoreMode;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.Label;
+import statechum.analysis.learning.BlueFringeFixture;
+import statechum.analysis.learning.PairScore;
+import statechum.analysis.learning.rpnicore.PairScoreComputation.RedNodeSelectionProcedure;
+import statechum.model.testset.PTASequenceEngine;
+
+public class TestParallelPairScoring
+{
+	/** Rejects pairs that fail the Sicco check, using the graph pairs are chosen in. */
+	protected static class SiccoProcedure implements RedNodeSelectionProcedure
+	{
+		protected LearnerGraph graph;
+
+		@Override
+		public void initComputation(LearnerGraph g)
+		{
+			graph = g;
+		}
+
+		@Override
+		public long overrideScoreComputation(PairScore p)
+		{
+			if (graph.pairscores.computeScoreSicco(p, true) < 0)
+				return -1;
+			return p.getScore();
+		}
+
+		@Override
+		public Collection<Entry<Label, CmpVertex>> getSurroundingTransitions(CmpVertex currentRed)
+		{
+			return null;
+		}
+
+		@Override
+		public CmpVertex selectRedNode(LearnerGraph coregraph, Collection<CmpVertex> reds, Collection<CmpVertex> tentativeRedNodes)
+		{
+			return tentativeRedNodes.iterator().next();
+		}
+
+		@Override
+		public CmpVertex resolvePotentialDeadEnd(LearnerGraph coregraph, Collection<CmpVertex> reds, List<PairScore> pairs)
+		{
+			return null;
+		}
+	}
+
+	/** Runs a blue-fringe learner scoring pairs on a single thread and on multiple threads, checking that the same pairs 
+	 * are returned at every step. 
+	 */
+	protected static void checkParallelScoring(Configuration config, final boolean useSicco, long seed)
+	{
+		Configuration configParallel = config.copy();configParallel.setPairScoringThreadNumber(4);
+		PTASequenceEngine sequences = BlueFringeFixture.generateSequences(config, seed, 4, 60);
+		LearnerGraph graph = new LearnerGraph(config);graph.paths.augmentPTA(sequences);
+		LearnerGraph graphParallel = new LearnerGraph(configParallel);graphParallel.paths.augmentPTA(sequences);
+		BlueFringeFixture.compareBlueFringe(graph, graphParallel, g -> g.pairscores.chooseStatePairs(useSicco?new SiccoProcedure():null), 
+				MergeStates::mergeAndDeterminize_general, null);
+	}
+
+	protected static void checkParallelScoring(ScoreMode scoreMode, boolean useSicco, boolean incremental, long seed)
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		config.setLearnerScoreMode(scoreMode);config.setLearnerCloneGraph(false);config.setKlimit(2);config.setIncrementalPairScores(incremental);
+		checkParallelScoring(config, useSicco, seed);
+	}
+
+	/** In debug mode, consistency of a PTA is checked for every compatible pair. */
+	@Test
+	public void testDebugMode()
+	{
+		Configuration config = Configuration.getDefaultConfiguration().copy();
+		config.setLearnerCloneGraph(false);config.setDebugMode(true);
+		checkParallelScoring(config, false, 0);
+	}
+
+	@Test
+	public void testConventional()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkParallelScoring(ScoreMode.CONVENTIONAL, false, false, seed);
+	}
+
+	@Test
+	public void testConventionalIncremental()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkParallelScoring(ScoreMode.CONVENTIONAL, false, true, seed);
+	}
+
+	@Test
+	public void testCompatibility()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkParallelScoring(ScoreMode.COMPATIBILITY, false, false, seed);
+	}
+
+	@Test
+	public void testKTails()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkParallelScoring(ScoreMode.KTAILS, false, false, seed);
+	}
+
+	@Test
+	public void testSicco()
+	{
+		for(long seed=0;seed<3;++seed)
+			checkParallelScoring(ScoreMode.CONVENTIONAL, true, false, seed);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidThreadNumber()
+	{
+		Configuration.getDefaultConfiguration().copy().setPairScoringThreadNumber(0);
+	}
+}
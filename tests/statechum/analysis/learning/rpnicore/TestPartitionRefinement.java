@@ -0,0 +1,161 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import static statechum.Helper.checkForCorrectException;
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.DeterministicDirectedSparseGraph.CmpVertex;
+import statechum.Label;
+import statechum.analysis.learning.experiments.ForestFireLabelledStateMachineGenerator;
+import statechum.analysis.learning.rpnicore.WMethod.EquivalentStatesException;
+
+/** Checks that partition refinement identifies the same equivalent states as the computation of W does. */
+public class TestPartitionRefinement
+{
+	private final Configuration config = Configuration.getDefaultConfiguration().copy();
+
+	@Test
+	public void testSimple()
+	{
+		LearnerGraph graph = buildLearnerGraph("A-a->B-a->C-a->A\nB-b->D\nC-b->E", "testSimple",config,null);
+		PartitionRefinement refinement = new PartitionRefinement(graph, true);
+		Assert.assertTrue(refinement.hasEquivalentStates());// D and E
+		Assert.assertFalse(refinement.hasSinkLikeState());
+		Assert.assertEquals(5, refinement.getBlockNumber());
+	}
+
+	@Test
+	public void testSinkLike()
+	{
+		LearnerGraph graph = buildLearnerGraph("A-a->B-a-#C\nA-b->D\nA-c-#E", "testSinkLike",config,null);
+		PartitionRefinement refinement = new PartitionRefinement(graph, true);
+		Assert.assertTrue(refinement.hasEquivalentStates());// C and E are both equivalent to the sink state
+		graph = buildLearnerGraph("A-a->B-a-#C\nA-b->D-b->A", "testSinkLike",config,null);
+		refinement = new PartitionRefinement(graph, true);
+		Assert.assertFalse(refinement.hasEquivalentStates());
+		Assert.assertTrue(refinement.hasSinkLikeState());
+	}
+
+	@Test
+	public void testAllReject()
+	{
+		LearnerGraph graph = buildLearnerGraph("A-a-#B", "testAllReject",config,null);
+		graph.getInit().setAccept(false);
+		PartitionRefinement refinement = new PartitionRefinement(graph, false);
+		Assert.assertEquals(1, refinement.getBlockNumber());
+		Assert.assertTrue(refinement.hasEquivalentStates());
+		checkForCorrectException(() -> refinement.computeWSet(true), IllegalArgumentException.class, "have not been recorded");
+	}
+
+	@Test
+	public void testMealyNotSupported()
+	{
+		Configuration mealyConfig = config.copy();mealyConfig.setLabelKind(Configuration.LABELKIND.LABEL_INPUT_OUTPUT);
+		final LearnerGraph graph = new LearnerGraph(mealyConfig);
+		checkForCorrectException(() -> new PartitionRefinement(graph, false), IllegalArgumentException.class, "Mealy");
+	}
+
+	/** Adds transitions to copies of existing states, making many states equivalent. */
+	protected static LearnerGraph addEquivalentStates(LearnerGraph graph, Random rnd)
+	{
+		LearnerGraph result = new LearnerGraph(graph,graph.config);
+		List<CmpVertex> states = new ArrayList<>(result.transitionMatrix.keySet());
+		for(int i=0;i<states.size()/5;++i)
+		{
+			CmpVertex original = states.get(rnd.nextInt(states.size()));
+			CmpVertex copy = AbstractLearnerGraph.generateNewCmpVertex(result.nextID(original.isAccept()), result.config);copy.setAccept(original.isAccept());
+			result.transitionMatrix.put(copy, result.createNewRow());
+			for(java.util.Map.Entry<Label,CmpVertex> transition:result.transitionMatrix.get(original).entrySet())
+				result.addTransition(result.transitionMatrix.get(copy), transition.getKey(), transition.getValue());
+			CmpVertex from = states.get(rnd.nextInt(states.size()));
+			Label label = result.pathroutines.computeAlphabet().iterator().next();
+			result.transitionMatrix.get(from).put(label, copy);
+		}
+		return result;
+	}
+
+	@Test
+	public void testRandomGraphs()
+	{
+		for(int seed=0;seed<6;++seed)
+		{
+			LearnerGraph graph = new ForestFireLabelledStateMachineGenerator(0.3,0.2,0.2,0.1,6,seed,config,null).buildMachine(40+seed*10);
+			for(LearnerGraph fsm:new LearnerGraph[]{graph,addEquivalentStates(graph,new Random(seed))})
+			{
+				boolean equivalent = false;
+				Collection<EquivalenceClass<CmpVertex,LearnerGraphCachedData>> expectedReduction = null;
+				try
+				{
+					WMethod.computeWSet_reducedmemory(fsm);
+				}
+				catch(EquivalentStatesException ex)
+				{
+					equivalent = true;expectedReduction = ex.getStatesToComputeReduction();
+				}
+				Assert.assertEquals(equivalent, WMethod.checkEquivalentStates(fsm));
+				if (equivalent)
+				{
+					Assert.assertEquals(expectedReduction.size(), WMethod.identifyEquivalentStates(fsm).size());
+					LearnerGraph reduced = fsm.paths.reduce();
+					Assert.assertFalse(WMethod.checkEquivalentStates(reduced));
+					Assert.assertNull(WMethod.checkM(fsm, reduced));
+				}
+				else
+				{
+					Collection<List<Label>> wset = WMethod.computeWSet_partitionRefinement(fsm);
+					Assert.assertTrue(wset.size() <= fsm.getStateNumber());
+					fsm.wmethod.checkW_is_corrent(wset, fsm.config.isPrefixClosed(), null);
+				}
+			}
+		}
+	}
+
+	/** A graph with more states than pairs of them that can be numbered with an integer, where state <em>i</em> has transitions to
+	 * <em>2i+1</em> and <em>2i+2</em>, states without outgoing transitions are equivalent.
+	 */
+	@Test
+	public void testLargeGraph()
+	{
+		final int stateNumber = 70000;
+		LearnerGraph graph = new LearnerGraph(config);
+		Label a = AbstractLearnerGraph.generateNewLabel("a", config, null), b = AbstractLearnerGraph.generateNewLabel("b", config, null);
+		List<CmpVertex> states = new ArrayList<>(stateNumber);states.add(graph.getInit());
+		for(int i=1;i<stateNumber;++i)
+		{
+			CmpVertex state = AbstractLearnerGraph.generateNewCmpVertex(graph.nextID(true), config);
+			graph.transitionMatrix.put(state, graph.createNewRow());states.add(state);
+			graph.addTransition(graph.transitionMatrix.get(states.get((i-1)/2)), i % 2 == 1?a:b, state);
+		}
+		PartitionRefinement refinement = new PartitionRefinement(graph, true);
+		Assert.assertTrue(refinement.hasEquivalentStates());
+		Collection<List<Label>> wset = refinement.computeWSet(true);
+		Assert.assertEquals(refinement.getBlockNumber()-1, wset.size());
+		for(List<Label> seq:wset)
+			Assert.assertTrue(seq.size() <= 16);
+	}
+}
@@ -0,0 +1,91 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.analysis.learning.rpnicore;
+
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Helper.whatToRun;
+
+public class TestStreamingPTABuilder
+{
+	protected final Configuration config = Configuration.getDefaultConfiguration().copy();
+
+	@Test
+	public void testQSMTraces()
+	{
+		LearnerGraph pta = new LearnerGraph(config);
+		StreamingPTABuilder builder = new StreamingPTABuilder(pta, null);
+		builder.loadQSMTraces(new StringReader("# sample file\n+ [[a, b, c],[a,d]]\nk 2\n- [[a,b,e]]\n\n+ [[f]]\npassive\n- [[f,a],[a,d,a]]"));
+		Assert.assertEquals(3, builder.getPositiveCount());Assert.assertEquals(3, builder.getNegativeCount());
+		Assert.assertSame(pta, builder.getPTA());
+		Assert.assertNull(WMethod.checkM(buildLearnerGraph("A-a->B-b->C-c->D\nB-d->E-a-#F\nC-e-#G\nA-f->H-a-#I","testQSMTraces",config,null), pta));
+	}
+
+	@Test
+	public void testQSMTracesFromStream()
+	{
+		LearnerGraph pta = new LearnerGraph(config);
+		new StreamingPTABuilder(pta, null).loadQSMTraces(new ByteArrayInputStream("+ [[a, b]]\n- [[a,c]]".getBytes(StandardCharsets.UTF_8)));
+		Assert.assertNull(WMethod.checkM(buildLearnerGraph("A-a->B-b->C\nB-c-#D","testQSMTracesFromStream",config,null), pta));
+	}
+
+	@Test
+	public void testQSMTracesInconsistent()
+	{
+		final LearnerGraph pta = new LearnerGraph(config);
+		statechum.Helper.checkForCorrectException(new whatToRun() { public @Override void run() {
+			new StreamingPTABuilder(pta, null).loadQSMTraces(new StringReader("+ [[a, b]]\n- [[a]]"));
+		}},IllegalArgumentException.class,"incompatible");
+	}
+
+	@Test
+	public void testUAVTraces()
+	{
+		LearnerGraph pta = new LearnerGraph(config);
+		StreamingPTABuilder builder = new StreamingPTABuilder(pta, null);
+		builder.loadUAVTraces(new StringReader("0,UAV1,4, + [[a,b]]\n1,UAV2,4, - [[a,c]]\n2,UAV1,5, + [[d]]"), null);
+		Assert.assertEquals(2, builder.getPositiveCount());Assert.assertEquals(1, builder.getNegativeCount());
+		Assert.assertNull(WMethod.checkM(buildLearnerGraph("A-a->B-b->C\nB-c-#D\nA-d->E","testUAVTraces",config,null), pta));
+	}
+
+	@Test
+	public void testUAVTracesFiltered()
+	{
+		LearnerGraph pta = new LearnerGraph(config);
+		new StreamingPTABuilder(pta, null).loadUAVTraces(new StringReader("0,UAV1,4, + [[a,b]]\n1,UAV2,4, - [[a,c]]\n2,UAV1,5, + [[d]]"), 
+				(frame, UAV, seed) -> UAV.equals("UAV1") && frame < 2);
+		Assert.assertNull(WMethod.checkM(buildLearnerGraph("A-a->B-b->C","testUAVTracesFiltered",config,null), pta));
+	}
+
+	@Test
+	public void testUAVTracesInvalid()
+	{
+		final LearnerGraph pta = new LearnerGraph(config);
+		statechum.Helper.checkForCorrectException(new whatToRun() { public @Override void run() {
+			new StreamingPTABuilder(pta, null).loadUAVTraces(new StringReader("0,UAV1"), null);
+		}},IllegalArgumentException.class,"failed to lex");
+	}
+}
@@ -709,10 +709,21 @@ public class TestWMethod {
 			checkEquivalentStatesException(e,fsm);
 		}
 
+		Assert.assertTrue(WMethod.checkEquivalentStates(fsm));
+		try
+		{
+			WMethod.computeWSet_partitionRefinement(fsm);
+			fail("exception not thrown");
+		}
+		catch(EquivalentStatesException e)
+		{// exception is expected here
+			checkEquivalentStatesException(e,fsm);
+		}
+
 		fsm.config.setEquivalentStatesAllowedForW(true);
 		Set<List<Label>> wset = new HashSet<>(WMethod.computeWSet_reducedmemory(fsm));
 		fsm.wmethod.checkW_is_corrent(wset,prefixClosed,equivalentVertices);// we are not checking for W reduction here since space-saving way to compute W
-		
+		fsm.wmethod.checkW_is_corrent(WMethod.computeWSet_partitionRefinement(fsm),prefixClosed,equivalentVertices);
 	}
 
 	public static void testWsetconstruction(LearnerGraph fsm, boolean equivalentExpected, boolean reductionExpected, boolean prefixClosed)
@@ -748,6 +759,18 @@ public class TestWMethod {
 			checkEquivalentStatesException(e,fsm);
 		}
 
+		assertEquals(equivalentExpected, WMethod.checkEquivalentStates(fsm));
+		try
+		{
+			fsm.wmethod.checkW_is_corrent(WMethod.computeWSet_partitionRefinement(fsm),prefixClosed,null);
+			assertFalse(equivalentExpected);
+		}
+		catch(EquivalentStatesException e)
+		{
+			assertTrue(equivalentExpected);
+			checkEquivalentStatesException(e,fsm);
+		}
+
 		try
 		{
 			Set<List<Label>> wset = new HashSet<>(WMethod.computeWSet_reducedw(fsm));
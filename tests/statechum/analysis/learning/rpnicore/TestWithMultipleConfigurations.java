@@ -35,11 +35,13 @@ public class TestWithMultipleConfigurations
 	configStd = Configuration.getDefaultConfiguration().copy(), 
 	configTree = Configuration.getDefaultConfiguration().copy(), 
 	configArray = Configuration.getDefaultConfiguration().copy(),
+	configIntArray = Configuration.getDefaultConfiguration().copy(),
 	configHash = Configuration.getDefaultConfiguration().copy();
 
 	static
 	{
 		configArray.setTransitionMatrixImplType(STATETREE.STATETREE_ARRAY);
+		configIntArray.setTransitionMatrixImplType(STATETREE.STATETREE_INTARRAY);
 		configHash.setTransitionMatrixImplType(STATETREE.STATETREE_LINKEDHASH);
 		configTree.setTransitionMatrixImplType(STATETREE.STATETREE_SLOWTREE);
 	}
@@ -56,6 +58,7 @@ public class TestWithMultipleConfigurations
 		Collection<Object []> result = new LinkedList<Object []>();
 		result.add(new Object[]{configTree});
 		result.add(new Object[]{configArray});
+		result.add(new Object[]{configIntArray});
 		result.add(new Object[]{configHash});
 		return result;
 	}
@@ -0,0 +1,157 @@
+/* Copyright (c) 2026 The University of Sheffield
+ *
+ * This file is part of StateChum
+ *
+ * StateChum is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * StateChum is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with StateChum.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package statechum.model.testset;
+
+import static statechum.Helper.checkForCorrectException;
+import static statechum.analysis.learning.rpnicore.FsmParser.buildLearnerGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import statechum.Configuration;
+import statechum.Label;
+import statechum.analysis.learning.experiments.ForestFireLabelledStateMachineGenerator;
+import statechum.analysis.learning.rpnicore.LearnerGraph;
+import statechum.analysis.learning.rpnicore.TestFSMAlgo;
+
+/** Tests that the array-based engine builds the same tries as {@link PTASequenceEngine}. */
+public class TestPTAArraySequenceEngine
+{
+	private final Configuration config = Configuration.getDefaultConfiguration().copy();
+
+	protected static PTAArraySequenceEngine buildArrayEngine(final LearnerGraph graph)
+	{
+		PTAArraySequenceEngine engine = new PTAArraySequenceEngine();
+		engine.init(graph.new FSMImplementation() {
+			@Override
+			public boolean shouldBeReturned(@SuppressWarnings("unused") Object elem)
+			{
+				return true;
+			}
+		});
+		return engine;
+	}
+
+	/** Checks that the two engines contain the same sequences and that queries on them give the same results. */
+	protected static void compareEngines(PTASequenceEngine expected, PTAArraySequenceEngine actual)
+	{
+		List<List<Label>> data = expected.getData();
+		Assert.assertEquals(data, actual.getData());
+		Assert.assertEquals(data, expected.getDataStream(null).collect(Collectors.toList()));
+		Assert.assertEquals(data, actual.getDataStream(null).collect(Collectors.toList()));
+		Assert.assertEquals(expected.numberOfLeafNodes(), actual.numberOfLeafNodes());
+		Assert.assertEquals(expected.getSize(), actual.getSize());
+		for(List<Label> seq:data)
+			for(int len=0;len<=seq.size();++len)
+			{
+				List<Label> prefix = seq.subList(0, len);
+				Assert.assertEquals(expected.containsSequence(prefix), actual.containsSequence(prefix));
+				Assert.assertEquals(expected.containsAsLeaf(prefix), actual.containsAsLeaf(prefix));
+				Assert.assertEquals(expected.extendsLeaf(prefix), actual.extendsLeaf(prefix));
+				List<Label> extended = new ArrayList<>(prefix);extended.addAll(seq);
+				Assert.assertEquals(expected.containsSequence(extended), actual.containsSequence(extended));
+				Assert.assertEquals(expected.extendsLeaf(extended), actual.extendsLeaf(extended));
+			}
+	}
+
+	@Test
+	public void testCrossWithSetAndSequences()
+	{
+		LearnerGraph fsm = buildLearnerGraph("A-a->B-a->A-b-#C\nB-b->D-c->E", "testCrossWithSetAndSequences",config,null);
+		PTASequenceEngine expected = new PTA_FSMStructure(fsm, null);
+		PTAArraySequenceEngine actual = buildArrayEngine(fsm);
+		PTASequenceEngine.SequenceSet expectedSet = expected.new SequenceSet();expectedSet.setIdentity();
+		PTAArraySequenceEngine.SequenceSet actualSet = actual.new SequenceSet();actualSet.setIdentity();
+		List<Label> alphabet = new ArrayList<>(fsm.pathroutines.computeAlphabet());
+		for(int i=0;i<3;++i)
+		{
+			expectedSet = expectedSet.crossWithSet(alphabet);actualSet = actualSet.crossWithSet(alphabet);
+			Assert.assertEquals(expectedSet.getSize(), actualSet.getSize());
+		}
+		List<List<Label>> sequences = TestFSMAlgo.buildList(new String[][]{new String[]{"b","c"},new String[]{"a","b","c"},new String[]{"c"}},config,null);
+		expectedSet.cross(sequences);actualSet.cross(sequences);
+		compareEngines(expected, actual);
+	}
+
+	@Test
+	public void testRejectInitialState()
+	{
+		LearnerGraph fsm = buildLearnerGraph("A-a->B", "testRejectInitialState",config,null);
+		fsm.getInit().setAccept(false);
+		PTAArraySequenceEngine actual = buildArrayEngine(fsm);
+		PTAArraySequenceEngine.SequenceSet set = actual.new SequenceSet();set.setIdentity();
+		Assert.assertEquals(PTAArraySequenceEngine.REJECT, set.getTheOnlyElement());
+		Assert.assertTrue(set.crossWithSet(fsm.pathroutines.computeAlphabet()).isEmpty());
+		Assert.assertEquals(1, actual.numberOfLeafNodes());
+		Assert.assertEquals(Arrays.asList(new ArrayList<Label>()), actual.getData());
+	}
+
+	@Test
+	public void testDataIterator()
+	{
+		LearnerGraph fsm = buildLearnerGraph("A-a->B-a->A-b-#C\nB-b->D-c->E", "testDataIterator",config,null);
+		PTASequenceEngine engine = new PTA_FSMStructure(fsm, null);
+		PTASequenceEngine.SequenceSet set = engine.new SequenceSet();set.setIdentity();
+		set.crossWithSet(fsm.pathroutines.computeAlphabet()).crossWithSet(fsm.pathroutines.computeAlphabet());
+		final Iterator<List<Label>> iter = engine.getDataIterator(null);
+		for(List<Label> seq:engine.getData())
+		{
+			Assert.assertTrue(iter.hasNext());Assert.assertEquals(seq, iter.next());
+		}
+		Assert.assertFalse(iter.hasNext());
+		checkForCorrectException(() -> iter.next(), java.util.NoSuchElementException.class, null);
+		// only sequences leading to accept-states are returned, the predicate is given reject-states as nulls.
+		Assert.assertEquals(engine.getData(name -> name != null), engine.getDataStream(name -> name != null).collect(Collectors.toList()));
+		Assert.assertEquals(3, engine.getDataStream(name -> name == null).count());
+	}
+
+	@Test
+	public void testSequenceSetOperations()
+	{
+		LearnerGraph fsm = buildLearnerGraph("A-a->B-a->A-b->C", "testSequenceSetOperations",config,null);
+		PTAArraySequenceEngine engine = buildArrayEngine(fsm);
+		final PTAArraySequenceEngine.SequenceSet set = engine.new SequenceSet();set.setIdentity();
+		PTAArraySequenceEngine.SequenceSet next = set.crossWithSet(fsm.pathroutines.computeAlphabet());
+		Assert.assertEquals(2, next.getSize());
+		next.unite(set);next.unite(next);
+		Assert.assertEquals(6, next.getSize());
+		next.limitTo(5);Assert.assertEquals(5, next.getSize());
+		next.limitTo(-1);Assert.assertEquals(5, next.getSize());
+		checkForCorrectException(() -> next.getTheOnlyElement(), IllegalArgumentException.class, "exactly one");
+		final PTAArraySequenceEngine.SequenceSet other = buildArrayEngine(fsm).new SequenceSet();
+		checkForCorrectException(() -> set.unite(other), IllegalArgumentException.class, "different PTA");
+	}
+
+	/** Test sets for large graphs built with the array-based engine are the same as those built with the original one. */
+	@Test
+	public void testTestSetsOfRandomGraphs()
+	{
+		for(int seed=0;seed<4;++seed)
+		{
+			LearnerGraph graph = new ForestFireLabelledStateMachineGenerator(0.3,0.2,0.2,0.1,6,seed,config,null).buildMachine(30+seed*10);
+			for(int extraStates=0;extraStates<2;++extraStates)
+				compareEngines(graph.wmethod.computeNewTestSet(graph.getInit(), extraStates), graph.wmethod.computeNewTestSetCompact(graph.getInit(), extraStates));
+		}
+	}
+}
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -117,6 +118,8 @@ public class TestPTASequenceEngine extends TestWithMultipleConfigurations
 		assertTrue("expected: "+expectedSet+" received : "+actualC,expectedSet.equals(actualC));
 		assertTrue("expected: "+expectedSet+" received : "+actualD,expectedSet.equals(actualD));
 		assertEquals(engineSize, ptaToVerify.numberOfLeafNodes());
+		// sequences returned lazily have to be the same and in the same order as those from getData
+		assertEquals(ptaToVerify.getData(), ptaToVerify.getDataStream(null).collect(Collectors.toList()));
 	}
 	
 	/** Checks that the supplied engine has a specific number of sequences in it 
@@ -23,6 +23,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -546,4 +547,43 @@ public class TestPTA_computePrecisionRecall extends TestWithMultipleConfiguratio
 		assertEquals("neg precision",bruteForcePR.getNegprecision(), actualPR.getNegprecision(),Configuration.fpAccuracy);
 		assertEquals("neg recall",bruteForcePR.getNegrecall(), actualPR.getNegrecall(),Configuration.fpAccuracy);
 	}
+	private static void assertSameCounters(PTA_computePrecisionRecall expected, PTA_computePrecisionRecall actual)
+	{
+		assertEquals("true negatives",expected.resultTN, actual.resultTN);assertEquals("true positives",expected.resultTP, actual.resultTP);
+		assertEquals("false negatives",expected.resultFN, actual.resultFN);assertEquals("false positives",expected.resultFP, actual.resultFP);
+		assertEquals("positives relevant",expected.pos_Rel, actual.pos_Rel);assertEquals("negatives relevant",expected.neg_Rel, actual.neg_Rel);
+		assertEquals("positives retrieved",expected.pos_Ret, actual.pos_Ret);assertEquals("negatives retrieved",expected.neg_Ret, actual.neg_Ret);
+	}
+
+	/** Tracing sequences on multiple threads gives the same outcome as doing it sequentially, including where some of the sequences have already been seen. */
+	@Test
+	public final void testParallelSameAsSequential()
+	{
+		LearnerGraph graph = buildLearnerGraph("A-a->B-c->A / B-b->C-b->B-a-#X / C-a->C","testParallelSameAsSequential_subject",mainConfiguration,converter);
+		LearnerGraph reference = buildLearnerGraph("A-a->A-b->B-b->B-a-#X / B-c->C-c->C-a-#X / C-b->D-a->D-c->D","testParallelSameAsSequential_reference",mainConfiguration,converter);
+		PTASequenceEngine training = new PTA_FSMStructureAccept(reference), sequences = new PTA_FSMStructureAccept(reference);
+		Set<Label> alphabet = graph.pathroutines.computeAlphabet();
+		PTASequenceEngine.SequenceSet trainingSet = training.new SequenceSet();trainingSet.setIdentity();
+		for(int i=0;i < 4;++i)
+			trainingSet = trainingSet.crossWithSet(alphabet);
+		PTASequenceEngine.SequenceSet initSet = sequences.new SequenceSet();initSet.setIdentity();
+		for(int i=0;i < 9;++i)
+			initSet = initSet.crossWithSet(alphabet);
+
+		PTA_computePrecisionRecall expected = new PTA_computePrecisionRecall(graph);
+		expected.crossWith(training);expected.crossWith(sequences);
+		Assert.assertTrue(expected.resultTP > 0 && expected.resultTN > 0 && expected.resultFP+expected.resultFN > 0);
+		for(int threads:new int[]{1,2,4,7})
+		{
+			PTA_computePrecisionRecall actual = new PTA_computePrecisionRecall(graph);
+			actual.crossWith(training, threads);actual.crossWith(sequences, threads);
+			assertSameCounters(expected, actual);
+			assertEquals(expected.getSize(), actual.getSize());
+			// the second trace should not count anything since all sequences have been seen.
+			expected.crossWith(sequences);actual.crossWith(sequences, threads);
+			assertSameCounters(expected, actual);
+			expected = new PTA_computePrecisionRecall(graph);
+			expected.crossWith(training);expected.crossWith(sequences);
+		}
+	}
 }